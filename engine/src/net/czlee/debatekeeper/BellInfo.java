@@ -17,24 +17,33 @@
 
 package net.czlee.debatekeeper;
 
-
-
 /**
  * BellInfo is a passive data class that holds information about a single bell.
  *
  * This includes (but is not limited to) when the bell is to be played, what it sounds like and
  * what the name of the following period is.
  *
+ * Once a bell is complete (<i>i.e.</i> when it is put in a {@link BellSegment}), it is interned
+ * using <code>intern()</code>, so that formats share a single copy of each distinct bell.
+ *
+ * BellInfo is mutable, but it is interned by value: <code>equals()</code> and
+ * <code>hashCode()</code> depend on every field, and the pool keys on them.  So an interned
+ * BellInfo must never be changed, by its setters or through its {@link BellSoundInfo}.  Doing so
+ * would change the bell in every format that shares it, and leave it filed in the pool under its
+ * old value.  Anything that needs a different bell must make a new BellInfo and intern that.
+ *
  * @author Chuan-Zheng Lee
  * @since  2012-05-12
  *
  */
 public class BellInfo {
 
+    private static final InternPool<BellInfo> INTERN_POOL = new InternPool<BellInfo>();
+
     private long          mBellTime       = 0;
     private boolean       mPauseOnBell    = false;
     private PeriodInfo    mNextPeriodInfo = new PeriodInfo(null, null);
-    private final BellSoundInfo mSoundInfo      = new BellSoundInfo();
+    private BellSoundInfo mSoundInfo      = new BellSoundInfo();
 
     public BellInfo(long seconds, int timesToPlay) {
         super();
@@ -79,4 +88,34 @@ public class BellInfo {
         return mPauseOnBell;
     }
 
+    /**
+     * Returns the canonical <code>BellInfo</code> equal to this one, in the same way as
+     * <code>String.intern()</code>.  Its {@link PeriodInfo} and {@link BellSoundInfo} are
+     * interned too.  The returned object is shared, and must not be changed.
+     * @return the canonical <code>BellInfo</code>
+     */
+    public BellInfo intern() {
+        mNextPeriodInfo = mNextPeriodInfo.intern();
+        mSoundInfo      = mSoundInfo.intern();
+        return INTERN_POOL.intern(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BellInfo)) return false;
+        BellInfo bi = (BellInfo) o;
+        return mBellTime == bi.mBellTime && mPauseOnBell == bi.mPauseOnBell
+                && mNextPeriodInfo.equals(bi.mNextPeriodInfo) && mSoundInfo.equals(bi.mSoundInfo);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (mBellTime ^ (mBellTime >>> 32));
+        result = 31 * result + (mPauseOnBell ? 1 : 0);
+        result = 31 * result + mNextPeriodInfo.hashCode();
+        result = 31 * result + mSoundInfo.hashCode();
+        return result;
+    }
+
 }
\ No newline at end of file
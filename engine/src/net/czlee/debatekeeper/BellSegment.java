@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.SortedMap;
+
+/**
+ * BellSegment is an immutable list of {@link BellInfo}s, sorted by bell time, with no two bells at
+ * the same time.
+ *
+ * Because it can't change, a BellSegment can be shared between any number of
+ * {@link SpeechFormat}s.  For example, a resource that is included in several speech formats is
+ * compiled into a single BellSegment, which all of those speech formats then refer to.
+ *
+ * Lookups by time are binary searches.  The bells are interned as the segment is made, since they
+ * can't change after that.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class BellSegment {
+
+    private final long[]     mBellTimes;
+    private final BellInfo[] mBells;
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Constructor.
+     * @param bells the bells, keyed by bell time
+     */
+    public BellSegment(SortedMap<Long, BellInfo> bells) {
+        super();
+        mBellTimes = new long[bells.size()];
+        mBells     = new BellInfo[bells.size()];
+
+        Iterator<BellInfo> biIterator = bells.values().iterator();
+        for (int i = 0; biIterator.hasNext(); i++) {
+            mBells[i]     = biIterator.next().intern();
+            mBellTimes[i] = mBells[i].getBellTime();
+        }
+    }
+
+    /**
+     * @return the number of bells in this segment
+     */
+    public int size() {
+        return mBells.length;
+    }
+
+    /**
+     * @param index the index of the bell
+     * @return the bell at that index, bells being sorted by time
+     */
+    public BellInfo get(int index) {
+        return mBells[index];
+    }
+
+    /**
+     * @param index the index of the bell
+     * @return the time of the bell at that index
+     */
+    public long getBellTime(int index) {
+        return mBellTimes[index];
+    }
+
+    /**
+     * @return the time of the last bell in this segment, or -1 if there are no bells
+     */
+    public long getLastBellTime() {
+        if (mBellTimes.length == 0) return -1;
+        return mBellTimes[mBellTimes.length - 1];
+    }
+
+    /**
+     * @param seconds the time in seconds
+     * @return the bell at exactly that time, or <code>null</code> if there is no such bell
+     */
+    public BellInfo getBellAtTime(long seconds) {
+        int index = Arrays.binarySearch(mBellTimes, seconds);
+        return (index >= 0) ? mBells[index] : null;
+    }
+
+    /**
+     * @param seconds the time in seconds
+     * @return the index of the first bell at or after that time.  This is <code>size()</code>
+     * if there is no such bell.
+     */
+    public int indexOfFirstBellFromTime(long seconds) {
+        int index = Arrays.binarySearch(mBellTimes, seconds);
+        return (index >= 0) ? index : -index - 1;
+    }
+
+}
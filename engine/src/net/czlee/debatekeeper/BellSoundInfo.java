@@ -27,13 +27,25 @@ package net.czlee.debatekeeper;
  * a "double bell" may be a single bell repeated twice; for others, there may be another sound
  * file for a double bell that only needs to be played once.
  *
- * BellSoundInfo is handled by BellRepeater, and is a member of BellInfo.
+ * BellSoundInfo is compiled into an AlertTimeline, and is a member of BellInfo.
+ *
+ * BellSoundInfos that come from debate format files are interned using <code>intern()</code>,
+ * since most bells sound the same.  Interned BellSoundInfos must never be changed.
  *
  * @author Chuan-Zheng Lee
  * @since  2012-05-30
  */
 public class BellSoundInfo {
-    protected int  mSoundResid   = R.raw.desk_bell; // default sound
+
+    /**
+     * The sound ID of the default bell sound.  Sound IDs are turned into actual sounds by the
+     * {@link TimerAlerts}; zero means silence.
+     */
+    public static final int DEFAULT_SOUND = 1;
+
+    private static final InternPool<BellSoundInfo> INTERN_POOL = new InternPool<BellSoundInfo>();
+
+    protected int  mSoundResid   = DEFAULT_SOUND;   // default sound
     protected int  mTimesToPlay  = 1;               // default times to play
     protected long mRepeatPeriod = 500;
 
@@ -75,4 +87,30 @@ public class BellSoundInfo {
     public boolean isPlayable() {
         return mSoundResid != 0 && mTimesToPlay != 0;
     }
+
+    /**
+     * Returns the canonical <code>BellSoundInfo</code> equal to this one, in the same way as
+     * <code>String.intern()</code>.  The returned object is shared, and must not be changed.
+     * @return the canonical <code>BellSoundInfo</code>
+     */
+    public BellSoundInfo intern() {
+        return INTERN_POOL.intern(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BellSoundInfo)) return false;
+        BellSoundInfo bsi = (BellSoundInfo) o;
+        return mSoundResid == bsi.mSoundResid && mTimesToPlay == bsi.mTimesToPlay
+                && mRepeatPeriod == bsi.mRepeatPeriod;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mSoundResid;
+        result = 31 * result + mTimesToPlay;
+        result = 31 * result + (int) (mRepeatPeriod ^ (mRepeatPeriod >>> 32));
+        return result;
+    }
 }
\ No newline at end of file
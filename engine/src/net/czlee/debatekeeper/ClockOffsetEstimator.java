@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+/**
+ * ClockOffsetEstimator works out the offset and skew between a follower's clock and a master's,
+ * from NTP-style exchanges.
+ *
+ * Each exchange gives an offset, which is off by at most half its round-trip delay.  Exchanges
+ * that were delayed (by jitter, or a busy network) are the least accurate, so only the ones with
+ * the shortest delays among the recent ones are used.  A straight line is fitted through their
+ * offsets, so that a difference in clock rates (skew) is followed between exchanges.
+ *
+ * This class is not thread-safe; the {@link Estimate}s it makes are immutable.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+class ClockOffsetEstimator {
+
+    private static final int MAX_SAMPLES  = 32;
+    private static final int BEST_SAMPLES = 8;
+
+    /**
+     * Below this span of sample times, skew isn't estimated, since jitter would swamp it.
+     */
+    private static final long MIN_SKEW_SPAN = 2000000000L;  // 2 s
+
+    /**
+     * Crystal oscillators are within about 100 ppm, so anything beyond this must be noise.  This is
+     * also the rate the error bound grows at after the last sample, in case the skew has changed.
+     */
+    private static final double MAX_SKEW = 200e-6;
+
+    private final long[] mLocalTimes = new long[MAX_SAMPLES];
+    private final long[] mOffsets    = new long[MAX_SAMPLES];
+    private final long[] mDelays     = new long[MAX_SAMPLES];
+    private final int[]  mOrder      = new int[MAX_SAMPLES];
+    private int          mCount      = 0;
+    private int          mNext       = 0;
+
+    //******************************************************************************************
+    // Public classes
+    //******************************************************************************************
+
+    /**
+     * The offset between the clocks at a reference time, and the skew, which together give the
+     * offset at any time.
+     */
+    static class Estimate {
+
+        private final long   mReferenceTime;
+        private final long   mOffset;
+        private final double mSkew;
+        private final long   mErrorBound;
+        private final long   mDelay;
+
+        Estimate(long referenceTime, long offset, double skew, long errorBound, long delay) {
+            mReferenceTime = referenceTime;
+            mOffset        = offset;
+            mSkew          = skew;
+            mErrorBound    = errorBound;
+            mDelay         = delay;
+        }
+
+        /**
+         * @param localTime a time in the follower's clock
+         * @return what to add to <code>localTime</code> to get the master's time
+         */
+        long getOffset(long localTime) {
+            return mOffset + (long) (mSkew * (localTime - mReferenceTime));
+        }
+
+        /**
+         * @param localTime a time in the follower's clock
+         * @return the most that <code>getOffset(localTime)</code> should be wrong by, in
+         * nanoseconds
+         */
+        long getErrorBound(long localTime) {
+            long age = Math.max(0, localTime - mReferenceTime);
+            return mErrorBound + (long) (MAX_SKEW * age);
+        }
+
+        /**
+         * @return how much faster the master's clock runs than the follower's, as a fraction
+         */
+        double getSkew() {
+            return mSkew;
+        }
+
+        /**
+         * @return the shortest round-trip delay among the samples used, in nanoseconds
+         */
+        long getDelay() {
+            return mDelay;
+        }
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Adds the result of an exchange.
+     * @param t0 when the follower sent the request, in the follower's clock
+     * @param t1 when the master received it, in the master's clock
+     * @param t2 when the master sent the reply, in the master's clock
+     * @param t3 when the follower received the reply, in the follower's clock
+     */
+    void addSample(long t0, long t1, long t2, long t3) {
+        long delay = Math.max(0, (t3 - t0) - (t2 - t1));
+        mLocalTimes[mNext] = t0 + (t3 - t0) / 2;
+        mOffsets[mNext]    = (t1 - t0) / 2 + (t2 - t3) / 2;
+        mDelays[mNext]     = delay;
+        mNext = (mNext + 1) % MAX_SAMPLES;
+        if (mCount < MAX_SAMPLES) mCount++;
+    }
+
+    /**
+     * @return the number of samples held, up to the most that are kept
+     */
+    int getSampleCount() {
+        return mCount;
+    }
+
+    /**
+     * @return a new estimate from the samples so far, or <code>null</code> if there are none
+     */
+    Estimate estimate() {
+        if (mCount == 0) return null;
+
+        // Sort the samples by delay, shortest first.  There are few enough for insertion sort.
+        for (int i = 0; i < mCount; i++) {
+            int j = i;
+            while (j > 0 && mDelays[mOrder[j - 1]] > mDelays[i]) {
+                mOrder[j] = mOrder[j - 1];
+                j--;
+            }
+            mOrder[j] = i;
+        }
+        int used = Math.min(mCount, BEST_SAMPLES);
+
+        // Work relative to the best sample, so that the doubles only hold small numbers.
+        int  best       = mOrder[0];
+        long baseTime   = mLocalTimes[best];
+        long baseOffset = mOffsets[best];
+
+        double meanX = 0, meanY = 0;
+        long   minX  = 0, maxX  = 0;
+        for (int i = 0; i < used; i++) {
+            long x = mLocalTimes[mOrder[i]] - baseTime;
+            meanX += x;
+            meanY += mOffsets[mOrder[i]] - baseOffset;
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+        }
+        meanX /= used;
+        meanY /= used;
+
+        double skew = 0;
+        if (used >= 3 && maxX - minX >= MIN_SKEW_SPAN) {
+            double sxy = 0, sxx = 0;
+            for (int i = 0; i < used; i++) {
+                double dx = mLocalTimes[mOrder[i]] - baseTime - meanX;
+                double dy = mOffsets[mOrder[i]] - baseOffset - meanY;
+                sxy += dx * dy;
+                sxx += dx * dx;
+            }
+            skew = Math.max(-MAX_SKEW, Math.min(MAX_SKEW, sxy / sxx));
+        }
+
+        // The line goes through the mean; use the latest sample time as the reference.
+        long referenceTime = baseTime + maxX;
+        long offset = baseOffset + (long) (meanY + skew * (maxX - meanX));
+
+        // Each sample's offset is within half its delay of the truth.  Allow for the worst of
+        // those, plus how far the samples stray from the line.
+        long residual = 0;
+        for (int i = 0; i < used; i++) {
+            double x = mLocalTimes[mOrder[i]] - baseTime;
+            double fitted = meanY + skew * (x - meanX);
+            residual = Math.max(residual, (long) Math.abs(mOffsets[mOrder[i]] - baseOffset - fitted));
+        }
+        long errorBound = mDelays[mOrder[used - 1]] / 2 + residual;
+
+        return new Estimate(referenceTime, offset, skew, errorBound, mDelays[best]);
+    }
+
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ClockSyncFollower keeps a device in step with a {@link ClockSyncMaster}.  It is a
+ * {@link TimerClock} that gives the master's time, so a {@link DebateEventLoop} using it ticks at
+ * the same moments as the master's.  If it is given a {@link DebateManager}, it also makes that
+ * debate follow the master's, so that its speeches start, stop and ring bells with the master's.
+ * The master's anchor comes with every reply, and straight away whenever the master's debate
+ * starts, stops or changes speech.
+ *
+ * It asks the master for the time a few times a second at first, then once a second, and uses a
+ * {@link ClockOffsetEstimator} to work out the offset and skew between the clocks.  The error is
+ * bounded: <code>getErrorBound()</code> gives the most it should be out by.
+ *
+ * Until it has heard from the master a few times, it gives the local clock's time.  The time then
+ * jumps to the master's, so an event loop using this clock should only be made after
+ * <code>awaitSynchronisation()</code> returns <code>true</code>.  After that, the time never goes
+ * backwards: if the estimate moves back, the time stands still until it catches up.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class ClockSyncFollower implements TimerClock {
+
+    private static final String TAG = "ClockSyncFollower";
+
+    private static final int  SAMPLES_TO_SYNCHRONISE = 4;
+    private static final int  FAST_POLL_SAMPLES      = 8;
+    private static final long FAST_POLL_INTERVAL     = 250;  // milliseconds
+    private static final long POLL_INTERVAL          = 1000; // milliseconds
+
+    private final DatagramSocket mSocket;
+    private final SocketAddress  mMasterAddress;
+    private final TimerClock     mLocalClock;
+    private final Thread         mThread;
+
+    private final ClockOffsetEstimator mEstimator    = new ClockOffsetEstimator(); // sync thread only
+    private final CountDownLatch       mSynchronised = new CountDownLatch(1);
+    private final AtomicLong           mLastTime     = new AtomicLong();
+    private volatile ClockOffsetEstimator.Estimate mEstimate      = null;
+    private volatile DebateManager                 mDebateManager = null;
+    private volatile boolean                       mRunning       = false;
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    private class SyncRunnable implements Runnable {
+
+        private long          mLastT0         = 0;
+        private int           mSamples        = 0;
+        private DebateManager mFollowedDebate = null;
+        private int           mDebateNumber   = 0;
+        private long          mSequenceNumber = 0;
+
+        @Override
+        public void run() {
+            byte[]         requestBytes  = new byte[ClockSyncProtocol.REQUEST_SIZE];
+            byte[]         responseBytes = new byte[ClockSyncProtocol.RESPONSE_SIZE];
+            ByteBuffer     request       = ByteBuffer.wrap(requestBytes);
+            DatagramPacket response      = new DatagramPacket(responseBytes, responseBytes.length);
+            boolean        sentAny       = false;
+
+            while (mRunning) {
+                long interval = (mSamples < FAST_POLL_SAMPLES) ? FAST_POLL_INTERVAL : POLL_INTERVAL;
+                long nextPoll = System.currentTimeMillis() + interval;
+
+                try {
+                    request.clear();
+                    ClockSyncProtocol.writeHeader(request, ClockSyncProtocol.TYPE_REQUEST);
+                    long t0 = mLocalClock.nanoTime();
+                    if (!sentAny) mLastT0 = t0 - 1;
+                    sentAny = true;
+                    request.putLong(t0);
+                    mSocket.send(new DatagramPacket(requestBytes, request.position(), mMasterAddress));
+
+                    // Take any replies until it's time to ask again.
+                    long remaining;
+                    while (mRunning && (remaining = nextPoll - System.currentTimeMillis()) > 0) {
+                        mSocket.setSoTimeout((int) remaining);
+                        response.setLength(responseBytes.length);
+                        try {
+                            mSocket.receive(response);
+                        } catch (SocketTimeoutException e) {
+                            break;
+                        }
+                        handlePacket(responseBytes, response.getLength(), mLocalClock.nanoTime());
+                    }
+
+                } catch (IOException e) {
+                    if (!mRunning) break;
+                    EngineLog.w(TAG, "Couldn't reach the master", e);
+                    sleepUntil(nextPoll);
+                }
+            }
+        }
+
+        private void handlePacket(byte[] bytes, int length, long t3) {
+            ByteBuffer in = ByteBuffer.wrap(bytes, 0, length);
+            if (ClockSyncProtocol.readHeader(in, ClockSyncProtocol.TYPE_ANCHOR,
+                    ClockSyncProtocol.ANCHOR_SIZE)) {
+                handleAnchor(in);
+                return;
+            }
+
+            in.rewind();
+            if (!ClockSyncProtocol.readHeader(in, ClockSyncProtocol.TYPE_RESPONSE,
+                    ClockSyncProtocol.RESPONSE_SIZE))
+                return;
+            long t0 = in.getLong();
+            long t1 = in.getLong();
+            long t2 = in.getLong();
+
+            // Ignore duplicates and replies that overtook later ones, and anything we didn't send.
+            if (t0 - mLastT0 <= 0 || t3 - t0 < 0) return;
+            mLastT0 = t0;
+
+            mEstimator.addSample(t0, t1, t2, t3);
+            mSamples++;
+            publishEstimate(mEstimator.estimate());
+
+            if (in.get() != 0)
+                handleAnchor(in);
+        }
+
+        /**
+         * Passes an anchor on to the debate, unless it is older than one already passed on.
+         */
+        private void handleAnchor(ByteBuffer in) {
+            int         debateNumber = in.getInt();
+            TimerAnchor anchor       = TimerAnchor.read(in);
+            DebateManager dm = mDebateManager;
+            if (anchor == null || dm == null || !isSynchronised()) return;
+
+            if (dm == mFollowedDebate && debateNumber == mDebateNumber
+                    && anchor.getSequenceNumber() - mSequenceNumber <= 0)
+                return;
+            mFollowedDebate = dm;
+            mDebateNumber   = debateNumber;
+            mSequenceNumber = anchor.getSequenceNumber();
+            dm.followAnchor(anchor);
+        }
+
+        private void publishEstimate(ClockOffsetEstimator.Estimate estimate) {
+            if (mSamples < SAMPLES_TO_SYNCHRONISE) return;
+            if (mEstimate == null) {
+                // The first time, jump straight to the master's time.
+                long local = mLocalClock.nanoTime();
+                mLastTime.set(local + estimate.getOffset(local));
+                mEstimate = estimate;
+                mSynchronised.countDown();
+            } else {
+                mEstimate = estimate;
+            }
+        }
+
+        private void sleepUntil(long time) {
+            long remaining;
+            while (mRunning && (remaining = time - System.currentTimeMillis()) > 0) {
+                try {
+                    Thread.sleep(remaining);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Constructor.  Nothing is sent until <code>start()</code> is called.
+     * @param socket the socket to talk to the master on, which then belongs to this follower
+     * @param masterAddress the address of the master
+     * @param localClock this device's clock, normally {@link TimerClock#SYSTEM}
+     */
+    public ClockSyncFollower(DatagramSocket socket, SocketAddress masterAddress, TimerClock localClock) {
+        super();
+        mSocket        = socket;
+        mMasterAddress = masterAddress;
+        mLocalClock    = localClock;
+        mThread        = new Thread(new SyncRunnable(), TAG);
+        mThread.setDaemon(true);
+        mThread.setPriority(Thread.MAX_PRIORITY);
+    }
+
+    /**
+     * Sets the debate to keep in step with the master's.  It should have the same debate format
+     * as the master's, and its event loop should be using this clock.  Can be called from any
+     * thread.
+     * @param dm the {@link DebateManager}, or <code>null</code> to only follow the time
+     */
+    public void setDebateManager(DebateManager dm) {
+        mDebateManager = dm;
+    }
+
+    public void start() {
+        mRunning = true;
+        mThread.start();
+    }
+
+    /**
+     * Stops talking to the master and closes the socket.  The clock keeps going, using the last
+     * estimate.
+     */
+    public void stop() {
+        mRunning = false;
+        mSocket.close();
+    }
+
+    /**
+     * Waits until the time is the master's.
+     * @param timeoutMillis the longest to wait, in milliseconds
+     * @return <code>true</code> if the time is the master's, <code>false</code> if it timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitSynchronisation(long timeoutMillis) throws InterruptedException {
+        return mSynchronised.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return <code>true</code> if the time is the master's
+     */
+    public boolean isSynchronised() {
+        return mEstimate != null;
+    }
+
+    /**
+     * @return the most this clock should be out from the master's, in nanoseconds, or
+     * {@link Long#MAX_VALUE} if it isn't synchronised yet
+     */
+    public long getErrorBound() {
+        ClockOffsetEstimator.Estimate estimate = mEstimate;
+        if (estimate == null) return Long.MAX_VALUE;
+        return estimate.getErrorBound(mLocalClock.nanoTime());
+    }
+
+    /**
+     * @return how much faster the master's clock runs than this device's, in parts per million
+     */
+    public double getSkewPpm() {
+        ClockOffsetEstimator.Estimate estimate = mEstimate;
+        return (estimate == null) ? 0 : estimate.getSkew() * 1e6;
+    }
+
+    /**
+     * @return the shortest recent round-trip time to the master, in nanoseconds
+     */
+    public long getRoundTripDelay() {
+        ClockOffsetEstimator.Estimate estimate = mEstimate;
+        return (estimate == null) ? 0 : estimate.getDelay();
+    }
+
+    /**
+     * @return the master's time, as best known, in nanoseconds; or the local time if this isn't
+     * synchronised yet
+     */
+    @Override
+    public long nanoTime() {
+        long local = mLocalClock.nanoTime();
+        ClockOffsetEstimator.Estimate estimate = mEstimate;
+        if (estimate == null) return local;
+
+        long time = local + estimate.getOffset(local);
+        while (true) {
+            long last = mLastTime.get();
+            if (time - last <= 0) return last;
+            if (mLastTime.compareAndSet(last, time)) return time;
+        }
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ClockSyncMaster is the time master for devices timing the same debate.  It answers requests
+ * from {@link ClockSyncFollower}s with its clock's time and the anchor of its debate, so that they
+ * can ring their bells at the same moments as it does.
+ *
+ * It runs a thread of its own, which only does this, so that replies aren't held up by anything
+ * else (a late reply just makes its sample less useful).  The master keeps time by its own clock
+ * as usual, so its debate runs exactly as it would without any followers.
+ *
+ * It is also a {@link TimerEventDispatcher.TimerListener}.  If it is added to the debate's
+ * dispatcher, it sends the new anchor to its followers as soon as the debate starts, stops or
+ * changes speech, rather than leaving them to find out when they next ask for the time.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class ClockSyncMaster implements TimerEventDispatcher.TimerListener {
+
+    /**
+     * The port masters listen on, unless told otherwise.
+     */
+    public static final int DEFAULT_PORT = 47474;
+
+    private static final String TAG = "ClockSyncMaster";
+
+    /**
+     * Followers not heard from for this long aren't sent anchors any more.
+     */
+    private static final long FOLLOWER_TIMEOUT = 10000; // milliseconds
+
+    private static final int PUSH_EVENTS = TimerEventDispatcher.EVENT_STATE_CHANGE
+            | TimerEventDispatcher.EVENT_SPEECH_CHANGE;
+
+    private final DatagramSocket             mSocket;
+    private final TimerClock                 mClock;
+    private final Thread                     mThread;
+    private final Map<SocketAddress, Long>   mFollowers = new ConcurrentHashMap<SocketAddress, Long>();
+    private volatile DebateManager           mDebateManager = null;
+    private volatile int                     mDebateNumber  = 0;
+    private volatile boolean                 mRunning       = false;
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    private class ServerRunnable implements Runnable {
+
+        @Override
+        public void run() {
+            byte[]         requestBytes  = new byte[ClockSyncProtocol.RESPONSE_SIZE];
+            byte[]         responseBytes = new byte[ClockSyncProtocol.RESPONSE_SIZE];
+            DatagramPacket request       = new DatagramPacket(requestBytes, requestBytes.length);
+            ByteBuffer     response      = ByteBuffer.wrap(responseBytes);
+
+            while (mRunning) {
+                try {
+                    request.setLength(requestBytes.length);
+                    mSocket.receive(request);
+                    long t1 = mClock.nanoTime();
+
+                    ByteBuffer in = ByteBuffer.wrap(requestBytes, 0, request.getLength());
+                    if (!ClockSyncProtocol.readHeader(in, ClockSyncProtocol.TYPE_REQUEST,
+                            ClockSyncProtocol.REQUEST_SIZE))
+                        continue;
+                    long t0 = in.getLong();
+
+                    response.clear();
+                    ClockSyncProtocol.writeHeader(response, ClockSyncProtocol.TYPE_RESPONSE);
+                    response.putLong(t0);
+                    response.putLong(t1);
+                    response.putLong(0); // t2, filled in below
+                    DebateManager dm = mDebateManager;
+                    response.put((byte) ((dm != null) ? 1 : 0));
+                    writeAnchor(response, dm);
+
+                    // Take t2 as late as possible, so that as little as possible counts as delay.
+                    response.putLong(ClockSyncProtocol.T2_POSITION, mClock.nanoTime());
+                    mSocket.send(new DatagramPacket(responseBytes, response.position(),
+                            request.getSocketAddress()));
+
+                    mFollowers.put(request.getSocketAddress(), System.currentTimeMillis());
+
+                } catch (IOException e) {
+                    if (mRunning)
+                        EngineLog.w(TAG, "Couldn't answer a request", e);
+                }
+            }
+        }
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Constructor.  Nothing is answered until <code>start()</code> is called.
+     * @param socket the socket to answer requests on, which then belongs to this master
+     * @param clock the {@link TimerClock} the master's debate keeps time by
+     */
+    public ClockSyncMaster(DatagramSocket socket, TimerClock clock) {
+        super();
+        mSocket = socket;
+        mClock  = clock;
+        mThread = new Thread(new ServerRunnable(), TAG);
+        mThread.setDaemon(true);
+        mThread.setPriority(Thread.MAX_PRIORITY);
+    }
+
+    /**
+     * Sets the debate whose anchor is sent to followers.  Can be called from any thread.
+     * @param dm the {@link DebateManager}, or <code>null</code> to only share the time
+     */
+    public void setDebateManager(DebateManager dm) {
+        mDebateNumber++;
+        mDebateManager = dm;
+    }
+
+    /**
+     * @return the port this master is listening on
+     */
+    public int getLocalPort() {
+        return mSocket.getLocalPort();
+    }
+
+    public void start() {
+        mRunning = true;
+        mThread.start();
+    }
+
+    /**
+     * Stops answering requests and closes the socket.
+     */
+    public void stop() {
+        mRunning = false;
+        mSocket.close();
+    }
+
+    @Override
+    public void onTimerEvent(int events, TimerSnapshot snapshot) {
+        if ((events & PUSH_EVENTS) == 0 || !mRunning) return;
+        DebateManager dm = mDebateManager;
+        if (dm == null) return;
+
+        byte[]     bytes  = new byte[ClockSyncProtocol.ANCHOR_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        ClockSyncProtocol.writeHeader(buffer, ClockSyncProtocol.TYPE_ANCHOR);
+        writeAnchor(buffer, dm);
+
+        long now = System.currentTimeMillis();
+        ArrayList<SocketAddress> followers = new ArrayList<SocketAddress>(mFollowers.keySet());
+        for (int i = 0; i < followers.size(); i++) {
+            SocketAddress follower = followers.get(i);
+            Long lastHeard = mFollowers.get(follower);
+            if (lastHeard == null || now - lastHeard > FOLLOWER_TIMEOUT) {
+                mFollowers.remove(follower);
+                continue;
+            }
+            try {
+                mSocket.send(new DatagramPacket(bytes, bytes.length, follower));
+            } catch (IOException e) {
+                EngineLog.w(TAG, "Couldn't send anchor to " + follower, e);
+            }
+        }
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * Writes the debate number and the debate's anchor, or zeroes if there is no debate, so that
+     * packets are always the same size.
+     */
+    private void writeAnchor(ByteBuffer buffer, DebateManager dm) {
+        if (dm == null) {
+            buffer.position(buffer.position() + 4 + TimerAnchor.ENCODED_SIZE);
+            return;
+        }
+        buffer.putInt(mDebateNumber);
+        TimerSnapshot snapshot = dm.getSnapshot();
+        TimerAnchor   anchor   = new TimerAnchor(snapshot);
+        snapshot.release();
+        anchor.write(buffer);
+    }
+
+}
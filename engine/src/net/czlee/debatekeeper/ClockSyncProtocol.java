@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ClockSyncProtocol holds the packet layout shared by {@link ClockSyncMaster} and
+ * {@link ClockSyncFollower}.
+ *
+ * A follower sends a request holding the time it sent it (t0, in its own clock).  The master
+ * replies with t0, the time it received the request (t1) and the time it sent the reply (t2), both
+ * in its own clock, and then its current {@link TimerAnchor} if it has a debate.  The follower
+ * notes when the reply arrived (t3) and works out the offset between the clocks as in NTP.
+ *
+ * When its debate starts, stops or changes speech, the master also sends an anchor on its own to
+ * every follower it has heard from recently, so that followers don't have to wait for their next
+ * request to find out.  Anchors go with a debate number, which the master changes whenever it
+ * changes debate, since anchors are only in order within one debate.  All numbers are big-endian.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+final class ClockSyncProtocol {
+
+    static final int  MAGIC         = 0x444b4353; // "DKCS"
+    static final byte VERSION       = 1;
+    static final byte TYPE_REQUEST  = 1;
+    static final byte TYPE_RESPONSE = 2;
+    static final byte TYPE_ANCHOR   = 3;
+
+    static final int HEADER_SIZE   = 4 + 1 + 1;
+    static final int REQUEST_SIZE  = HEADER_SIZE + 8;
+    static final int RESPONSE_SIZE = HEADER_SIZE + 8 + 8 + 8 + 1 + 4 + TimerAnchor.ENCODED_SIZE;
+    static final int ANCHOR_SIZE   = HEADER_SIZE + 4 + TimerAnchor.ENCODED_SIZE;
+
+    /**
+     * Where t2 goes in a response, so that the master can fill it in at the last moment.
+     */
+    static final int T2_POSITION = HEADER_SIZE + 8 + 8;
+
+    private ClockSyncProtocol() {}
+
+    static void writeHeader(ByteBuffer buffer, byte type) {
+        buffer.putInt(MAGIC);
+        buffer.put(VERSION);
+        buffer.put(type);
+    }
+
+    /**
+     * Reads a header, checking that it is one of ours, of the given type.
+     * @return <code>true</code> if it is
+     */
+    static boolean readHeader(ByteBuffer buffer, byte type, int minimumSize) {
+        if (buffer.remaining() < minimumSize) return false;
+        return buffer.getInt() == MAGIC && buffer.get() == VERSION && buffer.get() == type;
+    }
+
+}
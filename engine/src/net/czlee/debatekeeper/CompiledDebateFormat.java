@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.TreeMap;
+
+import net.czlee.debatekeeper.DebateFormat.NoSuchFormatException;
+import net.czlee.debatekeeper.SpeechFormat.CountDirection;
+
+/**
+ * CompiledDebateFormat reads and writes {@link DebateFormat}s in a compact binary form.
+ *
+ * The bundled debate formats are compiled into this form at build time, so that the app can load
+ * them without parsing any XML.  The compiled form keeps the structural sharing of the built
+ * format: each distinct {@link PeriodInfo} and {@link BellSegment} is written once and referred to
+ * by index, and they are interned again as they are read.
+ *
+ * The layout is:
+ * <pre>
+ *   int     MAGIC, int VERSION
+ *   UTF     format name
+ *   int     number of periods,        then for each: description?, background colour?
+ *   int     number of bell segments,  then for each: number of bells, then for each bell:
+ *                                     time, pause on bell, next period index,
+ *                                     sound resid, times to play, repeat period
+ *   int     number of speech formats, then for each: reference, length, count direction,
+ *                                     first period index, segment indices, overtime schedule?
+ *                                     as the number of stages, then for each stage:
+ *                                     first time, period, last time,
+ *                                     sound resid, times to play, repeat period
+ *   int     number of speeches,       then for each: name, speech format reference
+ * </pre>
+ * where "X?" means a boolean saying whether X is present, followed by X if it is.  Sound resource
+ * IDs are written as they are, so a compiled format is only valid for the build of the app it
+ * was compiled with.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class CompiledDebateFormat {
+
+    /**
+     * The directory, in the assets, in which the compiled forms of the bundled formats are.
+     */
+    public static final String COMPILED_DIRECTORY_NAME = "compiled";
+
+    private static final String COMPILED_FILE_EXTENSION = ".bin";
+    private static final int    MAGIC   = 0x44424b46; // "DBKF"
+    private static final int    VERSION = 2;
+
+    /**
+     * Thrown if a compiled debate format can't be read.
+     */
+    public static class CompiledFormatException extends IOException {
+
+        private static final long serialVersionUID = -4165308719264387127L;
+
+        public CompiledFormatException(String detailMessage) {
+            super(detailMessage);
+        }
+
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * @param filename the file name of a debate format XML file
+     * @return the file name of the compiled form of that file, within
+     * <code>COMPILED_DIRECTORY_NAME</code>
+     */
+    public static String getCompiledFileName(String filename) {
+        return filename + COMPILED_FILE_EXTENSION;
+    }
+
+    /**
+     * Writes a {@link DebateFormat} in compiled form.
+     * @param df the <code>DebateFormat</code> to write
+     * @param out the <code>DataOutputStream</code> to write to
+     * @throws IOException if thrown by <code>out</code>
+     */
+    public static void write(DebateFormat df, DataOutputStream out) throws IOException {
+        IdentityHashMap<PeriodInfo, Integer>  periodIndices  = new IdentityHashMap<PeriodInfo, Integer>();
+        IdentityHashMap<BellSegment, Integer> segmentIndices = new IdentityHashMap<BellSegment, Integer>();
+        ArrayList<PeriodInfo>  periods  = new ArrayList<PeriodInfo>();
+        ArrayList<BellSegment> segments = new ArrayList<BellSegment>();
+        ArrayList<String>      formatRefs = new ArrayList<String>(df.getSpeechFormatRefs());
+
+        // First, gather up all the distinct periods and segments
+        for (int i = 0; i < formatRefs.size(); i++) {
+            SpeechFormat sf = df.getSpeechFormat(formatRefs.get(i));
+            addToTable(sf.mFirstPeriodInfo, periods, periodIndices);
+            for (int j = 0; j < sf.mBellSegments.size(); j++) {
+                BellSegment segment = sf.mBellSegments.get(j);
+                if (addToTable(segment, segments, segmentIndices))
+                    for (int k = 0; k < segment.size(); k++)
+                        addToTable(segment.get(k).getNextPeriodInfo(), periods, periodIndices);
+            }
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(df.getName());
+
+        // Periods
+        out.writeInt(periods.size());
+        for (int i = 0; i < periods.size(); i++) {
+            PeriodInfo pi = periods.get(i);
+            writeNullableString(out, pi.getDescription());
+            Integer backgroundColor = pi.getBackgroundColor();
+            out.writeBoolean(backgroundColor != null);
+            if (backgroundColor != null) out.writeInt(backgroundColor);
+        }
+
+        // Bell segments
+        out.writeInt(segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            BellSegment segment = segments.get(i);
+            out.writeInt(segment.size());
+            for (int j = 0; j < segment.size(); j++) {
+                BellInfo      bi  = segment.get(j);
+                BellSoundInfo bsi = bi.getBellSoundInfo();
+                out.writeLong(bi.getBellTime());
+                out.writeBoolean(bi.isPauseOnBell());
+                out.writeInt(periodIndices.get(bi.getNextPeriodInfo()));
+                out.writeInt(bsi.getSoundResid());
+                out.writeInt(bsi.getTimesToPlay());
+                out.writeLong(bsi.getRepeatPeriod());
+            }
+        }
+
+        // Speech formats
+        out.writeInt(formatRefs.size());
+        for (int i = 0; i < formatRefs.size(); i++) {
+            SpeechFormat sf = df.getSpeechFormat(formatRefs.get(i));
+            out.writeUTF(formatRefs.get(i));
+            out.writeLong(sf.getSpeechLength());
+            out.writeInt(sf.getCountDirection().ordinal());
+            out.writeInt(periodIndices.get(sf.mFirstPeriodInfo));
+            out.writeInt(sf.mBellSegments.size());
+            for (int j = 0; j < sf.mBellSegments.size(); j++)
+                out.writeInt(segmentIndices.get(sf.mBellSegments.get(j)));
+            writeOvertimeSchedule(out, sf.mOvertimeSchedule);
+        }
+
+        // Speeches
+        out.writeInt(df.numberOfSpeeches());
+        for (int i = 0; i < df.numberOfSpeeches(); i++) {
+            out.writeUTF(df.getSpeechName(i));
+            out.writeUTF(df.getSpeechFormatRef(i));
+        }
+    }
+
+    /**
+     * Reads a {@link DebateFormat} in compiled form.
+     * @param in the <code>DataInputStream</code> to read from
+     * @return the <code>DebateFormat</code>
+     * @throws IOException if thrown by <code>in</code>
+     * @throws CompiledFormatException if the data isn't a valid compiled debate format
+     */
+    public static DebateFormat read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC)
+            throw new CompiledFormatException("Not a compiled debate format");
+        int version = in.readInt();
+        if (version != VERSION)
+            throw new CompiledFormatException(String.format("Unsupported compiled format version %d", version));
+
+        DebateFormat df = new DebateFormat();
+        df.setName(in.readUTF());
+
+        // Periods
+        PeriodInfo[] periods = new PeriodInfo[in.readInt()];
+        for (int i = 0; i < periods.length; i++) {
+            String  description     = readNullableString(in);
+            Integer backgroundColor = (in.readBoolean()) ? in.readInt() : null;
+            periods[i] = new PeriodInfo(description, backgroundColor).intern();
+        }
+
+        // Bell segments
+        BellSegment[] segments = new BellSegment[in.readInt()];
+        for (int i = 0; i < segments.length; i++) {
+            int numberOfBells = in.readInt();
+            TreeMap<Long, BellInfo> bells = new TreeMap<Long, BellInfo>();
+            for (int j = 0; j < numberOfBells; j++) {
+                long     bellTime = in.readLong();
+                BellInfo bi       = new BellInfo(bellTime, 0);
+                bi.setPauseOnBell(in.readBoolean());
+                bi.setNextPeriodInfo(getFromTable(periods, in.readInt()));
+                bi.setSound(in.readInt(), in.readInt());
+                bi.getBellSoundInfo().setRepeatPeriod((int) in.readLong());
+                bells.put(bellTime, bi);
+            }
+            segments[i] = new BellSegment(bells);
+        }
+
+        // Speech formats
+        CountDirection[] countDirections = CountDirection.values();
+        int numberOfSpeechFormats = in.readInt();
+        for (int i = 0; i < numberOfSpeechFormats; i++) {
+            String       formatRef = in.readUTF();
+            SpeechFormat sf        = new SpeechFormat(in.readLong());
+            sf.setCountDirection(getFromTable(countDirections, in.readInt()));
+            sf.setFirstPeriodInfo(getFromTable(periods, in.readInt()));
+            int numberOfSegments = in.readInt();
+            for (int j = 0; j < numberOfSegments; j++)
+                sf.addBellSegment(getFromTable(segments, in.readInt()));
+            sf.setOvertimeSchedule(readOvertimeSchedule(in));
+            df.addSpeechFormat(formatRef, sf);
+        }
+
+        // Speeches
+        int numberOfSpeeches = in.readInt();
+        for (int i = 0; i < numberOfSpeeches; i++) {
+            String name      = in.readUTF();
+            String formatRef = in.readUTF();
+            try {
+                df.addSpeech(name, formatRef);
+            } catch (NoSuchFormatException e) {
+                throw new CompiledFormatException(e.getMessage());
+            }
+        }
+
+        return df;
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * Adds an object to a table, if it isn't already there.
+     * @return <code>true</code> if the object was added, <code>false</code> if it was already there
+     */
+    private static <T> boolean addToTable(T object, ArrayList<T> table, IdentityHashMap<T, Integer> indices) {
+        if (indices.containsKey(object)) return false;
+        indices.put(object, table.size());
+        table.add(object);
+        return true;
+    }
+
+    private static <T> T getFromTable(T[] table, int index) throws CompiledFormatException {
+        if (index < 0 || index >= table.length)
+            throw new CompiledFormatException(String.format("Index %d out of range", index));
+        return table[index];
+    }
+
+    private static void writeOvertimeSchedule(DataOutputStream out, OvertimeSchedule schedule)
+            throws IOException {
+        out.writeBoolean(schedule != null);
+        if (schedule == null) return;
+        out.writeInt(schedule.getNumberOfStages());
+        for (int i = 0; i < schedule.getNumberOfStages(); i++) {
+            OvertimeSchedule.Stage stage = schedule.getStage(i);
+            BellSoundInfo          bsi   = stage.getSound();
+            out.writeLong(stage.getFirstTime());
+            out.writeLong(stage.getPeriod());
+            out.writeLong(stage.getLastTime());
+            out.writeInt(bsi.getSoundResid());
+            out.writeInt(bsi.getTimesToPlay());
+            out.writeLong(bsi.getRepeatPeriod());
+        }
+    }
+
+    private static OvertimeSchedule readOvertimeSchedule(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) return null;
+        int numberOfStages = in.readInt();
+        ArrayList<OvertimeSchedule.Stage> stages = new ArrayList<OvertimeSchedule.Stage>(numberOfStages);
+        try {
+            for (int i = 0; i < numberOfStages; i++) {
+                long firstTime = in.readLong();
+                long period    = in.readLong();
+                long lastTime  = in.readLong();
+                BellSoundInfo bsi = new BellSoundInfo(in.readInt(), in.readInt());
+                bsi.setRepeatPeriod((int) in.readLong());
+                stages.add(new OvertimeSchedule.Stage(firstTime, period, lastTime, bsi));
+            }
+            return new OvertimeSchedule(stages);
+        } catch (IllegalArgumentException e) {
+            throw new CompiledFormatException(e.getMessage());
+        }
+    }
+
+    private static void writeNullableString(DataOutputStream out, String str) throws IOException {
+        out.writeBoolean(str != null);
+        if (str != null) out.writeUTF(str);
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) return null;
+        return InternPool.STRINGS.intern(in.readUTF());
+    }
+
+}
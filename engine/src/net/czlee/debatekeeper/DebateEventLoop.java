@@ -0,0 +1,427 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * DebateEventLoop is the single thread that owns all debate timer state.
+ *
+ * Other threads (the UI thread, binder threads) never touch a {@link DebateManager} or
+ * {@link SpeechManager} directly.  Instead, they post commands using <code>post()</code>.  Commands
+ * go into a lock-free queue (many producers, one consumer) and are run, in order, on the loop
+ * thread.  The loop thread also wakes up whenever a registered {@link TimedClient} has a deadline
+ * due, which is how the timer ticks.
+ *
+ * Nothing in here blocks: producers never take a lock, and the loop thread parks when it has
+ * nothing to do.  One loop can host any number of timed clients.  Their deadlines are kept in a
+ * hashed timing wheel of about two seconds, with slots of about a millisecond, so the cost of
+ * serving a deadline doesn't depend on how many clients there are.
+ *
+ * A virtual loop, made by <code>newVirtualLoop()</code>, has no thread of its own.  Its owner runs
+ * it by calling <code>runPending()</code> and <code>advanceToNextDeadline()</code>, which move its
+ * {@link VirtualClock} straight to each deadline instead of waiting for it.  This is how
+ * {@link DebateSimulator} runs whole debates in a fraction of a second.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class DebateEventLoop {
+
+    /**
+     * Returned by {@link TimedClient#getNextDeadline()} if the client has no deadline pending.
+     */
+    public static final long NO_DEADLINE = Long.MIN_VALUE;
+
+    // Each slot of the timing wheel covers 2^WHEEL_SHIFT nanoseconds (just over a millisecond).
+    // A tick is a time shifted right by WHEEL_SHIFT, and falls in slot (tick & WHEEL_MASK).
+    private static final int WHEEL_SHIFT = 20;
+    private static final int WHEEL_SIZE  = 2048;
+    private static final int WHEEL_MASK  = WHEEL_SIZE - 1;
+
+    private final ConcurrentLinkedQueue<Runnable> mCommandQueue = new ConcurrentLinkedQueue<Runnable>();
+    private final Thread                          mThread; // null if virtual
+    private final TimerClock                      mClock;
+    private final VirtualClock                    mVirtualClock; // null if not virtual
+    private volatile boolean                      mQuitting     = false;
+
+    // Loop thread only
+    private final IdentityHashMap<TimedClient, WheelEntry> mEntries    = new IdentityHashMap<TimedClient, WheelEntry>();
+    private final WheelEntry[]                             mSlots      = new WheelEntry[WHEEL_SIZE];
+    private final ArrayList<WheelEntry>                    mDueEntries = new ArrayList<WheelEntry>();
+    private int                                            mScheduledCount = 0;
+    private long                                           mCurrentTick;
+
+    //******************************************************************************************
+    // Public classes
+    //******************************************************************************************
+
+    /**
+     * Implemented by anything that wants to be woken up by the loop at a given time.  Both methods
+     * are only ever called on the loop thread.
+     *
+     * The loop asks for the deadline when the client is registered and after each call to
+     * <code>onDeadline()</code>.  If the deadline changes at any other time (e.g. in a command),
+     * the client must call {@link DebateEventLoop#reschedule(TimedClient)}.
+     */
+    public interface TimedClient {
+
+        /**
+         * @return the time, in the time base of the loop's {@link TimerClock}, at which
+         * <code>onDeadline()</code> should next be called, or {@link DebateEventLoop#NO_DEADLINE}
+         * if there is nothing to do.
+         */
+        public long getNextDeadline();
+
+        /**
+         * Called when the deadline returned by <code>getNextDeadline()</code> has passed.
+         * @param now the current time, in the time base of the loop's {@link TimerClock}
+         */
+        public void onDeadline(long now);
+    }
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    /**
+     * A registered client, and where it is in the timing wheel.  Entries in a slot are kept in a
+     * doubly linked list, so that they can be moved without searching.
+     */
+    private static class WheelEntry {
+
+        final TimedClient client;
+        long              deadline;
+        int               slot = -1; // -1 if not in the wheel
+        WheelEntry        previous;
+        WheelEntry        next;
+
+        public WheelEntry(TimedClient client) {
+            this.client = client;
+        }
+    }
+
+    private class LoopRunnable implements Runnable {
+
+        @Override
+        public void run() {
+            while (!mQuitting) {
+
+                // 1. Run all pending commands
+                runCommands();
+
+                // 2. Serve all due deadlines
+                runDueClients(mClock.nanoTime());
+
+                // 3. Sleep until the next deadline or the next command, whichever comes first.
+                // If a command was posted since we last checked, post() will have unparked us,
+                // so park() will return immediately.  We don't care about spurious wake-ups.
+                if (!mCommandQueue.isEmpty()) continue;
+                long nextDeadline = getNextDeadline();
+                if (nextDeadline == NO_DEADLINE)
+                    LockSupport.park(this);
+                else
+                    LockSupport.parkNanos(this, nextDeadline - mClock.nanoTime());
+            }
+
+            EngineLog.v(this.getClass().getSimpleName(), "Event loop finished");
+        }
+
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Constructor, using the system clock.  Starts the loop thread straight away.
+     */
+    public DebateEventLoop() {
+        this(TimerClock.SYSTEM);
+    }
+
+    /**
+     * Constructor.  Starts the loop thread straight away.
+     * @param clock the {@link TimerClock} that deadlines are in
+     */
+    public DebateEventLoop(TimerClock clock) {
+        super();
+        mClock        = clock;
+        mVirtualClock = null;
+        mCurrentTick  = clock.nanoTime() >> WHEEL_SHIFT;
+        mThread       = new Thread(new LoopRunnable(), "DebateEventLoop");
+        mThread.start();
+    }
+
+    private DebateEventLoop(VirtualClock clock) {
+        super();
+        mClock        = clock;
+        mVirtualClock = clock;
+        mCurrentTick  = clock.nanoTime() >> WHEEL_SHIFT;
+        mThread       = null;
+    }
+
+    /**
+     * Makes a virtual loop, which has no thread and is run by calling <code>runPending()</code>
+     * and <code>advanceToNextDeadline()</code>.  Everything that would run on the loop thread
+     * runs on the thread that calls those methods, which should always be the same thread.
+     * @param clock the {@link VirtualClock} that deadlines are in.  Only the loop should move it.
+     * @return the new loop
+     */
+    public static DebateEventLoop newVirtualLoop(VirtualClock clock) {
+        return new DebateEventLoop(clock);
+    }
+
+    /**
+     * @return the {@link TimerClock} that deadlines are in
+     */
+    public TimerClock getClock() {
+        return mClock;
+    }
+
+    /**
+     * Posts a command to be run on the loop thread.  Can be called from any thread.
+     * @param command the command to run
+     */
+    public void post(Runnable command) {
+        mCommandQueue.offer(command);
+        LockSupport.unpark(mThread);
+    }
+
+    /**
+     * Registers a {@link TimedClient} with this loop.  Can be called from any thread.
+     * @param client the client to register
+     */
+    public void register(final TimedClient client) {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                if (mEntries.containsKey(client)) return;
+                WheelEntry entry = new WheelEntry(client);
+                mEntries.put(client, entry);
+                schedule(entry);
+            }
+        });
+    }
+
+    /**
+     * Unregisters a {@link TimedClient} from this loop.  Can be called from any thread.
+     * Commands posted before this call are still run.
+     * @param client the client to unregister
+     */
+    public void unregister(final TimedClient client) {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                WheelEntry entry = mEntries.remove(client);
+                if (entry != null) unlink(entry);
+            }
+        });
+    }
+
+    /**
+     * Tells the loop that a client's deadline has changed.  Must be called on the loop thread.
+     * Has no effect if the client isn't registered.
+     * @param client the client whose deadline has changed
+     */
+    public void reschedule(TimedClient client) {
+        WheelEntry entry = mEntries.get(client);
+        if (entry == null) return;
+        unlink(entry);
+        schedule(entry);
+    }
+
+    /**
+     * @return <code>true</code> if the caller is running on the loop thread.  A virtual loop has
+     * no thread, so this is always <code>true</code> for it.
+     */
+    public boolean isLoopThread() {
+        return mThread == null || Thread.currentThread() == mThread;
+    }
+
+    /**
+     * Runs all pending commands, and serves any clients whose deadlines have passed, without
+     * moving the clock.  Only for virtual loops.
+     * @throws IllegalStateException if this isn't a virtual loop
+     */
+    public void runPending() {
+        checkVirtual();
+        do {
+            runCommands();
+            runDueClients(mClock.nanoTime());
+        } while (!mCommandQueue.isEmpty());
+    }
+
+    /**
+     * Runs all pending commands, then moves the clock to the next deadline and serves it.  Only
+     * for virtual loops.  If the next deadline is beyond the timing wheel, the clock only moves
+     * to the end of the wheel, and nothing is served; calling this again carries on from there.
+     * @return <code>true</code> if the clock was moved, <code>false</code> if there was no
+     * deadline to move it to
+     * @throws IllegalStateException if this isn't a virtual loop
+     */
+    public boolean advanceToNextDeadline() {
+        runPending();
+        long nextDeadline = getNextDeadline();
+        if (nextDeadline == NO_DEADLINE) return false;
+        mVirtualClock.advanceTo(nextDeadline);
+        runPending();
+        return true;
+    }
+
+    /**
+     * Stops the loop thread.  Commands that haven't yet been run will not be run.
+     */
+    public void quit() {
+        mQuitting = true;
+        LockSupport.unpark(mThread);
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * Puts an entry in the wheel, according to its client's deadline.  The entry must not already
+     * be in the wheel.  Deadlines that have passed go in the current slot, so they are served on
+     * the next pass.
+     */
+    private void schedule(WheelEntry entry) {
+        long deadline = entry.client.getNextDeadline();
+        if (deadline == NO_DEADLINE) return;
+
+        long tick = deadline >> WHEEL_SHIFT;
+        if (tick - mCurrentTick < 0) tick = mCurrentTick;
+
+        entry.deadline = deadline;
+        entry.slot     = (int) (tick & WHEEL_MASK);
+        entry.previous = null;
+        entry.next     = mSlots[entry.slot];
+        if (entry.next != null) entry.next.previous = entry;
+        mSlots[entry.slot] = entry;
+        mScheduledCount++;
+    }
+
+    /**
+     * Takes an entry out of the wheel, if it is in it.
+     */
+    private void unlink(WheelEntry entry) {
+        if (entry.slot < 0) return;
+        if (entry.previous != null) entry.previous.next = entry.next;
+        else mSlots[entry.slot] = entry.next;
+        if (entry.next != null) entry.next.previous = entry.previous;
+        entry.slot     = -1;
+        entry.previous = null;
+        entry.next     = null;
+        mScheduledCount--;
+    }
+
+    /**
+     * Serves every client whose deadline has passed.  The slots from the current tick up to now
+     * are searched first, and the clients are only called afterwards, so that a client that is
+     * rescheduled into a slot already searched isn't served twice on the same pass.
+     */
+    private void runDueClients(long now) {
+        long nowTick     = now >> WHEEL_SHIFT;
+        long slotsToScan = Math.min(nowTick - mCurrentTick + 1, WHEEL_SIZE);
+
+        if (mScheduledCount > 0) {
+            for (long i = 0; i < slotsToScan; i++) {
+                WheelEntry entry = mSlots[(int) ((mCurrentTick + i) & WHEEL_MASK)];
+                while (entry != null) {
+                    WheelEntry next = entry.next;
+                    if (entry.deadline - now <= 0) {
+                        unlink(entry);
+                        mDueEntries.add(entry);
+                    }
+                    entry = next;
+                }
+            }
+        }
+
+        if (nowTick - mCurrentTick > 0) mCurrentTick = nowTick;
+
+        for (int i = 0; i < mDueEntries.size(); i++) {
+            WheelEntry entry = mDueEntries.get(i);
+            runDeadline(entry.client, now);
+            if (mEntries.get(entry.client) == entry && entry.slot < 0)
+                schedule(entry);
+        }
+        mDueEntries.clear();
+    }
+
+    /**
+     * @return the earliest deadline in the wheel, or {@link #NO_DEADLINE} if there is none.  If all
+     * deadlines are further away than the wheel spans, this is the end of the wheel, so that the
+     * loop wakes up in time to look again.
+     */
+    private long getNextDeadline() {
+        if (mScheduledCount == 0) return NO_DEADLINE;
+
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            long       tick     = mCurrentTick + i;
+            WheelEntry entry    = mSlots[(int) (tick & WHEEL_MASK)];
+            boolean    found    = false;
+            long       earliest = 0;
+
+            // Only entries due in this turn of the wheel count; the others are for later turns.
+            for (; entry != null; entry = entry.next) {
+                if ((entry.deadline >> WHEEL_SHIFT) - tick > 0) continue;
+                if (!found || entry.deadline - earliest < 0) {
+                    earliest = entry.deadline;
+                    found    = true;
+                }
+            }
+            if (found) return earliest;
+        }
+
+        return (mCurrentTick + WHEEL_SIZE) << WHEEL_SHIFT;
+    }
+
+    private void runCommands() {
+        Runnable command;
+        while ((command = mCommandQueue.poll()) != null)
+            runCommand(command);
+    }
+
+    private void checkVirtual() {
+        if (mVirtualClock == null)
+            throw new IllegalStateException("Not a virtual loop");
+    }
+
+    // An exception in one command must not take down the thread that every debate depends on.
+    private void runCommand(Runnable command) {
+        try {
+            command.run();
+        } catch (RuntimeException e) {
+            EngineLog.e(this.getClass().getSimpleName(), "Command threw an exception", e);
+        }
+    }
+
+    private void runDeadline(TimedClient client, long now) {
+        try {
+            client.onDeadline(now);
+        } catch (RuntimeException e) {
+            EngineLog.e(this.getClass().getSimpleName(), "Timed client threw an exception", e);
+        }
+    }
+
+}
@@ -18,9 +18,12 @@
 package net.czlee.debatekeeper;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
-import android.util.Log;
 
 /**
  * DebateFormat is a passive data class that holds information about a debate format.
@@ -31,14 +34,26 @@ import android.util.Log;
  * The DebateFormatBuilder class should be used to construct one of these.  DebateFormat doesn't
  * know about how formats are specified (in e.g. XML), it just knows about its speech formats.
  *
+ * Speech formats can be added either as they are, or as a {@link SpeechFormatDescriptor}, which
+ * makes the {@link SpeechFormat} only when it's first needed.  The result is then kept, so after
+ * that every caller gets the same <code>SpeechFormat</code>.  Speech formats that no speech uses
+ * are never made unless they are asked for by reference.
+ *
+ * A debate format is built on one thread, using the <code>add*</code> methods and
+ * <code>setName()</code>.  Once it has been handed to other threads, it must not be changed, and
+ * then all the other methods can be called from any thread.  No lock is held while a speech
+ * format is made, so a speech format being made ahead of time on a low-priority thread never
+ * holds up another thread that needs it: if two threads both need a speech format that hasn't
+ * been made yet, both make it, and the first one finished is kept.
+ *
  * @author Chuan-Zheng Lee
  * @since  2012-06-02
  */
 public class DebateFormat {
 
-    private String                               mName = "";
-    private final HashMap<String, SpeechFormat>  mSpeechFormats;
-    private final ArrayList<SpeechSpec>          mSpeechSpecs;
+    private String                                   mName = "";
+    private final HashMap<String, SpeechFormatEntry> mSpeechFormats;
+    private final ArrayList<SpeechSpec>              mSpeechSpecs;
 
     //******************************************************************************************
     // Public classes
@@ -57,10 +72,60 @@ public class DebateFormat {
 
     }
 
+    /**
+     * Makes a {@link SpeechFormat} when it is first needed.
+     */
+    public interface SpeechFormatDescriptor {
+
+        /**
+         * Makes the speech format.  This is usually called once, but it can be called by more
+         * than one thread at the same time, possibly not the thread that added the descriptor,
+         * so it must not change anything.
+         * @return the <code>SpeechFormat</code>
+         */
+        public SpeechFormat materialise();
+
+    }
+
     //******************************************************************************************
     // Private classes
     //******************************************************************************************
 
+    /**
+     * A speech format, and how to make it if it hasn't been made yet.
+     */
+    private static class SpeechFormatEntry {
+
+        private volatile SpeechFormatDescriptor     mDescriptor;
+        private final AtomicReference<SpeechFormat> mSpeechFormat;
+
+        public SpeechFormatEntry(SpeechFormatDescriptor descriptor, SpeechFormat sf) {
+            mDescriptor   = descriptor;
+            mSpeechFormat = new AtomicReference<SpeechFormat>(sf);
+        }
+
+        /**
+         * @return the speech format, which is made now if it hasn't been made yet.  Can be
+         * called from any thread.
+         */
+        public SpeechFormat get() {
+            SpeechFormat sf = mSpeechFormat.get();
+            if (sf != null) return sf;
+
+            // Only the descriptor is read here, so no lock is needed.  Once the speech format has
+            // been made, the descriptor is let go of, so check again if it has gone.
+            SpeechFormatDescriptor descriptor = mDescriptor;
+            if (descriptor == null) return mSpeechFormat.get();
+
+            sf = descriptor.materialise();
+            if (mSpeechFormat.compareAndSet(null, sf)) {
+                mDescriptor = null; // let the descriptor be collected
+                return sf;
+            }
+            return mSpeechFormat.get(); // someone else got there first
+        }
+    }
+
     /**
      * Collection of information relating to a speech.  For internal (private) use only; future
      * implementations may do away with this class.
@@ -85,7 +150,7 @@ public class DebateFormat {
      */
     public DebateFormat() {
         super();
-        mSpeechFormats = new HashMap<String, SpeechFormat>();
+        mSpeechFormats = new HashMap<String, SpeechFormatEntry>();
         mSpeechSpecs   = new ArrayList<SpeechSpec>();
     }
 
@@ -95,7 +160,17 @@ public class DebateFormat {
      * @param sf the SpeechFormat
      */
     public void addSpeechFormat(String formatRef, SpeechFormat sf) {
-        mSpeechFormats.put(formatRef, sf);
+        mSpeechFormats.put(formatRef, new SpeechFormatEntry(null, sf));
+    }
+
+    /**
+     * Adds a speech format to the internal collection of speech formats, to be made when it is
+     * first needed.
+     * @param formatRef the key (reference) to the speech format
+     * @param descriptor the {@link SpeechFormatDescriptor} that makes the SpeechFormat
+     */
+    public void addSpeechFormat(String formatRef, SpeechFormatDescriptor descriptor) {
+        mSpeechFormats.put(formatRef, new SpeechFormatEntry(descriptor, null));
     }
 
     /**
@@ -107,7 +182,7 @@ public class DebateFormat {
     public void addSpeech(String name, String formatRef) throws NoSuchFormatException {
         // The speech type must already exist.
         if (!mSpeechFormats.containsKey(formatRef)) {
-//            Log.e(this.getClass().getSimpleName(),  // or the line below
+//            EngineLog.e(this.getClass().getSimpleName(),  // or the line below
             throw new NoSuchFormatException(
                     String.format("Added a speech with non-existent format ref '%s'", formatRef));
         }
@@ -128,22 +203,53 @@ public class DebateFormat {
         try {
             speechType = mSpeechSpecs.get(index).type;
         } catch (IndexOutOfBoundsException e) {
-            Log.e(this.getClass().getSimpleName(),
+            EngineLog.e(this.getClass().getSimpleName(),
                     String.format("Attempted to retrieve speech format for index %d", index));
             return null;
         }
 
         // 2. Retrieve the speech format for that type
-        speechFormat = mSpeechFormats.get(speechType);
+        speechFormat = getSpeechFormat(speechType);
 
         if (speechFormat == null) {
-            Log.e(this.getClass().getSimpleName(),
+            EngineLog.e(this.getClass().getSimpleName(),
                     String.format("No speech format for key '%s'", speechType));
         }
 
         return speechFormat;
     }
 
+    /**
+     * @return the references of all the speech formats in this debate format.  This is a copy,
+     * which can't be changed.
+     */
+    public Set<String> getSpeechFormatRefs() {
+        return Collections.unmodifiableSet(new HashSet<String>(mSpeechFormats.keySet()));
+    }
+
+    /**
+     * Returns the speech format with a given reference, making it if it hasn't been made yet.
+     * @param formatRef the reference of a speech format
+     * @return the speech format with that reference, or <code>null</code> if there is none
+     */
+    public SpeechFormat getSpeechFormat(String formatRef) {
+        SpeechFormatEntry entry = mSpeechFormats.get(formatRef);
+        return (entry != null) ? entry.get() : null;
+    }
+
+    /**
+     * Returns the reference of the speech format for a specified speech.
+     * @param index the index of the speech (0 for first speech, 1 for second, etc.)
+     * @return the reference of the speech format, or null if there is no such speech.
+     */
+    public String getSpeechFormatRef(int index) {
+        try {
+            return mSpeechSpecs.get(index).type;
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
     /**
      * Returns the name of a specified speech.
      * @param index the index of the speech (0 for first speech, 1 for second, etc.)
@@ -153,7 +259,7 @@ public class DebateFormat {
         try {
             return mSpeechSpecs.get(index).name;
         } catch (IndexOutOfBoundsException e) {
-            Log.e(this.getClass().getSimpleName(),
+            EngineLog.e(this.getClass().getSimpleName(),
                     String.format("Attempted to retrieve speech name for index %d", index));
             return null;
         }
@@ -18,12 +18,16 @@
 package net.czlee.debatekeeper;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import net.czlee.debatekeeper.DebateFormat.NoSuchFormatException;
-import android.content.Context;
 
 /**
  * DebateFormatBuilder provides mechanisms for building DebateFormats.
@@ -34,6 +38,11 @@ import android.content.Context;
  * DebateFormatBuilder may be used directly or extended to more specific cases, e.g. an XML file
  * parser.
  *
+ * Resources are compiled once into immutable {@link BellSegment}s and period maps, which are then
+ * shared by every speech format that includes them, rather than copied into each one.  Overtime
+ * bells, from a speech format and the resources it includes, are compiled into an
+ * {@link OvertimeSchedule} for that speech format.
+ *
  * @author Chuan-Zheng Lee
  * @since  2012-06-02
  */
@@ -43,7 +52,7 @@ public class DebateFormatBuilder {
         ADDING_FORMATS, ADDING_SPEECHES, DONE
     }
 
-    private final Context                          mContext;
+    private final FormatStrings                  mStrings;
     protected State                                mState = State.ADDING_FORMATS;
     protected Resource                             mResourceForAll;
     protected HashMap<String, Resource>            mResources;
@@ -74,16 +83,18 @@ public class DebateFormatBuilder {
 
     /**
      * Base class for classes that can contain speech elements like
-     * {@link PeriodInfo}s and {@link BellInfo}s.
+     * {@link PeriodInfo}s, {@link BellInfo}s and overtime bells.
      */
     private abstract class SpeechElementsContainer {
 
-        protected final HashMap<String, PeriodInfo> mPeriodInfos;
-        protected final ArrayList<BellInfo>         mBellInfos;
+        protected final HashMap<String, PeriodInfo>           mPeriodInfos;
+        protected final TreeMap<Long, BellInfo>               mBellInfos;
+        protected final TreeMap<Long, OvertimeSchedule.Stage> mOvertimeStages;
 
         public SpeechElementsContainer() {
-            mPeriodInfos = new HashMap<String, PeriodInfo>();
-            mBellInfos   = new ArrayList<BellInfo>();
+            mPeriodInfos    = new HashMap<String, PeriodInfo>();
+            mBellInfos      = new TreeMap<Long, BellInfo>();
+            mOvertimeStages = new TreeMap<Long, OvertimeSchedule.Stage>();
         }
 
         /**
@@ -98,9 +109,9 @@ public class DebateFormatBuilder {
                 throws DebateFormatBuilderException {
 
             // Check for duplicate keys
-            if (mPeriodInfos.containsKey(ref)) {
+            if (hasPeriodInfo(ref)) {
                 throw new DebateFormatBuilderException(
-                        getString(R.string.DfbErrorPeriodInfoDuplicate, ref));
+                        getString(FormatStrings.DfbErrorPeriodInfoDuplicate, ref));
             }
 
             // If okay, then add
@@ -114,7 +125,7 @@ public class DebateFormatBuilder {
          */
         public void addBellInfo(BellInfo bi) throws DebateFormatBuilderException {
             checkBellInfo(bi);
-            mBellInfos.add(bi);
+            mBellInfos.put(bi.getBellTime(), bi);
         }
 
         /**
@@ -134,16 +145,27 @@ public class DebateFormatBuilder {
             // Add the PeriodInfo, if applicable
             if (periodInfoRef != null) {
                 PeriodInfo pi;
-                pi = mPeriodInfos.get(periodInfoRef);
+                pi = getPeriodInfo(periodInfoRef);
                 if (pi == null) {
                     throw new DebateFormatBuilderException(
-                            getString(R.string.DfbErrorPeriodInfoNotFound, periodInfoRef));
+                            getString(FormatStrings.DfbErrorPeriodInfoNotFound, periodInfoRef));
                 }
                 bi.setNextPeriodInfo(pi);
             }
 
             // If okay, then add
-            mBellInfos.add(bi);
+            mBellInfos.put(bi.getBellTime(), bi);
+        }
+
+        /**
+         * Adds a stage of overtime bells to this <code>SpeechElementsContainer</code>.
+         * @param stage the {@link OvertimeSchedule.Stage}
+         * @throws DebateFormatBuilderException if a stage starting at the same time already exists
+         */
+        public void addOvertimeStage(OvertimeSchedule.Stage stage)
+                throws DebateFormatBuilderException {
+            checkOvertimeStage(stage);
+            mOvertimeStages.put(stage.getFirstTime(), stage);
         }
 
         /**
@@ -152,21 +174,34 @@ public class DebateFormatBuilder {
          * @return true if a {@link PeriodInfo} with that reference exists, false otherwise
          */
         public boolean hasPeriodInfo(String ref) {
-            return mPeriodInfos.containsKey(ref);
+            return getPeriodInfo(ref) != null;
         }
 
         /**
-         * @return the HashMap of {@link PeriodInfo}s associated with this container
+         * @param ref the reference of the <code>PeriodInfo</code>
+         * @return the {@link PeriodInfo} with that reference, or <code>null</code> if there is
+         * none in this container
          */
-        public HashMap<String, PeriodInfo> getPeriodInfos() {
-            return mPeriodInfos;
+        public PeriodInfo getPeriodInfo(String ref) {
+            return mPeriodInfos.get(ref);
+        }
+
+        /**
+         * @param bellTime a time in seconds
+         * @return <code>true</code> if there is a bell at that time in this container,
+         * <code>false</code> otherwise
+         */
+        public boolean hasBellAtTime(long bellTime) {
+            return mBellInfos.containsKey(bellTime);
         }
 
         /**
-         * @return the ArrayList of {@link BellInfo}s associated with this container
+         * @param firstTime a time in seconds after the finish time
+         * @return <code>true</code> if there is a stage of overtime bells starting at that time in
+         * this container, <code>false</code> otherwise
          */
-        public ArrayList<BellInfo> getBellInfos() {
-            return mBellInfos;
+        public boolean hasOvertimeStageAtTime(long firstTime) {
+            return mOvertimeStages.containsKey(firstTime);
         }
 
         /**
@@ -176,17 +211,28 @@ public class DebateFormatBuilder {
          * @throws DebateFormatBuilderException if there is already a bell at the same time
          */
         protected void checkBellInfo(BellInfo bi) throws DebateFormatBuilderException {
-            Iterator<BellInfo> biIterator = mBellInfos.iterator();
             long bellTime = bi.getBellTime();
 
             // Check for duplicate bells (bells with the same time)
-            while (biIterator.hasNext()) {
-                BellInfo checkBi = biIterator.next();
-                if (checkBi.getBellTime() == bellTime) {
-                    String timeStr = secsToText(bellTime);
-                    throw new DebateFormatBuilderException(
-                            getString(R.string.DfbErrorBellDuplicate, timeStr));
-                }
+            if (hasBellAtTime(bellTime)) {
+                String timeStr = secsToText(bellTime);
+                throw new DebateFormatBuilderException(
+                        getString(FormatStrings.DfbErrorBellDuplicate, timeStr));
+            }
+        }
+
+        /**
+         * Checks that a stage of overtime bells is consistent with the others in this container.
+         * @param stage the {@link OvertimeSchedule.Stage}
+         * @throws DebateFormatBuilderException if there is already a stage starting at the same
+         * time
+         */
+        protected void checkOvertimeStage(OvertimeSchedule.Stage stage)
+                throws DebateFormatBuilderException {
+            if (hasOvertimeStageAtTime(stage.getFirstTime())) {
+                String timeStr = secsToText(stage.getFirstTime());
+                throw new DebateFormatBuilderException(
+                        getString(FormatStrings.DfbErrorOvertimeBellDuplicate, timeStr));
             }
         }
 
@@ -195,25 +241,157 @@ public class DebateFormatBuilder {
     /**
      * A passive data class that holds the bells and periods associated with a
      * "resource" in an XML file (and/or any other allowable future format).
+     *
+     * A resource is compiled into a {@link CompiledResource} the first time it is included in a
+     * speech format, and the compiled form is shared by all speech formats that include it.  If
+     * the resource is changed after that, it is compiled again the next time it is included.
      */
     private class Resource extends SpeechElementsContainer {
 
+        private CompiledResource mCompiledResource = null;
+
         public Resource() {
             super();
         }
 
+        @Override
+        public void addPeriodInfo(String ref, PeriodInfo pi)
+                throws DebateFormatBuilderException {
+            super.addPeriodInfo(ref, pi);
+            mCompiledResource = null;
+        }
+
+        @Override
+        public void addBellInfo(BellInfo bi) throws DebateFormatBuilderException {
+            super.addBellInfo(bi);
+            mCompiledResource = null;
+        }
+
+        @Override
+        public void addBellInfo(BellInfo bi, String periodInfoRef)
+                throws DebateFormatBuilderException {
+            super.addBellInfo(bi, periodInfoRef);
+            mCompiledResource = null;
+        }
+
+        @Override
+        public void addOvertimeStage(OvertimeSchedule.Stage stage)
+                throws DebateFormatBuilderException {
+            super.addOvertimeStage(stage);
+            mCompiledResource = null;
+        }
+
+        /**
+         * @return the {@link CompiledResource} for the current contents of this resource
+         */
+        public CompiledResource compile() {
+            if (mCompiledResource == null)
+                mCompiledResource = new CompiledResource(mPeriodInfos, mBellInfos, mOvertimeStages);
+            return mCompiledResource;
+        }
+
+    }
+
+    /**
+     * An immutable snapshot of a {@link Resource}, which can be shared by any number of speech
+     * formats.
+     */
+    private static class CompiledResource {
+
+        private final Map<String, PeriodInfo>      mPeriodInfos;
+        private final BellSegment                  mBellSegment;
+        private final List<OvertimeSchedule.Stage> mOvertimeStages;
+
+        public CompiledResource(HashMap<String, PeriodInfo> periodInfos,
+                TreeMap<Long, BellInfo> bellInfos,
+                TreeMap<Long, OvertimeSchedule.Stage> overtimeStages) {
+            mPeriodInfos    = Collections.unmodifiableMap(new HashMap<String, PeriodInfo>(periodInfos));
+            mBellSegment    = new BellSegment(bellInfos);
+            mOvertimeStages = Collections.unmodifiableList(
+                    new ArrayList<OvertimeSchedule.Stage>(overtimeStages.values()));
+        }
+
+        public Map<String, PeriodInfo> getPeriodInfos() {
+            return mPeriodInfos;
+        }
+
+        public BellSegment getBellSegment() {
+            return mBellSegment;
+        }
+
+        public List<OvertimeSchedule.Stage> getOvertimeStages() {
+            return mOvertimeStages;
+        }
+
+    }
+
+    /**
+     * Everything needed to assemble a {@link SpeechFormat}, without assembling it.  It holds only
+     * what the speech format needs, not the builder, so the builder can be collected once the
+     * debate format is built.
+     */
+    private static class LazySpeechFormat implements DebateFormat.SpeechFormatDescriptor {
+
+        private final long                        mSpeechLength;
+        private final SpeechFormat.CountDirection mCountDirection;
+        private final PeriodInfo                  mFirstPeriodInfo;
+        private final SortedMap<Long, BellInfo>   mBellInfos;
+        private final OvertimeSchedule            mOvertimeSchedule;
+        private final ArrayList<CompiledResource> mIncludedResources;
+
+        /**
+         * Constructor.
+         * @param overtimeSchedule the overtime bells of the speech format and all its resources,
+         * or <code>null</code> if there are none
+         */
+        public LazySpeechFormat(long speechLength, SpeechFormat.CountDirection countDirection,
+                PeriodInfo firstPeriodInfo, SortedMap<Long, BellInfo> bellInfos,
+                OvertimeSchedule overtimeSchedule,
+                ArrayList<CompiledResource> includedResources) {
+            mSpeechLength      = speechLength;
+            mCountDirection    = countDirection;
+            mFirstPeriodInfo   = firstPeriodInfo;
+            mBellInfos         = bellInfos;
+            mOvertimeSchedule  = overtimeSchedule;
+            mIncludedResources = includedResources;
+        }
+
+        @Override
+        public SpeechFormat materialise() {
+            SpeechFormat sf = new SpeechFormat(mSpeechLength);
+            if (mCountDirection != null) {
+                sf.setCountDirection(mCountDirection);
+            }
+            if (mFirstPeriodInfo != null) {
+                sf.setFirstPeriodInfo(mFirstPeriodInfo);
+            }
+            sf.addBellSegment(new BellSegment(mBellInfos));
+            for (int i = 0; i < mIncludedResources.size(); i++)
+                sf.addBellSegment(mIncludedResources.get(i).getBellSegment());
+
+            // If there are no overtime bells, the user's overtime bell preferences are used instead.
+            if (mOvertimeSchedule != null)
+                sf.setOvertimeSchedule(mOvertimeSchedule);
+            return sf;
+        }
+
     }
 
     /**
      * A class that is used to build a {@link SpeechFormat}.  {@link PeriodInfo}s, {@link BellInfo}s
      * and other information can be added using the <code>add*</code> and <code>set*</code> methods,
-     * then <code>getSpeechFormat()</code> is used to get the built <code>SpeechFormat</code>.
+     * then <code>getDescriptor()</code> is used to get a {@link LazySpeechFormat} that builds the
+     * <code>SpeechFormat</code> when it's needed.
+     *
+     * Included resources are not copied into this builder.  Instead, it keeps a reference to each
+     * {@link CompiledResource}, and looks in them as well as its own elements.
      */
     private class SpeechFormatBuilder extends SpeechElementsContainer {
 
-        private long                        mSpeechLength     = 0;
-        private SpeechFormat.CountDirection mCountDirection  = null;
-        private PeriodInfo                  mFirstPeriodInfo = null;
+        private long                              mSpeechLength      = 0;
+        private SpeechFormat.CountDirection       mCountDirection    = null;
+        private PeriodInfo                        mFirstPeriodInfo   = null;
+        private final ArrayList<CompiledResource> mIncludedResources = new ArrayList<CompiledResource>();
 
         public SpeechFormatBuilder(long speechLength) {
             super();
@@ -244,70 +422,119 @@ public class DebateFormatBuilder {
          * @throws DebateFormatBuilderException if the PeriodInfo referenced doesn't exist
          */
         public void setFirstPeriod(String firstPeriodRef) throws DebateFormatBuilderException {
-            PeriodInfo pi = mPeriodInfos.get(firstPeriodRef);
+            PeriodInfo pi = getPeriodInfo(firstPeriodRef);
             if (pi == null) {
                 throw new DebateFormatBuilderException(
-                        getString(R.string.DfbErrorPeriodInfoNotFound, firstPeriodRef));
+                        getString(FormatStrings.DfbErrorPeriodInfoNotFound, firstPeriodRef));
             }
             mFirstPeriodInfo = pi;
         }
 
         /**
-         * Adds the elements in a resource to this speech
+         * Adds the elements in a resource to this speech.  The resource isn't copied; its elements
+         * are only checked against those already in this speech.
          * @param res the {@link Resource} to add
          * @throws DebateFormatBuilderException if there are any problems with the resource
          */
         public void addResource(Resource res) throws DebateFormatBuilderException {
-            // We need to add elements one by one so that they can be error-checked properly.
-
-            // First add the periods
-            Iterator<Entry<String, PeriodInfo>> piIterator = res.getPeriodInfos().entrySet().iterator();
-            Entry<String, PeriodInfo> piEntry;
-            while (piIterator.hasNext()) {
-                piEntry = piIterator.next();
-                this.addPeriodInfo(piEntry.getKey(), piEntry.getValue());
+            CompiledResource compiled = res.compile();
+
+            // First check the periods
+            Iterator<String> refIterator = compiled.getPeriodInfos().keySet().iterator();
+            while (refIterator.hasNext()) {
+                String ref = refIterator.next();
+                if (hasPeriodInfo(ref)) {
+                    throw new DebateFormatBuilderException(
+                            getString(FormatStrings.DfbErrorPeriodInfoDuplicate, ref));
+                }
             }
 
-            // Then add the bells
-            Iterator<BellInfo> biIterator = res.getBellInfos().iterator();
-            BellInfo bi;
-            while (biIterator.hasNext()) {
-                bi = biIterator.next();
-                this.addBellInfo(bi);
+            // Then check the bells
+            BellSegment segment = compiled.getBellSegment();
+            for (int i = 0; i < segment.size(); i++)
+                checkBellInfo(segment.get(i));
+
+            // Then check the overtime bells
+            List<OvertimeSchedule.Stage> stages = compiled.getOvertimeStages();
+            for (int i = 0; i < stages.size(); i++)
+                checkOvertimeStage(stages.get(i));
+
+            // If okay, then add
+            mIncludedResources.add(compiled);
+        }
+
+        @Override
+        public PeriodInfo getPeriodInfo(String ref) {
+            PeriodInfo pi = super.getPeriodInfo(ref);
+            for (int i = 0; pi == null && i < mIncludedResources.size(); i++)
+                pi = mIncludedResources.get(i).getPeriodInfos().get(ref);
+            return pi;
+        }
+
+        @Override
+        public boolean hasBellAtTime(long bellTime) {
+            if (super.hasBellAtTime(bellTime)) return true;
+            for (int i = 0; i < mIncludedResources.size(); i++)
+                if (mIncludedResources.get(i).getBellSegment().getBellAtTime(bellTime) != null)
+                    return true;
+            return false;
+        }
+
+        @Override
+        public boolean hasOvertimeStageAtTime(long firstTime) {
+            if (super.hasOvertimeStageAtTime(firstTime)) return true;
+            for (int i = 0; i < mIncludedResources.size(); i++) {
+                List<OvertimeSchedule.Stage> stages = mIncludedResources.get(i).getOvertimeStages();
+                for (int j = 0; j < stages.size(); j++)
+                    if (stages.get(j).getFirstTime() == firstTime)
+                        return true;
             }
+            return false;
         }
 
         /**
-         * Returns the assembled {@link SpeechFormat}
-         * @return the assembled <code>SpeechFormat</code>
+         * Returns a descriptor that assembles the {@link SpeechFormat} when it's first needed.
+         * The overtime schedule is built now, so that any problem with it is found while the
+         * debate format is being built, not in the middle of a debate.  This builder must not be
+         * changed after this is called.
+         * @return the {@link LazySpeechFormat}
+         * @throws DebateFormatBuilderException if two stages of overtime bells start at the same
+         * time
          */
-        public SpeechFormat getSpeechFormat() {
-            SpeechFormat sf = new SpeechFormat(mSpeechLength);
-            if (mCountDirection != null) {
-                sf.setCountDirection(mCountDirection);
-            }
-            if (mFirstPeriodInfo != null) {
-                sf.setFirstPeriodInfo(mFirstPeriodInfo);
-            }
-            Iterator<BellInfo> biIterator = mBellInfos.iterator();
-            while (biIterator.hasNext()) {
-                BellInfo bi = biIterator.next();
-                sf.addBellInfo(bi);
-            }
-            return sf;
+        public LazySpeechFormat getDescriptor() throws DebateFormatBuilderException {
+            return new LazySpeechFormat(mSpeechLength, mCountDirection, mFirstPeriodInfo,
+                    mBellInfos, buildOvertimeSchedule(), mIncludedResources);
         }
 
         /**
          * @return <code>true</code> if a finish bell has been defined, <code>false</code> otherwise
          */
         public boolean hasFinishBell() {
-            Iterator<BellInfo> biIterator = mBellInfos.iterator();
-            while (biIterator.hasNext()) {
-                BellInfo checkBi = biIterator.next();
-                if (checkBi.getBellTime() == this.getSpeechLength())
-                    return true;
+            return hasBellAtTime(this.getSpeechLength());
+        }
+
+        /**
+         * Merges the overtime bells of this speech format and its resources into one schedule.
+         * @return the {@link OvertimeSchedule}, or <code>null</code> if there are no overtime bells
+         * @throws DebateFormatBuilderException if two stages start at the same time
+         */
+        private OvertimeSchedule buildOvertimeSchedule() throws DebateFormatBuilderException {
+            TreeMap<Long, OvertimeSchedule.Stage> stages =
+                    new TreeMap<Long, OvertimeSchedule.Stage>(mOvertimeStages);
+            for (int i = 0; i < mIncludedResources.size(); i++) {
+                List<OvertimeSchedule.Stage> resourceStages = mIncludedResources.get(i).getOvertimeStages();
+                for (int j = 0; j < resourceStages.size(); j++) {
+                    OvertimeSchedule.Stage stage = resourceStages.get(j);
+                    if (stages.put(stage.getFirstTime(), stage) != null) {
+                        String timeStr = secsToText(stage.getFirstTime());
+                        throw new DebateFormatBuilderException(
+                                getString(FormatStrings.DfbErrorOvertimeBellDuplicate, timeStr));
+                    }
+                }
             }
-            return false;
+            if (stages.isEmpty())
+                return null;
+            return new OvertimeSchedule(new ArrayList<OvertimeSchedule.Stage>(stages.values()));
         }
 
         /**
@@ -329,7 +556,7 @@ public class DebateFormatBuilder {
             if (bellTime > mSpeechLength) {
                 String timeStr = secsToText(bellTime);
                 throw new DebateFormatBuilderException(
-                        getString(R.string.DfbErrorBellAfterFinishTime, timeStr));
+                        getString(FormatStrings.DfbErrorBellAfterFinishTime, timeStr));
             }
 
         }
@@ -342,14 +569,15 @@ public class DebateFormatBuilder {
 
     /**
      * Constructor.
+     * @param strings the {@link FormatStrings} from which to get error messages and the like
      */
-    public DebateFormatBuilder(Context context) {
+    public DebateFormatBuilder(FormatStrings strings) {
         super();
         mResourceForAll = null;
         mResources = new HashMap<String, Resource>();
         mSpeechFormatBuilders = new HashMap<String, SpeechFormatBuilder>();
         mDebateFormatBeingBuilt = new DebateFormat();
-        mContext = context;
+        mStrings = strings;
     }
 
     /**
@@ -362,11 +590,11 @@ public class DebateFormatBuilder {
      */
     public void addNewResource(String ref) throws DebateFormatBuilderException {
         assertFormatsAreAddable();
-        if (ref.equalsIgnoreCase(getString(R.string.XmlAttrNameResourceRefCommon))) {
+        if (ref.equalsIgnoreCase(getString(FormatStrings.XmlAttrNameResourceRefCommon))) {
             if (mResourceForAll != null) {
                 throw new DebateFormatBuilderException(getString(
-                        R.string.DfbErrorResourceDuplicate,
-                        getString(R.string.XmlAttrNameResourceRefCommon)));
+                        FormatStrings.DfbErrorResourceDuplicate,
+                        getString(FormatStrings.XmlAttrNameResourceRefCommon)));
             }
             mResourceForAll = new Resource();
         } else if (!mResources.containsKey(ref)) {
@@ -374,7 +602,7 @@ public class DebateFormatBuilder {
             mResources.put(ref, res);
         } else {
             throw new DebateFormatBuilderException(
-                    getString(R.string.DfbErrorResourceDuplicate, ref));
+                    getString(FormatStrings.DfbErrorResourceDuplicate, ref));
         }
     }
 
@@ -403,7 +631,7 @@ public class DebateFormatBuilder {
             mSpeechFormatBuilders.put(ref, sfb);
         } else {
             throw new DebateFormatBuilderException(
-                    getString(R.string.DfbErrorSpeechFormatDuplicate, ref));
+                    getString(FormatStrings.DfbErrorSpeechFormatDuplicate, ref));
         }
     }
 
@@ -421,19 +649,29 @@ public class DebateFormatBuilder {
         if (mState == State.DONE)
             throw new IllegalStateException("getDebateFormat() has already been called");
 
-        // If this is the first call, build the speeches
-        if (mState == State.ADDING_FORMATS)
-            this.buildSpeeches();
+        // If this is the first call, build the speeches.  If a speech format couldn't be built,
+        // the speech is still added if it can be, and the error is thrown afterwards.
+        DebateFormatBuilderException buildError = null;
+        if (mState == State.ADDING_FORMATS) {
+            try {
+                this.buildSpeeches();
+            } catch (DebateFormatBuilderException e) {
+                buildError = e;
+            }
+        }
 
         // Now, add the speech.
         // (If mState == State.ADDING_SPEECHES, this is the only thing that happens.)
         try {
             mDebateFormatBeingBuilt.addSpeech(name, formatRef);
         } catch (NoSuchFormatException e) {
+            if (buildError != null) throw buildError;
             throw new DebateFormatBuilderException(
-                    getString(R.string.DfbErrorAddSpeechSpeechFormatNotFound, formatRef, name));
+                    getString(FormatStrings.DfbErrorAddSpeechSpeechFormatNotFound, formatRef, name));
         }
 
+        if (buildError != null) throw buildError;
+
     }
 
     /**
@@ -525,6 +763,40 @@ public class DebateFormatBuilder {
         addBellInfoToSpeechFormat(speechRef, bi, periodInfoRef);
     }
 
+    /**
+     * Adds a stage of overtime bells to a resource in this builder
+     * @param resourceRef the short reference for the resource
+     * @param stage the {@link OvertimeSchedule.Stage}
+     * @throws DebateFormatBuilderException if there is no resource with reference 'resourceRef'
+     * or if there is already a stage starting at the same time
+     * @throws IllegalStateException if the "adding speeches" state has already started
+     */
+    public void addOvertimeStageToResource(String resourceRef, OvertimeSchedule.Stage stage)
+            throws DebateFormatBuilderException {
+
+        assertFormatsAreAddable();
+        Resource res = getResource(resourceRef);
+        res.addOvertimeStage(stage);
+    }
+
+    /**
+     * Adds a stage of overtime bells to a speech format in this builder.  A speech format's
+     * overtime bells, together with those of the resources it includes, replace the overtime
+     * bells in the user's preferences for that speech format.
+     * @param speechRef the short reference for the speech
+     * @param stage the {@link OvertimeSchedule.Stage}
+     * @throws DebateFormatBuilderException if there is no speech with reference 'speechRef' or if
+     * there is already a stage starting at the same time
+     * @throws IllegalStateException if the "adding speeches" state has already started
+     */
+    public void addOvertimeStageToSpeechFormat(String speechRef, OvertimeSchedule.Stage stage)
+            throws DebateFormatBuilderException {
+
+        assertFormatsAreAddable();
+        SpeechFormatBuilder sfb = getSpeechFormatBuilder(speechRef);
+        sfb.addOvertimeStage(stage);
+    }
+
     /**
      * Adds the elements of a resource (that has already been added to this builder) to a speech.
      * @param speechRef the short reference for the speech
@@ -659,12 +931,12 @@ public class DebateFormatBuilder {
      */
     private Resource getResource(String ref) throws DebateFormatBuilderException {
         Resource res;
-        if (ref.equalsIgnoreCase(mContext.getString(R.string.XmlAttrNameResourceRefCommon)))
+        if (ref.equalsIgnoreCase(mStrings.getString(FormatStrings.XmlAttrNameResourceRefCommon)))
             res = mResourceForAll;
         else res = mResources.get(ref);
         if (res == null) {
             throw new DebateFormatBuilderException(
-                    getString(R.string.DfbErrorResourceNotFound, ref));
+                    getString(FormatStrings.DfbErrorResourceNotFound, ref));
         }
         return res;
     }
@@ -680,7 +952,7 @@ public class DebateFormatBuilder {
         SpeechFormatBuilder sfb = mSpeechFormatBuilders.get(ref);
         if (sfb == null) {
             throw new DebateFormatBuilderException(
-                    getString(R.string.DfbErrorSpeechFormatNotFound, ref));
+                    getString(FormatStrings.DfbErrorSpeechFormatNotFound, ref));
         }
         return sfb;
     }
@@ -718,10 +990,13 @@ public class DebateFormatBuilder {
     }
 
     /**
-     * Builds the speech formats
+     * Builds the speech formats.  A speech format that can't be built is left out, but the
+     * others are still built.
+     * @throws DebateFormatBuilderException if any speech format couldn't be built, after
+     * building all the others
      * @throws IllegalStateException if buildSpeeches() has been called before
      */
-    private void buildSpeeches() {
+    private void buildSpeeches() throws DebateFormatBuilderException {
 
         // We should only do this once, i.e. formats must be "addable" when we do this
         assertFormatsAreAddable();
@@ -730,28 +1005,34 @@ public class DebateFormatBuilder {
         mState = State.ADDING_SPEECHES;
 
         Iterator<Entry<String, SpeechFormatBuilder>> sfbIterator = mSpeechFormatBuilders.entrySet().iterator();
+        DebateFormatBuilderException firstError = null;
 
         while (sfbIterator.hasNext()) {
             Entry<String, SpeechFormatBuilder> sfbEntry;
             String name;
             SpeechFormatBuilder sfb;
-            SpeechFormat sf;
 
             sfbEntry = sfbIterator.next();
             name     = sfbEntry.getKey();
             sfb      = sfbEntry.getValue();
-            sf       = sfb.getSpeechFormat();
 
-            mDebateFormatBeingBuilt.addSpeechFormat(name, sf);
+            // Speech formats are only assembled when they're first needed
+            try {
+                mDebateFormatBeingBuilt.addSpeechFormat(name, sfb.getDescriptor());
+            } catch (DebateFormatBuilderException e) {
+                if (firstError == null) firstError = e;
+            }
         }
+
+        if (firstError != null) throw firstError;
     }
 
-    private String getString(int resId) {
-        return mContext.getString(resId);
+    private String getString(String name) {
+        return mStrings.getString(name);
     }
 
-    private String getString(int resId, Object... formatArgs) {
-        return mContext.getString(resId, formatArgs);
+    private String getString(String name, Object... formatArgs) {
+        return mStrings.getString(name, formatArgs);
     }
 
 }
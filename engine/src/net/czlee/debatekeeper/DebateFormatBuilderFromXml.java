@@ -22,45 +22,112 @@ import java.io.InputStream;
 import java.math.BigInteger;
 import java.util.ArrayList;
 
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
 import net.czlee.debatekeeper.DebateFormatBuilder.DebateFormatBuilderException;
 import net.czlee.debatekeeper.SpeechFormat.CountDirection;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
-
-import android.content.Context;
-import android.util.Log;
-import android.util.Xml;
-import android.util.Xml.Encoding;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * DebateFormatBuilderFromXml uses the information in an XML file to build a {@link DebateFormat}.
  *
+ * It is part of the engine, so it doesn't depend on Android.  The names of the elements and
+ * attributes, and the error messages, come from a {@link FormatStrings}.  This is how the same
+ * parser checks and compiles the bundled formats at build time.  Errors are recorded in the error
+ * log rather than being logged.
+ *
  * @author Chuan-Zheng Lee
  * @since  2012-06-15
  */
 public class DebateFormatBuilderFromXml {
 
-    private final Context             mContext;
-    private final DebateFormatBuilder mDfb;
-    private final ArrayList<String>   mErrorLog = new ArrayList<String>();
-    private       String              mSchemaVersion = null;
+    private final FormatStrings          mStrings;
+    private final DebateFormatBuilder      mDfb;
+    private final ArrayList<String>        mErrorLog        = new ArrayList<String>();
+    private final ArrayList<ErrorLogEntry> mErrorLogEntries = new ArrayList<ErrorLogEntry>();
+    private       String                   mSchemaVersion   = null;
+    private       Locator                  mLocator         = null;
+    private       String                   mCurrentElement  = null;
 
     private final String DEBATING_TIMER_URI;
-    private static final String MAXIMUM_SCHEMA_VERSION = "1.0";
+    private static final String MAXIMUM_SCHEMA_VERSION = "1.1";
+
+    private static final String FEATURE_DISALLOW_DOCTYPE_DECL       = "http://apache.org/xml/features/disallow-doctype-decl";
+    private static final String FEATURE_EXTERNAL_GENERAL_ENTITIES   = "http://xml.org/sax/features/external-general-entities";
+    private static final String FEATURE_EXTERNAL_PARAMETER_ENTITIES = "http://xml.org/sax/features/external-parameter-entities";
+
+    public DebateFormatBuilderFromXml(FormatStrings strings) {
+        mStrings = strings;
+        mDfb     = new DebateFormatBuilder(strings);
+
+        DEBATING_TIMER_URI = strings.getString(FormatStrings.XmlUri);
+    }
+
+    //******************************************************************************************
+    // Public classes
+    //******************************************************************************************
+    /**
+     * An error in the error log, with where in the XML file it was found.
+     */
+    public static class ErrorLogEntry {
+
+        private final int    mLineNumber;
+        private final String mElementName;
+        private final String mMessage;
+
+        public ErrorLogEntry(int lineNumber, String elementName, String message) {
+            mLineNumber  = lineNumber;
+            mElementName = elementName;
+            mMessage     = message;
+        }
+
+        /**
+         * @return the line number at which the error was found, or -1 if it isn't known
+         */
+        public int getLineNumber() {
+            return mLineNumber;
+        }
+
+        /**
+         * @return the local name of the element in which the error was found, or
+         * <code>null</code> if it isn't known
+         */
+        public String getElementName() {
+            return mElementName;
+        }
 
-    public DebateFormatBuilderFromXml(Context context) {
-        mContext = context;
-        mDfb     = new DebateFormatBuilder(context);
+        /**
+         * @return the error message, without the bullet used in the error log
+         */
+        public String getMessage() {
+            return mMessage;
+        }
 
-        DEBATING_TIMER_URI = context.getString(R.string.XmlUri);
     }
 
     //******************************************************************************************
     // Private classes
     //******************************************************************************************
+    /**
+     * Refuses to resolve any external entity, so that a debate format file can't make the
+     * parser read other files or fetch anything from the network.
+     */
+    private static class RefusingEntityResolver implements EntityResolver {
+        @Override
+        public InputSource resolveEntity(String publicId, String systemId) throws SAXException {
+            throw new SAXException("External entities are not allowed: " + systemId);
+        }
+    }
+
     private class DebateFormatXmlContentHandler implements ContentHandler {
 
         // endElement should erase these (i.e. set them to null) so that they're only not null
@@ -85,7 +152,7 @@ public class DebateFormatBuilderFromXml {
         @Override public void endPrefixMapping(String prefix) throws SAXException {}
         @Override public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {}
         @Override public void processingInstruction(String target, String data) throws SAXException {}
-        @Override public void setDocumentLocator(Locator locator) {}
+        @Override public void setDocumentLocator(Locator locator) { mLocator = locator; }
         @Override public void skippedEntity(String name) throws SAXException {}
         @Override public void startDocument() throws SAXException {}
         @Override public void startPrefixMapping(String prefix, String uri) throws SAXException {}
@@ -96,24 +163,26 @@ public class DebateFormatBuilderFromXml {
             if (!uri.equals(DEBATING_TIMER_URI))
                 return;
 
+            mCurrentElement = localName;
+
             /**
              * <debateformat name="something" schemaversion="1.0">
              * End the root context.
              */
-            if (areEqual(localName, R.string.XmlElemNameRoot)) {
+            if (areEqual(localName, FormatStrings.XmlElemNameRoot)) {
                 mIsInRootContext = false;
 
             /** <resource ref="string">
              * End the context.
              */
-            } else if (areEqual(localName, R.string.XmlElemNameResource)) {
+            } else if (areEqual(localName, FormatStrings.XmlElemNameResource)) {
                 mCurrentSecondLevelContext = DebateFormatXmlSecondLevelContext.NONE;
                 mCurrentResourceRef = null;
 
             /** <speechtype ref="string" length="5:00" firstperiod="string" countdir="up">
              * Set the first period, then end the context.
              */
-            } else if (areEqual(localName, R.string.XmlElemNameSpeechFormat)) {
+            } else if (areEqual(localName, FormatStrings.XmlElemNameSpeechFormat)) {
                 try {
                     mDfb.setFirstPeriod(mCurrentSpeechFormatRef, mCurrentSpeechFormatFirstPeriod);
                 } catch (DebateFormatBuilderException e) {
@@ -123,7 +192,7 @@ public class DebateFormatBuilderFromXml {
                 try {
                     // If there isn't already a finish bell in this, add one and log the error.
                     if (!mDfb.hasFinishBellInSpeechFormat(mCurrentSpeechFormatRef)) {
-                        logXmlError(R.string.XmlErrorSpeechFormatNoFinishBell, mCurrentSpeechFormatRef);
+                        logXmlError(FormatStrings.XmlErrorSpeechFormatNoFinishBell, mCurrentSpeechFormatRef);
                         mDfb.addBellInfoToSpeechFormatAtFinish(mCurrentSpeechFormatRef, new BellInfo(0, 2), null);
                     }
                 } catch (DebateFormatBuilderException e) {
@@ -137,7 +206,7 @@ public class DebateFormatBuilderFromXml {
             /** <speeches>
              * End the speeches context.
              */
-            } else if (areEqual(localName, R.string.XmlElemNameSpeechesList)) {
+            } else if (areEqual(localName, FormatStrings.XmlElemNameSpeechesList)) {
                 mCurrentSecondLevelContext = DebateFormatXmlSecondLevelContext.NONE;
             }
 
@@ -145,6 +214,10 @@ public class DebateFormatBuilderFromXml {
              * Do nothing
              */
 
+            /** <overtimebell from="0:30" every="0:20" until="2:00" number="3" sound="#default">
+             * Do nothing
+             */
+
             /** <period ref="something" desc="Human readable" bgcolor="#77ffcc00">
              * Do nothing
              */
@@ -160,26 +233,28 @@ public class DebateFormatBuilderFromXml {
             if (!uri.equals(DEBATING_TIMER_URI))
                 return;
 
+            mCurrentElement = localName;
+
             /**
              * <debateformat name="something" schemaversion="1.0">
              */
-            if (areEqual(localName, R.string.XmlElemNameRoot)) {
+            if (areEqual(localName, FormatStrings.XmlElemNameRoot)) {
 
-                String name = getValue(atts, R.string.XmlAttrNameRootName);
+                String name = getValue(atts, FormatStrings.XmlAttrNameRootName);
                 if (name == null) {
-                    logXmlError(R.string.XmlErrorRootNoName);
+                    logXmlError(FormatStrings.XmlErrorRootNoName);
                     return;
                 }
 
-                mSchemaVersion = getValue(atts, R.string.XmlAttrNameRootSchemaVersion);
+                mSchemaVersion = getValue(atts, FormatStrings.XmlAttrNameRootSchemaVersion);
                 if (mSchemaVersion == null) {
-                    logXmlError(R.string.XmlErrorRootNoSchemaVersion);
+                    logXmlError(FormatStrings.XmlErrorRootNoSchemaVersion);
                 } else {
                     try {
                         if (!isSchemaSupported())
-                            logXmlError(R.string.XmlErrorRootNewSchemaVersion, mSchemaVersion, MAXIMUM_SCHEMA_VERSION);
+                            logXmlError(FormatStrings.XmlErrorRootNewSchemaVersion, mSchemaVersion, MAXIMUM_SCHEMA_VERSION);
                     } catch (IllegalArgumentException e) {
-                        logXmlError(R.string.XmlErrorRootInvalidSchemaVersion, mSchemaVersion);
+                        logXmlError(FormatStrings.XmlErrorRootInvalidSchemaVersion, mSchemaVersion);
                     }
                 }
 
@@ -192,7 +267,7 @@ public class DebateFormatBuilderFromXml {
             // For everything else, we must be inside the root element.
             // If we're not, refuse to do anything.
             if (!mIsInRootContext) {
-                logXmlError(R.string.XmlErrorSomethingOutsideRoot);
+                logXmlError(FormatStrings.XmlErrorSomethingOutsideRoot);
                 return;
             }
 
@@ -201,19 +276,19 @@ public class DebateFormatBuilderFromXml {
              * Must not be inside a resource or speech format.
              * 'ref' is mandatory.
              */
-            if (areEqual(localName, R.string.XmlElemNameResource)) {
+            if (areEqual(localName, FormatStrings.XmlElemNameResource)) {
 
                 // 1. Get the reference string.
-                String reference = getValue(atts, R.string.XmlAttrNameCommonRef);
+                String reference = getValue(atts, FormatStrings.XmlAttrNameCommonRef);
                 if (reference == null) {
-                    logXmlError(R.string.XmlErrorResourceNoRef);
+                    logXmlError(FormatStrings.XmlErrorResourceNoRef);
                     return;
                 }
 
                 // 2. Check we're not inside any contexts.
                 // If we are, ignore and reset all contexts.
                 if (!assertNotInsideAnySecondLevelContextAndResetOtherwise()) {
-                    logXmlError(R.string.XmlErrorResourceInsideContext, reference,
+                    logXmlError(FormatStrings.XmlErrorResourceInsideContext, reference,
                             getCurrentSecondLevelContext().toString());
                     return;
                 }
@@ -236,35 +311,35 @@ public class DebateFormatBuilderFromXml {
              * 'ref' and 'length' are mandatory.
              * 'firstperiod' and 'countdir' are optional.
              */
-            } else if (areEqual(localName, R.string.XmlElemNameSpeechFormat)) {
+            } else if (areEqual(localName, FormatStrings.XmlElemNameSpeechFormat)) {
 
                 // 1. Get the reference string. Mandatory; exit on error.
-                String reference = getValue(atts, R.string.XmlAttrNameCommonRef);
+                String reference = getValue(atts, FormatStrings.XmlAttrNameCommonRef);
                 if (reference == null) {
-                    logXmlError(R.string.XmlErrorSpeechFormatNoRef);
+                    logXmlError(FormatStrings.XmlErrorSpeechFormatNoRef);
                     return;
                 }
 
                 // 2. Check we're not inside any contexts.
                 // If we are, ignore and reset all contexts.
                 if (!assertNotInsideAnySecondLevelContextAndResetOtherwise()) {
-                    logXmlError(R.string.XmlErrorSpeechFormatInsideContext, reference,
+                    logXmlError(FormatStrings.XmlErrorSpeechFormatInsideContext, reference,
                             getCurrentSecondLevelContext().toString());
                     return;
                 }
 
                 // 3. Get the length string, then convert it to seconds. Mandatory; exit on error.
                 // Take note of it, in case bells use "finish" as their bell time.
-                String lengthStr = getValue(atts, R.string.XmlAttrNameSpeechFormatLength);
+                String lengthStr = getValue(atts, FormatStrings.XmlAttrNameSpeechFormatLength);
                 long length = 0;
                 if (lengthStr == null) {
-                    logXmlError(R.string.XmlErrorSpeechFormatNoLength, reference);
+                    logXmlError(FormatStrings.XmlErrorSpeechFormatNoLength, reference);
                     return;
                 }
                 try {
                     length = timeStr2Secs(lengthStr);
                 } catch (NumberFormatException e) {
-                    logXmlError(R.string.XmlErrorSpeechFormatInvalidLength, reference, lengthStr);
+                    logXmlError(FormatStrings.XmlErrorSpeechFormatInvalidLength, reference, lengthStr);
                     return;
                 }
 
@@ -285,23 +360,23 @@ public class DebateFormatBuilderFromXml {
                 // Now do the optional attributes...
 
                 // 6. Get the count direction, and set it if it's present
-                String countdir = getValue(atts, R.string.XmlAttrNameSpeechFormatCountDir);
+                String countdir = getValue(atts, FormatStrings.XmlAttrNameSpeechFormatCountDir);
                 if (countdir != null) {
                     try {
                         if (areEqualIgnoringCase(countdir,
-                                R.string.XmlAttrValueSpeechFormatCountDirUp)) {
+                                FormatStrings.XmlAttrValueSpeechFormatCountDirUp)) {
                             mDfb.setCountDirection(reference, CountDirection.COUNT_UP);
                         } else if (areEqualIgnoringCase(countdir,
-                                R.string.XmlAttrValueSpeechFormatCountDirDown)) {
+                                FormatStrings.XmlAttrValueSpeechFormatCountDirDown)) {
                             mDfb.setCountDirection(reference, CountDirection.COUNT_DOWN);
                         } else if (areEqualIgnoringCase(countdir,
-                                R.string.XmlAttrValueSpeechFormatCountDirUser)) {
+                                FormatStrings.XmlAttrValueSpeechFormatCountDirUser)) {
                             mDfb.setCountDirection(reference, CountDirection.COUNT_USER);
                         } else {
-                            logXmlError(R.string.XmlErrorSpeechFormatInvalidCountDir, reference, countdir);
+                            logXmlError(FormatStrings.XmlErrorSpeechFormatInvalidCountDir, reference, countdir);
                         }
                     } catch (DebateFormatBuilderException e) {
-                        logXmlError(R.string.XmlErrorSpeechFormatUnexpectedlyNotFound, reference);
+                        logXmlError(FormatStrings.XmlErrorSpeechFormatUnexpectedlyNotFound, reference);
                     }
                 }
 
@@ -309,7 +384,7 @@ public class DebateFormatBuilderFromXml {
                 // We'll deal with it as we exit this element, because the period is defined
                 // inside the element.
                 mCurrentSpeechFormatFirstPeriod =
-                        getValue(atts, R.string.XmlAttrNameSpeechFormatFirstPeriod);
+                        getValue(atts, FormatStrings.XmlAttrNameSpeechFormatFirstPeriod);
 
             /** <bell time="1:00" number="1" nextperiod="#stay" sound="#default" pauseonbell="true">
              * Create a BellInfo.
@@ -317,35 +392,35 @@ public class DebateFormatBuilderFromXml {
              * 'time' is mandatory.
              * All other attributes are optional.
              */
-            } else if (areEqual(localName, R.string.XmlElemNameBell)) {
+            } else if (areEqual(localName, FormatStrings.XmlElemNameBell)) {
 
                 // 1. Get the bell time. Mandatory; exit on error.
-                String timeStr = getValue(atts, R.string.XmlAttrNameBellTime);;
+                String timeStr = getValue(atts, FormatStrings.XmlAttrNameBellTime);;
                 long time = 0;
                 boolean atFinish = false;
                 if (timeStr == null) {
-                    logXmlError(R.string.XmlErrorBellNoTime, getCurrentContextAndReferenceStr());
+                    logXmlError(FormatStrings.XmlErrorBellNoTime, getCurrentContextAndReferenceStr());
                     return;
-                } else if (areEqualIgnoringCase(timeStr, R.string.XmlAttrValueBellTimeFinish)) {
+                } else if (areEqualIgnoringCase(timeStr, FormatStrings.XmlAttrValueBellTimeFinish)) {
                     time = 0;  // will be overwritten addBellInfoToSpeechFormatAtFinish().
                     atFinish = true;
                 } else {
                     try {
                         time = timeStr2Secs(timeStr);
                     } catch (NumberFormatException e) {
-                        logXmlError(R.string.XmlErrorBellInvalidTime, getCurrentContextAndReferenceStr(), timeStr);
+                        logXmlError(FormatStrings.XmlErrorBellInvalidTime, getCurrentContextAndReferenceStr(), timeStr);
                         return;
                     }
                 }
 
                 // 2. Get the number of times to play, or default to 1.
-                String numberStr = getValue(atts, R.string.XmlAttrNameBellNumber);
+                String numberStr = getValue(atts, FormatStrings.XmlAttrNameBellNumber);
                 int number = 1;
                 if (numberStr != null) {
                     try {
                         number = Integer.parseInt(numberStr);
                     } catch (NumberFormatException e) {
-                        logXmlError(R.string.XmlErrorBellInvalidNumber, getCurrentContextAndReferenceStr(), timeStr);
+                        logXmlError(FormatStrings.XmlErrorBellInvalidNumber, getCurrentContextAndReferenceStr(), timeStr);
                     }
                 }
 
@@ -354,33 +429,33 @@ public class DebateFormatBuilderFromXml {
 
                 // 4. Get the next period reference, or default to null
                 // "#stay" means null (i.e. leave unchanged)
-                String periodInfoRef = getValue(atts, R.string.XmlAttrNameBellNextPeriod);
+                String periodInfoRef = getValue(atts, FormatStrings.XmlAttrNameBellNextPeriod);
                 if (periodInfoRef != null)
-                    if (areEqualIgnoringCase(periodInfoRef, R.string.XmlAttrValueCommonStay))
+                    if (areEqualIgnoringCase(periodInfoRef, FormatStrings.XmlAttrValueCommonStay))
                         periodInfoRef = null;
 
                 // 5. Get the sound to play, or default to the default
-                String bellSound = getValue(atts, R.string.XmlAttrNameBellSound);
+                String bellSound = getValue(atts, FormatStrings.XmlAttrNameBellSound);
                 if (bellSound != null) {
-                    if (areEqualIgnoringCase(bellSound, R.string.XmlAttrValueCommonStay))
+                    if (areEqualIgnoringCase(bellSound, FormatStrings.XmlAttrValueCommonStay))
                         bellSound = null;
-                    else if (areEqualIgnoringCase(bellSound, R.string.XmlAttrValueBellNextPeriodSilent))
+                    else if (areEqualIgnoringCase(bellSound, FormatStrings.XmlAttrValueBellNextPeriodSilent))
                         bi.setSound(0);
-                    else if (areEqualIgnoringCase(bellSound, R.string.XmlAttrValueCommonDefault));
+                    else if (areEqualIgnoringCase(bellSound, FormatStrings.XmlAttrValueCommonDefault));
                         // Do nothing
                     else
-                        logXmlError(R.string.XmlErrorBellInvalidSound, getCurrentContextAndReferenceStr(), bellSound);
+                        logXmlError(FormatStrings.XmlErrorBellInvalidSound, getCurrentContextAndReferenceStr(), bellSound);
                 }
 
                 // 6. Determine whether to pause on this bell
-                String pauseOnBellStr = getValue(atts, R.string.XmlAttrNameBellPauseOnBell);
+                String pauseOnBellStr = getValue(atts, FormatStrings.XmlAttrNameBellPauseOnBell);
                 if (pauseOnBellStr != null) {
-                    if (areEqualIgnoringCase(pauseOnBellStr, R.string.XmlAttrValueCommonTrue))
+                    if (areEqualIgnoringCase(pauseOnBellStr, FormatStrings.XmlAttrValueCommonTrue))
                         bi.setPauseOnBell(true);
-                    else if (areEqualIgnoringCase(pauseOnBellStr, R.string.XmlAttrValueCommonFalse))
+                    else if (areEqualIgnoringCase(pauseOnBellStr, FormatStrings.XmlAttrValueCommonFalse))
                         bi.setPauseOnBell(false);
                     else
-                        logXmlError(R.string.XmlErrorBellInvalidPauseOnBell, getCurrentContextAndReferenceStr(), pauseOnBellStr);
+                        logXmlError(FormatStrings.XmlErrorBellInvalidPauseOnBell, getCurrentContextAndReferenceStr(), pauseOnBellStr);
                 }
 
                 // Finally, add the bell, but first check that the period info exists (and nullify
@@ -390,7 +465,7 @@ public class DebateFormatBuilderFromXml {
                     case RESOURCE:
                         if (mCurrentResourceRef == null) break;
                         if (periodInfoRef != null && !mDfb.hasPeriodInfoInResource(mCurrentResourceRef, periodInfoRef)) {
-                            logXmlError(R.string.XmlErrorResourcePeriodInfoNotFound, periodInfoRef, mCurrentResourceRef);
+                            logXmlError(FormatStrings.XmlErrorResourcePeriodInfoNotFound, periodInfoRef, mCurrentResourceRef);
                             periodInfoRef = null;
                         }
                         mDfb.addBellInfoToResource(mCurrentResourceRef, bi, periodInfoRef);
@@ -398,7 +473,7 @@ public class DebateFormatBuilderFromXml {
                     case SPEECH_FORMAT:
                         if (mCurrentSpeechFormatRef == null) break;
                         if (periodInfoRef != null && !mDfb.hasPeriodInfoInSpeechFormat(mCurrentSpeechFormatRef, periodInfoRef)) {
-                            logXmlError(R.string.XmlErrorSpeechFormatPeriodInfoNotFound, periodInfoRef, mCurrentSpeechFormatRef);
+                            logXmlError(FormatStrings.XmlErrorSpeechFormatPeriodInfoNotFound, periodInfoRef, mCurrentSpeechFormatRef);
                             periodInfoRef = null;
                         }
                         if (atFinish)
@@ -407,7 +482,114 @@ public class DebateFormatBuilderFromXml {
                             mDfb.addBellInfoToSpeechFormat(mCurrentSpeechFormatRef, bi, periodInfoRef);
                         break;
                     default:
-                        logXmlError(R.string.XmlErrorBellOutsideContext);
+                        logXmlError(FormatStrings.XmlErrorBellOutsideContext);
+                    }
+                } catch (DebateFormatBuilderException e) {
+                    logXmlError(e);
+                }
+
+            /** <overtimebell from="0:30" every="0:20" until="2:00" number="3" sound="#default">
+             * Create a stage of overtime bells.  All times are after the finish time.
+             * This must be inside a resource or speech format.
+             * 'from' is mandatory.
+             * All other attributes are optional.  Without 'every', there is only one bell.
+             * Without 'until', the bells carry on until the next stage starts, if there is one.
+             */
+            } else if (areEqual(localName, FormatStrings.XmlElemNameOvertimeBell)) {
+
+                // 1. Get the time of the first bell. Mandatory; exit on error.
+                String fromStr = getValue(atts, FormatStrings.XmlAttrNameOvertimeBellFrom);
+                long from = 0;
+                if (fromStr == null) {
+                    logXmlError(FormatStrings.XmlErrorOvertimeBellNoFrom, getCurrentContextAndReferenceStr());
+                    return;
+                }
+                try {
+                    from = timeStr2Secs(fromStr);
+                } catch (NumberFormatException e) {
+                    from = 0;
+                }
+                if (from <= 0) {
+                    logXmlError(FormatStrings.XmlErrorOvertimeBellInvalidFrom, getCurrentContextAndReferenceStr(), fromStr);
+                    return;
+                }
+
+                // 2. Get the time between bells, or default to zero (only one bell).
+                String everyStr = getValue(atts, FormatStrings.XmlAttrNameOvertimeBellEvery);
+                long every = 0;
+                if (everyStr != null) {
+                    try {
+                        every = timeStr2Secs(everyStr);
+                    } catch (NumberFormatException e) {
+                        every = -1;
+                    }
+                    if (every < 0) {
+                        logXmlError(FormatStrings.XmlErrorOvertimeBellInvalidEvery, getCurrentContextAndReferenceStr(), everyStr);
+                        return;
+                    }
+                }
+
+                // 3. Get the time of the last bell, or default to no limit.
+                String untilStr = getValue(atts, FormatStrings.XmlAttrNameOvertimeBellUntil);
+                long until = OvertimeSchedule.UNLIMITED;
+                if (untilStr != null) {
+                    try {
+                        until = timeStr2Secs(untilStr);
+                    } catch (NumberFormatException e) {
+                        until = -1;
+                    }
+                    if (until < from) {
+                        logXmlError(FormatStrings.XmlErrorOvertimeBellInvalidUntil, getCurrentContextAndReferenceStr(), untilStr);
+                        return;
+                    }
+                }
+
+                // 4. Get the number of times to play, or default to that of the overtime bells
+                // in the user's preferences.
+                String numberStr = getValue(atts, FormatStrings.XmlAttrNameOvertimeBellNumber);
+                int number = 3;
+                if (numberStr != null) {
+                    try {
+                        number = Integer.parseInt(numberStr);
+                    } catch (NumberFormatException e) {
+                        number = -1;
+                    }
+                    if (number < 0) {
+                        logXmlError(FormatStrings.XmlErrorOvertimeBellInvalidNumber, getCurrentContextAndReferenceStr(), numberStr);
+                        return;
+                    }
+                }
+                BellSoundInfo bsi = new BellSoundInfo(BellSoundInfo.DEFAULT_SOUND, number);
+
+                // 5. Get the sound to play, or default to the default
+                String bellSound = getValue(atts, FormatStrings.XmlAttrNameOvertimeBellSound);
+                if (bellSound != null) {
+                    if (areEqualIgnoringCase(bellSound, FormatStrings.XmlAttrValueBellNextPeriodSilent))
+                        bsi.setSoundResid(0);
+                    else if (!areEqualIgnoringCase(bellSound, FormatStrings.XmlAttrValueCommonDefault))
+                        logXmlError(FormatStrings.XmlErrorOvertimeBellInvalidSound, getCurrentContextAndReferenceStr(), bellSound);
+                }
+
+                // Finally, add the stage
+                OvertimeSchedule.Stage stage;
+                try {
+                    stage = new OvertimeSchedule.Stage(from, every, until, bsi);
+                } catch (IllegalArgumentException e) {
+                    logXmlError(e);
+                    return;
+                }
+                try {
+                    switch (getCurrentSecondLevelContext()) {
+                    case RESOURCE:
+                        if (mCurrentResourceRef != null)
+                            mDfb.addOvertimeStageToResource(mCurrentResourceRef, stage);
+                        break;
+                    case SPEECH_FORMAT:
+                        if (mCurrentSpeechFormatRef != null)
+                            mDfb.addOvertimeStageToSpeechFormat(mCurrentSpeechFormatRef, stage);
+                        break;
+                    default:
+                        logXmlError(FormatStrings.XmlErrorOvertimeBellOutsideContext);
                     }
                 } catch (DebateFormatBuilderException e) {
                     logXmlError(e);
@@ -419,27 +601,27 @@ public class DebateFormatBuilderFromXml {
              * 'ref' is mandatory.
              * 'desc' and 'bgcolor' are optional.
              */
-            } else if (areEqual(localName, R.string.XmlElemNamePeriod)){
+            } else if (areEqual(localName, FormatStrings.XmlElemNamePeriod)){
 
                 // 1. Get the reference. Mandatory; exit on error.
-                String reference = getValue(atts, R.string.XmlAttrNameCommonRef);
+                String reference = getValue(atts, FormatStrings.XmlAttrNameCommonRef);
                 if (reference == null) {
-                    logXmlError(R.string.XmlErrorPeriodNoRef, getCurrentContextAndReferenceStr());
+                    logXmlError(FormatStrings.XmlErrorPeriodNoRef, getCurrentContextAndReferenceStr());
                     return;
                 }
 
                 // 2. Get the description (implicitly default to null)
-                String description = getValue(atts, R.string.XmlAttrNamePeriodDesc);
+                String description = getValue(atts, FormatStrings.XmlAttrNamePeriodDesc);
                 if (description != null) {
-                    if (areEqualIgnoringCase(description, R.string.XmlAttrValueCommonStay))
+                    if (areEqualIgnoringCase(description, FormatStrings.XmlAttrValueCommonStay))
                         description = null;
                 }
 
                 // 3. Get the background colour (implicitly default to null)
-                String bgcolorStr = getValue(atts, R.string.XmlAttrNamePeriodBgcolor);
+                String bgcolorStr = getValue(atts, FormatStrings.XmlAttrNamePeriodBgcolor);
                 Integer backgroundColor = null;
                 if (bgcolorStr != null) {
-                    if (areEqualIgnoringCase(bgcolorStr, R.string.XmlAttrValueCommonStay))
+                    if (areEqualIgnoringCase(bgcolorStr, FormatStrings.XmlAttrValueCommonStay))
                         backgroundColor = null;
                     else if (bgcolorStr.startsWith("#")) {
                         try {
@@ -447,15 +629,16 @@ public class DebateFormatBuilderFromXml {
                             // integers to be parsed as unsigned integers.
                             backgroundColor = new BigInteger(bgcolorStr.substring(1), 16).intValue();
                         } catch (NumberFormatException e) {
-                            logXmlError(R.string.XmlErrorPeriodInvalidColor, reference, bgcolorStr);
+                            logXmlError(FormatStrings.XmlErrorPeriodInvalidColor, reference, bgcolorStr);
                         }
                     } else {
-                        logXmlError(R.string.XmlErrorPeriodInvalidColor, reference, bgcolorStr);
+                        logXmlError(FormatStrings.XmlErrorPeriodInvalidColor, reference, bgcolorStr);
                     }
                 }
 
-                // 4. We now have enough information to make the PeriodInfo
-                PeriodInfo pi = new PeriodInfo(description, backgroundColor);
+                // 4. We now have enough information to make the PeriodInfo.  Most formats use the
+                // same few periods, so use the canonical copy.
+                PeriodInfo pi = new PeriodInfo(description, backgroundColor).intern();
 
                 // Finally, add the period
                 try {
@@ -469,7 +652,7 @@ public class DebateFormatBuilderFromXml {
                             mDfb.addPeriodInfoToSpeechFormat(mCurrentSpeechFormatRef, reference, pi);
                         break;
                     default:
-                        logXmlError(R.string.XmlErrorPeriodOutsideContext, reference);
+                        logXmlError(FormatStrings.XmlErrorPeriodOutsideContext, reference);
                     }
 
                 } catch (DebateFormatBuilderException e) {
@@ -481,18 +664,18 @@ public class DebateFormatBuilderFromXml {
              * This must be in a speech format.
              * 'resource' is mandatory.
              */
-            } else if (areEqual(localName, R.string.XmlElemNameInclude)) {
+            } else if (areEqual(localName, FormatStrings.XmlElemNameInclude)) {
 
                 // 1. Get the resource reference. Mandatory; exit on error.
-                String resourceRef = getValue(atts, R.string.XmlAttrNameIncludeResource);
+                String resourceRef = getValue(atts, FormatStrings.XmlAttrNameIncludeResource);
                 if (resourceRef == null) {
-                    logXmlError(R.string.XmlErrorIncludeNoResource, getCurrentContextAndReferenceStr());
+                    logXmlError(FormatStrings.XmlErrorIncludeNoResource, getCurrentContextAndReferenceStr());
                     return;
                 }
 
                 // 2. Check we're inside a speech format
                 if (getCurrentSecondLevelContext() != DebateFormatXmlSecondLevelContext.SPEECH_FORMAT) {
-                    logXmlError(R.string.XmlErrorIncludeOutsideSpeechFormat, resourceRef);
+                    logXmlError(FormatStrings.XmlErrorIncludeOutsideSpeechFormat, resourceRef);
                     return;
                 }
 
@@ -507,9 +690,9 @@ public class DebateFormatBuilderFromXml {
             /** <speeches>
              * Start the speeches context.
              */
-            } else if (areEqual(localName, R.string.XmlElemNameSpeechesList)) {
+            } else if (areEqual(localName, FormatStrings.XmlElemNameSpeechesList)) {
                 if (!assertNotInsideAnySecondLevelContextAndResetOtherwise()) {
-                    logXmlError(R.string.XmlErrorSpeechesListInsideContext,
+                    logXmlError(FormatStrings.XmlErrorSpeechesListInsideContext,
                             getCurrentSecondLevelContext().toString());
                     return;
                 }
@@ -521,25 +704,25 @@ public class DebateFormatBuilderFromXml {
              * Add a speech.
              * This must be inside the speeches context.
              */
-            } else if (areEqual(localName, R.string.XmlElemNameSpeech)) {
+            } else if (areEqual(localName, FormatStrings.XmlElemNameSpeech)) {
 
                 // 1. Get the speech name.
-                String name = getValue(atts, R.string.XmlAttrNameSpeechName);
+                String name = getValue(atts, FormatStrings.XmlAttrNameSpeechName);
                 if (name == null) {
-                    logXmlError(R.string.XmlErrorSpeechNoName);
+                    logXmlError(FormatStrings.XmlErrorSpeechNoName);
                     return;
                 }
 
                 // 2. Get the speech format.
-                String format = getValue(atts, R.string.XmlAttrNameSpeechFormat);
+                String format = getValue(atts, FormatStrings.XmlAttrNameSpeechFormat);
                 if (format == null) {
-                    logXmlError(R.string.XmlErrorSpeechNoFormat, name);
+                    logXmlError(FormatStrings.XmlErrorSpeechNoFormat, name);
                     return;
                 }
 
                 // 3. We must be inside the speeches list.
                 if (getCurrentSecondLevelContext() != DebateFormatXmlSecondLevelContext.SPEECHES_LIST) {
-                    logXmlError(R.string.XmlErrorSpeechOutsideSpeechesList, name);
+                    logXmlError(FormatStrings.XmlErrorSpeechOutsideSpeechesList, name);
                     return;
                 }
 
@@ -556,28 +739,28 @@ public class DebateFormatBuilderFromXml {
 
         private String getCurrentContextAndReferenceStr() {
             if (mCurrentResourceRef != null) {
-                return String.format("%s '%s'", getString(R.string.XmlElemNameResource), mCurrentResourceRef);
+                return String.format("%s '%s'", getString(FormatStrings.XmlElemNameResource), mCurrentResourceRef);
             } else if (mCurrentSpeechFormatRef != null) {
-                return String.format("%s '%s'", getString(R.string.XmlElemNameSpeechFormat), mCurrentSpeechFormatRef);
+                return String.format("%s '%s'", getString(FormatStrings.XmlElemNameSpeechFormat), mCurrentSpeechFormatRef);
             } else {
                 return "unknown context";
             }
         }
 
-        private boolean areEqual(String string, int resid) {
-            return string.equals(getString(resid));
+        private boolean areEqual(String string, String name) {
+            return string.equals(getString(name));
         }
 
-        private boolean areEqualIgnoringCase(String string, int resid) {
-            return string.equalsIgnoreCase(getString(resid));
+        private boolean areEqualIgnoringCase(String string, String name) {
+            return string.equalsIgnoreCase(getString(name));
         }
 
-        private String getString(int resid) {
-            return mContext.getString(resid);
+        private String getString(String name) {
+            return mStrings.getString(name);
         }
 
-        private String getValue(Attributes atts, int localNameResid) {
-            return atts.getValue(DEBATING_TIMER_URI, getString(localNameResid));
+        private String getValue(Attributes atts, String localName) {
+            return atts.getValue(DEBATING_TIMER_URI, getString(localName));
         }
 
         /**
@@ -615,7 +798,7 @@ public class DebateFormatBuilderFromXml {
      */
     public DebateFormat buildDebateFromXml(InputStream is)
             throws IOException, SAXException, IllegalStateException {
-        Xml.parse(is, Encoding.UTF_8, new DebateFormatXmlContentHandler());
+        parseXml(is, new DebateFormatXmlContentHandler());
         return mDfb.getDebateFormat();
     }
 
@@ -658,6 +841,14 @@ public class DebateFormatBuilderFromXml {
         return mErrorLog;
     }
 
+    /**
+     * @return An <i>ArrayList</i> of {@link ErrorLogEntry}s, one for each item in the error log,
+     * in the same order, with where in the XML file each error was found
+     */
+    public ArrayList<ErrorLogEntry> getErrorLogEntries() {
+        return mErrorLogEntries;
+    }
+
     //******************************************************************************************
     // Private methods
     //******************************************************************************************
@@ -721,9 +912,11 @@ public class DebateFormatBuilderFromXml {
     }
 
     private void addToErrorLog(String message) {
-        String bullet = " ";
+        String bullet = "\u2022 ";
         String line   = bullet.concat(message);
         mErrorLog.add(line);
+        int lineNumber = (mLocator != null) ? mLocator.getLineNumber() : -1;
+        mErrorLogEntries.add(new ErrorLogEntry(lineNumber, mCurrentElement, message));
     }
 
     /**
@@ -732,27 +925,75 @@ public class DebateFormatBuilderFromXml {
      */
     private void logXmlError(Exception e) {
         addToErrorLog(e.getMessage());
-        Log.e("logXmlError", e.getMessage());
     }
 
     /**
      * Logs an XML-related error from a string resource.
-     * @param resId the resource ID of the string resource
+     * @param name the name of the string resource (see {@link FormatStrings})
      */
-    private void logXmlError(int resId) {
-        addToErrorLog(mContext.getString(resId));
-        Log.e("logXmlError", mContext.getString(resId));
+    private void logXmlError(String name) {
+        addToErrorLog(mStrings.getString(name));
     }
 
     /**
      * Logs an XML-related error from a string resource and formats according to
      * <code>String.format</code>
-     * @param resId the resource ID of the string resource
+     * @param name the name of the string resource (see {@link FormatStrings})
      * @param formatArgs arguments to pass to <code>String.format</code>
      */
-    private void logXmlError(int resId, Object... formatArgs) {
-        addToErrorLog(mContext.getString(resId, formatArgs));
-        Log.e("logXmlError", mContext.getString(resId, formatArgs));
+    private void logXmlError(String name, Object... formatArgs) {
+        addToErrorLog(mStrings.getString(name, formatArgs));
+    }
+
+    /**
+     * Parses an XML file with a namespace-aware SAX parser.  This is equivalent to
+     * <code>android.util.Xml.parse()</code>, but doesn't need Android.  The file can't use a
+     * document type declaration or external entities; see <code>disallowExternalEntities()</code>.
+     * @param is an <code>InputStream</code> for an XML file to parse
+     * @param handler the <code>ContentHandler</code> to receive the SAX events
+     * @throws IOException if thrown by the attempt to use the <code>InputStream</code>
+     * @throws SAXException if thrown by the XML parser (SAX)
+     */
+    private static void parseXml(InputStream is, ContentHandler handler)
+            throws IOException, SAXException {
+        XMLReader reader;
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            disallowExternalEntities(factory);
+            reader = factory.newSAXParser().getXMLReader();
+        } catch (ParserConfigurationException e) {
+            throw new SAXException(e);
+        }
+        InputSource source = new InputSource(is);
+        source.setEncoding("UTF-8");
+        reader.setEntityResolver(new RefusingEntityResolver());
+        reader.setContentHandler(handler);
+        reader.setErrorHandler(new DefaultHandler()); // throw fatal errors without printing them
+        reader.parse(source);
+    }
+
+    /**
+     * Stops a SAX parser from reading anything but the file it is given.  Document type
+     * declarations are refused outright, which rules out all entities.  Not every parser
+     * supports that (nor the features that turn off external entities), so external entities
+     * are also refused when they are resolved.
+     * @param factory the <code>SAXParserFactory</code> to set up, before the parser is made
+     */
+    private static void disallowExternalEntities(SAXParserFactory factory) {
+        trySetFeature(factory, FEATURE_DISALLOW_DOCTYPE_DECL, true);
+        trySetFeature(factory, FEATURE_EXTERNAL_GENERAL_ENTITIES, false);
+        trySetFeature(factory, FEATURE_EXTERNAL_PARAMETER_ENTITIES, false);
+    }
+
+    private static void trySetFeature(SAXParserFactory factory, String name, boolean value) {
+        try {
+            factory.setFeature(name, value);
+        } catch (ParserConfigurationException e) {
+            // Not supported by this parser; the entity resolver still refuses external entities.
+        } catch (SAXException e) {
+            // Likewise
+        }
     }
 
 }
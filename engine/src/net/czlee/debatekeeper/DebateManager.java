@@ -0,0 +1,674 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * DebateManager manages a debate by keeping track of speeches and running the speech timers.
+ *
+ * It is given a {@link DebateFormat}, which cannot then be changed.  If it must be changed, this
+ * <code>DebateManager</code> must be destroyed and another one created with the new
+ * <code>DebateFormat</code>.
+ *
+ * <p>DebateManager is also capable of:</p>
+ *  <ul>
+ *  <li> navigating forwards and backwards between speakers
+ *  <li> storing times for speeches
+ *  </ul>
+ *
+ * DebateManager is NOT capable of:
+ *  <ul>
+ *  <li> handling the GUI; it publishes each {@link TimerSnapshot} to a
+ *  {@link TimerEventDispatcher}, which tells the GUI (or anything else listening) to update
+ *  </ul>
+ *
+ * The internal mechanics of a single speech are handled by {@link SpeechManager}.
+ *
+ * All timer state is owned by a {@link DebateEventLoop}.  The command methods (e.g.
+ * <code>startTimer()</code>) can be called from any thread; they are queued and run on the loop
+ * thread.  After every command and every tick, the loop thread publishes a new
+ * {@link TimerSnapshot}.  The GUI should take one snapshot using <code>getSnapshot()</code>,
+ * render everything from it, and then release it.  This means that a snapshot taken straight
+ * after a command might not yet reflect that command; a {@link TimerEventDispatcher} event is
+ * published once it does.
+ *
+ * While a speech is loaded, the next and previous speeches are prepared on a background thread:
+ * their speech formats are made, the period for their saved times is found, and a
+ * {@link TimerSnapshot} of how they will look is filled in.  Moving to one of them then just
+ * swaps the prepared speech in, and the GUI can draw it (using <code>getPreparedSnapshot()</code>)
+ * before it is moved to.  An <code>EVENT_SPEECH_PREPARED</code> event is published whenever a
+ * prepared speech is ready.
+ *
+ * @author Chuan-Zheng Lee
+ * @since  2012-06-09
+ */
+
+public class DebateManager implements DebateEventLoop.TimedClient {
+
+    private final DebateFormat    mDebateFormat;
+    private final SpeechManager   mSpeechManager;
+    private final DebateEventLoop mEventLoop;
+
+    private final ArrayList<Long> mSpeechTimes;
+
+    private int mCurrentSpeechIndex;
+
+    // Moves between speeches are numbered, so that the GUI can tell when one has been done.
+    private final AtomicLong mMovesRequested = new AtomicLong(0);
+
+    private TimerEventDispatcher   mEventDispatcher;
+    private volatile TimerSnapshot mSnapshot;
+
+    // Snapshots are reused in turn, so that a new one needn't be created on every tick.
+    private final TimerSnapshot[] mSnapshotRing = new TimerSnapshot[SNAPSHOT_RING_SIZE];
+    private long                  mSnapshotSequenceNumber = 0;
+    private long                  mMoveNumber             = 0; // loop thread only
+    private long[]                mPublishedSpeechTimes   = null;
+    private int                   mPublishedBellCount     = 0;
+
+    // The next and previous speeches, prepared in the background.  A prepared speech is only used
+    // if its generation is the current one; the generation changes whenever a speech is loaded.
+    private static ExecutorService  sPrefetchExecutor   = null;
+    private volatile int            mPrefetchGeneration = 0;
+    private volatile PreparedSpeech mPreparedNext       = null;
+    private volatile PreparedSpeech mPreparedPrevious   = null;
+    private boolean                 mNeighboursStale    = true;
+    private boolean                 mReleased           = false; // loop thread only
+
+    private static final int SNAPSHOT_RING_SIZE = 4;
+
+    private static final String BUNDLE_SUFFIX_INDEX        = ".csi";
+    private static final String BUNDLE_SUFFIX_SPEECH       = ".sm";
+    private static final String BUNDLE_SUFFIX_SPEECH_TIMES = ".st";
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Constructor.
+     * @param df the {@link DebateFormat} for this debate
+     * @param alerts the {@link TimerAlerts} to use for bells
+     * @param loop the {@link DebateEventLoop} that will own the timer state, and whose clock the
+     * timer uses
+     */
+    public DebateManager(DebateFormat df, TimerAlerts alerts, DebateEventLoop loop) {
+        super();
+        this.mDebateFormat  = df;
+        this.mSpeechManager = new SpeechManager(alerts, loop.getClock());
+        this.mEventLoop     = loop;
+        this.mSpeechTimes   = new ArrayList<Long>();
+
+        this.mSpeechTimes.ensureCapacity(df.numberOfSpeeches());
+        for (int i = 0; i < df.numberOfSpeeches(); i++)
+            mSpeechTimes.add((long) 0);
+
+        this.mCurrentSpeechIndex = 0;
+        loadSpeech();
+
+        // Publish a snapshot straight away so that getSnapshot() works before the loop gets to us.
+        // The loop thread doesn't see this object until register() below, so this is safe.
+        publishSnapshot();
+        mEventLoop.register(this);
+    }
+
+    /**
+     * Sets an event dispatcher for this debate manager.
+     * <code>DebateManager</code> will publish every new {@link TimerSnapshot} to the event
+     * dispatcher, together with what has changed since the last one.
+     * @param dispatcher the {@link TimerEventDispatcher}
+     */
+    public void setEventDispatcher(final TimerEventDispatcher dispatcher) {
+        mEventLoop.post(new Runnable() {
+            @Override
+            public void run() {
+                mEventDispatcher = dispatcher;
+                if (dispatcher != null)
+                    dispatcher.publish(mSnapshot, TimerEventDispatcher.EVENT_SPEECH_CHANGE);
+            }
+        });
+    }
+
+    /**
+     * Starts the timer.
+     */
+    public void startTimer() {
+        mEventLoop.post(new Command() {
+            @Override
+            protected void execute() {
+                mSpeechManager.start();
+            }
+        });
+    }
+
+    /**
+     * Stops the timer.
+     */
+    public void stopTimer() {
+        mEventLoop.post(new Command() {
+            @Override
+            protected void execute() {
+                mSpeechManager.stop();
+            }
+        });
+    }
+
+    /**
+     * Resets the current speaker.
+     */
+    public void resetSpeaker() {
+        mEventLoop.post(new Command() {
+            @Override
+            protected void execute() {
+                mSpeechManager.reset();
+            }
+        });
+    }
+
+    /**
+     * Moves to the next speaker.
+     * If already on the last speaker, reloads the last speaker.
+     * @return the number of this move; snapshots whose <code>getMoveNumber()</code> is at least
+     * this number reflect it
+     */
+    public long goToNextSpeaker() {
+        final long moveNumber = mMovesRequested.incrementAndGet();
+        mEventLoop.post(new Command() {
+            @Override
+            protected void execute() {
+                mMoveNumber = moveNumber;
+                saveSpeech();
+                mSpeechManager.stop();
+                if (mCurrentSpeechIndex < mDebateFormat.numberOfSpeeches() - 1)
+                    mCurrentSpeechIndex++;
+                loadSpeech();
+            }
+        });
+        return moveNumber;
+    }
+
+    /**
+     * Moves to the previous speaker.
+     * If already on the first speaker, reloads the first speaker.
+     * @return the number of this move; snapshots whose <code>getMoveNumber()</code> is at least
+     * this number reflect it
+     */
+    public long goToPreviousSpeaker() {
+        final long moveNumber = mMovesRequested.incrementAndGet();
+        mEventLoop.post(new Command() {
+            @Override
+            protected void execute() {
+                mMoveNumber = moveNumber;
+                saveSpeech();
+                mSpeechManager.stop();
+                if (mCurrentSpeechIndex > 0)
+                    mCurrentSpeechIndex--;
+                loadSpeech();
+            }
+        });
+        return moveNumber;
+    }
+
+    /**
+     * Gets the latest {@link TimerSnapshot}.  Values read from the same snapshot are always
+     * consistent with each other.  The snapshot isn't reused until the caller calls
+     * <code>release()</code> on it, which it should do once it's finished with it.  Can be called
+     * from any thread.
+     * @return the latest snapshot
+     */
+    public TimerSnapshot getSnapshot() {
+        while (true) {
+            TimerSnapshot snapshot = mSnapshot;
+            if (snapshot.tryAcquire()) return snapshot;
+        }
+    }
+
+    /**
+     * Returns a {@link TimerSnapshot} of how a speech will look when it is moved to, if it has
+     * been prepared.  Only the speeches either side of the current one are prepared.  The snapshot
+     * is never reused, but it is only meant for drawing: its speech times are those of when it was
+     * prepared.  Can be called from any thread.
+     * @param index the index of the speech
+     * @return the prepared snapshot, or <code>null</code> if that speech hasn't been prepared
+     * (yet)
+     */
+    public TimerSnapshot getPreparedSnapshot(int index) {
+        PreparedSpeech prepared = getPreparedSpeech(index);
+        return (prepared != null) ? prepared.snapshot : null;
+    }
+
+    /**
+     * @return the debate format name
+     */
+    public String getDebateFormatName() {
+        return mDebateFormat.getName();
+    }
+
+    /**
+     * Sets the current speech time.
+     * This method sets the current speech time even if the timer is running.
+     * @param seconds the new time in seconds
+     */
+    public void setCurrentSpeechTime(final long seconds) {
+        mEventLoop.post(new Command() {
+            @Override
+            protected void execute() {
+                mSpeechManager.setCurrentTime(seconds);
+            }
+        });
+    }
+
+    /**
+     * Sets the overtime bell specifications
+     * @param firstBell The number of seconds after the finish time to ring the first overtime bell
+     * @param period The time in between subsequence overtime bells
+     */
+    public void setOvertimeBells(final long firstBell, final long period) {
+        mEventLoop.post(new Command() {
+            @Override
+            protected void execute() {
+                mSpeechManager.setOvertimeBells(firstBell, period);
+
+                // The prepared speeches might have overtime bells in them
+                mPrefetchGeneration++;
+                mNeighboursStale = true;
+            }
+        });
+    }
+
+    /**
+     * Makes this debate match another device's, moving to its speech and matching its timer.
+     * Its times must be in the time base of this debate's event loop's clock, which should be a
+     * {@link ClockSyncFollower}.  Nothing is published unless something changed, so this can be
+     * called with every update from the other device.
+     * @param anchor the other device's {@link TimerAnchor}
+     */
+    public void followAnchor(final TimerAnchor anchor) {
+        mEventLoop.post(new Runnable() {
+            @Override
+            public void run() {
+                int index = anchor.getSpeechIndex();
+                if (index >= mDebateFormat.numberOfSpeeches())
+                    return;
+
+                boolean changed = false;
+                if (index != mCurrentSpeechIndex) {
+                    saveSpeech();
+                    mSpeechManager.stop();
+                    mCurrentSpeechIndex = index;
+                    loadSpeech();
+                    changed = true;
+                }
+                if (mSpeechManager.follow(anchor.getCurrentTime(), anchor.getStatus(),
+                        anchor.getSecondStartTime(), anchor.getSubSecondNanos()))
+                    changed = true;
+
+                if (changed) {
+                    mEventLoop.reschedule(DebateManager.this);
+                    publishState();
+                }
+            }
+        });
+    }
+
+    /**
+     * Saves the state of this <code>DebateManager</code> to a {@link SavedState}.
+     * The state saved is that of the latest {@link TimerSnapshot}.
+     * @param key A String to uniquely distinguish this <code>DebateManager</code> from any other
+     *        objects that might be stored in the same SavedState.
+     * @param bundle The SavedState to which to save this information.
+     */
+    public void saveState(String key, SavedState bundle) {
+        TimerSnapshot snapshot = getSnapshot();
+        try {
+            // Take note of which speech we're on
+            bundle.putInt(key + BUNDLE_SUFFIX_INDEX, snapshot.getSpeechIndex());
+
+            // Save the speech times
+            bundle.putLongArray(key + BUNDLE_SUFFIX_SPEECH_TIMES, snapshot.getSpeechTimes());
+
+            snapshot.saveSpeechState(key + BUNDLE_SUFFIX_SPEECH, bundle);
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    /**
+     * Restores the state of this <code>DebateManager</code> from a {@link SavedState}.
+     * @param key A String to uniquely distinguish this <code>DebateManager</code> from any other
+     *        objects that might be stored in the same SavedState.
+     * @param bundle The SavedState from which to restore this information.
+     */
+    public void restoreState(final String key, SavedState bundle) {
+
+        // The caller may reuse the SavedState before the loop gets to this, so take a copy.
+        final SavedState bundleCopy = bundle.copy();
+
+        mEventLoop.post(new Command() {
+            @Override
+            protected void execute() {
+                // Restore the current speech
+                mCurrentSpeechIndex = bundleCopy.getInt(key + BUNDLE_SUFFIX_INDEX, 0);
+                loadSpeech();
+
+                // If there are saved speech times, restore them as well
+                long[] speechTimes = bundleCopy.getLongArray(key + BUNDLE_SUFFIX_SPEECH_TIMES);
+                if (speechTimes != null)
+                    for (int i = 0; i < speechTimes.length; i++)
+                        mSpeechTimes.set(i, speechTimes[i]);
+                mPublishedSpeechTimes = null;
+
+                mSpeechManager.restoreState(key + BUNDLE_SUFFIX_SPEECH, bundleCopy);
+            }
+        });
+    }
+
+    /**
+     * Cleans up, should be called before deleting.
+     */
+    public void release() {
+        stopTimer();
+        mEventLoop.unregister(this);
+
+        // Do this on the loop thread, so that nothing is prefetched or published after it.  Any
+        // prefetches already queued see that their generation is out of date, and do nothing.
+        mEventLoop.post(new Runnable() {
+            @Override
+            public void run() {
+                mReleased = true;
+                mPrefetchGeneration++;
+                mEventDispatcher = null;
+            }
+        });
+    }
+
+    @Override
+    public long getNextDeadline() {
+        return mSpeechManager.getNextTickTime();
+    }
+
+    @Override
+    public void onDeadline(long now) {
+        mSpeechManager.tick();
+        publishState();
+    }
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    /**
+     * A speech that has been prepared in the background, ready to be moved to.
+     */
+    private static class PreparedSpeech {
+        public final int           generation;
+        public final int           index;
+        public final long          time;
+        public final SpeechFormat  speechFormat;
+        public final PeriodInfo    periodInfo;
+        public final TimerSnapshot snapshot;
+
+        public PreparedSpeech(int generation, int index, long time, SpeechFormat speechFormat,
+                PeriodInfo periodInfo, TimerSnapshot snapshot) {
+            this.generation   = generation;
+            this.index        = index;
+            this.time         = time;
+            this.speechFormat = speechFormat;
+            this.periodInfo   = periodInfo;
+            this.snapshot     = snapshot;
+        }
+    }
+
+    /**
+     * Prepares a speech.  Everything it needs from the loop thread's state is taken when it is
+     * created, on the loop thread; <code>run()</code> is then called on the prefetch thread.
+     */
+    private class PrefetchTask implements Runnable {
+
+        private final int     mGeneration;
+        private final int     mIndex;
+        private final boolean mIsNext;
+        private final long    mTime;
+        private final long    mSequenceNumber;
+        private final long    mMoveNumber;
+        private final long[]  mAllSpeechTimes;
+        private final long    mFirstOvertimeBellTime;
+        private final long    mOvertimeBellPeriod;
+
+        public PrefetchTask(int index, boolean isNext) {
+            mGeneration            = mPrefetchGeneration;
+            mIndex                 = index;
+            mIsNext                = isNext;
+            mTime                  = mSpeechTimes.get(index);
+            mSequenceNumber        = mSnapshotSequenceNumber;
+            mMoveNumber            = DebateManager.this.mMoveNumber;
+            mAllSpeechTimes        = mPublishedSpeechTimes;
+            mFirstOvertimeBellTime = mSpeechManager.getFirstOvertimeBellTime();
+            mOvertimeBellPeriod    = mSpeechManager.getOvertimeBellPeriod();
+        }
+
+        @Override
+        public void run() {
+            if (mGeneration != mPrefetchGeneration) return; // already out of date
+
+            SpeechFormat sf = mDebateFormat.getSpeechFormat(mIndex);
+            if (sf == null) return;
+
+            // Work out the state from a SpeechManager of our own, so that it's exactly what the
+            // real one would show.  It never plays any bells, so it needs no TimerAlerts.
+            SpeechManager sm = new SpeechManager(null);
+            sm.setOvertimeBells(mFirstOvertimeBellTime, mOvertimeBellPeriod);
+            sm.loadSpeech(sf, mTime);
+
+            TimerSnapshot snapshot = new TimerSnapshot();
+            snapshot.set(mSequenceNumber, mMoveNumber, mIndex, mDebateFormat.numberOfSpeeches(),
+                    mDebateFormat.getSpeechName(mIndex), sm, mAllSpeechTimes);
+
+            PreparedSpeech prepared = new PreparedSpeech(mGeneration, mIndex, mTime, sf,
+                    sm.getCurrentPeriodInfo(), snapshot);
+            if (mIsNext) mPreparedNext = prepared;
+            else mPreparedPrevious = prepared;
+
+            // Let the GUI know, so that it can draw the prepared speech
+            mEventLoop.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mGeneration == mPrefetchGeneration && mEventDispatcher != null)
+                        mEventDispatcher.publish(mSnapshot, TimerEventDispatcher.EVENT_SPEECH_PREPARED);
+                }
+            });
+        }
+    }
+
+    /**
+     * Makes the prefetch thread, which runs at low priority so that it doesn't get in the way of
+     * the loop and GUI threads.  There is one prefetch thread for all debates.
+     */
+    private static class PrefetchThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "DebatePrefetch");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    }
+
+    /**
+     * A command to be run on the loop thread, after which the new state is published.
+     */
+    private abstract class Command implements Runnable {
+
+        protected abstract void execute();
+
+        @Override
+        public void run() {
+            execute();
+            mEventLoop.reschedule(DebateManager.this);
+            publishState();
+        }
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    private void saveSpeech() {
+        mSpeechTimes.set(mCurrentSpeechIndex, mSpeechManager.getCurrentTime());
+        mPublishedSpeechTimes = null;
+    }
+
+    private void loadSpeech() {
+        long time = mSpeechTimes.get(mCurrentSpeechIndex);
+
+        // Use the prepared speech if there is one, otherwise prepare it now.
+        PreparedSpeech prepared = getPreparedSpeech(mCurrentSpeechIndex);
+        if (prepared != null && prepared.time == time)
+            mSpeechManager.loadSpeech(prepared.speechFormat, time, prepared.periodInfo);
+        else
+            mSpeechManager.loadSpeech(mDebateFormat.getSpeechFormat(mCurrentSpeechIndex), time);
+
+        // The prepared period info now belongs to mSpeechManager, so it mustn't be used again.
+        mPrefetchGeneration++;
+        mNeighboursStale = true;
+    }
+
+    /**
+     * @return the prepared speech for the given index, or <code>null</code> if there is none in
+     * the current generation
+     */
+    private PreparedSpeech getPreparedSpeech(int index) {
+        int generation = mPrefetchGeneration;
+        PreparedSpeech prepared = mPreparedNext;
+        if (prepared != null && prepared.generation == generation && prepared.index == index)
+            return prepared;
+        prepared = mPreparedPrevious;
+        if (prepared != null && prepared.generation == generation && prepared.index == index)
+            return prepared;
+        return null;
+    }
+
+    /**
+     * @return the prefetch executor shared by all debates, creating it if necessary
+     */
+    private static synchronized ExecutorService getPrefetchExecutor() {
+        if (sPrefetchExecutor == null)
+            sPrefetchExecutor = Executors.newSingleThreadExecutor(new PrefetchThreadFactory());
+        return sPrefetchExecutor;
+    }
+
+    /**
+     * Starts preparing the speeches either side of the current one.  Must be called on the loop
+     * thread, after the speech times have been published.
+     */
+    private void prefetchNeighbours() {
+        mNeighboursStale = false;
+        if (mReleased) return;
+        // The next speech first, since that's where debates usually go
+        if (mCurrentSpeechIndex < mDebateFormat.numberOfSpeeches() - 1)
+            getPrefetchExecutor().execute(new PrefetchTask(mCurrentSpeechIndex + 1, true));
+        if (mCurrentSpeechIndex > 0)
+            getPrefetchExecutor().execute(new PrefetchTask(mCurrentSpeechIndex - 1, false));
+    }
+
+    /**
+     * Publishes a new snapshot and tells the GUI about it.  Must be called on the loop thread.
+     */
+    private void publishState() {
+        TimerSnapshot previous = mSnapshot;
+        publishSnapshot();
+        if (mEventDispatcher != null)
+            mEventDispatcher.publish(mSnapshot, getEvents(previous, mSnapshot));
+    }
+
+    /**
+     * Works out what has changed between two snapshots.  The previous snapshot is still intact,
+     * since the ring never reuses the snapshot just replaced.  Must be called on the loop thread.
+     * @return a combination of the <code>TimerEventDispatcher.EVENT_*</code> bits
+     */
+    private int getEvents(TimerSnapshot previous, TimerSnapshot current) {
+        int events = 0;
+        int bellCount = mSpeechManager.getBellCount();
+
+        if (bellCount != mPublishedBellCount) {
+            events |= TimerEventDispatcher.EVENT_BELL;
+            mPublishedBellCount = bellCount;
+        }
+        if (previous.getCurrentTime() != current.getCurrentTime())
+            events |= TimerEventDispatcher.EVENT_TICK;
+        if (previous.getStatus() != current.getStatus())
+            events |= TimerEventDispatcher.EVENT_STATE_CHANGE;
+        if (previous.getSpeechIndex() != current.getSpeechIndex())
+            events |= TimerEventDispatcher.EVENT_SPEECH_CHANGE;
+        if (!objectsEqual(previous.getPeriodDescription(), current.getPeriodDescription())
+                || !objectsEqual(previous.getPeriodBackgroundColor(), current.getPeriodBackgroundColor()))
+            events |= TimerEventDispatcher.EVENT_PERIOD_CHANGE;
+
+        return events;
+    }
+
+    /**
+     * Fills in a snapshot with the current state.  Must be called on the loop thread.
+     * @return <code>false</code> if the snapshot is being read, so was left alone
+     */
+    private boolean fillInSnapshot(TimerSnapshot snapshot) {
+        return snapshot.set(mSnapshotSequenceNumber, mMoveNumber, mCurrentSpeechIndex,
+                mDebateFormat.numberOfSpeeches(), mDebateFormat.getSpeechName(mCurrentSpeechIndex),
+                mSpeechManager, mPublishedSpeechTimes);
+    }
+
+    private static boolean objectsEqual(Object a, Object b) {
+        return (a == null) ? b == null : a.equals(b);
+    }
+
+    private void publishSnapshot() {
+
+        // The speech times only change when moving between speeches, so only copy them then.
+        // The copy is shared by all snapshots published until the next change.
+        if (mPublishedSpeechTimes == null) {
+            mPublishedSpeechTimes = new long[mSpeechTimes.size()];
+            for (int i = 0; i < mSpeechTimes.size(); i++)
+                mPublishedSpeechTimes[i] = mSpeechTimes.get(i);
+        }
+
+        // Take the next snapshot in the ring.  This is never the one currently published.  If
+        // someone is still reading it, leave it to them and put a new one in its place.
+        int ringIndex = (int) (mSnapshotSequenceNumber % SNAPSHOT_RING_SIZE);
+        TimerSnapshot snapshot = mSnapshotRing[ringIndex];
+        if (snapshot == null || !fillInSnapshot(snapshot)) {
+            snapshot = new TimerSnapshot();
+            mSnapshotRing[ringIndex] = snapshot;
+            fillInSnapshot(snapshot);
+        }
+        mSnapshotSequenceNumber++;
+
+        mSnapshot = snapshot;
+
+        if (mNeighboursStale)
+            prefetchNeighbours();
+    }
+
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import net.czlee.debatekeeper.SpeechManager.DebatingTimerState;
+import net.czlee.debatekeeper.TimerEventDispatcher.TimerListener;
+
+/**
+ * DebateSimulator runs a whole debate in virtual time, and returns the timeline of bells, pauses
+ * and period changes in each speech.
+ *
+ * It uses the real {@link DebateManager} and {@link SpeechManager}, on a virtual
+ * {@link DebateEventLoop} with a {@link VirtualClock}, so the timeline is exactly what the app
+ * would do.  Each speech is started, run until a given time past its length, then stopped, and
+ * the simulator moves to the next speech.  If a bell pauses the timer, it is started again
+ * straight away.  The clock jumps from one tick to the next, so a debate takes only as long as
+ * the timer's own work, usually thousands of times faster than real time.
+ *
+ * Each <code>DebateSimulator</code> should only be used from one thread at a time.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class DebateSimulator {
+
+    /**
+     * The default time, in seconds, that each speech is run past its length.
+     */
+    public static final long DEFAULT_RUN_OUT_TIME = 60;
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private final DebateFormat mDebateFormat;
+    private long               mFirstOvertimeBellTime = 30;
+    private long               mOvertimeBellPeriod    = 20;
+    private long               mRunOutTime            = DEFAULT_RUN_OUT_TIME;
+    private long               mSimulatedNanos        = 0;
+
+    //******************************************************************************************
+    // Public classes
+    //******************************************************************************************
+
+    /**
+     * Something that happened in a simulated speech.
+     */
+    public static class TimelineEvent {
+
+        public enum Type {
+            /** The period at the start of the speech, or a change of period after a bell */
+            PERIOD,
+            /** A bell in the speech format */
+            BELL,
+            /** An overtime bell */
+            OVERTIME_BELL,
+            /** The timer was paused by a bell */
+            PAUSE,
+        }
+
+        private final Type    mType;
+        private final int     mSpeechIndex;
+        private final String  mSpeechName;
+        private final long    mTime;
+        private final String  mPeriodDescription;
+        private final Integer mPeriodBackgroundColor;
+
+        public TimelineEvent(Type type, int speechIndex, String speechName, long time,
+                String periodDescription, Integer periodBackgroundColor) {
+            mType                  = type;
+            mSpeechIndex           = speechIndex;
+            mSpeechName            = speechName;
+            mTime                  = time;
+            mPeriodDescription     = periodDescription;
+            mPeriodBackgroundColor = periodBackgroundColor;
+        }
+
+        public Type getType() {
+            return mType;
+        }
+
+        public int getSpeechIndex() {
+            return mSpeechIndex;
+        }
+
+        public String getSpeechName() {
+            return mSpeechName;
+        }
+
+        /**
+         * @return the time into the speech, in seconds
+         */
+        public long getTime() {
+            return mTime;
+        }
+
+        /**
+         * @return the description of the period after this event
+         */
+        public String getPeriodDescription() {
+            return mPeriodDescription;
+        }
+
+        /**
+         * @return the background colour of the period after this event, or <code>null</code> if
+         * it has none
+         */
+        public Integer getPeriodBackgroundColor() {
+            return mPeriodBackgroundColor;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(String.format("%d\t%s\t%d:%02d\t%s", mSpeechIndex, mSpeechName,
+                    mTime / 60, mTime % 60, mType));
+            if (mType == Type.PERIOD) {
+                builder.append('\t').append(mPeriodDescription);
+                if (mPeriodBackgroundColor != null)
+                    builder.append(String.format("\t#%08x", mPeriodBackgroundColor));
+            }
+            return builder.toString();
+        }
+    }
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    /**
+     * Runs listeners straight away, on the simulating thread.
+     */
+    private static class DirectExecutor implements Executor {
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    }
+
+    /**
+     * Records the events of one run.  Everything is called on the simulating thread.
+     *
+     * The alerts only say what kind of bells rang, not when, since they are called before the
+     * snapshot for that second is published.  They are added to the timeline when it is.
+     */
+    private static class TimelineRecorder implements TimerAlerts, TimerListener {
+
+        private final ArrayList<TimelineEvent>      mTimeline     = new ArrayList<TimelineEvent>();
+        private final ArrayList<TimelineEvent.Type> mPendingBells = new ArrayList<TimelineEvent.Type>();
+
+        @Override
+        public void makeActive(PeriodInfo pi) {}
+
+        @Override
+        public void makeInactive() {}
+
+        @Override
+        public void triggerAlert(BellInfo bi, PeriodInfo pi) {
+            mPendingBells.add(TimelineEvent.Type.BELL);
+        }
+
+        @Override
+        public void playBell(BellSoundInfo bsi) {
+            mPendingBells.add(TimelineEvent.Type.OVERTIME_BELL);
+        }
+
+        @Override
+        public void wakeUpScreenForPause() {}
+
+        @Override
+        public void onTimerEvent(int events, TimerSnapshot snapshot) {
+            if ((events & TimerEventDispatcher.EVENT_BELL) != 0) {
+                for (int i = 0; i < mPendingBells.size(); i++)
+                    add(mPendingBells.get(i), snapshot);
+                mPendingBells.clear();
+            }
+            if ((events & TimerEventDispatcher.EVENT_STATE_CHANGE) != 0
+                    && snapshot.getStatus() == DebatingTimerState.STOPPED_BY_BELL)
+                add(TimelineEvent.Type.PAUSE, snapshot);
+            if ((events & (TimerEventDispatcher.EVENT_PERIOD_CHANGE
+                    | TimerEventDispatcher.EVENT_SPEECH_CHANGE)) != 0)
+                add(TimelineEvent.Type.PERIOD, snapshot);
+        }
+
+        private void add(TimelineEvent.Type type, TimerSnapshot snapshot) {
+            mTimeline.add(new TimelineEvent(type, snapshot.getSpeechIndex(),
+                    snapshot.getSpeechName(), snapshot.getCurrentTime(),
+                    snapshot.getPeriodDescription(), snapshot.getPeriodBackgroundColor()));
+        }
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Constructor.
+     * @param df the {@link DebateFormat} to simulate.  It isn't changed.
+     */
+    public DebateSimulator(DebateFormat df) {
+        super();
+        mDebateFormat = df;
+    }
+
+    /**
+     * Sets the overtime bells, as for {@link SpeechManager#setOvertimeBells(long, long)}.  By
+     * default, they are the same as a new <code>SpeechManager</code>'s.
+     * @param firstBell the number of seconds after the finish time to ring the first overtime
+     * bell, or 0 for no overtime bells
+     * @param period the time in between subsequent overtime bells, or 0 for only one
+     */
+    public void setOvertimeBells(long firstBell, long period) {
+        mFirstOvertimeBellTime = firstBell;
+        mOvertimeBellPeriod    = period;
+    }
+
+    /**
+     * Sets how long each speech is run past its length.
+     * @param seconds the time in seconds
+     */
+    public void setRunOutTime(long seconds) {
+        mRunOutTime = seconds;
+    }
+
+    /**
+     * Runs the whole debate.
+     * @return every event in the debate, in the order they happened.  Each speech starts with a
+     * {@link TimelineEvent.Type#PERIOD} event at time zero.
+     */
+    public List<TimelineEvent> run() {
+        VirtualClock     clock    = new VirtualClock();
+        DebateEventLoop  loop     = DebateEventLoop.newVirtualLoop(clock);
+        TimelineRecorder recorder = new TimelineRecorder();
+
+        TimerEventDispatcher dispatcher = new TimerEventDispatcher();
+        dispatcher.addListener(recorder, new DirectExecutor());
+
+        DebateManager dm = new DebateManager(mDebateFormat, recorder, loop);
+        dm.setOvertimeBells(mFirstOvertimeBellTime, mOvertimeBellPeriod);
+        dm.setEventDispatcher(dispatcher);
+        loop.runPending();
+
+        int numberOfSpeeches = mDebateFormat.numberOfSpeeches();
+        for (int i = 0; i < numberOfSpeeches; i++) {
+            TimerSnapshot snapshot = dm.getSnapshot();
+            long endTime = snapshot.getSpeechFormat().getSpeechLength() + mRunOutTime;
+            snapshot.release();
+
+            dm.startTimer();
+            loop.runPending();
+            while (true) {
+                snapshot = dm.getSnapshot();
+                long               time   = snapshot.getCurrentTime();
+                DebatingTimerState status = snapshot.getStatus();
+                snapshot.release();
+                if (time >= endTime) break;
+
+                if (status == DebatingTimerState.STOPPED_BY_BELL) {
+                    dm.startTimer();
+                    loop.runPending();
+                }
+                if (!loop.advanceToNextDeadline()) break;
+            }
+            dm.stopTimer();
+
+            if (i < numberOfSpeeches - 1)
+                dm.goToNextSpeaker();
+            loop.runPending();
+        }
+
+        dm.release();
+        loop.runPending();
+        loop.quit();
+
+        mSimulatedNanos += clock.nanoTime();
+        return recorder.mTimeline;
+    }
+
+    /**
+     * @return the total time simulated by all runs so far, in nanoseconds
+     */
+    public long getSimulatedNanos() {
+        return mSimulatedNanos;
+    }
+
+    /**
+     * @return the total time simulated by all runs so far, in seconds
+     */
+    public double getSimulatedSeconds() {
+        return (double) mSimulatedNanos / NANOS_PER_SECOND;
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+/**
+ * EngineLog is where the debate timing engine sends its log messages.  By default, warnings and
+ * errors are written to {@link System#err} and everything else is dropped.  Apps should plug in
+ * their own {@link Backend} with <code>setBackend()</code>, before the engine is used.
+ *
+ * The methods mirror those of <code>android.util.Log</code>.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class EngineLog {
+
+    private static volatile Backend sBackend = new StandardErrorBackend();
+
+    //******************************************************************************************
+    // Public classes
+    //******************************************************************************************
+
+    /**
+     * Receives log messages from the engine.
+     */
+    public interface Backend {
+
+        public static final int VERBOSE = 2;
+        public static final int INFO    = 4;
+        public static final int WARN    = 5;
+        public static final int ERROR   = 6;
+
+        /**
+         * @param priority one of <code>VERBOSE</code>, <code>INFO</code>, <code>WARN</code> and
+         * <code>ERROR</code>
+         * @param tag the source of the message, usually a class name
+         * @param msg the message
+         * @param tr an exception to log with the message, or <code>null</code> if there is none
+         */
+        public void log(int priority, String tag, String msg, Throwable tr);
+    }
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    private static class StandardErrorBackend implements Backend {
+
+        @Override
+        public void log(int priority, String tag, String msg, Throwable tr) {
+            if (priority < WARN) return;
+            System.err.println(tag + ": " + msg);
+            if (tr != null)
+                tr.printStackTrace();
+        }
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    private EngineLog() {}
+
+    /**
+     * Sets where log messages go from now on.
+     * @param backend the {@link Backend}, or <code>null</code> to go back to the default
+     */
+    public static void setBackend(Backend backend) {
+        sBackend = (backend != null) ? backend : new StandardErrorBackend();
+    }
+
+    public static void v(String tag, String msg) {
+        sBackend.log(Backend.VERBOSE, tag, msg, null);
+    }
+
+    public static void i(String tag, String msg) {
+        sBackend.log(Backend.INFO, tag, msg, null);
+    }
+
+    public static void w(String tag, String msg) {
+        sBackend.log(Backend.WARN, tag, msg, null);
+    }
+
+    public static void w(String tag, String msg, Throwable tr) {
+        sBackend.log(Backend.WARN, tag, msg, tr);
+    }
+
+    public static void e(String tag, String msg) {
+        sBackend.log(Backend.ERROR, tag, msg, null);
+    }
+
+    public static void e(String tag, String msg, Throwable tr) {
+        sBackend.log(Backend.ERROR, tag, msg, tr);
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+/**
+ * FormatStrings looks up the strings that the debate format parser and builder need: the names
+ * of the elements and attributes in debate format XML files, and the error messages.
+ *
+ * They are Android string resources, in <code>res/values/xml_formats.xml</code>, but the engine
+ * can't see the app's generated <code>R</code> class, so they are looked up by resource name
+ * instead of by resource ID.  The names are the constants below, which are named after the
+ * resources they stand for.  On Android, {@link ContextStringResources} finds them through a
+ * <code>Context</code>; off Android, the format tools read them straight from the
+ * <code>res/values</code> directory.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public interface FormatStrings {
+
+    // The namespace of debate format XML files
+    public static final String XmlUri = "XmlUri";
+
+    // Element names
+    public static final String XmlElemNameBell         = "XmlElemNameBell";
+    public static final String XmlElemNameInclude      = "XmlElemNameInclude";
+    public static final String XmlElemNameOvertimeBell = "XmlElemNameOvertimeBell";
+    public static final String XmlElemNamePeriod       = "XmlElemNamePeriod";
+    public static final String XmlElemNameResource     = "XmlElemNameResource";
+    public static final String XmlElemNameRoot         = "XmlElemNameRoot";
+    public static final String XmlElemNameSpeech       = "XmlElemNameSpeech";
+    public static final String XmlElemNameSpeechFormat = "XmlElemNameSpeechFormat";
+    public static final String XmlElemNameSpeechesList = "XmlElemNameSpeechesList";
+
+    // Attribute names
+    public static final String XmlAttrNameBellNextPeriod          = "XmlAttrNameBellNextPeriod";
+    public static final String XmlAttrNameBellNumber              = "XmlAttrNameBellNumber";
+    public static final String XmlAttrNameBellPauseOnBell         = "XmlAttrNameBellPauseOnBell";
+    public static final String XmlAttrNameBellSound               = "XmlAttrNameBellSound";
+    public static final String XmlAttrNameBellTime                = "XmlAttrNameBellTime";
+    public static final String XmlAttrNameCommonRef               = "XmlAttrNameCommonRef";
+    public static final String XmlAttrNameIncludeResource         = "XmlAttrNameIncludeResource";
+    public static final String XmlAttrNameOvertimeBellEvery       = "XmlAttrNameOvertimeBellEvery";
+    public static final String XmlAttrNameOvertimeBellFrom        = "XmlAttrNameOvertimeBellFrom";
+    public static final String XmlAttrNameOvertimeBellNumber      = "XmlAttrNameOvertimeBellNumber";
+    public static final String XmlAttrNameOvertimeBellSound       = "XmlAttrNameOvertimeBellSound";
+    public static final String XmlAttrNameOvertimeBellUntil       = "XmlAttrNameOvertimeBellUntil";
+    public static final String XmlAttrNamePeriodBgcolor           = "XmlAttrNamePeriodBgcolor";
+    public static final String XmlAttrNamePeriodDesc              = "XmlAttrNamePeriodDesc";
+    public static final String XmlAttrNameResourceRefCommon       = "XmlAttrNameResourceRefCommon";
+    public static final String XmlAttrNameRootName                = "XmlAttrNameRootName";
+    public static final String XmlAttrNameRootSchemaVersion       = "XmlAttrNameRootSchemaVersion";
+    public static final String XmlAttrNameSpeechFormat            = "XmlAttrNameSpeechFormat";
+    public static final String XmlAttrNameSpeechFormatCountDir    = "XmlAttrNameSpeechFormatCountDir";
+    public static final String XmlAttrNameSpeechFormatFirstPeriod = "XmlAttrNameSpeechFormatFirstPeriod";
+    public static final String XmlAttrNameSpeechFormatLength      = "XmlAttrNameSpeechFormatLength";
+    public static final String XmlAttrNameSpeechName              = "XmlAttrNameSpeechName";
+
+    // Attribute values
+    public static final String XmlAttrValueBellNextPeriodSilent     = "XmlAttrValueBellNextPeriodSilent";
+    public static final String XmlAttrValueBellTimeFinish           = "XmlAttrValueBellTimeFinish";
+    public static final String XmlAttrValueCommonDefault            = "XmlAttrValueCommonDefault";
+    public static final String XmlAttrValueCommonFalse              = "XmlAttrValueCommonFalse";
+    public static final String XmlAttrValueCommonStay               = "XmlAttrValueCommonStay";
+    public static final String XmlAttrValueCommonTrue               = "XmlAttrValueCommonTrue";
+    public static final String XmlAttrValueSpeechFormatCountDirDown = "XmlAttrValueSpeechFormatCountDirDown";
+    public static final String XmlAttrValueSpeechFormatCountDirUp   = "XmlAttrValueSpeechFormatCountDirUp";
+    public static final String XmlAttrValueSpeechFormatCountDirUser = "XmlAttrValueSpeechFormatCountDirUser";
+
+    // Errors found by the XML parser
+    public static final String XmlErrorBellInvalidNumber                = "XmlErrorBellInvalidNumber";
+    public static final String XmlErrorBellInvalidPauseOnBell           = "XmlErrorBellInvalidPauseOnBell";
+    public static final String XmlErrorBellInvalidSound                 = "XmlErrorBellInvalidSound";
+    public static final String XmlErrorBellInvalidTime                  = "XmlErrorBellInvalidTime";
+    public static final String XmlErrorBellNoTime                       = "XmlErrorBellNoTime";
+    public static final String XmlErrorBellOutsideContext               = "XmlErrorBellOutsideContext";
+    public static final String XmlErrorIncludeNoResource                = "XmlErrorIncludeNoResource";
+    public static final String XmlErrorIncludeOutsideSpeechFormat       = "XmlErrorIncludeOutsideSpeechFormat";
+    public static final String XmlErrorOvertimeBellInvalidEvery         = "XmlErrorOvertimeBellInvalidEvery";
+    public static final String XmlErrorOvertimeBellInvalidFrom          = "XmlErrorOvertimeBellInvalidFrom";
+    public static final String XmlErrorOvertimeBellInvalidNumber        = "XmlErrorOvertimeBellInvalidNumber";
+    public static final String XmlErrorOvertimeBellInvalidSound         = "XmlErrorOvertimeBellInvalidSound";
+    public static final String XmlErrorOvertimeBellInvalidUntil         = "XmlErrorOvertimeBellInvalidUntil";
+    public static final String XmlErrorOvertimeBellNoFrom               = "XmlErrorOvertimeBellNoFrom";
+    public static final String XmlErrorOvertimeBellOutsideContext       = "XmlErrorOvertimeBellOutsideContext";
+    public static final String XmlErrorPeriodInvalidColor               = "XmlErrorPeriodInvalidColor";
+    public static final String XmlErrorPeriodNoRef                      = "XmlErrorPeriodNoRef";
+    public static final String XmlErrorPeriodOutsideContext             = "XmlErrorPeriodOutsideContext";
+    public static final String XmlErrorResourceInsideContext            = "XmlErrorResourceInsideContext";
+    public static final String XmlErrorResourceNoRef                    = "XmlErrorResourceNoRef";
+    public static final String XmlErrorResourcePeriodInfoNotFound       = "XmlErrorResourcePeriodInfoNotFound";
+    public static final String XmlErrorRootInvalidSchemaVersion         = "XmlErrorRootInvalidSchemaVersion";
+    public static final String XmlErrorRootNewSchemaVersion             = "XmlErrorRootNewSchemaVersion";
+    public static final String XmlErrorRootNoName                       = "XmlErrorRootNoName";
+    public static final String XmlErrorRootNoSchemaVersion              = "XmlErrorRootNoSchemaVersion";
+    public static final String XmlErrorSomethingOutsideRoot             = "XmlErrorSomethingOutsideRoot";
+    public static final String XmlErrorSpeechFormatInsideContext        = "XmlErrorSpeechFormatInsideContext";
+    public static final String XmlErrorSpeechFormatInvalidCountDir      = "XmlErrorSpeechFormatInvalidCountDir";
+    public static final String XmlErrorSpeechFormatInvalidLength        = "XmlErrorSpeechFormatInvalidLength";
+    public static final String XmlErrorSpeechFormatNoFinishBell         = "XmlErrorSpeechFormatNoFinishBell";
+    public static final String XmlErrorSpeechFormatNoLength             = "XmlErrorSpeechFormatNoLength";
+    public static final String XmlErrorSpeechFormatNoRef                = "XmlErrorSpeechFormatNoRef";
+    public static final String XmlErrorSpeechFormatPeriodInfoNotFound   = "XmlErrorSpeechFormatPeriodInfoNotFound";
+    public static final String XmlErrorSpeechFormatUnexpectedlyNotFound = "XmlErrorSpeechFormatUnexpectedlyNotFound";
+    public static final String XmlErrorSpeechNoFormat                   = "XmlErrorSpeechNoFormat";
+    public static final String XmlErrorSpeechNoName                     = "XmlErrorSpeechNoName";
+    public static final String XmlErrorSpeechOutsideSpeechesList        = "XmlErrorSpeechOutsideSpeechesList";
+    public static final String XmlErrorSpeechesListInsideContext        = "XmlErrorSpeechesListInsideContext";
+
+    // Errors found by the builder
+    public static final String DfbErrorAddSpeechSpeechFormatNotFound = "DfbErrorAddSpeechSpeechFormatNotFound";
+    public static final String DfbErrorBellAfterFinishTime           = "DfbErrorBellAfterFinishTime";
+    public static final String DfbErrorBellDuplicate                 = "DfbErrorBellDuplicate";
+    public static final String DfbErrorOvertimeBellDuplicate         = "DfbErrorOvertimeBellDuplicate";
+    public static final String DfbErrorPeriodInfoDuplicate           = "DfbErrorPeriodInfoDuplicate";
+    public static final String DfbErrorPeriodInfoNotFound            = "DfbErrorPeriodInfoNotFound";
+    public static final String DfbErrorResourceDuplicate             = "DfbErrorResourceDuplicate";
+    public static final String DfbErrorResourceNotFound              = "DfbErrorResourceNotFound";
+    public static final String DfbErrorSpeechFormatDuplicate         = "DfbErrorSpeechFormatDuplicate";
+    public static final String DfbErrorSpeechFormatNotFound          = "DfbErrorSpeechFormatNotFound";
+
+    /**
+     * @param name the name of a string resource, one of the constants in this interface
+     * @return the string
+     */
+    public String getString(String name);
+
+    /**
+     * @param name the name of a string resource, one of the constants in this interface
+     * @param formatArgs arguments to pass to <code>String.format</code>
+     * @return the string, formatted
+     */
+    public String getString(String name, Object... formatArgs);
+
+}
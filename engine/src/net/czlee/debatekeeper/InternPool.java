@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * InternPool canonicalises equal value objects, so that only one copy of each is kept in memory.
+ *
+ * Most debate formats use the same few values over and over again: the same bell sounds, the same
+ * period colours, the same descriptions.  Passing these through an InternPool as they are parsed
+ * means that all the formats in memory share one copy of each.
+ *
+ * The pool only holds weak references, so a value is dropped from the pool once nothing else
+ * refers to it.  Objects in the pool are shared, so they must not be changed after they are
+ * interned.  All methods are thread-safe.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class InternPool<T> {
+
+    /**
+     * A process-wide pool for strings that come from debate format files.
+     */
+    public static final InternPool<String> STRINGS = new InternPool<String>();
+
+    private final WeakHashMap<T, WeakReference<T>> mPool = new WeakHashMap<T, WeakReference<T>>();
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Returns the canonical object equal to the one given.  If there isn't one yet, the given
+     * object becomes the canonical one.
+     * @param value the object to intern, may be <code>null</code>
+     * @return the canonical object equal to <code>value</code>, or <code>null</code> if
+     * <code>value</code> is <code>null</code>
+     */
+    public synchronized T intern(T value) {
+        if (value == null) return null;
+
+        WeakReference<T> ref = mPool.get(value);
+        if (ref != null) {
+            T canonical = ref.get();
+            if (canonical != null) return canonical;
+        }
+
+        mPool.put(value, new WeakReference<T>(value));
+        return value;
+    }
+
+    /**
+     * @return the number of objects currently in the pool
+     */
+    public synchronized int size() {
+        return mPool.size();
+    }
+
+}
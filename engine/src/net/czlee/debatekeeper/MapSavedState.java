@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.util.HashMap;
+
+/**
+ * MapSavedState is a {@link SavedState} kept in a <code>HashMap</code>, for when the engine is
+ * used off Android.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class MapSavedState implements SavedState {
+
+    private final HashMap<String, Object> mValues;
+
+    public MapSavedState() {
+        super();
+        mValues = new HashMap<String, Object>();
+    }
+
+    private MapSavedState(HashMap<String, Object> values) {
+        super();
+        mValues = values;
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    @Override
+    public void putInt(String key, int value) {
+        mValues.put(key, value);
+    }
+
+    @Override
+    public void putLong(String key, long value) {
+        mValues.put(key, value);
+    }
+
+    @Override
+    public void putString(String key, String value) {
+        mValues.put(key, value);
+    }
+
+    @Override
+    public void putLongArray(String key, long[] value) {
+        mValues.put(key, (value != null) ? value.clone() : null);
+    }
+
+    @Override
+    public int getInt(String key, int defaultValue) {
+        Object value = mValues.get(key);
+        return (value instanceof Integer) ? (Integer) value : defaultValue;
+    }
+
+    @Override
+    public long getLong(String key, long defaultValue) {
+        Object value = mValues.get(key);
+        return (value instanceof Long) ? (Long) value : defaultValue;
+    }
+
+    @Override
+    public String getString(String key) {
+        Object value = mValues.get(key);
+        return (value instanceof String) ? (String) value : null;
+    }
+
+    @Override
+    public long[] getLongArray(String key) {
+        Object value = mValues.get(key);
+        return (value instanceof long[]) ? ((long[]) value).clone() : null;
+    }
+
+    @Override
+    public SavedState copy() {
+        // Arrays are cloned on the way in and out, so a shallow copy is enough.
+        return new MapSavedState(new HashMap<String, Object>(mValues));
+    }
+
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * OvertimeSchedule is an immutable description of when overtime bells ring, and what they sound
+ * like.  All times are in seconds after the finish time of the speech.
+ *
+ * A schedule is made of {@link Stage}s.  Each stage rings a first bell, then (optionally) a bell
+ * every so often, up to an optional last time.  A stage ends when the next one starts, so a
+ * schedule whose bells get closer together as the speaker goes further over time is just a few
+ * stages with shorter and shorter periods.
+ *
+ * The stages are compiled into arrays when the schedule is made, so that whether a time is a
+ * bell, and when the next bell is, are worked out with arithmetic, however far into overtime the
+ * time is.  The only search is for the stage, which is a binary search over the few stages.
+ *
+ * Like {@link BellSegment}, an <code>OvertimeSchedule</code> can be shared between any number of
+ * {@link SpeechFormat}s.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class OvertimeSchedule {
+
+    /**
+     * Returned by <code>getFirstBellFromTime()</code> if there are no more bells.
+     */
+    public static final long NO_BELL = -1;
+
+    /**
+     * The last time of a stage that doesn't stop until the next stage starts.
+     */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    /**
+     * A schedule with no bells.
+     */
+    public static final OvertimeSchedule NONE = new OvertimeSchedule(new ArrayList<Stage>());
+
+    private final Stage[]         mStages;
+    private final long[]          mFirstTimes;
+    private final long[]          mPeriods;
+    private final long[]          mLastTimes; // clipped to before the next stage
+    private final BellSoundInfo[] mSounds;
+
+    //******************************************************************************************
+    // Public classes
+    //******************************************************************************************
+
+    /**
+     * One stage of an overtime schedule.  Immutable.
+     */
+    public static class Stage {
+
+        private final long          mFirstTime;
+        private final long          mPeriod;
+        private final long          mLastTime;
+        private final BellSoundInfo mSound;
+
+        /**
+         * Constructor.
+         * @param firstTime the time of the first bell of this stage, in seconds after the finish
+         * time.  Must be greater than zero.
+         * @param period the time between the bells of this stage, or 0 for only one bell
+         * @param lastTime the latest time at which this stage can ring a bell, or
+         * {@link OvertimeSchedule#UNLIMITED}.  Must not be before <code>firstTime</code>.
+         * @param sound the {@link BellSoundInfo} for this stage's bells.  It is interned, so it
+         * must not be changed afterwards.
+         * @throws IllegalArgumentException if any of the times are invalid
+         */
+        public Stage(long firstTime, long period, long lastTime, BellSoundInfo sound) {
+            if (firstTime <= 0)
+                throw new IllegalArgumentException("First overtime bell must be after the finish time");
+            if (period < 0)
+                throw new IllegalArgumentException("Overtime bell period can't be negative");
+            if (lastTime < firstTime)
+                throw new IllegalArgumentException("Last overtime bell can't be before the first");
+            mFirstTime = firstTime;
+            mPeriod    = period;
+            mLastTime  = lastTime;
+            mSound     = sound.intern();
+        }
+
+        public long getFirstTime() {
+            return mFirstTime;
+        }
+
+        public long getPeriod() {
+            return mPeriod;
+        }
+
+        public long getLastTime() {
+            return mLastTime;
+        }
+
+        public BellSoundInfo getSound() {
+            return mSound;
+        }
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Constructor.
+     * @param stages the stages, in any order.  No two may start at the same time.
+     * @throws IllegalArgumentException if two stages start at the same time
+     */
+    public OvertimeSchedule(List<Stage> stages) {
+        super();
+
+        ArrayList<Stage> sorted = new ArrayList<Stage>(stages);
+        Collections.sort(sorted, new Comparator<Stage>() {
+            @Override
+            public int compare(Stage lhs, Stage rhs) {
+                return (lhs.mFirstTime < rhs.mFirstTime) ? -1 : (lhs.mFirstTime == rhs.mFirstTime) ? 0 : 1;
+            }
+        });
+
+        int numberOfStages = sorted.size();
+        mStages     = sorted.toArray(new Stage[numberOfStages]);
+        mFirstTimes = new long[numberOfStages];
+        mPeriods    = new long[numberOfStages];
+        mLastTimes  = new long[numberOfStages];
+        mSounds     = new BellSoundInfo[numberOfStages];
+
+        for (int i = 0; i < numberOfStages; i++) {
+            Stage stage = mStages[i];
+            mFirstTimes[i] = stage.mFirstTime;
+            mPeriods[i]    = stage.mPeriod;
+            mLastTimes[i]  = stage.mLastTime;
+            mSounds[i]     = stage.mSound;
+            if (i > 0) {
+                if (mFirstTimes[i] == mFirstTimes[i - 1])
+                    throw new IllegalArgumentException("Two overtime stages start at " + mFirstTimes[i]);
+                mLastTimes[i - 1] = Math.min(mLastTimes[i - 1], mFirstTimes[i] - 1);
+            }
+        }
+    }
+
+    /**
+     * Makes the schedule given by the overtime bell preferences: a first bell, then a bell every
+     * period after that, with no end.
+     * @param firstBell the time of the first bell, in seconds after the finish time, or 0 for no
+     * overtime bells
+     * @param period the time between bells after the first, or 0 for only one bell
+     * @param sound the {@link BellSoundInfo} for the bells
+     * @return the schedule, which is <code>NONE</code> if there are no overtime bells
+     */
+    public static OvertimeSchedule fromPreferences(long firstBell, long period, BellSoundInfo sound) {
+        if (firstBell <= 0)
+            return NONE;
+        ArrayList<Stage> stages = new ArrayList<Stage>(1);
+        stages.add(new Stage(firstBell, Math.max(0, period), UNLIMITED, sound));
+        return new OvertimeSchedule(stages);
+    }
+
+    /**
+     * @return the number of stages in this schedule
+     */
+    public int getNumberOfStages() {
+        return mStages.length;
+    }
+
+    /**
+     * @param index the index of the stage, stages being sorted by the time they start
+     * @return the stage, as it was given to the constructor
+     */
+    public Stage getStage(int index) {
+        return mStages[index];
+    }
+
+    /**
+     * @return <code>true</code> if this schedule has no bells
+     */
+    public boolean isEmpty() {
+        return mStages.length == 0;
+    }
+
+    /**
+     * @param overtime a time in seconds after the finish time
+     * @return <code>true</code> if there is an overtime bell at exactly that time
+     */
+    public boolean isBellTime(long overtime) {
+        int index = getStageIndex(overtime);
+        if (index < 0 || overtime > mLastTimes[index])
+            return false;
+        long sinceFirst = overtime - mFirstTimes[index];
+        if (sinceFirst == 0)
+            return true;
+        return mPeriods[index] > 0 && sinceFirst % mPeriods[index] == 0;
+    }
+
+    /**
+     * @param overtime a time in seconds after the finish time.  This may be negative.
+     * @return the time of the first bell at or after that time, in seconds after the finish time,
+     * or {@link #NO_BELL} if there are no more bells
+     */
+    public long getFirstBellFromTime(long overtime) {
+        int index = getStageIndex(overtime);
+        if (index < 0)
+            return (mStages.length > 0) ? mFirstTimes[0] : NO_BELL;
+
+        long firstTime = mFirstTimes[index];
+        long period    = mPeriods[index];
+        if (overtime == firstTime)
+            return firstTime;
+        if (period > 0 && overtime <= mLastTimes[index]) {
+            long bellTime = firstTime + ((overtime - firstTime + period - 1) / period) * period;
+            if (bellTime <= mLastTimes[index])
+                return bellTime;
+        }
+
+        // Nothing more in this stage, so it's the start of the next one
+        return (index + 1 < mStages.length) ? mFirstTimes[index + 1] : NO_BELL;
+    }
+
+    /**
+     * @param overtime a time in seconds after the finish time, which should be a bell time
+     * @return the {@link BellSoundInfo} for a bell at that time, or <code>null</code> if it is
+     * before the first bell
+     */
+    public BellSoundInfo getBellSoundInfo(long overtime) {
+        int index = getStageIndex(overtime);
+        return (index >= 0) ? mSounds[index] : null;
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * @return the index of the last stage that starts at or before the given time, or -1 if
+     * there is none
+     */
+    private int getStageIndex(long overtime) {
+        int index = Arrays.binarySearch(mFirstTimes, overtime);
+        return (index >= 0) ? index : -index - 2;
+    }
+
+}
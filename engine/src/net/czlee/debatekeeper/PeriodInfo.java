@@ -17,7 +17,6 @@
 
 package net.czlee.debatekeeper;
 
-import android.os.Bundle;
 
 /**
  * PeriodInfo is a passive data class that holds information about a period *between* bells.
@@ -31,16 +30,22 @@ import android.os.Bundle;
  * In most cases, its members should be set and final upon construction.  "Working copies" should
  * use the update() and restoreState() methods.
  *
+ * PeriodInfos that come from debate format files are interned using <code>intern()</code>, so
+ * that formats share a single copy of each distinct period.  Interned PeriodInfos must never be
+ * changed.
+ *
  * @author Chuan-Zheng Lee
  * @since  2012-05-12
  */
 public class PeriodInfo {
 
+    private static final InternPool<PeriodInfo> INTERN_POOL = new InternPool<PeriodInfo>();
+
     // The meaning of "null" in both these objects is "do not change from what it is currently".
     protected String  mDescription      = null;
     protected Integer mBackgroundColor  = null; // Use Integer so that we can also use null.
 
-    // Bundle suffixes
+    // SavedState suffixes
     private final String BUNDLE_SUFFIX_DESC = ".d";
     private final String BUNDLE_SUFFIX_BGCOLOR = ".b";
 
@@ -66,6 +71,32 @@ public class PeriodInfo {
         return mBackgroundColor;
     }
 
+    /**
+     * Returns the canonical <code>PeriodInfo</code> equal to this one, in the same way as
+     * <code>String.intern()</code>.  The returned object is shared, and must not be changed.
+     * @return the canonical <code>PeriodInfo</code>
+     */
+    public PeriodInfo intern() {
+        mDescription = InternPool.STRINGS.intern(mDescription);
+        return INTERN_POOL.intern(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PeriodInfo)) return false;
+        PeriodInfo pi = (PeriodInfo) o;
+        return ((mDescription == null) ? pi.mDescription == null : mDescription.equals(pi.mDescription))
+                && ((mBackgroundColor == null) ? pi.mBackgroundColor == null : mBackgroundColor.equals(pi.mBackgroundColor));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (mDescription == null) ? 0 : mDescription.hashCode();
+        result = 31 * result + ((mBackgroundColor == null) ? 0 : mBackgroundColor.hashCode());
+        return result;
+    }
+
     /**
      * Updates this <code>PeriodInfo</code> using the information in another PeriodInfo.
      * It replaces members if they are not null, and leaves them as they are if they are null.
@@ -88,25 +119,25 @@ public class PeriodInfo {
     }
 
     /**
-     * Saves the state of this <code>PeriodInfo</code> to a {@link Bundle}.
+     * Saves the state of this <code>PeriodInfo</code> to a {@link SavedState}.
      * @param key A String to uniquely distinguish this <code>PeriodInfo</code> from any other
-     *        objects that might be stored in the same Bundle.
-     * @param bundle The Bundle to which to save this information.
+     *        objects that might be stored in the same SavedState.
+     * @param bundle The SavedState to which to save this information.
      */
-    public void saveState(String key, Bundle bundle) {
+    public void saveState(String key, SavedState bundle) {
         bundle.putString(key + BUNDLE_SUFFIX_DESC, mDescription);
         bundle.putInt(key + BUNDLE_SUFFIX_BGCOLOR, mBackgroundColor);
     }
 
     /**
-     * Restores the state of this <code>PeriodInfo</code> from a {@link Bundle}.
+     * Restores the state of this <code>PeriodInfo</code> from a {@link SavedState}.
      * @param key A String to uniquely distinguish this <code>PeriodInfo</code> from any other
-     *        objects that might be stored in the same Bundle.
-     * @param bundle The Bundle from which to restore this information.
+     *        objects that might be stored in the same SavedState.
+     * @param bundle The SavedState from which to restore this information.
      */
-    public void restoreState(String key, Bundle bundle) {
+    public void restoreState(String key, SavedState bundle) {
         String description = bundle.getString(key + BUNDLE_SUFFIX_DESC);
         if (description != null) mDescription = description;
-        mBackgroundColor = bundle.getInt(key + BUNDLE_SUFFIX_BGCOLOR);
+        mBackgroundColor = bundle.getInt(key + BUNDLE_SUFFIX_BGCOLOR, 0);
     }
 }
\ No newline at end of file
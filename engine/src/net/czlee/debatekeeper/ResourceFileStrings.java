@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * ResourceFileStrings gets string resources straight from an Android <code>res/values</code>
+ * directory, by name, for when the debate format parser is run off Android (e.g. at build time,
+ * or on a server).
+ *
+ * Strings are unescaped in the same way as <code>aapt</code> does for the common cases (quotes,
+ * whitespace and backslash escapes).  Once made, a <code>ResourceFileStrings</code> doesn't
+ * change, so it can be used from several threads at once.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class ResourceFileStrings implements FormatStrings {
+
+    private final HashMap<String, String> mStringsByName = new HashMap<String, String>();
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Constructor.  Reads every string in every XML file in the directory.
+     * @param valuesDirectory the <code>res/values</code> directory
+     * @throws IOException if there was a problem reading the resources
+     */
+    public ResourceFileStrings(File valuesDirectory) throws IOException {
+        super();
+        File[] files = valuesDirectory.listFiles();
+        if (files == null)
+            throw new IOException("Not a directory: " + valuesDirectory);
+        for (int i = 0; i < files.length; i++) {
+            if (files[i].getName().endsWith(".xml"))
+                readStrings(files[i]);
+        }
+    }
+
+    /**
+     * @param name the name of a string resource
+     * @return <code>true</code> if there is a string resource with that name
+     */
+    public boolean hasString(String name) {
+        return mStringsByName.containsKey(name);
+    }
+
+    @Override
+    public String getString(String name) {
+        String value = mStringsByName.get(name);
+        if (value == null)
+            throw new IllegalArgumentException("No string resource called " + name);
+        return value;
+    }
+
+    @Override
+    public String getString(String name, Object... formatArgs) {
+        return String.format(getString(name), formatArgs);
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    private void readStrings(File file) throws IOException {
+        NodeList strings;
+        try {
+            strings = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file)
+                    .getElementsByTagName("string");
+        } catch (ParserConfigurationException e) {
+            throw new IOException(e.getMessage());
+        } catch (SAXException e) {
+            throw new IOException(file + ": " + e.getMessage());
+        }
+
+        for (int i = 0; i < strings.getLength(); i++) {
+            Element element = (Element) strings.item(i);
+            mStringsByName.put(element.getAttribute("name"), unescape(element.getTextContent()));
+        }
+    }
+
+    /**
+     * Unescapes a string resource.  Outside double quotes, runs of whitespace become a single
+     * space; inside them, whitespace is kept.  Backslash escapes are then replaced.
+     */
+    private static String unescape(String raw) {
+        StringBuilder result = new StringBuilder();
+        boolean inQuotes = false;
+        boolean lastWasSpace = false;
+
+        String trimmed = raw.trim();
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (c == '\\' && i + 1 < trimmed.length()) {
+                char next = trimmed.charAt(++i);
+                switch (next) {
+                case 'n': result.append('\n'); break;
+                case 't': result.append('\t'); break;
+                case 'u':
+                    if (i + 4 < trimmed.length()) {
+                        result.append((char) Integer.parseInt(trimmed.substring(i + 1, i + 5), 16));
+                        i += 4;
+                    }
+                    break;
+                default:  result.append(next); break;
+                }
+                lastWasSpace = false;
+            } else if (c == '"') {
+                inQuotes = !inQuotes;
+            } else if (!inQuotes && Character.isWhitespace(c)) {
+                if (!lastWasSpace) result.append(' ');
+                lastWasSpace = true;
+            } else {
+                result.append(c);
+                lastWasSpace = false;
+            }
+        }
+
+        return result.toString();
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+/**
+ * SavedState is somewhere to save the state of a debate, so that it can be restored later.  It is
+ * a map from strings to a few simple types, like <code>android.os.Bundle</code>, which the app
+ * wraps in one of these.  {@link MapSavedState} is a plain Java implementation.
+ *
+ * Keys are shared between all types, so callers should use distinct keys (usually with a prefix
+ * given to them by their own caller).
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public interface SavedState {
+
+    public void putInt(String key, int value);
+
+    public void putLong(String key, long value);
+
+    public void putString(String key, String value);
+
+    public void putLongArray(String key, long[] value);
+
+    /**
+     * @return the value for this key, or <code>defaultValue</code> if there isn't one of this type
+     */
+    public int getInt(String key, int defaultValue);
+
+    /**
+     * @return the value for this key, or <code>defaultValue</code> if there isn't one of this type
+     */
+    public long getLong(String key, long defaultValue);
+
+    /**
+     * @return the value for this key, or <code>null</code> if there isn't one of this type
+     */
+    public String getString(String key);
+
+    /**
+     * @return the value for this key, or <code>null</code> if there isn't one of this type
+     */
+    public long[] getLongArray(String key);
+
+    /**
+     * @return a copy of this <code>SavedState</code>, which isn't changed by later changes to
+     * this one
+     */
+    public SavedState copy();
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import net.czlee.debatekeeper.SpeechManager.DebatingTimerState;
+
+/**
+ * SnapshotDeltaEncoder turns {@link TimerSnapshot}s into compact JSON objects for streaming to
+ * remote viewers, including only the fields that have changed since the last snapshot it
+ * encoded.  Viewers that have all had the same deltas can share an encoder; one that joins
+ * part-way through is sent <code>encodeCurrent()</code> first.
+ *
+ * The fields are:
+ * <ul><li><code>i</code>: the speech index</li>
+ * <li><code>n</code>: the speech name</li>
+ * <li><code>t</code>: the current time in seconds</li>
+ * <li><code>s</code>: the timer state, one of the {@link DebatingTimerState} names</li>
+ * <li><code>p</code>: the period description, or <code>null</code></li>
+ * <li><code>c</code>: the period background colour as an ARGB integer, or <code>null</code></li>
+ * <li><code>b</code>: the time of the next bell, or <code>null</code> if there isn't one</li>
+ * </ul>
+ * A tick while nothing else changes is just <code>{"t":123}</code>.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class SnapshotDeltaEncoder {
+
+    private final StringBuilder mBuilder = new StringBuilder(128);
+
+    private boolean            mHasPrevious = false;
+    private int                mSpeechIndex;
+    private String             mSpeechName;
+    private long               mCurrentTime;
+    private DebatingTimerState mState;
+    private String             mPeriodDescription;
+    private Integer            mPeriodBackgroundColor;
+    private long               mNextBellTime;
+
+    private static final long NO_BELL = -1;
+
+    private static final int FIELD_SPEECH_INDEX       = 0x01;
+    private static final int FIELD_SPEECH_NAME        = 0x02;
+    private static final int FIELD_CURRENT_TIME       = 0x04;
+    private static final int FIELD_STATE              = 0x08;
+    private static final int FIELD_PERIOD_DESCRIPTION = 0x10;
+    private static final int FIELD_PERIOD_COLOR       = 0x20;
+    private static final int FIELD_NEXT_BELL          = 0x40;
+    private static final int ALL_FIELDS               = 0x7f;
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Encodes the fields of a snapshot that have changed since the last one encoded, or all of
+     * them if this is the first.
+     * @param snapshot the {@link TimerSnapshot} to encode
+     * @return a JSON object, or <code>null</code> if nothing has changed
+     */
+    public String encode(TimerSnapshot snapshot) {
+        long nextBellTime = (snapshot.hasNextBell()) ? snapshot.getNextBellTime() : NO_BELL;
+        int changed = (mHasPrevious) ? 0 : ALL_FIELDS;
+
+        if (snapshot.getSpeechIndex() != mSpeechIndex) {
+            mSpeechIndex = snapshot.getSpeechIndex();
+            changed |= FIELD_SPEECH_INDEX;
+        }
+        if (!objectsEqual(snapshot.getSpeechName(), mSpeechName)) {
+            mSpeechName = snapshot.getSpeechName();
+            changed |= FIELD_SPEECH_NAME;
+        }
+        if (snapshot.getCurrentTime() != mCurrentTime) {
+            mCurrentTime = snapshot.getCurrentTime();
+            changed |= FIELD_CURRENT_TIME;
+        }
+        if (snapshot.getStatus() != mState) {
+            mState = snapshot.getStatus();
+            changed |= FIELD_STATE;
+        }
+        if (!objectsEqual(snapshot.getPeriodDescription(), mPeriodDescription)) {
+            mPeriodDescription = snapshot.getPeriodDescription();
+            changed |= FIELD_PERIOD_DESCRIPTION;
+        }
+        if (!objectsEqual(snapshot.getPeriodBackgroundColor(), mPeriodBackgroundColor)) {
+            mPeriodBackgroundColor = snapshot.getPeriodBackgroundColor();
+            changed |= FIELD_PERIOD_COLOR;
+        }
+        if (nextBellTime != mNextBellTime) {
+            mNextBellTime = nextBellTime;
+            changed |= FIELD_NEXT_BELL;
+        }
+
+        mHasPrevious = true;
+
+        if (changed == 0) return null;
+        return build(changed);
+    }
+
+    /**
+     * Encodes the last snapshot encoded in full, without changing what the next delta is from.
+     * This is what a viewer that joins part-way through needs before the deltas that follow.
+     * @return a JSON object, or <code>null</code> if nothing has been encoded since the last
+     * <code>reset()</code>
+     */
+    public String encodeCurrent() {
+        return (mHasPrevious) ? build(ALL_FIELDS) : null;
+    }
+
+    /**
+     * Forgets the last snapshot encoded, so that the next one is encoded in full.
+     */
+    public void reset() {
+        mHasPrevious = false;
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * @param fields the fields to include, as a combination of the <code>FIELD_*</code> bits
+     * @return a JSON object with those fields' current values
+     */
+    private String build(int fields) {
+        mBuilder.setLength(0);
+        mBuilder.append('{');
+        if ((fields & FIELD_SPEECH_INDEX) != 0)
+            appendKey("i").append(mSpeechIndex);
+        if ((fields & FIELD_SPEECH_NAME) != 0)
+            appendString(appendKey("n"), mSpeechName);
+        if ((fields & FIELD_CURRENT_TIME) != 0)
+            appendKey("t").append(mCurrentTime);
+        if ((fields & FIELD_STATE) != 0)
+            appendKey("s").append('"').append(mState.name()).append('"');
+        if ((fields & FIELD_PERIOD_DESCRIPTION) != 0)
+            appendString(appendKey("p"), mPeriodDescription);
+        if ((fields & FIELD_PERIOD_COLOR) != 0)
+            appendKey("c").append((mPeriodBackgroundColor == null) ? "null" : mPeriodBackgroundColor.toString());
+        if ((fields & FIELD_NEXT_BELL) != 0)
+            appendKey("b").append((mNextBellTime == NO_BELL) ? "null" : Long.toString(mNextBellTime));
+        return mBuilder.append('}').toString();
+    }
+
+    private StringBuilder appendKey(String key) {
+        if (mBuilder.length() > 1) mBuilder.append(',');
+        return mBuilder.append('"').append(key).append("\":");
+    }
+
+    private static void appendString(StringBuilder builder, String value) {
+        if (value == null) {
+            builder.append("null");
+            return;
+        }
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':  builder.append("\\\""); break;
+            case '\\': builder.append("\\\\"); break;
+            case '\n': builder.append("\\n");  break;
+            case '\r': builder.append("\\r");  break;
+            case '\t': builder.append("\\t");  break;
+            default:
+                if (c < 0x20) builder.append(String.format("\\u%04x", (int) c));
+                else builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+
+    private static boolean objectsEqual(Object a, Object b) {
+        return (a == null) ? b == null : a.equals(b);
+    }
+
+}
@@ -0,0 +1,464 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SpectatorServer streams a debate's timer to other screens over HTTP, so that audiences and
+ * judges can see the clock (e.g. on a projector).  <code>GET /events</code> is a server-sent event
+ * stream, and <code>GET /</code> is a page that shows it.
+ *
+ * The stream is driven by a {@link TimerEventDispatcher}: the server is a listener, so nothing
+ * polls the {@link DebateManager}, however many viewers there are.  Each snapshot is encoded once
+ * by a {@link SnapshotDeltaEncoder}, and the same bytes are queued for every viewer.  A viewer
+ * first gets a "state" event with everything, then a "delta" event (or "bell", if a bell rang)
+ * with whatever changed.
+ *
+ * Everything runs on one thread, using non-blocking sockets, so viewers cost no threads.  Each
+ * viewer's queue is limited to <code>MAX_PENDING_BYTES</code>.  If a viewer falls that far behind,
+ * its queue is thrown away and replaced by a "state" event, so a slow viewer skips to the present
+ * rather than holding up the others or using more and more memory.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class SpectatorServer implements TimerEventDispatcher.TimerListener {
+
+    /**
+     * The port spectator servers listen on, unless told otherwise.
+     */
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final String TAG = "SpectatorServer";
+
+    private static final int MAX_PENDING_BYTES = 16384;
+    private static final int MAX_REQUEST_BYTES = 2048;
+
+    private static final String STREAM_HEADERS = "HTTP/1.1 200 OK\r\n"
+            + "Content-Type: text/event-stream\r\n"
+            + "Cache-Control: no-cache\r\n"
+            + "Access-Control-Allow-Origin: *\r\n"
+            + "Connection: close\r\n\r\n";
+
+    private static final String PAGE = "<!DOCTYPE html><html><head><meta charset=\"utf-8\">"
+            + "<meta name=\"viewport\" content=\"width=device-width\"><title>Debatekeeper</title>"
+            + "<style>body{margin:0;font-family:sans-serif;text-align:center;background:#000;color:#fff}"
+            + "#n{font-size:6vw;margin-top:4vh}#t{font-size:30vw;font-weight:bold}"
+            + "#p,#b{font-size:4vw}</style></head><body>"
+            + "<div id=\"n\"></div><div id=\"t\"></div><div id=\"p\"></div><div id=\"b\"></div>"
+            + "<script>var s={};"
+            + "function f(x){return Math.floor(x/60)+':'+('0'+x%60).slice(-2)}"
+            + "function u(e){var d=JSON.parse(e.data);for(var k in d)s[k]=d[k];"
+            + "document.getElementById('n').textContent=s.n||'';"
+            + "document.getElementById('t').textContent=f(s.t||0);"
+            + "document.getElementById('p').textContent=s.p||'';"
+            + "document.getElementById('b').textContent=(s.b==null)?'':'Next bell '+f(s.b);"
+            + "var c=s.c;document.body.style.background=(c==null)?'#000':"
+            + "'rgb('+((c>>16)&255)+','+((c>>8)&255)+','+(c&255)+')'}"
+            + "var es=new EventSource('events');"
+            + "['state','delta','bell'].forEach(function(t){es.addEventListener(t,u)});"
+            + "</script></body></html>";
+
+    private final InetSocketAddress                mAddress;
+    private final Thread                           mThread;
+    private final ConcurrentLinkedQueue<Runnable>  mTasks     = new ConcurrentLinkedQueue<Runnable>();
+    private final CountDownLatch                   mListening = new CountDownLatch(1);
+    private final Executor                         mExecutor  = new SelectorExecutor();
+    private volatile Selector                      mSelector  = null;
+    private volatile boolean                       mRunning   = false;
+    private volatile int                           mPort      = -1;
+
+    // Only used on the server thread
+    private final SnapshotDeltaEncoder mEncoder       = new SnapshotDeltaEncoder();
+    private final ArrayList<Viewer>    mViewers       = new ArrayList<Viewer>();
+    private final ByteBuffer           mDiscardBuffer = ByteBuffer.allocate(256);
+    private byte[]                     mFullState     = null;
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    /**
+     * Runs tasks on the server thread, so that listener calls don't need any locking.
+     */
+    private class SelectorExecutor implements Executor {
+
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+            Selector selector = mSelector;
+            if (selector != null) selector.wakeup();
+        }
+    }
+
+    /**
+     * A connection, which becomes a viewer if it asks for the event stream.
+     */
+    private static class Viewer {
+
+        public final SocketChannel          channel;
+        public final ByteBuffer             request       = ByteBuffer.allocate(MAX_REQUEST_BYTES);
+        public final LinkedList<ByteBuffer> pending       = new LinkedList<ByteBuffer>();
+        public int                          pendingBytes  = 0;
+        public boolean                      streaming     = false;
+        public boolean                      closeWhenSent = false;
+        public SelectionKey                 key;
+
+        public Viewer(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private class ServerRunnable implements Runnable {
+
+        @Override
+        public void run() {
+            ServerSocketChannel serverChannel = null;
+            try {
+                mSelector = Selector.open();
+                serverChannel = ServerSocketChannel.open();
+                serverChannel.socket().setReuseAddress(true);
+                serverChannel.socket().bind(mAddress);
+                serverChannel.configureBlocking(false);
+                serverChannel.register(mSelector, SelectionKey.OP_ACCEPT);
+                mPort = serverChannel.socket().getLocalPort();
+            } catch (IOException e) {
+                EngineLog.e(TAG, "Couldn't listen on " + mAddress, e);
+                mRunning = false;
+            }
+            mListening.countDown();
+
+            while (mRunning) {
+                try {
+                    mSelector.select();
+                } catch (IOException e) {
+                    EngineLog.e(TAG, "select() failed", e);
+                    break;
+                }
+
+                Runnable task;
+                while ((task = mTasks.poll()) != null)
+                    task.run();
+
+                Iterator<SelectionKey> keys = mSelector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable())
+                        accept(serverChannel);
+                    else
+                        serve((Viewer) key.attachment(), key);
+                }
+            }
+
+            for (int i = mViewers.size() - 1; i >= 0; i--)
+                close(mViewers.get(i));
+            closeQuietly(serverChannel);
+            try {
+                if (mSelector != null) mSelector.close();
+            } catch (IOException e) {
+                // We're finishing anyway.
+            }
+        }
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Constructor.  Nothing is served until <code>start()</code> is called.
+     * @param address the address to listen on; use port 0 for any free port
+     */
+    public SpectatorServer(InetSocketAddress address) {
+        super();
+        mAddress = address;
+        mThread  = new Thread(new ServerRunnable(), TAG);
+        mThread.setDaemon(true);
+    }
+
+    /**
+     * Starts listening, on the server's own thread.  This doesn't wait for it to start listening;
+     * use <code>awaitListening()</code> for that.
+     */
+    public void start() {
+        mRunning = true;
+        mThread.start();
+    }
+
+    /**
+     * Disconnects every viewer and stops listening.
+     */
+    public void stop() {
+        mRunning = false;
+        Selector selector = mSelector;
+        if (selector != null) selector.wakeup();
+    }
+
+    /**
+     * Adds this server as a listener to a dispatcher, to be called on the server's thread.
+     * @param dispatcher the {@link TimerEventDispatcher} of the debate to show
+     */
+    public void attach(final TimerEventDispatcher dispatcher) {
+        dispatcher.addListener(this, mExecutor);
+
+        // Start from the latest snapshot, so that viewers see something before the next event.
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                TimerSnapshot snapshot = dispatcher.getLatestSnapshot();
+                try {
+                    onTimerEvent(0, snapshot);
+                } finally {
+                    if (snapshot != null) snapshot.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes this server from a dispatcher it was attached to.
+     * @param dispatcher the {@link TimerEventDispatcher}
+     */
+    public void detach(TimerEventDispatcher dispatcher) {
+        dispatcher.removeListener(this);
+    }
+
+    /**
+     * Waits until the server is listening, or has failed to.
+     * @param timeoutMillis the longest to wait, in milliseconds
+     * @return <code>true</code> if the server is listening
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitListening(long timeoutMillis) throws InterruptedException {
+        return mListening.await(timeoutMillis, TimeUnit.MILLISECONDS) && mRunning;
+    }
+
+    /**
+     * @return the port the server is listening on, or -1 if it isn't listening yet
+     */
+    public int getLocalPort() {
+        return mPort;
+    }
+
+    /**
+     * Called on the server's thread.
+     */
+    @Override
+    public void onTimerEvent(int events, TimerSnapshot snapshot) {
+        if (snapshot == null) return;
+        String delta = mEncoder.encode(snapshot);
+        if (delta == null) return;
+
+        String type = ((events & TimerEventDispatcher.EVENT_BELL) != 0) ? "bell" : "delta";
+        byte[] message = toEvent(type, delta);
+        mFullState = toEvent("state", mEncoder.encodeCurrent());
+
+        for (int i = mViewers.size() - 1; i >= 0; i--) {
+            Viewer viewer = mViewers.get(i);
+            if (viewer.streaming)
+                send(viewer, message);
+        }
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    private void accept(ServerSocketChannel serverChannel) {
+        SocketChannel channel;
+        try {
+            channel = serverChannel.accept();
+            if (channel == null) return;
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+        } catch (IOException e) {
+            EngineLog.w(TAG, "Couldn't accept a connection", e);
+            return;
+        }
+
+        Viewer viewer = new Viewer(channel);
+        try {
+            viewer.key = channel.register(mSelector, SelectionKey.OP_READ, viewer);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            return;
+        }
+        mViewers.add(viewer);
+    }
+
+    private void serve(Viewer viewer, SelectionKey key) {
+        try {
+            if (key.isReadable())
+                read(viewer);
+            if (key.isValid() && key.isWritable())
+                flush(viewer);
+        } catch (IOException e) {
+            close(viewer);
+        }
+    }
+
+    /**
+     * Reads the request, and once it's all there, answers it.  After that, anything a viewer
+     * sends is ignored; reading just notices when it goes away.
+     */
+    private void read(Viewer viewer) throws IOException {
+        if (viewer.streaming || viewer.closeWhenSent) {
+            while (true) {
+                mDiscardBuffer.clear();
+                int read = viewer.channel.read(mDiscardBuffer);
+                if (read < 0) throw new IOException("Viewer went away");
+                if (read == 0) return;
+            }
+        }
+
+        if (viewer.channel.read(viewer.request) < 0) throw new IOException("Viewer went away");
+        String request = new String(viewer.request.array(), 0, viewer.request.position(), "ISO-8859-1");
+        if (request.indexOf("\r\n\r\n") < 0 && request.indexOf("\n\n") < 0) {
+            if (!viewer.request.hasRemaining())
+                respond(viewer, "431 Request Header Fields Too Large", "text/plain", "Too large\n");
+            return;
+        }
+
+        String[] requestLine = request.substring(0, request.indexOf('\n')).trim().split(" ");
+        String   path        = (requestLine.length >= 2) ? requestLine[1] : "";
+        int      query       = path.indexOf('?');
+        if (query >= 0) path = path.substring(0, query);
+
+        if (!requestLine[0].equals("GET")) {
+            respond(viewer, "405 Method Not Allowed", "text/plain", "Method not allowed\n");
+        } else if (path.equals("/")) {
+            respond(viewer, "200 OK", "text/html; charset=utf-8", PAGE);
+        } else if (path.equals("/events")) {
+            viewer.streaming = true;
+            send(viewer, STREAM_HEADERS.getBytes("ISO-8859-1"));
+            if (mFullState != null)
+                send(viewer, mFullState);
+        } else {
+            respond(viewer, "404 Not Found", "text/plain", "Not found\n");
+        }
+    }
+
+    private void respond(Viewer viewer, String status, String contentType, String body)
+            throws IOException {
+        byte[] bodyBytes = body.getBytes("UTF-8");
+        String headers = "HTTP/1.1 " + status + "\r\n"
+                + "Content-Type: " + contentType + "\r\n"
+                + "Content-Length: " + bodyBytes.length + "\r\n"
+                + "Connection: close\r\n\r\n";
+        byte[] headerBytes = headers.getBytes("ISO-8859-1");
+        byte[] response = new byte[headerBytes.length + bodyBytes.length];
+        System.arraycopy(headerBytes, 0, response, 0, headerBytes.length);
+        System.arraycopy(bodyBytes, 0, response, headerBytes.length, bodyBytes.length);
+        viewer.closeWhenSent = true;
+        send(viewer, response);
+    }
+
+    /**
+     * Queues bytes for a viewer, and sends as much as can be sent straight away.  If the queue
+     * would go over <code>MAX_PENDING_BYTES</code>, it is replaced by the full state.
+     */
+    private void send(Viewer viewer, byte[] message) {
+        if (viewer.pendingBytes + message.length > MAX_PENDING_BYTES && viewer.streaming
+                && mFullState != null) {
+            dropBacklog(viewer);
+            message = mFullState;
+        }
+        viewer.pending.add(ByteBuffer.wrap(message));
+        viewer.pendingBytes += message.length;
+
+        try {
+            flush(viewer);
+        } catch (IOException e) {
+            close(viewer);
+        }
+    }
+
+    /**
+     * Throws away everything queued for a viewer, except what's left of a message that has been
+     * partly sent, since the rest of it must still go.
+     */
+    private void dropBacklog(Viewer viewer) {
+        ByteBuffer head = viewer.pending.peek();
+        boolean partlySent = head != null && head.position() > 0;
+        viewer.pending.clear();
+        viewer.pendingBytes = 0;
+        if (partlySent) {
+            viewer.pending.add(head);
+            viewer.pendingBytes = head.remaining();
+        }
+    }
+
+    private void flush(Viewer viewer) throws IOException {
+        while (!viewer.pending.isEmpty()) {
+            ByteBuffer head = viewer.pending.peek();
+            int written = viewer.channel.write(head);
+            viewer.pendingBytes -= written;
+            if (head.hasRemaining()) {
+                // The socket is full; carry on when it has room.
+                viewer.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            viewer.pending.poll();
+        }
+        viewer.key.interestOps(SelectionKey.OP_READ);
+        if (viewer.closeWhenSent)
+            close(viewer);
+    }
+
+    private void close(Viewer viewer) {
+        mViewers.remove(viewer);
+        if (viewer.key != null) viewer.key.cancel();
+        closeQuietly(viewer.channel);
+    }
+
+    private static byte[] toEvent(String type, String data) {
+        try {
+            return ("event: " + type + "\ndata: " + data + "\n\n").getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void closeQuietly(Channel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing more to do with it.
+        }
+    }
+
+}
@@ -18,7 +18,6 @@ hich is licensed under the
 package net.czlee.debatekeeper;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 
 /**
  * SpeechFormat is a passive data class that holds information about a speech format.
@@ -32,6 +31,13 @@ import java.util.Iterator;
  * This class doesn't have much brains, but it does have the ability to intelligently pick a
  * useful bell, i.e. the first bell after a time that is given to it.
  *
+ * Bells are held in {@link BellSegment}s, which may be shared with other speech formats.  The
+ * bells of a speech format are the union of its segments, which never have two bells at the same
+ * time, and lookups search each segment.
+ *
+ * A speech format may have its own {@link OvertimeSchedule}.  If it doesn't, the overtime bells
+ * come from the user's preferences.
+ *
  * The SpeechFormat class is processed by BellChain.
  *
  * You can't change the speech length after you've instantiated this object.
@@ -51,8 +57,10 @@ public class SpeechFormat {
     protected CountDirection      mCountDirection  = CountDirection.COUNT_USER;
     protected PeriodInfo          mFirstPeriodInfo = new PeriodInfo(null, null);
 
-    // Note: There is no guarantee that this list is sorted.
-    protected ArrayList<BellInfo> mBells           = new ArrayList<BellInfo>();
+    // Each segment is sorted, but there is no ordering between segments.
+    protected ArrayList<BellSegment> mBellSegments = new ArrayList<BellSegment>();
+
+    protected OvertimeSchedule mOvertimeSchedule = null;
 
     //******************************************************************************************
     // Public methods
@@ -86,25 +94,32 @@ public class SpeechFormat {
     }
 
     /**
-     * Adds a BellInfo to the speech.
-     * This method avoids throwing exceptions.  The caller must be diligent enough not to do
-     * anything weird.  If there are two bells at the same time, it replaces the existing one with
-     * this one.  If this bell is after the finish time, it doesn't care, it just adds it anyway.
-     * @param bi the BellInfo to add
+     * @return this speech format's {@link OvertimeSchedule}, or <code>null</code> if it doesn't
+     * have one, in which case the overtime bells in the user's preferences are used
      */
-    public void addBellInfo(BellInfo bi) {
-
-        // If there is already a bell with this time, remove it
-        Iterator<BellInfo> biIterator = mBells.iterator();
-        BellInfo checkBi;
-        while (biIterator.hasNext()) {
-            checkBi = biIterator.next();
-            if (checkBi.getBellTime() == bi.getBellTime()) {
-                biIterator.remove();
-            }
-        }
+    public OvertimeSchedule getOvertimeSchedule() {
+        return mOvertimeSchedule;
+    }
+
+    /**
+     * @param overtimeSchedule the {@link OvertimeSchedule}, or <code>null</code> to use the
+     * overtime bells in the user's preferences.  It is not copied, so it may be shared with other
+     * speech formats.
+     */
+    public void setOvertimeSchedule(OvertimeSchedule overtimeSchedule) {
+        this.mOvertimeSchedule = overtimeSchedule;
+    }
 
-        this.mBells.add(bi);
+    /**
+     * Adds a {@link BellSegment} to the speech.  The segment is not copied, so it may be shared
+     * with other speech formats.
+     * This method avoids throwing exceptions.  The caller must be diligent enough not to add
+     * segments that have bells at the same time as each other, and not to add bells after the
+     * finish time.
+     * @param segment the BellSegment to add
+     */
+    public void addBellSegment(BellSegment segment) {
+        if (segment.size() > 0) mBellSegments.add(segment);
     }
 
     /**
@@ -113,27 +128,18 @@ public class SpeechFormat {
      * @return the {@link BellInfo} object representing that bell
      */
     public BellInfo getFirstBellFromTime(long seconds) {
-        Iterator<BellInfo> bellIterator = mBells.iterator();
         BellInfo workingBell = null;
-        BellInfo thisBell    = null;
-
-        // We are looking for the *earliest* bell that is *after* the given time.
-        while (bellIterator.hasNext()) {
-            // To replace the current working bell, two conditions have to be met:
-            //  1. This bell is, in fact, after or at the given time.
-            //  2. This bell is before the current working bell, if there is one.
-            //     (If there isn't one, then condition 2 is deemed met.)
-            // We will test the opposite condition, and assign if it survives both.
-            thisBell = bellIterator.next();
-            if (thisBell.getBellTime() < seconds)
+
+        // We are looking for the *earliest* bell that is *after* the given time.  Each segment
+        // gives us its earliest such bell, and we take the earliest of those.
+        for (int i = 0; i < mBellSegments.size(); i++) {
+            BellSegment segment = mBellSegments.get(i);
+            int index = segment.indexOfFirstBellFromTime(seconds);
+            if (index >= segment.size())
                 continue;
-            if (workingBell != null) {
-                if (workingBell.getBellTime() < thisBell.getBellTime()) {
-                    continue;
-                }
-            }
-            // If it survived both negative conditions, assign.
-            workingBell = thisBell;
+            if (workingBell != null && workingBell.getBellTime() < segment.getBellTime(index))
+                continue;
+            workingBell = segment.get(index);
         }
 
         return workingBell;
@@ -145,12 +151,9 @@ public class SpeechFormat {
      * @return the {@link BellInfo} object representing that bell
      */
     public BellInfo getBellAtTime(long seconds) {
-        Iterator<BellInfo> bellIterator = mBells.iterator();
-        BellInfo thisBell    = null;
-
-        while (bellIterator.hasNext()) {
-            thisBell = bellIterator.next();
-            if (thisBell.getBellTime() == seconds)
+        for (int i = 0; i < mBellSegments.size(); i++) {
+            BellInfo thisBell = mBellSegments.get(i).getBellAtTime(seconds);
+            if (thisBell != null)
                 return thisBell;
         }
 
@@ -164,23 +167,32 @@ public class SpeechFormat {
      */
     public PeriodInfo getPeriodInfoForTime(long seconds) {
         PeriodInfo workingPi = new PeriodInfo();
-        Iterator<BellInfo> bellIterator = mBells.iterator();
-        BellInfo thisBell = null;
+        int numberOfSegments = mBellSegments.size();
+        int[] positions = new int[numberOfSegments];
         long latestBellTimeSoFar = 0;
 
         workingPi.update(getFirstPeriodInfo());
 
-        // We are looking for the *latest* bell that is *before* (or at) the given time,
-        // that actually has a descriptor.
-        while (bellIterator.hasNext()) {
-            // To be useful, this bell must *not* be after the given time.
-            // Then, if this bell is the latest bell considered so far, it should replace the
-            // existing information.  If it is not the latest bell considered, it should be added
-            // where the existing information is null, but existing information should not be
-            // changed.
-            thisBell = bellIterator.next();
-            if (thisBell.getBellTime() > seconds)
-                continue;
+        // We go through the bells that are *before* (or at) the given time, in time order, by
+        // merging the segments.  Each bell replaces the existing information, except a bell at
+        // zero, which only adds information where the first period doesn't have any.
+        while (true) {
+            BellSegment earliestSegment = null;
+            int earliestSegmentIndex = 0;
+            for (int i = 0; i < numberOfSegments; i++) {
+                BellSegment segment = mBellSegments.get(i);
+                if (positions[i] >= segment.size() || segment.getBellTime(positions[i]) > seconds)
+                    continue;
+                if (earliestSegment != null && earliestSegment.getBellTime(positions[earliestSegmentIndex])
+                        < segment.getBellTime(positions[i]))
+                    continue;
+                earliestSegment = segment;
+                earliestSegmentIndex = i;
+            }
+
+            if (earliestSegment == null) break;
+
+            BellInfo thisBell = earliestSegment.get(positions[earliestSegmentIndex]++);
             if (thisBell.getBellTime() > latestBellTimeSoFar) {
                 workingPi.update(thisBell.getNextPeriodInfo()); // update and replace info
                 latestBellTimeSoFar = thisBell.getBellTime();   // take note of the new latest bell
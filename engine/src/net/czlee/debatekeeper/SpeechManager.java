@@ -0,0 +1,560 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+
+/**
+ * SpeechManager manages the mechanics of a single speech.  Exactly one instance should exist
+ * during a debate.  <code>SpeechManager</code> can switch between speeches dynamically&mdash;there
+ * is no need to destroy and/or re-create this instance in order to start a new speech.
+ *
+ * SpeechManager is responsible for:<br>
+ *  <ul>
+ *  <li> Keeping time
+ *  <li> Keeping track of, and setting off, bells.
+ *  <li> Keeping track of period information and providing it when asked.
+ *  </ul>
+ *
+ *  SpeechManager doesn't remember anything about speeches that are no longer loaded.
+ *
+ *  SpeechManager does not have a thread of its own.  All of its methods must be called on the
+ *  {@link DebateEventLoop} thread, which calls <code>tick()</code> when <code>getNextTickTime()</code>
+ *  comes around.  Other threads should read state from a {@link TimerSnapshot}.
+ *
+ * @author Chuan-Zheng Lee
+ * @since  2012-06-09
+ *
+ */
+public class SpeechManager {
+
+    private final TimerAlerts        mAlerts;
+    private final TimerClock         mClock;
+    private SpeechFormat             mSpeechFormat;
+    private PeriodInfo               mCurrentPeriodInfo;
+    private DebatingTimerState       mState = DebatingTimerState.NOT_STARTED;
+    private long                     mCurrentTime;
+    private long                     mNextTickTime;
+    private long                     mSubSecondNanos;
+    private long                     mFirstOvertimeBellTime = 30;
+    private long                     mOvertimeBellPeriod    = 20;
+    private OvertimeSchedule         mDefaultOvertimeSchedule;
+    private int                      mBellCount             = 0;
+
+    // The sound of overtime bells from the preferences.  It is interned, like the sounds in
+    // debate formats, so that the alerts only need to prepare it once.
+    private static final BellSoundInfo OVERTIME_BELL_SOUND_INFO = new BellSoundInfo(BellSoundInfo.DEFAULT_SOUND, 3).intern();
+
+    // In nanoseconds, the time base of the TimerClock.  Bells are still on whole seconds, but
+    // time is kept to the nanosecond from the start of each second, so that the GUI can show
+    // fractions of a second if it wants to.
+    private static final long TIMER_DELAY  = 1000000000L;
+    private static final long TIMER_PERIOD = 1000000000L;
+
+    // How far apart two timers' seconds can be before follow() moves this one into line.  Less
+    // than this is within the error of the clock synchronisation.
+    private static final long FOLLOW_TOLERANCE = 20000000L; // 20 ms
+
+    /**
+     * Returned by <code>getNextOvertimeBellTime()</code> if there are no more overtime bells.
+     */
+    public static final long NO_OVERTIME_BELL = -1;
+
+    static final String BUNDLE_SUFFIX_TIME        = ".t";
+    static final String BUNDLE_SUFFIX_STATE       = ".s";
+    static final String BUNDLE_SUFFIX_PERIOD_INFO = ".cpi";
+
+    //******************************************************************************************
+    // Public classes
+    //******************************************************************************************
+    public enum DebatingTimerState {
+        NOT_STARTED,
+        RUNNING,
+        STOPPED_BY_USER,
+        STOPPED_BY_BELL,
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Constructor, using the system clock.
+     * @param alerts the {@link TimerAlerts} to tell about bells, or <code>null</code> if this
+     * instance will never be started
+     */
+    public SpeechManager(TimerAlerts alerts) {
+        this(alerts, TimerClock.SYSTEM);
+    }
+
+    /**
+     * Constructor.
+     * @param alerts the {@link TimerAlerts} to tell about bells, or <code>null</code> if this
+     * instance will never be started
+     * @param clock the {@link TimerClock} to keep time by
+     */
+    public SpeechManager(TimerAlerts alerts, TimerClock clock) {
+        super();
+        this.mAlerts = alerts;
+        this.mClock  = clock;
+        this.mDefaultOvertimeSchedule = OvertimeSchedule.fromPreferences(mFirstOvertimeBellTime,
+                mOvertimeBellPeriod, OVERTIME_BELL_SOUND_INFO);
+    }
+
+    /**
+     * Loads a speech with time zero seconds.
+     * This does the same thing as <code>loadSpeech(sf, 0)</code>.
+     * @param sf The speech format to load
+     * @throws IllegalStateException if the timer is currently running
+     */
+    public void loadSpeech(SpeechFormat sf) {
+        loadSpeech(sf, 0);
+    }
+
+    /**
+     * Loads a speech with a given time
+     * @param sf The speech format to load
+     * @param seconds The time in seconds to load
+     * @throws IllegalStateException if the timer is currently running
+     */
+    public void loadSpeech(SpeechFormat sf, long seconds) {
+        loadSpeech(sf, seconds, (seconds == 0) ? sf.getFirstPeriodInfo() : sf.getPeriodInfoForTime(seconds));
+    }
+
+    /**
+     * Loads a speech with a given time, whose period information has already been worked out
+     * (e.g. in the background).
+     * @param sf The speech format to load
+     * @param seconds The time in seconds to load
+     * @param pi The {@link PeriodInfo} for that time, as returned by
+     * <code>sf.getFirstPeriodInfo()</code> if <code>seconds</code> is zero, or
+     * <code>sf.getPeriodInfoForTime(seconds)</code> otherwise.  It is not copied, so it must not
+     * be used by anything else afterwards.
+     * @throws IllegalStateException if the timer is currently running
+     */
+    public void loadSpeech(SpeechFormat sf, long seconds, PeriodInfo pi) {
+        if (mState == DebatingTimerState.RUNNING)
+            throw new IllegalStateException("Can't load speech while timer running");
+
+        mSpeechFormat = sf;
+        mCurrentTime = seconds;
+        mSubSecondNanos = 0;
+        mCurrentPeriodInfo = pi;
+
+        if (seconds == 0)
+            mState = DebatingTimerState.NOT_STARTED;
+        else
+            mState = DebatingTimerState.STOPPED_BY_USER;
+    }
+
+    /**
+     * Starts the timer.
+     * Calling this while the timer is running has no effect.
+     * Calling this before a speech format has been set has no effect.
+     */
+    public void start() {
+        if (mSpeechFormat == null)
+            return;
+        if (mState == DebatingTimerState.RUNNING)
+            return;
+        // If we were stopped part-way through a second, pick up where we left off.
+        mNextTickTime = mClock.nanoTime() + TIMER_DELAY - mSubSecondNanos;
+        mState = DebatingTimerState.RUNNING;
+        mAlerts.makeActive(mCurrentPeriodInfo);
+    }
+
+    /**
+     * Stops the timer.
+     */
+    public void stop() {
+        if (mState == DebatingTimerState.RUNNING) {
+            // Remember how far through the current second we were
+            long subSecondNanos = mClock.nanoTime() - getSecondStartTime();
+            mSubSecondNanos = Math.max(0, Math.min(TIMER_PERIOD - 1, subSecondNanos));
+        }
+        mState = DebatingTimerState.STOPPED_BY_USER;
+        mAlerts.makeInactive();
+    }
+
+    /**
+     * Advances the timer by one period, and sets off any bells that are due.
+     * This should be called by the event loop when the time returned by
+     * <code>getNextTickTime()</code> has passed.  Has no effect if the timer isn't running.
+     */
+    public void tick() {
+        if (mState != DebatingTimerState.RUNNING)
+            return;
+
+        // Schedule the next tick relative to the last one, not to now, so that we don't drift.
+        mNextTickTime += TIMER_PERIOD;
+
+        // Increment the counter
+        mCurrentTime++;
+
+        // If this is a bell time, raise the bell
+        BellInfo thisBell = mSpeechFormat.getBellAtTime(mCurrentTime);
+        if (thisBell != null)
+            handleBell(thisBell);
+
+        // If this is an overtime bell time, raise a bell
+        if (isOvertimeBellTime(mCurrentTime))
+            doOvertimeBell();
+    }
+
+    /**
+     * @return the time at which <code>tick()</code> should next be called, in the time base of
+     * the {@link TimerClock}, or {@link DebateEventLoop#NO_DEADLINE} if the timer isn't running.
+     */
+    public long getNextTickTime() {
+        if (mState != DebatingTimerState.RUNNING)
+            return DebateEventLoop.NO_DEADLINE;
+        return mNextTickTime;
+    }
+
+    /**
+     * @return the time at which the current second started, in the time base of
+     * the {@link TimerClock}.  Only meaningful while the timer is running.
+     */
+    public long getSecondStartTime() {
+        return mNextTickTime - TIMER_PERIOD;
+    }
+
+    /**
+     * @return how far through the current second the timer was stopped, in nanoseconds.  Only
+     * meaningful while the timer is not running.
+     */
+    public long getSubSecondNanos() {
+        return mSubSecondNanos;
+    }
+
+    /**
+     * Resets the timer, stopping it if necessary.
+     */
+    public void reset() {
+        stop();
+        mCurrentTime = 0;
+        mSubSecondNanos = 0;
+        mCurrentPeriodInfo = mSpeechFormat.getFirstPeriodInfo();
+        mState = DebatingTimerState.NOT_STARTED;
+    }
+
+    /**
+     * @return the current state of the timer
+     */
+    public DebatingTimerState getStatus() {
+        return this.mState;
+    }
+
+    /**
+     * @return the {@link PeriodInfo} object currently appropriate to be displayed to the user
+     */
+    public PeriodInfo getCurrentPeriodInfo() {
+        return mCurrentPeriodInfo;
+    }
+
+    /**
+     * @return the current time in seconds, starting from zero and counting up (always)
+     */
+    public long getCurrentTime() {
+        return mCurrentTime;
+    }
+
+    /**
+     * Returns the next bell time in seconds as a Long object.
+     * @return the next bell time in seconds, or <code>null</code> if there are no more bells.
+     * Note that this can be <code>null</code>.
+     */
+    public Long getNextBellTime() {
+        BellInfo nextBell = getNextBell();
+
+        if (nextBell != null)
+            return nextBell.getBellTime();
+
+        // If no more bell times left, get the next overtime bell, if there is one
+        long overtimeBellTime = getNextOvertimeBellTime();
+        if (overtimeBellTime == NO_OVERTIME_BELL)
+            return null;
+        return overtimeBellTime;
+    }
+
+    /**
+     * @return the next (non-overtime) bell, or <code>null</code> if there are no more bells
+     */
+    public BellInfo getNextBell() {
+        return mSpeechFormat.getFirstBellFromTime(mCurrentTime);
+    }
+
+    /**
+     * Returns the next overtime bell time, strictly after the current time, ignoring any bells
+     * in the speech format.  An overtime bell that rings at the current time has already rung.
+     * @return the next overtime bell time in seconds, or <code>NO_OVERTIME_BELL</code> if there
+     * are no more overtime bells.
+     */
+    public long getNextOvertimeBellTime() {
+        long speechLength     = mSpeechFormat.getSpeechLength();
+        long overtimeBellTime = getOvertimeSchedule().getFirstBellFromTime(mCurrentTime - speechLength + 1);
+        if (overtimeBellTime == OvertimeSchedule.NO_BELL)
+            return NO_OVERTIME_BELL;
+        return speechLength + overtimeBellTime;
+    }
+
+    /**
+     * @return the current {@link SpeechFormat}
+     */
+    public SpeechFormat getSpeechFormat() {
+        return mSpeechFormat;
+    }
+
+    /**
+     * @return <code>true</code> if the next bell will pause the timer, <code>false</code> otherwise.
+     * Returns <code>false</code> if there are no more bells or if there are only overtime bells left.
+     */
+    public boolean isNextBellPause() {
+        BellInfo nextBell = getNextBell();
+        if (nextBell != null)
+            return nextBell.isPauseOnBell();
+        return false;
+    }
+
+    /**
+     * Checks whether the speech is in overtime.
+     * @return <code>true</code> if the current time exceeds the speech length,
+     * <code>false</code> otherwise.
+     * <code>false</code> if the current time and speech length are equal
+     */
+    public boolean isOvertime() {
+        return mCurrentTime > mSpeechFormat.getSpeechLength();
+    }
+
+    /**
+     * Sets the current time.
+     * This method will set the time even if the timer is currently running.
+     * @param seconds the new time in seconds
+     */
+    public void setCurrentTime(long seconds){
+        mCurrentTime = seconds;
+        mSubSecondNanos = 0;
+
+        // If the timer is currently stopped, then change the state to the appropriate stopped state.
+        // If the timer is running, then it will still be running after this.  (This class will
+        // allow this, but the UI probably shouldn't allow editing during running.)  Note that
+        // if the timer is paused by a bell (STOPPED_BY_BELL) then its state will change to either
+        // NOT_STARTED or STOPPED_BY_USER, since the user has now intervened so it's not really a
+        // pause-by-bell anymore.
+        if (mState != DebatingTimerState.RUNNING)
+            mState = (mCurrentTime == 0) ? DebatingTimerState.NOT_STARTED : DebatingTimerState.STOPPED_BY_USER;
+
+        // restore the appropriate period info
+        mCurrentPeriodInfo = mSpeechFormat.getPeriodInfoForTime(seconds);
+    }
+
+    /**
+     * Makes this timer match another device's, given the state of that device's timer.  The times
+     * must be in this timer's clock's time base (see {@link ClockSyncFollower}).  Nothing happens
+     * if this timer already matches, so this can be called with every update from the other device.
+     * No bells are rung for any seconds skipped to catch up: the other device has rung them.
+     * @param seconds the other timer's current time in seconds
+     * @param state the other timer's state
+     * @param secondStartTime when the other timer's current second started, if it is running
+     * @param subSecondNanos how far through the second the other timer was stopped, if it isn't
+     * @return <code>true</code> if anything changed, <code>false</code> otherwise
+     */
+    public boolean follow(long seconds, DebatingTimerState state, long secondStartTime,
+            long subSecondNanos) {
+        if (mSpeechFormat == null)
+            return false;
+
+        if (state == DebatingTimerState.RUNNING) {
+            // Compare when the speech would have started at zero, which is the same whichever
+            // second each timer is up to.
+            long origin = secondStartTime - seconds * TIMER_PERIOD;
+            if (mState == DebatingTimerState.RUNNING
+                    && Math.abs(getSecondStartTime() - mCurrentTime * TIMER_PERIOD - origin) < FOLLOW_TOLERANCE)
+                return false;
+
+            mCurrentTime  = seconds;
+            mNextTickTime = secondStartTime + TIMER_PERIOD;
+            long now = mClock.nanoTime();
+            while (mNextTickTime - now <= 0) {
+                mNextTickTime += TIMER_PERIOD;
+                mCurrentTime++;
+            }
+            mCurrentPeriodInfo = mSpeechFormat.getPeriodInfoForTime(mCurrentTime);
+            if (mState != DebatingTimerState.RUNNING) {
+                mState = DebatingTimerState.RUNNING;
+                mAlerts.makeActive(mCurrentPeriodInfo);
+            }
+            return true;
+        }
+
+        if (mState == state && mCurrentTime == seconds && mSubSecondNanos == subSecondNanos)
+            return false;
+
+        if (mState == DebatingTimerState.RUNNING)
+            mAlerts.makeInactive();
+        mCurrentTime    = seconds;
+        mSubSecondNanos = subSecondNanos;
+        mState          = state;
+        mCurrentPeriodInfo = (seconds == 0) ? mSpeechFormat.getFirstPeriodInfo()
+                : mSpeechFormat.getPeriodInfoForTime(seconds);
+        return true;
+    }
+
+    /**
+     * Sets the overtime bell specifications.  These are only used for speech formats that don't
+     * have their own {@link OvertimeSchedule}.
+     * @param firstBell The number of seconds after the finish time to ring the first overtime bell,
+     * or 0 for no overtime bells
+     * @param period The time in between subsequence overtime bells
+     */
+    public void setOvertimeBells(long firstBell, long period) {
+        mFirstOvertimeBellTime   = firstBell;
+        mOvertimeBellPeriod      = period;
+        mDefaultOvertimeSchedule = OvertimeSchedule.fromPreferences(firstBell, period,
+                OVERTIME_BELL_SOUND_INFO);
+    }
+
+    /**
+     * @return the number of seconds after the finish time at which the first overtime bell rings
+     */
+    public long getFirstOvertimeBellTime() {
+        return mFirstOvertimeBellTime;
+    }
+
+    /**
+     * @return the time in between subsequent overtime bells
+     */
+    public long getOvertimeBellPeriod() {
+        return mOvertimeBellPeriod;
+    }
+
+    /**
+     * @return the number of bells (including overtime bells) rung since this
+     * <code>SpeechManager</code> was created.  Only differences between calls are meaningful.
+     */
+    public int getBellCount() {
+        return mBellCount;
+    }
+
+    /**
+     * Saves the state of this <code>SpeechManager</code> to a {@link SavedState}.
+     * @param key A String to uniquely distinguish this <code>SpeechManager</code> from any other
+     *        objects that might be stored in the same SavedState.
+     * @param bundle The SavedState to which to save this information.
+     */
+    public void saveState(String key, SavedState bundle) {
+        saveState(key, bundle, mCurrentTime, mState, mCurrentPeriodInfo);
+    }
+
+    /**
+     * Saves a given speech state to a {@link SavedState}, in the form that <code>restoreState()</code>
+     * expects.  This allows a {@link TimerSnapshot} to be saved without going near the
+     * <code>SpeechManager</code>.
+     * @param key A String to uniquely distinguish this speech from any other objects that might be
+     *        stored in the same SavedState.
+     * @param bundle The SavedState to which to save this information.
+     * @param time the current time in seconds
+     * @param state the current state
+     * @param pi the current {@link PeriodInfo}
+     */
+    public static void saveState(String key, SavedState bundle, long time, DebatingTimerState state,
+            PeriodInfo pi) {
+        bundle.putLong(key + BUNDLE_SUFFIX_TIME, time);
+        bundle.putString(key + BUNDLE_SUFFIX_STATE, state.name());
+        pi.saveState(key + BUNDLE_SUFFIX_PERIOD_INFO, bundle);
+    }
+
+    /**
+     * Restores the state of this <code>SpeechManager</code> from a {@link SavedState}.
+     * <code>loadSpeech()</code> should be called <b>before</b> this is called.
+     * @param key A String to uniquely distinguish this <code>SpeechManager</code> from any other
+     *        objects that might be stored in the same SavedState.
+     * @param bundle The SavedState from which to restore this information.
+     */
+    public void restoreState(String key, SavedState bundle) {
+        mCurrentTime = bundle.getLong(key + BUNDLE_SUFFIX_TIME, 0);
+        mSubSecondNanos = 0;
+
+        String stateString = bundle.getString(key + BUNDLE_SUFFIX_STATE);
+        if (stateString == null)
+            mState = (mCurrentTime == 0) ? DebatingTimerState.NOT_STARTED : DebatingTimerState.STOPPED_BY_USER;
+        else try {
+            mState = DebatingTimerState.valueOf(stateString);
+        } catch (IllegalArgumentException e) {
+            mState = (mCurrentTime == 0) ? DebatingTimerState.NOT_STARTED : DebatingTimerState.STOPPED_BY_USER;
+        }
+
+        mCurrentPeriodInfo.restoreState(key + BUNDLE_SUFFIX_PERIOD_INFO, bundle);
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * Stops the timer and puts it into the "stopped by bell" state.
+     * Also wakes up the screen so that the user knows.
+     */
+    private void pause() {
+        // Bells are on the second, so we always pause exactly on the second.
+        mSubSecondNanos = 0;
+        mState = DebatingTimerState.STOPPED_BY_BELL;
+        mAlerts.wakeUpScreenForPause();
+    }
+
+    /**
+     * Triggers appropriate user interface elements arising from a bell.
+     * @param bi the {@link BellInfo} to be handled
+     */
+    private void handleBell(BellInfo bi) {
+        EngineLog.v(this.getClass().getSimpleName(), String.format("bell at %s", mCurrentTime));
+        mBellCount++;
+        if (bi.isPauseOnBell())
+            pause();
+        mCurrentPeriodInfo.update(bi.getNextPeriodInfo());
+        mAlerts.triggerAlert(bi, mCurrentPeriodInfo);
+    }
+
+    /**
+     * @return the overtime schedule of the current speech format, or the one from the overtime
+     * bell specifications if it doesn't have one
+     */
+    private OvertimeSchedule getOvertimeSchedule() {
+        OvertimeSchedule schedule = mSpeechFormat.getOvertimeSchedule();
+        return (schedule != null) ? schedule : mDefaultOvertimeSchedule;
+    }
+
+    /**
+     * @return true if this time is an overtime bell
+     */
+    private boolean isOvertimeBellTime(long time) {
+        long overtimeAmount = time - mSpeechFormat.getSpeechLength();
+        if (overtimeAmount <= 0)
+            return false;
+        return getOvertimeSchedule().isBellTime(overtimeAmount);
+    }
+
+    /**
+     * Does an overtime bell.
+     */
+    private void doOvertimeBell() {
+        EngineLog.v(this.getClass().getSimpleName(), String.format("overtime bell at %s", mCurrentTime));
+        mBellCount++;
+        mAlerts.playBell(getOvertimeSchedule().getBellSoundInfo(mCurrentTime - mSpeechFormat.getSpeechLength()));
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+/**
+ * TimerAlerts is how the debate timing engine tells the outside world about bells and the
+ * timer starting and stopping, e.g. to play sounds, flash the screen or show a notification.
+ *
+ * All methods are called on the thread that runs the timer, so implementations that need to do
+ * anything slow should hand it off to another thread.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public interface TimerAlerts {
+
+    /**
+     * Called when the timer starts.
+     * @param pi the current {@link PeriodInfo}
+     */
+    public void makeActive(PeriodInfo pi);
+
+    /**
+     * Called when the timer stops.
+     */
+    public void makeInactive();
+
+    /**
+     * Called when a bell in the speech format rings.
+     * @param bi the {@link BellInfo} of the bell
+     * @param pi the {@link PeriodInfo} from this bell on
+     */
+    public void triggerAlert(BellInfo bi, PeriodInfo pi);
+
+    /**
+     * Called to play a bell that isn't in the speech format, e.g. an overtime bell.
+     * @param bsi the {@link BellSoundInfo} to play
+     */
+    public void playBell(BellSoundInfo bsi);
+
+    /**
+     * Called when a bell pauses the timer, so that the user's attention can be drawn to it.
+     */
+    public void wakeUpScreenForPause();
+
+}
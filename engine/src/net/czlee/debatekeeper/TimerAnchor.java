@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.nio.ByteBuffer;
+
+import net.czlee.debatekeeper.SpeechManager.DebatingTimerState;
+
+/**
+ * TimerAnchor is the part of a debate's state that another device needs to keep its timer in step:
+ * which speech is on, whether it's running, and when its current second started.  The times are
+ * in the time base of the master's {@link TimerClock}, which a {@link ClockSyncFollower} shares.
+ *
+ * Anchors are immutable, so they can be passed between threads freely.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class TimerAnchor {
+
+    /**
+     * The number of bytes <code>write()</code> writes.
+     */
+    static final int ENCODED_SIZE = 8 + 4 + 1 + 8 + 8 + 8;
+
+    private final long               mSequenceNumber;
+    private final int                mSpeechIndex;
+    private final DebatingTimerState mState;
+    private final long               mCurrentTime;
+    private final long               mSecondStartTime;
+    private final long               mSubSecondNanos;
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    public TimerAnchor(long sequenceNumber, int speechIndex, DebatingTimerState state,
+            long currentTime, long secondStartTime, long subSecondNanos) {
+        super();
+        mSequenceNumber  = sequenceNumber;
+        mSpeechIndex     = speechIndex;
+        mState           = state;
+        mCurrentTime     = currentTime;
+        mSecondStartTime = secondStartTime;
+        mSubSecondNanos  = subSecondNanos;
+    }
+
+    /**
+     * Makes an anchor from a {@link TimerSnapshot}.  Everything is copied, so the snapshot can be
+     * released straight afterwards.
+     */
+    public TimerAnchor(TimerSnapshot snapshot) {
+        this(snapshot.getSequenceNumber(), snapshot.getSpeechIndex(), snapshot.getStatus(),
+                snapshot.getCurrentTime(), snapshot.getSecondStartTime(), snapshot.getSubSecondNanos());
+    }
+
+    /**
+     * @return the sequence number of the snapshot this anchor was made from, so that anchors from
+     * the same debate can be put in order
+     */
+    public long getSequenceNumber() {
+        return mSequenceNumber;
+    }
+
+    public int getSpeechIndex() {
+        return mSpeechIndex;
+    }
+
+    public DebatingTimerState getStatus() {
+        return mState;
+    }
+
+    /**
+     * @return the current time in seconds
+     */
+    public long getCurrentTime() {
+        return mCurrentTime;
+    }
+
+    /**
+     * @return the time at which the current second started, in the master's time base.  Only
+     * meaningful while the timer is running.
+     */
+    public long getSecondStartTime() {
+        return mSecondStartTime;
+    }
+
+    /**
+     * @return how far through the current second the timer was stopped, in nanoseconds.  Only
+     * meaningful while the timer is not running.
+     */
+    public long getSubSecondNanos() {
+        return mSubSecondNanos;
+    }
+
+    /**
+     * Writes this anchor to a buffer, taking <code>ENCODED_SIZE</code> bytes.
+     */
+    void write(ByteBuffer buffer) {
+        buffer.putLong(mSequenceNumber);
+        buffer.putInt(mSpeechIndex);
+        buffer.put((byte) mState.ordinal());
+        buffer.putLong(mCurrentTime);
+        buffer.putLong(mSecondStartTime);
+        buffer.putLong(mSubSecondNanos);
+    }
+
+    /**
+     * Reads an anchor written by <code>write()</code>.
+     * @return the anchor, or <code>null</code> if the buffer doesn't hold a valid one
+     */
+    static TimerAnchor read(ByteBuffer buffer) {
+        long sequenceNumber  = buffer.getLong();
+        int  speechIndex     = buffer.getInt();
+        int  stateOrdinal    = buffer.get();
+        long currentTime     = buffer.getLong();
+        long secondStartTime = buffer.getLong();
+        long subSecondNanos  = buffer.getLong();
+
+        DebatingTimerState[] states = DebatingTimerState.values();
+        if (speechIndex < 0 || currentTime < 0 || stateOrdinal < 0 || stateOrdinal >= states.length)
+            return null;
+        return new TimerAnchor(sequenceNumber, speechIndex, states[stateOrdinal], currentTime, secondStartTime,
+                subSecondNanos);
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+/**
+ * TimerClock is the source of time for the debate timing engine.  All times it gives are in
+ * nanoseconds, in an arbitrary time base that only needs to be consistent for one clock, like
+ * {@link System#nanoTime()}.
+ *
+ * Almost everything uses <code>SYSTEM</code>, but other clocks can be plugged in (e.g. to run
+ * debates in virtual time, or to follow another device's clock).
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public interface TimerClock {
+
+    /**
+     * The system clock, {@link System#nanoTime()}.
+     */
+    public static final TimerClock SYSTEM = new TimerClock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * @return the current time in nanoseconds, in this clock's time base
+     */
+    public long nanoTime();
+
+}
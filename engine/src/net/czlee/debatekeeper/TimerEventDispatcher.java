@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TimerEventDispatcher passes timer events from a {@link DebateManager} to any number of
+ * {@link TimerListener}s, e.g. the GUI.
+ *
+ * Each listener is called through an {@link Executor} of its choice (e.g. one that posts to the
+ * GUI thread).  Events are conflated: if a listener hasn't yet been called for earlier events,
+ * it isn't sent another task, but the next time it is called it's told about all the events since
+ * it was last called, together with the latest {@link TimerSnapshot}.  So a slow listener never
+ * falls behind; it just skips ticks.  A listener is never called again until it has returned.
+ * Publishing an event is a volatile write of the snapshot, plus, for each listener that is not
+ * already due to be called, one task for its executor.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class TimerEventDispatcher {
+
+    // Event bits, as given to TimerListener.onTimerEvent()
+    public static final int EVENT_TICK            = 0x01;
+    public static final int EVENT_BELL            = 0x02;
+    public static final int EVENT_PERIOD_CHANGE   = 0x04;
+    public static final int EVENT_STATE_CHANGE    = 0x08;
+    public static final int EVENT_SPEECH_CHANGE   = 0x10;
+    public static final int EVENT_SPEECH_PREPARED = 0x20;
+
+    private final CopyOnWriteArrayList<Subscription> mSubscriptions = new CopyOnWriteArrayList<Subscription>();
+    private volatile TimerSnapshot                   mLatestSnapshot = null;
+
+    //******************************************************************************************
+    // Public classes
+    //******************************************************************************************
+
+    /**
+     * Listens for timer events.
+     */
+    public interface TimerListener {
+
+        /**
+         * Called when something about the timer has changed.
+         * @param events which events have happened since this was last called, as a combination
+         * of <code>EVENT_TICK</code>, <code>EVENT_BELL</code>, etc.  This is 0 if only something
+         * else has changed, e.g. the overtime bells or the saved speech times.
+         * @param snapshot the latest {@link TimerSnapshot}, or <code>null</code> if there is no
+         * longer a debate.  It can only be read until this method returns; after that, it may be
+         * reused.
+         */
+        public void onTimerEvent(int events, TimerSnapshot snapshot);
+    }
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    private class Subscription implements Runnable {
+
+        private final TimerListener mListener;
+        private final Executor      mExecutor;
+        private final AtomicInteger mPendingEvents = new AtomicInteger(0);
+        private final AtomicBoolean mScheduled     = new AtomicBoolean(false);
+        private volatile boolean    mCancelled     = false;
+
+        public Subscription(TimerListener listener, Executor executor) {
+            mListener = listener;
+            mExecutor = executor;
+        }
+
+        /**
+         * Adds events to be delivered, and schedules a delivery if there isn't one already.
+         * Can be called from any thread.
+         */
+        public void notifyEvents(int events) {
+            int pending;
+            do {
+                pending = mPendingEvents.get();
+            } while (!mPendingEvents.compareAndSet(pending, pending | events));
+
+            if (mScheduled.compareAndSet(false, true))
+                mExecutor.execute(this);
+        }
+
+        /**
+         * Delivers all pending events, through the executor.
+         */
+        @Override
+        public void run() {
+            int events = mPendingEvents.getAndSet(0);
+            if (!mCancelled) {
+                TimerSnapshot snapshot = getLatestSnapshot();
+                try {
+                    mListener.onTimerEvent(events, snapshot);
+                } finally {
+                    if (snapshot != null) snapshot.release();
+                }
+            }
+
+            // Only clear the flag after delivering, so that the listener is never called twice at
+            // once, even by an executor with many threads.  Anything published while it was
+            // being called is delivered straight afterwards.
+            mScheduled.set(false);
+            if (mPendingEvents.get() != 0 && mScheduled.compareAndSet(false, true))
+                mExecutor.execute(this);
+        }
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Adds a listener.  Adding the same listener again replaces its executor.
+     * @param listener the {@link TimerListener} to add
+     * @param executor the {@link Executor} through which to call the listener
+     */
+    public void addListener(TimerListener listener, Executor executor) {
+        removeListener(listener);
+        mSubscriptions.add(new Subscription(listener, executor));
+    }
+
+    /**
+     * Removes a listener.  Once this returns, the listener won't be called again by a task that
+     * starts afterwards (one that is already running might still call it).
+     * @param listener the {@link TimerListener} to remove
+     */
+    public void removeListener(TimerListener listener) {
+        for (int i = 0; i < mSubscriptions.size(); i++) {
+            Subscription subscription = mSubscriptions.get(i);
+            if (subscription.mListener == listener) {
+                subscription.mCancelled = true;
+                mSubscriptions.remove(subscription);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Publishes a new snapshot.  Can be called from any thread, but snapshots must be published
+     * in order.
+     * @param snapshot the latest {@link TimerSnapshot}, or <code>null</code> if there is no
+     * longer a debate
+     * @param events the events that led to this snapshot, as a combination of
+     * <code>EVENT_TICK</code>, <code>EVENT_BELL</code>, etc.
+     */
+    public void publish(TimerSnapshot snapshot, int events) {
+        mLatestSnapshot = snapshot;
+        for (int i = 0; i < mSubscriptions.size(); i++)
+            mSubscriptions.get(i).notifyEvents(events);
+    }
+
+    /**
+     * Gets the latest snapshot published.  As with <code>DebateManager.getSnapshot()</code>, the
+     * caller should call <code>release()</code> on it once it's finished with it.
+     * @return the latest snapshot published, or <code>null</code> if there is none
+     */
+    public TimerSnapshot getLatestSnapshot() {
+        while (true) {
+            TimerSnapshot snapshot = mLatestSnapshot;
+            if (snapshot == null || snapshot.tryAcquire()) return snapshot;
+        }
+    }
+
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.czlee.debatekeeper.SpeechManager.DebatingTimerState;
+
+/**
+ * TimerSnapshot is a read-only copy of the state of a debate at a single moment.
+ *
+ * Snapshots are filled in on the {@link DebateEventLoop} thread, which owns all timer state, and
+ * are then published (by a single volatile write) for any other thread to read.  Everything the GUI
+ * needs is worked out once, when the snapshot is filled in, so every value read from the same
+ * snapshot is consistent with every other, and reading it never rescans the bells.
+ *
+ * To avoid creating garbage on every tick, {@link DebateManager} keeps a small ring of snapshots
+ * and reuses them in turn.  A snapshot is never changed while anyone is reading it: readers get
+ * one from <code>DebateManager.getSnapshot()</code>, which counts them in, and call
+ * <code>release()</code> when they've finished with it.  A snapshot that is still being read
+ * when its turn comes round is left to its readers, and a new one takes its place in the ring.
+ * <code>getSequenceNumber()</code> increases by one with every publication.  Snapshots can be
+ * skipped, so to wait for a move between speeches, compare <code>getMoveNumber()</code> with the
+ * number that <code>goToNextSpeaker()</code> or <code>goToPreviousSpeaker()</code> returned.
+ *
+ * {@link DebateManager} also prepares snapshots of the next and previous speeches in the
+ * background, so that the GUI can draw them before they are moved to.  These are never published
+ * or reused, and their sequence number is that of the latest publication when they were prepared.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class TimerSnapshot {
+
+    // The number of readers, and a version that is odd while the snapshot is being filled in.
+    // Together, these make sure a snapshot is never filled in while anyone is reading it.
+    private final AtomicInteger mReaders = new AtomicInteger(0);
+    private volatile int        mVersion = 0;
+
+    private long               mSequenceNumber;
+    private long               mMoveNumber;
+    private int                mSpeechIndex;
+    private int                mNumberOfSpeeches;
+    private String             mSpeechName;
+    private SpeechFormat       mSpeechFormat;
+    private long               mCurrentTime;
+    private long               mSecondStartTime;
+    private long               mSubSecondNanos;
+    private DebatingTimerState mState;
+    private String             mPeriodDescription;
+    private Integer            mPeriodBackgroundColor;
+    private boolean            mHasNextBell;
+    private long               mNextBellTime;
+    private boolean            mNextBellPause;
+    private boolean            mOvertime;
+    private long[]             mSpeechTimes;
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * @return a number that increases by one every time a snapshot is published
+     */
+    public long getSequenceNumber() {
+        return mSequenceNumber;
+    }
+
+    /**
+     * @return the number of the latest move between speeches that this snapshot reflects, as
+     * returned by <code>DebateManager.goToNextSpeaker()</code> or
+     * <code>DebateManager.goToPreviousSpeaker()</code>, or zero if there hasn't been one
+     */
+    public long getMoveNumber() {
+        return mMoveNumber;
+    }
+
+    public int getSpeechIndex() {
+        return mSpeechIndex;
+    }
+
+    public String getSpeechName() {
+        return mSpeechName;
+    }
+
+    public SpeechFormat getSpeechFormat() {
+        return mSpeechFormat;
+    }
+
+    /**
+     * @return the current time in seconds, starting from zero and counting up (always)
+     */
+    public long getCurrentTime() {
+        return mCurrentTime;
+    }
+
+    /**
+     * @return the time at which the current second started, in the time base of
+     * the {@link TimerClock}.  Only meaningful if the timer is running.
+     */
+    public long getSecondStartTime() {
+        return mSecondStartTime;
+    }
+
+    /**
+     * @return how far through the current second the timer was stopped, in nanoseconds.  Only
+     * meaningful if the timer is not running.
+     */
+    public long getSubSecondNanos() {
+        return mSubSecondNanos;
+    }
+
+    public DebatingTimerState getStatus() {
+        return mState;
+    }
+
+    public String getPeriodDescription() {
+        return mPeriodDescription;
+    }
+
+    public Integer getPeriodBackgroundColor() {
+        return mPeriodBackgroundColor;
+    }
+
+    /**
+     * @return <code>true</code> if there is another bell (including overtime bells) to come
+     */
+    public boolean hasNextBell() {
+        return mHasNextBell;
+    }
+
+    /**
+     * @return the next bell time in seconds.  Only meaningful if <code>hasNextBell()</code>
+     * returns <code>true</code>.
+     */
+    public long getNextBellTime() {
+        return mNextBellTime;
+    }
+
+    public boolean isNextBellPause() {
+        return mNextBellPause;
+    }
+
+    public boolean isRunning() {
+        return mState == DebatingTimerState.RUNNING;
+    }
+
+    public boolean isOvertime() {
+        return mOvertime;
+    }
+
+    public int getNumberOfSpeeches() {
+        return mNumberOfSpeeches;
+    }
+
+    public boolean isFirstSpeech() {
+        return mSpeechIndex == 0;
+    }
+
+    public boolean isLastSpeech() {
+        return mSpeechIndex == mNumberOfSpeeches - 1;
+    }
+
+    /**
+     * @return a copy of the saved speech times
+     */
+    public long[] getSpeechTimes() {
+        return mSpeechTimes.clone();
+    }
+
+    /**
+     * Saves the state of the current speech to a {@link SavedState}, in the form that
+     * {@link SpeechManager#restoreState(String, SavedState)} expects.
+     * @param key A String to uniquely distinguish this speech from any other objects that might be
+     *        stored in the same SavedState.
+     * @param bundle The SavedState to which to save this information.
+     */
+    public void saveSpeechState(String key, SavedState bundle) {
+        SpeechManager.saveState(key, bundle, mCurrentTime, mState,
+                new PeriodInfo(mPeriodDescription, mPeriodBackgroundColor));
+    }
+
+    /**
+     * Lets go of a snapshot got from <code>DebateManager.getSnapshot()</code> or
+     * <code>TimerEventDispatcher.getLatestSnapshot()</code>, so that it can be reused.  Nothing
+     * may be read from it afterwards.  A snapshot that is never released is never reused either,
+     * so forgetting to release one only costs garbage.
+     */
+    public void release() {
+        mReaders.decrementAndGet();
+    }
+
+    //******************************************************************************************
+    // Package-private methods
+    //******************************************************************************************
+
+    /**
+     * Counts a reader in, unless the snapshot is being filled in or has been filled in since the
+     * reader found it.  Can be called from any thread.
+     * @return <code>true</code> if the reader was counted in, in which case it must call
+     * <code>release()</code> when it's done, or <code>false</code> if the reader should get the
+     * latest snapshot again
+     */
+    boolean tryAcquire() {
+        int version = mVersion;
+        if ((version & 1) != 0) return false;
+        mReaders.incrementAndGet();
+        if (mVersion != version) {
+            mReaders.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Fills in this snapshot, unless anyone is reading it.  Must only be called on the loop
+     * thread, and never on the snapshot that is currently published, unless this snapshot hasn't
+     * yet been seen by any other thread.
+     * @param sequenceNumber the sequence number of this publication
+     * @param moveNumber the number of the latest move between speeches
+     * @param speechIndex the index of the current speech
+     * @param numberOfSpeeches the number of speeches in the debate
+     * @param speechName the name of the current speech
+     * @param sm the {@link SpeechManager} from which to take the current speech's state
+     * @param speechTimes the saved times of all speeches, which must not be changed afterwards
+     * @return <code>true</code> if the snapshot was filled in, <code>false</code> if it was left
+     * alone because someone is reading it
+     */
+    boolean set(long sequenceNumber, long moveNumber, int speechIndex, int numberOfSpeeches,
+            String speechName, SpeechManager sm, long[] speechTimes) {
+
+        // Mark the snapshot as being filled in before looking for readers.  A reader counts
+        // itself in before checking the version, so one of us always sees the other.
+        mVersion++;
+        if (mReaders.get() != 0) {
+            mVersion++;
+            return false;
+        }
+
+        mSequenceNumber   = sequenceNumber;
+        mMoveNumber       = moveNumber;
+        mSpeechIndex      = speechIndex;
+        mNumberOfSpeeches = numberOfSpeeches;
+        mSpeechName       = speechName;
+        mSpeechFormat     = sm.getSpeechFormat();
+        mCurrentTime      = sm.getCurrentTime();
+        mSecondStartTime  = sm.getSecondStartTime();
+        mSubSecondNanos   = sm.getSubSecondNanos();
+        mState            = sm.getStatus();
+        mSpeechTimes      = speechTimes;
+        mOvertime         = mCurrentTime > mSpeechFormat.getSpeechLength();
+
+        PeriodInfo pi = sm.getCurrentPeriodInfo();
+        mPeriodDescription     = pi.getDescription();
+        mPeriodBackgroundColor = pi.getBackgroundColor();
+
+        // Look through the bells only once
+        BellInfo nextBell = sm.getNextBell();
+        if (nextBell != null) {
+            mHasNextBell   = true;
+            mNextBellTime  = nextBell.getBellTime();
+            mNextBellPause = nextBell.isPauseOnBell();
+        } else {
+            long overtimeBellTime = sm.getNextOvertimeBellTime();
+            mHasNextBell   = overtimeBellTime != SpeechManager.NO_OVERTIME_BELL;
+            mNextBellTime  = overtimeBellTime;
+            mNextBellPause = false;
+        }
+
+        mVersion++;
+        return true;
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+/**
+ * VirtualClock is a {@link TimerClock} that only moves when it is told to.  With a virtual
+ * {@link DebateEventLoop}, it lets a debate be run in simulated time, as fast as the timer's own
+ * work allows (see {@link DebateSimulator}).
+ *
+ * The time can be read from any thread, but should only be moved by one.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class VirtualClock implements TimerClock {
+
+    private volatile long mTime;
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Constructor, starting at time zero.
+     */
+    public VirtualClock() {
+        this(0);
+    }
+
+    /**
+     * Constructor.
+     * @param startTime the time to start at, in nanoseconds
+     */
+    public VirtualClock(long startTime) {
+        super();
+        mTime = startTime;
+    }
+
+    @Override
+    public long nanoTime() {
+        return mTime;
+    }
+
+    /**
+     * Moves the clock forward to a given time.  Has no effect if that time has already passed,
+     * since the clock never goes backwards.
+     * @param time the new time, in nanoseconds
+     */
+    public void advanceTo(long time) {
+        if (time - mTime > 0)
+            mTime = time;
+    }
+
+    /**
+     * Moves the clock forward.
+     * @param nanos how far to move it, in nanoseconds.  Negative values are ignored.
+     */
+    public void advanceBy(long nanos) {
+        if (nanos > 0)
+            mTime += nanos;
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.czlee.debatekeeper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ClockOffsetEstimator}.  The exchanges are made up from a known offset and known
+ * delays, so every estimate is known exactly.  All times are in nanoseconds.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class ClockOffsetEstimatorTest {
+
+    private static final long MS     = 1000000L;
+    private static final long SECOND = 1000 * MS;
+    private static final long START  = 1000 * SECOND;
+
+    //******************************************************************************************
+    // Tests
+    //******************************************************************************************
+
+    @Test
+    public void noSamplesMeansNoEstimate() {
+        assertNull(new ClockOffsetEstimator().estimate());
+    }
+
+    @Test
+    public void symmetricDelayGivesExactOffset() {
+        ClockOffsetEstimator estimator = new ClockOffsetEstimator();
+        addExchange(estimator, START, 5 * MS, 2 * MS, 2 * MS);
+
+        ClockOffsetEstimator.Estimate estimate = estimator.estimate();
+        assertEquals(5 * MS, estimate.getOffset(START));
+        assertEquals(4 * MS, estimate.getDelay());
+        assertEquals(2 * MS, estimate.getErrorBound(START));
+        assertEquals(0.0, estimate.getSkew(), 0.0);
+    }
+
+    @Test
+    public void asymmetricDelayIsWithinErrorBound() {
+        // 1 ms there and 3 ms back looks like the master is 1 ms further behind than it is.
+        ClockOffsetEstimator estimator = new ClockOffsetEstimator();
+        addExchange(estimator, START, 5 * MS, 1 * MS, 3 * MS);
+
+        ClockOffsetEstimator.Estimate estimate = estimator.estimate();
+        assertEquals(4 * MS, estimate.getOffset(START));
+        assertEquals(2 * MS, estimate.getErrorBound(START));
+        assertTrue(Math.abs(estimate.getOffset(START) - 5 * MS) <= estimate.getErrorBound(START));
+    }
+
+    @Test
+    public void delayedExchangesAreIgnored() {
+        ClockOffsetEstimator estimator = new ClockOffsetEstimator();
+        long time = START;
+
+        // Outliers, each held up by 40-49 ms in one direction, interleaved with good exchanges
+        for (int i = 0; i < 10; i++) {
+            addExchange(estimator, time, 5 * MS, (40 + i) * MS, 1 * MS);
+            time += 100 * MS;
+            if (i < 8) {
+                addExchange(estimator, time, 5 * MS, 1 * MS, 1 * MS);
+                time += 100 * MS;
+            }
+        }
+        assertEquals(18, estimator.getSampleCount());
+
+        ClockOffsetEstimator.Estimate estimate = estimator.estimate();
+        assertEquals(5 * MS, estimate.getOffset(time));
+        assertEquals(2 * MS, estimate.getDelay());
+        assertEquals(0.0, estimate.getSkew(), 0.0);
+    }
+
+    @Test
+    public void outliersAmongFewSamplesWidenErrorBound() {
+        // With fewer good exchanges than are used, the best outlier is used too, so the error
+        // bound must allow for it.
+        ClockOffsetEstimator estimator = new ClockOffsetEstimator();
+        long time = START;
+        for (int i = 0; i < 7; i++) {
+            addExchange(estimator, time, 5 * MS, 1 * MS, 1 * MS);
+            time += 100 * MS;
+        }
+        addExchange(estimator, time, 5 * MS, 41 * MS, 1 * MS);
+
+        ClockOffsetEstimator.Estimate estimate = estimator.estimate();
+        long error = Math.abs(estimate.getOffset(time) - 5 * MS);
+        assertEquals(2500000, error);   // (20 ms) / 8
+        assertTrue(error <= estimate.getErrorBound(time));
+    }
+
+    @Test
+    public void skewIsFollowed() {
+        // The master runs 100 ppm fast.
+        ClockOffsetEstimator estimator = new ClockOffsetEstimator();
+        for (int i = 0; i <= 10; i++) {
+            long time = START + i * SECOND;
+            addExchange(estimator, time, masterOffset(time, 100e-6), 1 * MS, 1 * MS);
+        }
+
+        ClockOffsetEstimator.Estimate estimate = estimator.estimate();
+        assertEquals(100e-6, estimate.getSkew(), 1e-9);
+
+        // A minute later, it's still right to within a microsecond.
+        long later = START + 70 * SECOND;
+        assertEquals(masterOffset(later, 100e-6), estimate.getOffset(later), 1000);
+    }
+
+    @Test
+    public void skewIsLimited() {
+        // 1000 ppm is beyond any real clock, so it's taken to be at most 200 ppm.
+        ClockOffsetEstimator estimator = new ClockOffsetEstimator();
+        for (int i = 0; i <= 10; i++) {
+            long time = START + i * SECOND;
+            addExchange(estimator, time, masterOffset(time, 1000e-6), 1 * MS, 1 * MS);
+        }
+        assertEquals(200e-6, estimator.estimate().getSkew(), 0.0);
+    }
+
+    @Test
+    public void skewNeedsLongEnoughSpan() {
+        // 50 ppm over a second is 50 us, which is too little to tell apart from jitter.
+        ClockOffsetEstimator estimator = new ClockOffsetEstimator();
+        for (int i = 0; i <= 10; i++) {
+            long time = START + i * 100 * MS;
+            addExchange(estimator, time, masterOffset(time, 50e-6), 1 * MS, 1 * MS);
+        }
+        assertEquals(0.0, estimator.estimate().getSkew(), 0.0);
+    }
+
+    @Test
+    public void errorBoundGrowsWithAge() {
+        ClockOffsetEstimator estimator = new ClockOffsetEstimator();
+        addExchange(estimator, START, 5 * MS, 2 * MS, 2 * MS);
+        ClockOffsetEstimator.Estimate estimate = estimator.estimate();
+
+        // The exchange is timed from halfway through it.  200 ppm of ten seconds is 2 ms.
+        long midpoint = START + (4 * MS + 100000) / 2;
+        assertEquals(2 * MS, estimate.getErrorBound(midpoint));
+        assertEquals(4 * MS, estimate.getErrorBound(midpoint + 10 * SECOND));
+        assertEquals(2 * MS, estimate.getErrorBound(midpoint - 10 * SECOND));
+    }
+
+    @Test
+    public void oldSamplesAreForgotten() {
+        ClockOffsetEstimator estimator = new ClockOffsetEstimator();
+        long time = START;
+        addExchange(estimator, time, 9 * MS, 100000, 100000);
+
+        for (int i = 0; i < 32; i++) {
+            time += 100 * MS;
+            addExchange(estimator, time, 5 * MS, 1 * MS, 1 * MS);
+        }
+        assertEquals(32, estimator.getSampleCount());
+
+        ClockOffsetEstimator.Estimate estimate = estimator.estimate();
+        assertEquals(5 * MS, estimate.getOffset(time));
+        assertEquals(2 * MS, estimate.getDelay());
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * Adds an exchange, as it would be timed if the master's clock were <code>offset</code> ahead
+     * of the follower's, and the master took 100 us to reply.
+     * @param localTime when the follower sent the request, in the follower's clock
+     * @param offset what to add to the follower's time to get the master's
+     * @param requestDelay how long the request took to get to the master
+     * @param replyDelay how long the reply took to get back
+     */
+    private static void addExchange(ClockOffsetEstimator estimator, long localTime, long offset,
+            long requestDelay, long replyDelay) {
+        long t0 = localTime;
+        long t1 = t0 + requestDelay + offset;
+        long t2 = t1 + 100000;
+        long t3 = t2 - offset + replyDelay;
+        estimator.addSample(t0, t1, t2, t3);
+    }
+
+    /**
+     * @return the offset of a master clock that starts 5 ms ahead and runs fast by
+     * <code>skew</code>, at a given time in the follower's clock
+     */
+    private static long masterOffset(long localTime, double skew) {
+        return 5 * MS + (long) (skew * (localTime - START));
+    }
+
+}
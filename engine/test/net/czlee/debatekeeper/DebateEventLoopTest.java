@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DebateEventLoop}, run on a virtual loop so that they don't depend on the
+ * speed of the machine.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class DebateEventLoopTest {
+
+    private static final long MILLISECOND = 1000000L;
+    private static final long SECOND      = 1000000000L;
+
+    private VirtualClock    mClock;
+    private DebateEventLoop mLoop;
+
+    /**
+     * A client that wants to be woken at each of a list of times in turn, and remembers when it
+     * actually was.
+     */
+    private static class RecordingClient implements DebateEventLoop.TimedClient {
+
+        private final ArrayList<Long> mDeadlines = new ArrayList<Long>();
+        private final ArrayList<Long> mServed    = new ArrayList<Long>();
+
+        public RecordingClient(long... deadlines) {
+            for (int i = 0; i < deadlines.length; i++)
+                mDeadlines.add(deadlines[i]);
+        }
+
+        @Override
+        public long getNextDeadline() {
+            return (mDeadlines.isEmpty()) ? DebateEventLoop.NO_DEADLINE : mDeadlines.get(0);
+        }
+
+        @Override
+        public void onDeadline(long now) {
+            mServed.add(now);
+            mDeadlines.remove(0);
+        }
+
+        public void setDeadline(long deadline) {
+            mDeadlines.clear();
+            mDeadlines.add(deadline);
+        }
+
+        public ArrayList<Long> getServed() {
+            return mServed;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mClock = new VirtualClock();
+        mLoop  = DebateEventLoop.newVirtualLoop(mClock);
+    }
+
+    @Test
+    public void commandsRunInOrder() {
+        final StringBuilder order = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            final int index = i;
+            mLoop.post(new Runnable() {
+                @Override
+                public void run() {
+                    order.append(index);
+                }
+            });
+        }
+        mLoop.runPending();
+        assertEquals("01234", order.toString());
+    }
+
+    @Test
+    public void commandThatThrowsDoesNotStopTheLoop() {
+        final boolean[] ran = new boolean[1];
+        mLoop.post(new Runnable() {
+            @Override
+            public void run() {
+                throw new RuntimeException("Expected by the test");
+            }
+        });
+        mLoop.post(new Runnable() {
+            @Override
+            public void run() {
+                ran[0] = true;
+            }
+        });
+        mLoop.runPending();
+        assertTrue(ran[0]);
+    }
+
+    @Test
+    public void deadlinesAreServedInTimeOrderAtTheirExactTimes() {
+        RecordingClient a = new RecordingClient(3 * MILLISECOND, 700 * MILLISECOND);
+        RecordingClient b = new RecordingClient(1 * MILLISECOND, 3 * MILLISECOND + 1);
+        mLoop.register(a);
+        mLoop.register(b);
+
+        ArrayList<Long> times = new ArrayList<Long>();
+        while (mLoop.advanceToNextDeadline())
+            times.add(mClock.nanoTime());
+
+        assertEquals(list(MILLISECOND, 3 * MILLISECOND, 3 * MILLISECOND + 1, 700 * MILLISECOND), times);
+        assertEquals(list(3 * MILLISECOND, 700 * MILLISECOND), a.getServed());
+        assertEquals(list(MILLISECOND, 3 * MILLISECOND + 1), b.getServed());
+    }
+
+    @Test
+    public void deadlineInTheSameSlotIsNotServedEarly() {
+        // These are less than a slot apart, so they share a slot in the wheel.
+        RecordingClient early = new RecordingClient(5 * MILLISECOND);
+        RecordingClient late  = new RecordingClient(5 * MILLISECOND + 1000);
+        mLoop.register(early);
+        mLoop.register(late);
+
+        mLoop.advanceToNextDeadline();
+        assertEquals(list(5 * MILLISECOND), early.getServed());
+        assertTrue(late.getServed().isEmpty());
+
+        mLoop.advanceToNextDeadline();
+        assertEquals(list(5 * MILLISECOND + 1000), late.getServed());
+    }
+
+    @Test
+    public void deadlineBeyondTheWheelIsServedOnALaterTurn() {
+        // The wheel spans about two seconds, so this is several turns away.
+        long deadline = 7 * SECOND + 123;
+        RecordingClient client = new RecordingClient(deadline);
+        mLoop.register(client);
+
+        int advances = 0;
+        while (mLoop.advanceToNextDeadline())
+            advances++;
+
+        assertEquals(list(deadline), client.getServed());
+        assertTrue("Should have stopped at the end of each turn", advances > 1);
+        assertEquals(deadline, mClock.nanoTime());
+    }
+
+    @Test
+    public void deadlineThatHasPassedIsServedStraightAway() {
+        mClock.advanceTo(10 * SECOND);
+        RecordingClient client = new RecordingClient(SECOND);
+        mLoop.register(client);
+        mLoop.runPending();
+        assertEquals(list(10 * SECOND), client.getServed());
+    }
+
+    @Test
+    public void rescheduleMovesTheDeadline() {
+        final RecordingClient client = new RecordingClient(SECOND);
+        mLoop.register(client);
+        mLoop.runPending();
+
+        mLoop.post(new Runnable() {
+            @Override
+            public void run() {
+                client.setDeadline(200 * MILLISECOND);
+                mLoop.reschedule(client);
+            }
+        });
+        assertTrue(mLoop.advanceToNextDeadline());
+        assertEquals(list(200 * MILLISECOND), client.getServed());
+        assertFalse(mLoop.advanceToNextDeadline());
+    }
+
+    @Test
+    public void unregisteredClientIsNotServed() {
+        RecordingClient client = new RecordingClient(SECOND);
+        mLoop.register(client);
+        mLoop.runPending();
+        mLoop.unregister(client);
+        assertFalse(mLoop.advanceToNextDeadline());
+        assertTrue(client.getServed().isEmpty());
+    }
+
+    @Test
+    public void manyClientsAreAllServedOnce() {
+        RecordingClient[] clients = new RecordingClient[1000];
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = new RecordingClient((i % 37) * 97 * MILLISECOND + i);
+            mLoop.register(clients[i]);
+        }
+
+        long last = 0;
+        while (mLoop.advanceToNextDeadline()) {
+            assertTrue("Clock went backwards", mClock.nanoTime() >= last);
+            last = mClock.nanoTime();
+        }
+
+        for (int i = 0; i < clients.length; i++)
+            assertEquals(list((i % 37) * 97 * MILLISECOND + i), clients[i].getServed());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void realLoopCannotBeRunByHand() {
+        DebateEventLoop loop = new DebateEventLoop();
+        try {
+            loop.runPending();
+        } finally {
+            loop.quit();
+        }
+    }
+
+    private static ArrayList<Long> list(long... values) {
+        ArrayList<Long> result = new ArrayList<Long>();
+        for (int i = 0; i < values.length; i++)
+            result.add(values[i]);
+        return result;
+    }
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+/**
+ * Tests for {@link DebateFormatBuilderFromXml}.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class DebateFormatBuilderFromXmlTest {
+
+    private FormatStrings              mStrings;
+    private DebateFormatBuilderFromXml mDfbfx;
+
+    @Before
+    public void setUp() throws Exception {
+        mStrings = FormatStringsTest.getAppStrings();
+        mDfbfx   = new DebateFormatBuilderFromXml(mStrings);
+    }
+
+    //******************************************************************************************
+    // Overtime bells
+    //******************************************************************************************
+
+    @Test
+    public void overtimeBellsMakeSchedule() throws Exception {
+        DebateFormat df = parseSpeechType(
+                "<overtimebell from=\"0:15\" every=\"0:15\" until=\"0:45\" number=\"1\" />"
+                + "<overtimebell from=\"1:00\" every=\"0:05\" sound=\"#silent\" />");
+        assertEquals(new ArrayList<String>(), mDfbfx.getErrorLog());
+
+        OvertimeSchedule schedule = df.getSpeechFormat("s").getOvertimeSchedule();
+        assertEquals(2, schedule.getNumberOfStages());
+        assertEquals(30, schedule.getFirstBellFromTime(16));
+        assertEquals(60, schedule.getFirstBellFromTime(46));
+        assertEquals(1, schedule.getBellSoundInfo(15).getTimesToPlay());
+        assertEquals(0, schedule.getBellSoundInfo(65).getSoundResid());
+    }
+
+    @Test
+    public void noOvertimeBellsMeansNoSchedule() throws Exception {
+        DebateFormat df = parseSpeechType("");
+        assertNull(df.getSpeechFormat("s").getOvertimeSchedule());
+    }
+
+    @Test
+    public void negativeEveryIsRejected() throws Exception {
+        assertStageRejected("<overtimebell from=\"0:30\" every=\"-10\" />",
+                FormatStrings.XmlErrorOvertimeBellInvalidEvery, "-10");
+    }
+
+    @Test
+    public void invalidNumberIsRejected() throws Exception {
+        assertStageRejected("<overtimebell from=\"0:30\" number=\"lots\" />",
+                FormatStrings.XmlErrorOvertimeBellInvalidNumber, "lots");
+    }
+
+    @Test
+    public void negativeNumberIsRejected() throws Exception {
+        assertStageRejected("<overtimebell from=\"0:30\" number=\"-2\" />",
+                FormatStrings.XmlErrorOvertimeBellInvalidNumber, "-2");
+    }
+
+    @Test
+    public void fromAtFinishIsRejected() throws Exception {
+        assertStageRejected("<overtimebell from=\"0:00\" />",
+                FormatStrings.XmlErrorOvertimeBellInvalidFrom, "0:00");
+    }
+
+    @Test
+    public void untilBeforeFromIsRejected() throws Exception {
+        assertStageRejected("<overtimebell from=\"0:20\" until=\"0:10\" />",
+                FormatStrings.XmlErrorOvertimeBellInvalidUntil, "0:10");
+    }
+
+    @Test
+    public void staySoundIsInvalid() throws Exception {
+        DebateFormat df = parseSpeechType("<overtimebell from=\"0:30\" sound=\"#stay\" />");
+        assertEquals(1, mDfbfx.getErrorLog().size());
+        assertTrue(mDfbfx.getErrorLog().get(0).contains(mStrings.getString(
+                FormatStrings.XmlErrorOvertimeBellInvalidSound, speechTypeContext(), "#stay")));
+
+        // The stage is still added, with the default sound
+        OvertimeSchedule schedule = df.getSpeechFormat("s").getOvertimeSchedule();
+        assertEquals(BellSoundInfo.DEFAULT_SOUND, schedule.getBellSoundInfo(30).getSoundResid());
+    }
+
+    @Test
+    public void duplicateStartIsRejected() throws Exception {
+        DebateFormat df = parseSpeechType("<overtimebell from=\"0:30\" />"
+                + "<overtimebell from=\"0:30\" every=\"0:10\" />");
+        assertEquals(1, mDfbfx.getErrorLog().size());
+        assertFalse(df.getSpeechFormat("s").getOvertimeSchedule().isBellTime(40));
+    }
+
+    //******************************************************************************************
+    // External entities
+    //******************************************************************************************
+
+    @Test
+    public void externalGeneralEntityIsRejected() throws Exception {
+        File secret = makeSecretFile("Top secret");
+        try {
+            assertFileRejected("<!DOCTYPE debateformat [<!ENTITY secret SYSTEM \""
+                    + secret.toURI() + "\">]>", "Test", "&secret;");
+        } finally {
+            secret.delete();
+        }
+    }
+
+    @Test
+    public void externalParameterEntityIsRejected() throws Exception {
+        File secret = makeSecretFile("<!ENTITY leaked \"Top secret\">");
+        try {
+            assertFileRejected("<!DOCTYPE debateformat [<!ENTITY % secret SYSTEM \""
+                    + secret.toURI() + "\"> %secret;]>", "&leaked;", "");
+        } finally {
+            secret.delete();
+        }
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * Parses a debate format with one speech type, "s", and one speech of that type.
+     * @param elements the elements in the speech type, after its first period and finish bell
+     */
+    private DebateFormat parseSpeechType(String elements) throws Exception {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<debateformat name=\"Test\" schemaversion=\"1.1\">"
+                + "<speechtype ref=\"s\" length=\"2:00\" firstperiod=\"main\">"
+                + "<period ref=\"main\" desc=\"Main part\" />"
+                + "<bell time=\"finish\" number=\"2\" />"
+                + elements
+                + "</speechtype>"
+                + "<speeches><speech name=\"Speech\" type=\"s\" /></speeches>"
+                + "</debateformat>";
+        return mDfbfx.buildDebateFromXml(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+    }
+
+    /**
+     * @param contents what to put in the file
+     * @return a temporary file, which the caller should delete, that no debate format should be
+     * able to read
+     */
+    private static File makeSecretFile(String contents) throws Exception {
+        File secret = File.createTempFile("secret", ".txt");
+        FileOutputStream out = new FileOutputStream(secret);
+        try {
+            out.write(contents.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return secret;
+    }
+
+    /**
+     * Checks that a debate format with a document type declaration is rejected, rather than
+     * being built with whatever its entities refer to.
+     * @param doctype the document type declaration
+     * @param name the name of the debate format, which may use an internal entity
+     * @param text text to put at the start of the debate format, which may use any entity
+     */
+    private void assertFileRejected(String doctype, String name, String text) throws Exception {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + doctype
+                + "<debateformat name=\"" + name + "\" schemaversion=\"1.1\">" + text
+                + "<speechtype ref=\"s\" length=\"2:00\" firstperiod=\"main\">"
+                + "<period ref=\"main\" desc=\"Main part\" />"
+                + "<bell time=\"finish\" number=\"2\" />"
+                + "</speechtype>"
+                + "<speeches><speech name=\"Speech\" type=\"s\" /></speeches>"
+                + "</debateformat>";
+        try {
+            DebateFormat df = mDfbfx.buildDebateFromXml(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+            fail("Debate format was built, with name '" + df.getName() + "'");
+        } catch (SAXException e) {
+            // expected
+        }
+    }
+
+    /**
+     * @return how the parser describes speech type "s" in error messages
+     */
+    private String speechTypeContext() {
+        return String.format("%s '%s'", mStrings.getString(FormatStrings.XmlElemNameSpeechFormat), "s");
+    }
+
+    /**
+     * Checks that an overtime bell is rejected with the given error, and that the speech format
+     * falls back to the user's overtime bells.
+     */
+    private void assertStageRejected(String element, String errorName, String value)
+            throws Exception {
+        DebateFormat df = parseSpeechType(element);
+        assertEquals(1, mDfbfx.getErrorLog().size());
+        assertTrue(mDfbfx.getErrorLog().get(0).contains(
+                mStrings.getString(errorName, speechTypeContext(), value)));
+        assertNull(df.getSpeechFormat("s").getOvertimeSchedule());
+    }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import net.czlee.debatekeeper.DebateFormatBuilder.DebateFormatBuilderException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DebateFormatBuilder}.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class DebateFormatBuilderTest {
+
+    private DebateFormatBuilder mDfb;
+
+    @Before
+    public void setUp() throws Exception {
+        mDfb = new DebateFormatBuilder(FormatStringsTest.getAppStrings());
+        mDfb.setDebateFormatName("Test");
+    }
+
+    //******************************************************************************************
+    // Resources
+    //******************************************************************************************
+
+    @Test
+    public void includedResourceIsSharedNotCopied() throws Exception {
+        addResourceWithBellAt("r", 30);
+        addSpeechFormat("a", 60);
+        addSpeechFormat("b", 90);
+        mDfb.includeResource("a", "r");
+        mDfb.includeResource("b", "r");
+        DebateFormat df = finish("a", "b");
+
+        BellSegment fromA = findSegmentWithBellAt(df.getSpeechFormat("a"), 30);
+        BellSegment fromB = findSegmentWithBellAt(df.getSpeechFormat("b"), 30);
+        assertNotNull(fromA);
+        assertSame(fromA, fromB);
+    }
+
+    @Test(expected = DebateFormatBuilderException.class)
+    public void resourceWithBellAtSameTimeIsRejected() throws Exception {
+        addResourceWithBellAt("r", 30);
+        addSpeechFormat("a", 60);
+        mDfb.addBellInfoToSpeechFormat("a", new BellInfo(30, 1), null);
+        mDfb.includeResource("a", "r");
+    }
+
+    @Test(expected = DebateFormatBuilderException.class)
+    public void bellAtSameTimeAsIncludedResourceIsRejected() throws Exception {
+        addResourceWithBellAt("r", 30);
+        addSpeechFormat("a", 60);
+        mDfb.includeResource("a", "r");
+        mDfb.addBellInfoToSpeechFormat("a", new BellInfo(30, 1), null);
+    }
+
+    @Test(expected = DebateFormatBuilderException.class)
+    public void resourceWithBellAfterFinishIsRejected() throws Exception {
+        addResourceWithBellAt("r", 30);
+        addSpeechFormat("a", 20);
+        mDfb.includeResource("a", "r");
+    }
+
+    @Test
+    public void periodInIncludedResourceCanBeFirstPeriod() throws Exception {
+        addResourceWithBellAt("r", 30);
+        mDfb.addPeriodInfoToResource("r", "p", new PeriodInfo("From resource", null));
+        addSpeechFormat("a", 60);
+        mDfb.includeResource("a", "r");
+        mDfb.setFirstPeriod("a", "p");
+        DebateFormat df = finish("a");
+
+        assertEquals("From resource", df.getSpeechFormat("a").getFirstPeriodInfo().getDescription());
+    }
+
+    @Test
+    public void changingResourceDoesNotChangeEarlierIncludes() throws Exception {
+        addResourceWithBellAt("r", 30);
+        addSpeechFormat("a", 60);
+        addSpeechFormat("b", 60);
+        mDfb.includeResource("a", "r");
+        mDfb.addBellInfoToResource("r", new BellInfo(45, 1), null);
+        mDfb.includeResource("b", "r");
+        DebateFormat df = finish("a", "b");
+
+        assertNull(df.getSpeechFormat("a").getBellAtTime(45));
+        assertNotNull(df.getSpeechFormat("b").getBellAtTime(45));
+        assertNotNull(df.getSpeechFormat("a").getBellAtTime(30));
+    }
+
+    @Test
+    public void commonResourceIsInEverySpeechFormat() throws Exception {
+        mDfb.addNewResource("#all");
+        mDfb.addBellInfoToResource("#all", new BellInfo(10, 1), null);
+        addSpeechFormat("a", 60);
+        addSpeechFormat("b", 90);
+        DebateFormat df = finish("a", "b");
+
+        assertSame(findSegmentWithBellAt(df.getSpeechFormat("a"), 10),
+                findSegmentWithBellAt(df.getSpeechFormat("b"), 10));
+    }
+
+    //******************************************************************************************
+    // Overtime bells
+    //******************************************************************************************
+
+    @Test
+    public void overtimeBellsFromResourcesAreMerged() throws Exception {
+        mDfb.addNewResource("r");
+        mDfb.addOvertimeStageToResource("r", stage(60, 5));
+        addSpeechFormat("a", 60);
+        mDfb.addOvertimeStageToSpeechFormat("a", stage(30, 10));
+        mDfb.includeResource("a", "r");
+        DebateFormat df = finish("a");
+
+        OvertimeSchedule schedule = df.getSpeechFormat("a").getOvertimeSchedule();
+        assertEquals(2, schedule.getNumberOfStages());
+        assertEquals(50, schedule.getFirstBellFromTime(41));
+        assertEquals(65, schedule.getFirstBellFromTime(61));
+    }
+
+    @Test(expected = DebateFormatBuilderException.class)
+    public void overtimeBellAtSameTimeAsIncludedResourceIsRejected() throws Exception {
+        mDfb.addNewResource("r");
+        mDfb.addOvertimeStageToResource("r", stage(30, 5));
+        addSpeechFormat("a", 60);
+        mDfb.includeResource("a", "r");
+        mDfb.addOvertimeStageToSpeechFormat("a", stage(30, 10));
+    }
+
+    @Test(expected = DebateFormatBuilderException.class)
+    public void resourcesWithOvertimeBellsAtSameTimeAreRejected() throws Exception {
+        mDfb.addNewResource("r");
+        mDfb.addOvertimeStageToResource("r", stage(30, 5));
+        mDfb.addNewResource("q");
+        mDfb.addOvertimeStageToResource("q", stage(30, 10));
+        addSpeechFormat("a", 60);
+        mDfb.includeResource("a", "r");
+        mDfb.includeResource("a", "q");
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    private void addResourceWithBellAt(String ref, long time) throws DebateFormatBuilderException {
+        mDfb.addNewResource(ref);
+        mDfb.addBellInfoToResource(ref, new BellInfo(time, 1), null);
+    }
+
+    /**
+     * Adds a speech format with a finish bell.
+     */
+    private void addSpeechFormat(String ref, long length) throws DebateFormatBuilderException {
+        mDfb.addNewSpeechFormat(ref, length);
+        mDfb.addBellInfoToSpeechFormatAtFinish(ref, new BellInfo(0, 2), null);
+    }
+
+    /**
+     * Adds a speech for each speech format, and gets the debate format.
+     */
+    private DebateFormat finish(String... formatRefs) throws DebateFormatBuilderException {
+        for (int i = 0; i < formatRefs.length; i++)
+            mDfb.addSpeech("Speech " + i, formatRefs[i]);
+        return mDfb.getDebateFormat();
+    }
+
+    private static OvertimeSchedule.Stage stage(long firstTime, long period) {
+        return new OvertimeSchedule.Stage(firstTime, period, OvertimeSchedule.UNLIMITED,
+                new BellSoundInfo(BellSoundInfo.DEFAULT_SOUND, 1));
+    }
+
+    private static BellSegment findSegmentWithBellAt(SpeechFormat sf, long time) {
+        for (int i = 0; i < sf.mBellSegments.size(); i++)
+            if (sf.mBellSegments.get(i).getBellAtTime(time) != null)
+                return sf.mBellSegments.get(i);
+        return null;
+    }
+
+}
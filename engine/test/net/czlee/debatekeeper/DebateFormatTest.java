@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link DebateFormat}, mostly for how it makes speech formats when they're needed.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class DebateFormatTest {
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    /**
+     * Counts how many times it makes its speech format.  The first time, it waits until
+     * <code>mRelease</code> is counted down.
+     */
+    private static class SlowDescriptor implements DebateFormat.SpeechFormatDescriptor {
+
+        private final AtomicInteger  mCalls   = new AtomicInteger(0);
+        private final CountDownLatch mEntered = new CountDownLatch(1);
+        private final CountDownLatch mRelease;
+
+        public SlowDescriptor(int waits) {
+            mRelease = new CountDownLatch(waits);
+        }
+
+        @Override
+        public SpeechFormat materialise() {
+            if (mCalls.incrementAndGet() == 1) {
+                mEntered.countDown();
+                try {
+                    mRelease.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return new SpeechFormat(60);
+        }
+    }
+
+    /**
+     * Gets a speech format on another thread.
+     */
+    private static class Getter extends Thread {
+
+        private final DebateFormat    mDebateFormat;
+        private final String          mFormatRef;
+        private volatile SpeechFormat mResult;
+
+        public Getter(DebateFormat df, String formatRef) {
+            mDebateFormat = df;
+            mFormatRef    = formatRef;
+        }
+
+        @Override
+        public void run() {
+            mResult = mDebateFormat.getSpeechFormat(mFormatRef);
+        }
+    }
+
+    //******************************************************************************************
+    // Tests
+    //******************************************************************************************
+
+    @Test
+    public void speechFormatIsMadeOnceWhenNeeded() throws Exception {
+        SlowDescriptor descriptor = new SlowDescriptor(0);
+        DebateFormat df = new DebateFormat();
+        df.addSpeechFormat("a", descriptor);
+        df.addSpeech("First", "a");
+        df.addSpeech("Second", "a");
+        assertEquals(0, descriptor.mCalls.get());
+
+        SpeechFormat sf = df.getSpeechFormat(0);
+        assertNotNull(sf);
+        assertSame(sf, df.getSpeechFormat(1));
+        assertSame(sf, df.getSpeechFormat("a"));
+        assertEquals(1, descriptor.mCalls.get());
+    }
+
+    @Test(timeout = 5000)
+    public void slowSpeechFormatDoesNotHoldUpOthers() throws Exception {
+        SlowDescriptor slow = new SlowDescriptor(1);
+        DebateFormat df = new DebateFormat();
+        df.addSpeechFormat("slow", slow);
+        df.addSpeechFormat("fast", new SlowDescriptor(0));
+
+        Getter getter = new Getter(df, "slow");
+        getter.start();
+        slow.mEntered.await();
+
+        assertNotNull(df.getSpeechFormat("fast"));
+
+        slow.mRelease.countDown();
+        getter.join();
+        assertNotNull(getter.mResult);
+    }
+
+    @Test(timeout = 5000)
+    public void speechFormatBeingMadeIsNotWaitedFor() throws Exception {
+        SlowDescriptor slow = new SlowDescriptor(1);
+        DebateFormat df = new DebateFormat();
+        df.addSpeechFormat("slow", slow);
+
+        Getter getter = new Getter(df, "slow");
+        getter.start();
+        slow.mEntered.await();
+
+        // This makes its own, and it's finished first, so it's the one kept
+        SpeechFormat sf = df.getSpeechFormat("slow");
+        assertNotNull(sf);
+
+        slow.mRelease.countDown();
+        getter.join();
+        assertSame(sf, getter.mResult);
+        assertSame(sf, df.getSpeechFormat("slow"));
+        assertEquals(2, slow.mCalls.get());
+    }
+
+    @Test
+    public void unknownSpeechFormatIsNull() {
+        DebateFormat df = new DebateFormat();
+        df.addSpeechFormat("a", new SpeechFormat(60));
+        assertNull(df.getSpeechFormat("b"));
+        assertNull(df.getSpeechFormat(0));
+    }
+
+    @Test(expected = DebateFormat.NoSuchFormatException.class)
+    public void speechWithUnknownFormatIsRejected() throws Exception {
+        new DebateFormat().addSpeech("First", "a");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void speechFormatRefsCantBeChanged() {
+        DebateFormat df = new DebateFormat();
+        df.addSpeechFormat("a", new SpeechFormat(60));
+        Set<String> refs = df.getSpeechFormatRefs();
+        assertEquals(1, refs.size());
+        refs.add("b");
+    }
+
+}
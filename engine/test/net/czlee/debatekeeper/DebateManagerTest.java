@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.IdentityHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for how {@link DebateManager} publishes {@link TimerSnapshot}s.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class DebateManagerTest {
+
+    private DebateEventLoop mLoop;
+    private DebateManager   mDebateManager;
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    private static class SilentAlerts implements TimerAlerts {
+        @Override public void makeActive(PeriodInfo pi) {}
+        @Override public void makeInactive() {}
+        @Override public void triggerAlert(BellInfo bi, PeriodInfo pi) {}
+        @Override public void playBell(BellSoundInfo bsi) {}
+        @Override public void wakeUpScreenForPause() {}
+    }
+
+    //******************************************************************************************
+    // Tests
+    //******************************************************************************************
+
+    @Before
+    public void setUp() throws Exception {
+        DebateFormatBuilder dfb = new DebateFormatBuilder(FormatStringsTest.getAppStrings());
+        dfb.setDebateFormatName("Test");
+        dfb.addNewSpeechFormat("speech", 600);
+        dfb.addBellInfoToSpeechFormatAtFinish("speech", new BellInfo(0, 2), null);
+        dfb.addSpeech("First", "speech");
+        dfb.addSpeech("Second", "speech");
+
+        mLoop          = DebateEventLoop.newVirtualLoop(new VirtualClock());
+        mDebateManager = new DebateManager(dfb.getDebateFormat(), new SilentAlerts(), mLoop);
+        mLoop.runPending();
+    }
+
+    @After
+    public void tearDown() {
+        mDebateManager.release();
+        mLoop.runPending();
+        mLoop.quit();
+    }
+
+    @Test
+    public void heldSnapshotIsNeverChanged() {
+        TimerSnapshot held = mDebateManager.getSnapshot();
+        long sequenceNumber = held.getSequenceNumber();
+
+        mDebateManager.startTimer();
+        mLoop.runPending();
+        runSeconds(20);
+
+        assertEquals(sequenceNumber, held.getSequenceNumber());
+        assertEquals(0, held.getCurrentTime());
+        assertTrue(!held.isRunning());
+        held.release();
+
+        TimerSnapshot latest = mDebateManager.getSnapshot();
+        assertNotSame(held, latest);
+        assertEquals(20, latest.getCurrentTime());
+        latest.release();
+    }
+
+    @Test
+    public void releasedSnapshotsAreReused() {
+        IdentityHashMap<TimerSnapshot, Boolean> seen = new IdentityHashMap<TimerSnapshot, Boolean>();
+        mDebateManager.startTimer();
+        mLoop.runPending();
+        for (int i = 0; i < 50; i++) {
+            TimerSnapshot snapshot = mDebateManager.getSnapshot();
+            seen.put(snapshot, Boolean.TRUE);
+            snapshot.release();
+            runSeconds(1);
+        }
+        assertTrue("Made " + seen.size() + " snapshots", seen.size() <= 4);
+    }
+
+    @Test
+    public void snapshotCanBeTakenMoreThanOnce() {
+        TimerSnapshot first  = mDebateManager.getSnapshot();
+        TimerSnapshot second = mDebateManager.getSnapshot();
+        assertSame(first, second);
+        first.release();
+
+        // Still held once, so still not reused
+        mDebateManager.startTimer();
+        mLoop.runPending();
+        runSeconds(10);
+        assertEquals(0, second.getCurrentTime());
+        second.release();
+    }
+
+    @Test
+    public void listenerSnapshotIsHeldDuringCallback() throws Exception {
+        final long[]         times   = new long[2];
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        final Runnable[]     task    = new Runnable[1];
+
+        TimerEventDispatcher dispatcher = new TimerEventDispatcher();
+        dispatcher.addListener(new TimerEventDispatcher.TimerListener() {
+            @Override
+            public void onTimerEvent(int events, TimerSnapshot snapshot) {
+                times[0] = snapshot.getCurrentTime();
+                entered.countDown();
+                try {
+                    proceed.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                times[1] = snapshot.getCurrentTime();
+            }
+        }, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                task[0] = command;
+            }
+        });
+        mDebateManager.setEventDispatcher(dispatcher);
+        mLoop.runPending();
+
+        // Call the listener on another thread, and publish more snapshots while it's in there
+        Thread listenerThread = new Thread(task[0]);
+        listenerThread.start();
+        entered.await();
+        mDebateManager.startTimer();
+        mLoop.runPending();
+        runSeconds(10);
+        proceed.countDown();
+        listenerThread.join();
+
+        assertEquals(0, times[0]);
+        assertEquals(0, times[1]);
+        TimerSnapshot latest = mDebateManager.getSnapshot();
+        assertEquals(10, latest.getCurrentTime());
+        latest.release();
+    }
+
+    @Test
+    public void snapshotShowsWhenMoveIsDone() {
+        long firstMove  = mDebateManager.goToNextSpeaker();
+        long secondMove = mDebateManager.goToPreviousSpeaker();
+        assertTrue(secondMove > firstMove);
+
+        // Not done yet, since the loop hasn't run
+        TimerSnapshot snapshot = mDebateManager.getSnapshot();
+        assertTrue(snapshot.getMoveNumber() < firstMove);
+        snapshot.release();
+
+        mLoop.runPending();
+        snapshot = mDebateManager.getSnapshot();
+        assertEquals(secondMove, snapshot.getMoveNumber());
+        assertEquals(0, snapshot.getSpeechIndex());
+        snapshot.release();
+    }
+
+    @Test
+    public void moveThatGoesNowhereIsStillDone() {
+        long move = mDebateManager.goToPreviousSpeaker();
+        mLoop.runPending();
+        TimerSnapshot snapshot = mDebateManager.getSnapshot();
+        assertEquals(move, snapshot.getMoveNumber());
+        assertEquals(0, snapshot.getSpeechIndex());
+        snapshot.release();
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    private void runSeconds(int seconds) {
+        TimerSnapshot snapshot = mDebateManager.getSnapshot();
+        long endTime = snapshot.getCurrentTime() + seconds;
+        snapshot.release();
+        while (true) {
+            snapshot = mDebateManager.getSnapshot();
+            long time = snapshot.getCurrentTime();
+            snapshot.release();
+            if (time >= endTime || !mLoop.advanceToNextDeadline()) return;
+        }
+    }
+
+}
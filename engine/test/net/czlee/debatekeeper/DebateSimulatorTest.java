@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.czlee.debatekeeper.DebateSimulator.TimelineEvent;
+import net.czlee.debatekeeper.DebateSimulator.TimelineEvent.Type;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DebateSimulator}, which also checks the timing of {@link DebateManager} and
+ * {@link SpeechManager} on a virtual {@link DebateEventLoop}.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class DebateSimulatorTest {
+
+    private static final int CLOSING_COLOR = 0xff00ff00;
+
+    private DebateFormat mDebateFormat;
+
+    @Before
+    public void setUp() throws Exception {
+        mDebateFormat = buildDebateFormat();
+    }
+
+    //******************************************************************************************
+    // Tests
+    //******************************************************************************************
+
+    @Test
+    public void timelineHasBellsPausesAndPeriods() {
+        List<String> expected = new ArrayList<String>();
+        for (int speech = 0; speech < 2; speech++) {
+            expected.add(speech + " PERIOD 0 Opening");
+            expected.add(speech + " BELL 30");
+            expected.add(speech + " PERIOD 30 Closing");
+            expected.add(speech + " BELL 60");
+            expected.add(speech + " PAUSE 60");
+            expected.add(speech + " OVERTIME_BELL 90");
+            expected.add(speech + " OVERTIME_BELL 110");
+        }
+
+        assertEquals(expected, summarise(new DebateSimulator(mDebateFormat).run()));
+    }
+
+    @Test
+    public void periodEventsCarryThePeriod() {
+        List<TimelineEvent> timeline = new DebateSimulator(mDebateFormat).run();
+        TimelineEvent closing = timeline.get(2);
+        assertEquals(Type.PERIOD, closing.getType());
+        assertEquals("Closing", closing.getPeriodDescription());
+        assertEquals(Integer.valueOf(CLOSING_COLOR), closing.getPeriodBackgroundColor());
+        assertEquals("First", closing.getSpeechName());
+        assertEquals("Second", timeline.get(timeline.size() - 1).getSpeechName());
+    }
+
+    @Test
+    public void overtimeBellsFollowSettings() {
+        DebateSimulator simulator = new DebateSimulator(mDebateFormat);
+        simulator.setOvertimeBells(10, 15);
+        simulator.setRunOutTime(45);
+        assertEquals(times(Type.OVERTIME_BELL, 0, 70, 85, 100), overtimeBellTimes(simulator.run(), 0));
+
+        simulator.setOvertimeBells(10, 0);
+        assertEquals(times(Type.OVERTIME_BELL, 0, 70), overtimeBellTimes(simulator.run(), 0));
+
+        simulator.setOvertimeBells(0, 15);
+        assertEquals(times(Type.OVERTIME_BELL, 0), overtimeBellTimes(simulator.run(), 0));
+    }
+
+    @Test
+    public void runOutTimeStopsEachSpeech() {
+        DebateSimulator simulator = new DebateSimulator(mDebateFormat);
+        simulator.setRunOutTime(20);
+        List<TimelineEvent> timeline = simulator.run();
+        for (TimelineEvent event : timeline) {
+            assertTrue(event.getType() != Type.OVERTIME_BELL);
+            assertTrue(event.getTime() <= 80);
+        }
+        assertEquals(2 * 80.0, simulator.getSimulatedSeconds(), 1.0);
+    }
+
+    @Test
+    public void simulatedTimeAddsUpOverRuns() {
+        DebateSimulator simulator = new DebateSimulator(mDebateFormat);
+        simulator.run();
+        double once = simulator.getSimulatedSeconds();
+        assertEquals(2 * 120.0, once, 1.0);
+        simulator.run();
+        assertEquals(2 * once, simulator.getSimulatedSeconds(), 1e-9);
+    }
+
+    @Test
+    public void runDoesNotChangeDebateFormat() {
+        SpeechFormat before = mDebateFormat.getSpeechFormat(0);
+        new DebateSimulator(mDebateFormat).run();
+        assertSame(before, mDebateFormat.getSpeechFormat(0));
+        assertNull(before.getBellAtTime(45));
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * @return each event as "speech type time [period]"
+     */
+    private static List<String> summarise(List<TimelineEvent> timeline) {
+        List<String> result = new ArrayList<String>();
+        for (TimelineEvent event : timeline) {
+            String summary = event.getSpeechIndex() + " " + event.getType() + " " + event.getTime();
+            if (event.getType() == Type.PERIOD)
+                summary += " " + event.getPeriodDescription();
+            result.add(summary);
+        }
+        return result;
+    }
+
+    private static List<String> overtimeBellTimes(List<TimelineEvent> timeline, int speechIndex) {
+        List<String> result = new ArrayList<String>();
+        for (TimelineEvent event : timeline)
+            if (event.getType() == Type.OVERTIME_BELL && event.getSpeechIndex() == speechIndex)
+                result.add(speechIndex + " " + event.getType() + " " + event.getTime());
+        return result;
+    }
+
+    private static List<String> times(Type type, int speechIndex, long... times) {
+        List<String> result = new ArrayList<String>();
+        for (long time : times)
+            result.add(speechIndex + " " + type + " " + time);
+        return result;
+    }
+
+    /**
+     * Two speeches of a minute each.  A bell at 0:30 changes the period to "Closing", and the
+     * finish bell pauses the timer.
+     */
+    private static DebateFormat buildDebateFormat() throws Exception {
+        DebateFormatBuilder dfb = new DebateFormatBuilder(FormatStringsTest.getAppStrings());
+        dfb.setDebateFormatName("Test");
+        dfb.addNewSpeechFormat("speech", 60);
+        dfb.addPeriodInfoToSpeechFormat("speech", "opening", new PeriodInfo("Opening", null));
+        dfb.addPeriodInfoToSpeechFormat("speech", "closing", new PeriodInfo("Closing", CLOSING_COLOR));
+        dfb.setFirstPeriod("speech", "opening");
+        dfb.addBellInfoToSpeechFormat("speech", new BellInfo(30, 1), "closing");
+        BellInfo finish = new BellInfo(0, 2);
+        finish.setPauseOnBell(true);
+        dfb.addBellInfoToSpeechFormatAtFinish("speech", finish, null);
+        dfb.addSpeech("First", "speech");
+        dfb.addSpeech("Second", "speech");
+        return dfb.getDebateFormat();
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+
+import org.junit.Test;
+
+/**
+ * Checks that every string that the debate format parser looks up by name is in the app's
+ * resources, since the compiler can't check this.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class FormatStringsTest {
+
+    /**
+     * @return the strings in the app's <code>res/values</code> directory, which the build passes
+     * to the tests in the <code>res.values.dir</code> system property
+     */
+    static ResourceFileStrings getAppStrings() throws IOException {
+        String directory = System.getProperty("res.values.dir", "../res/values");
+        return new ResourceFileStrings(new File(directory));
+    }
+
+    @Test
+    public void everyNameIsAStringResource() throws Exception {
+        ResourceFileStrings strings = getAppStrings();
+        Field[] fields = FormatStrings.class.getFields();
+        assertTrue(fields.length > 0);
+        for (int i = 0; i < fields.length; i++) {
+            String name = (String) fields[i].get(null);
+            assertTrue(fields[i].getName() + " names a resource that doesn't exist",
+                    strings.hasString(name));
+            assertTrue(fields[i].getName() + " should be named after its resource",
+                    fields[i].getName().equals(name));
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link InternPool}, and for how {@link BellInfo} and the classes it holds use it.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class InternPoolTest {
+
+    //******************************************************************************************
+    // Tests
+    //******************************************************************************************
+
+    @Test
+    public void equalValuesInternToSameInstance() {
+        InternPool<String> pool = new InternPool<String>();
+        String first  = new String("Closing");
+        String second = new String("Closing");
+        assertNotSame(first, second);
+        assertSame(first, pool.intern(first));
+        assertSame(first, pool.intern(second));
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void nullInternsToNull() {
+        assertNull(new InternPool<String>().intern(null));
+    }
+
+    @Test
+    public void equalBellsInternToSameInstance() {
+        BellInfo first  = makeBell(60, true, 2, "Closing", 0xff00ff00).intern();
+        BellInfo second = makeBell(60, true, 2, "Closing", 0xff00ff00).intern();
+        assertSame(first, second);
+        assertSame(first.getNextPeriodInfo(), second.getNextPeriodInfo());
+        assertSame(first.getBellSoundInfo(), second.getBellSoundInfo());
+    }
+
+    @Test
+    public void differentBellsStayDistinct() {
+        BellInfo bell = makeBell(60, true, 2, "Closing", 0xff00ff00).intern();
+        assertDistinct(bell, makeBell(61, true,  2, "Closing", 0xff00ff00).intern());
+        assertDistinct(bell, makeBell(60, false, 2, "Closing", 0xff00ff00).intern());
+        assertDistinct(bell, makeBell(60, true,  3, "Closing", 0xff00ff00).intern());
+        assertDistinct(bell, makeBell(60, true,  2, "Overtime", 0xff00ff00).intern());
+        assertDistinct(bell, makeBell(60, true,  2, "Closing", 0xffff0000).intern());
+
+        // Interning the others didn't change the first
+        assertEquals(60, bell.getBellTime());
+        assertSame(bell, makeBell(60, true, 2, "Closing", 0xff00ff00).intern());
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    private static BellInfo makeBell(long time, boolean pause, int timesToPlay, String description,
+            int color) {
+        BellInfo bell = new BellInfo(time, timesToPlay);
+        bell.setPauseOnBell(pause);
+        bell.setNextPeriodInfo(new PeriodInfo(new String(description), color));
+        return bell;
+    }
+
+    private static void assertDistinct(BellInfo expected, BellInfo actual) {
+        assertNotSame(expected, actual);
+        assertFalse(expected.equals(actual));
+    }
+
+}
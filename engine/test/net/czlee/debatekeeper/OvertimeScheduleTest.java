@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link OvertimeSchedule}, mostly against a brute-force model that lists every bell.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class OvertimeScheduleTest {
+
+    /** The model lists bells up to this time, which is well past every query. */
+    private static final long MODEL_LIMIT = 1000;
+    private static final long QUERY_LIMIT = 300;
+
+    //******************************************************************************************
+    // Tests
+    //******************************************************************************************
+
+    @Test
+    public void noneHasNoBells() {
+        assertTrue(OvertimeSchedule.NONE.isEmpty());
+        assertFalse(OvertimeSchedule.NONE.isBellTime(30));
+        assertEquals(OvertimeSchedule.NO_BELL, OvertimeSchedule.NONE.getFirstBellFromTime(-10));
+        assertNull(OvertimeSchedule.NONE.getBellSoundInfo(30));
+    }
+
+    @Test
+    public void fromPreferences() {
+        BellSoundInfo sound = new BellSoundInfo(BellSoundInfo.DEFAULT_SOUND, 3);
+        OvertimeSchedule schedule = OvertimeSchedule.fromPreferences(30, 20, sound);
+        assertEquals(30, schedule.getFirstBellFromTime(-60));
+        assertEquals(30, schedule.getFirstBellFromTime(30));
+        assertEquals(50, schedule.getFirstBellFromTime(31));
+        assertTrue(schedule.isBellTime(1030));
+        assertFalse(schedule.isBellTime(1031));
+
+        assertEquals(50, OvertimeSchedule.fromPreferences(50, 0, sound).getFirstBellFromTime(0));
+        assertEquals(OvertimeSchedule.NO_BELL,
+                OvertimeSchedule.fromPreferences(50, 0, sound).getFirstBellFromTime(51));
+        assertTrue(OvertimeSchedule.fromPreferences(0, 20, sound).isEmpty());
+    }
+
+    @Test
+    public void laterStageTakesOver() {
+        List<OvertimeSchedule.Stage> stages = new ArrayList<OvertimeSchedule.Stage>();
+        stages.add(new OvertimeSchedule.Stage(60, 7, OvertimeSchedule.UNLIMITED, sound(2)));
+        stages.add(new OvertimeSchedule.Stage(15, 10, OvertimeSchedule.UNLIMITED, sound(1)));
+        OvertimeSchedule schedule = new OvertimeSchedule(stages);
+
+        assertEquals(15, schedule.getStage(0).getFirstTime());
+        assertEquals(55, schedule.getFirstBellFromTime(46));
+        assertEquals(60, schedule.getFirstBellFromTime(56));
+        assertEquals(67, schedule.getFirstBellFromTime(61));
+        assertFalse(schedule.isBellTime(65));
+        assertTrue(schedule.isBellTime(74));
+        assertEquals(sound(1), schedule.getBellSoundInfo(55));
+        assertEquals(sound(2), schedule.getBellSoundInfo(60));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void stagesStartingTogetherAreRejected() {
+        List<OvertimeSchedule.Stage> stages = new ArrayList<OvertimeSchedule.Stage>();
+        stages.add(new OvertimeSchedule.Stage(30, 10, OvertimeSchedule.UNLIMITED, sound(1)));
+        stages.add(new OvertimeSchedule.Stage(30, 0, 30, sound(2)));
+        new OvertimeSchedule(stages);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void stageAtFinishTimeIsRejected() {
+        new OvertimeSchedule.Stage(0, 10, OvertimeSchedule.UNLIMITED, sound(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativePeriodIsRejected() {
+        new OvertimeSchedule.Stage(10, -5, OvertimeSchedule.UNLIMITED, sound(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lastBeforeFirstIsRejected() {
+        new OvertimeSchedule.Stage(10, 5, 9, sound(1));
+    }
+
+    @Test
+    public void matchesBruteForceModel() {
+        Random random = new Random(20261019L);
+        for (int trial = 0; trial < 500; trial++) {
+            List<OvertimeSchedule.Stage> stages = randomStages(random);
+            OvertimeSchedule schedule = new OvertimeSchedule(stages);
+            TreeSet<Long> bells = modelBells(stages);
+
+            for (long t = -5; t <= QUERY_LIMIT; t++) {
+                String where = "trial " + trial + ", time " + t;
+                assertEquals(where, bells.contains(t), schedule.isBellTime(t));
+
+                Long expected = bells.ceiling(t);
+                assertEquals(where, (expected == null) ? OvertimeSchedule.NO_BELL : expected.longValue(),
+                        schedule.getFirstBellFromTime(t));
+
+                if (bells.contains(t))
+                    assertEquals(where, modelSound(stages, t), schedule.getBellSoundInfo(t));
+            }
+        }
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    private static BellSoundInfo sound(int timesToPlay) {
+        return new BellSoundInfo(BellSoundInfo.DEFAULT_SOUND, timesToPlay);
+    }
+
+    /**
+     * @return up to four stages with different start times, some with one bell, some with no end
+     */
+    private static List<OvertimeSchedule.Stage> randomStages(Random random) {
+        int numberOfStages = random.nextInt(5);
+        List<Long> firstTimes = new ArrayList<Long>();
+        while (firstTimes.size() < numberOfStages) {
+            long firstTime = 1 + random.nextInt(200);
+            if (!firstTimes.contains(firstTime))
+                firstTimes.add(firstTime);
+        }
+
+        List<OvertimeSchedule.Stage> stages = new ArrayList<OvertimeSchedule.Stage>();
+        for (int i = 0; i < numberOfStages; i++) {
+            long firstTime = firstTimes.get(i);
+            long period    = (random.nextInt(4) == 0) ? 0 : 1 + random.nextInt(30);
+            long lastTime  = (random.nextBoolean()) ? OvertimeSchedule.UNLIMITED
+                                                    : firstTime + random.nextInt(150);
+            stages.add(new OvertimeSchedule.Stage(firstTime, period, lastTime, sound(i + 1)));
+        }
+        Collections.shuffle(stages, random);
+        return stages;
+    }
+
+    /**
+     * Lists every bell, by ringing each stage in full and then removing whatever a later stage
+     * has taken over.
+     */
+    private static TreeSet<Long> modelBells(List<OvertimeSchedule.Stage> stages) {
+        TreeSet<Long> bells = new TreeSet<Long>();
+        for (long t = 1; t <= MODEL_LIMIT; t++) {
+            OvertimeSchedule.Stage stage = modelStage(stages, t);
+            if (stage == null || t > stage.getLastTime()) continue;
+            long sinceFirst = t - stage.getFirstTime();
+            if (sinceFirst == 0 || (stage.getPeriod() > 0 && sinceFirst % stage.getPeriod() == 0))
+                bells.add(t);
+        }
+        return bells;
+    }
+
+    private static BellSoundInfo modelSound(List<OvertimeSchedule.Stage> stages, long t) {
+        OvertimeSchedule.Stage stage = modelStage(stages, t);
+        return (stage == null) ? null : stage.getSound();
+    }
+
+    /**
+     * @return the stage that started most recently at or before the given time
+     */
+    private static OvertimeSchedule.Stage modelStage(List<OvertimeSchedule.Stage> stages, long t) {
+        OvertimeSchedule.Stage latest = null;
+        for (OvertimeSchedule.Stage stage : stages)
+            if (stage.getFirstTime() <= t && (latest == null || stage.getFirstTime() > latest.getFirstTime()))
+                latest = stage;
+        return latest;
+    }
+
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.czlee.debatekeeper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link SnapshotDeltaEncoder}.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class SnapshotDeltaEncoderTest {
+
+    private static final String QUOTED_NAME  = "Prime \"Minister\" \\ Leader";
+    private static final String CONTROL_NAME = "Line one\nLine two\r\tTabbed \u0001\u001f end";
+
+    //******************************************************************************************
+    // Tests
+    //******************************************************************************************
+
+    @Test
+    public void deltasAddUpToFullState() {
+        SpeechFormat         sf      = makeSpeechFormat();
+        SnapshotDeltaEncoder encoder = new SnapshotDeltaEncoder();
+        Map<String, Object>  viewer  = new HashMap<String, Object>();
+
+        TimerSnapshot[] snapshots = {
+            makeSnapshot(0, "First speaker", sf, 0),
+            makeSnapshot(0, "First speaker", sf, 1),
+            makeSnapshot(0, "First speaker", sf, 59),
+            makeSnapshot(0, "First speaker", sf, 60),   // bell, period change
+            makeSnapshot(0, "First speaker", sf, 75),   // no more bells
+            makeSnapshot(1, "Second speaker", sf, 0),   // speech change
+            makeSnapshot(1, "Second speaker", sf, 2),
+        };
+
+        for (int i = 0; i < snapshots.length; i++) {
+            String delta = encoder.encode(snapshots[i]);
+            assertNotNull("Snapshot " + i + " gave no delta", delta);
+            viewer.putAll(parseJson(delta));
+
+            // What the viewer has must be what a viewer joining now would be sent, and what a
+            // new encoder would send for the same snapshot.
+            String current = encoder.encodeCurrent();
+            assertEquals("After snapshot " + i, parseJson(current), viewer);
+            assertEquals("After snapshot " + i,
+                    parseJson(new SnapshotDeltaEncoder().encode(snapshots[i])), viewer);
+        }
+
+        assertEquals(7, viewer.size());
+        assertEquals(Long.valueOf(2), viewer.get("t"));
+        assertEquals("Second speaker", viewer.get("n"));
+    }
+
+    @Test
+    public void tickOnlySendsTime() {
+        SpeechFormat         sf      = makeSpeechFormat();
+        SnapshotDeltaEncoder encoder = new SnapshotDeltaEncoder();
+        encoder.encode(makeSnapshot(0, "First speaker", sf, 10));
+        assertEquals("{\"t\":11}", encoder.encode(makeSnapshot(0, "First speaker", sf, 11)));
+        assertNull(encoder.encode(makeSnapshot(0, "First speaker", sf, 11)));
+    }
+
+    @Test
+    public void resetSendsFullStateAgain() {
+        SpeechFormat         sf      = makeSpeechFormat();
+        SnapshotDeltaEncoder encoder = new SnapshotDeltaEncoder();
+        assertNull(encoder.encodeCurrent());
+        encoder.encode(makeSnapshot(0, "First speaker", sf, 10));
+        encoder.reset();
+        assertNull(encoder.encodeCurrent());
+        assertEquals(7, parseJson(encoder.encode(makeSnapshot(0, "First speaker", sf, 10))).size());
+    }
+
+    @Test
+    public void quotesAndBackslashesAreEscaped() {
+        assertNamesRoundTrip(QUOTED_NAME);
+    }
+
+    @Test
+    public void controlCharactersAreEscaped() {
+        String json = assertNamesRoundTrip(CONTROL_NAME);
+        for (int i = 0; i < json.length(); i++)
+            assertFalse("Unescaped control character at " + i, json.charAt(i) < 0x20);
+    }
+
+    //******************************************************************************************
+    // Package-private methods
+    //******************************************************************************************
+
+    /**
+     * @return a two-minute speech format, with a "Main" period that changes to a coloured
+     * "Grace" period at the bell at one minute
+     */
+    static SpeechFormat makeSpeechFormat() {
+        return makeSpeechFormat("Main", "Grace");
+    }
+
+    /**
+     * Makes a snapshot of a speech, as <code>DebateManager</code> would publish it.
+     * @param speechIndex the index of the speech, out of two
+     * @param speechName the name of the speech
+     * @param sf the {@link SpeechFormat} of the speech
+     * @param time the current time in seconds
+     */
+    static TimerSnapshot makeSnapshot(int speechIndex, String speechName, SpeechFormat sf, long time) {
+        SpeechManager sm = new SpeechManager(null);
+        sm.loadSpeech(sf, time);
+        TimerSnapshot snapshot = new TimerSnapshot();
+        snapshot.set(time, 0, speechIndex, 2, speechName, sm, new long[2]);
+        return snapshot;
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    private static SpeechFormat makeSpeechFormat(String firstPeriod, String secondPeriod) {
+        SpeechFormat sf = new SpeechFormat(120);
+        sf.setFirstPeriodInfo(new PeriodInfo(firstPeriod, null));
+        BellInfo bell = new BellInfo(60, 1);
+        bell.setNextPeriodInfo(new PeriodInfo(secondPeriod, 0xff336699));
+        TreeMap<Long, BellInfo> bells = new TreeMap<Long, BellInfo>();
+        bells.put(60L, bell);
+        sf.addBellSegment(new BellSegment(bells));
+        return sf;
+    }
+
+    /**
+     * Checks that a speech name and period description survive being encoded and decoded.
+     * @return the JSON they were encoded in
+     */
+    private static String assertNamesRoundTrip(String text) {
+        SpeechFormat sf   = makeSpeechFormat(text, text);
+        String       json = new SnapshotDeltaEncoder().encode(makeSnapshot(0, text, sf, 0));
+        Map<String, Object> decoded = parseJson(json);
+        assertEquals(text, decoded.get("n"));
+        assertEquals(text, decoded.get("p"));
+        return json;
+    }
+
+    /**
+     * Parses a JSON object whose values are all strings, integers or <code>null</code>, which is
+     * all that {@link SnapshotDeltaEncoder} writes.
+     */
+    private static Map<String, Object> parseJson(String json) {
+        Map<String, Object> result = new HashMap<String, Object>();
+        int[] pos = {0};
+        expect(json, pos, '{');
+        if (json.charAt(pos[0]) == '}') return result;
+        while (true) {
+            String key = parseString(json, pos);
+            expect(json, pos, ':');
+            Object value;
+            char c = json.charAt(pos[0]);
+            if (c == '"') {
+                value = parseString(json, pos);
+            } else if (json.startsWith("null", pos[0])) {
+                value = null;
+                pos[0] += 4;
+            } else {
+                int start = pos[0];
+                while (pos[0] < json.length() && "-0123456789".indexOf(json.charAt(pos[0])) >= 0)
+                    pos[0]++;
+                value = Long.valueOf(json.substring(start, pos[0]));
+            }
+            result.put(key, value);
+            if (json.charAt(pos[0]) == '}') break;
+            expect(json, pos, ',');
+        }
+        assertEquals("Trailing characters in " + json, json.length(), pos[0] + 1);
+        return result;
+    }
+
+    private static String parseString(String json, int[] pos) {
+        expect(json, pos, '"');
+        StringBuilder builder = new StringBuilder();
+        while (true) {
+            char c = json.charAt(pos[0]++);
+            if (c == '"') return builder.toString();
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            c = json.charAt(pos[0]++);
+            switch (c) {
+            case 'n': builder.append('\n'); break;
+            case 'r': builder.append('\r'); break;
+            case 't': builder.append('\t'); break;
+            case 'u':
+                builder.append((char) Integer.parseInt(json.substring(pos[0], pos[0] + 4), 16));
+                pos[0] += 4;
+                break;
+            default:  builder.append(c);
+            }
+        }
+    }
+
+    private static void expect(String json, int[] pos, char expected) {
+        assertEquals("At " + pos[0] + " in " + json, expected, json.charAt(pos[0]));
+        pos[0]++;
+    }
+
+}
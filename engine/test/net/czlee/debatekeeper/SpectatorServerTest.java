@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.czlee.debatekeeper;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SpectatorServer}, over real sockets on the loopback interface.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class SpectatorServerTest {
+
+    private static final int    TIMEOUT_MILLIS = 10000;
+    private static final int    NAME_LENGTH    = 8192;
+    private static final int    SNAPSHOTS      = 1000;
+    private static final String LAST_NAME      = "Last speaker";
+
+    private SpectatorServer      mServer;
+    private TimerEventDispatcher mDispatcher;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer     = new SpectatorServer(new InetSocketAddress("127.0.0.1", 0));
+        mDispatcher = new TimerEventDispatcher();
+        mServer.start();
+        assertTrue(mServer.awaitListening(TIMEOUT_MILLIS));
+        mServer.attach(mDispatcher);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.detach(mDispatcher);
+        mServer.stop();
+    }
+
+    //******************************************************************************************
+    // Tests
+    //******************************************************************************************
+
+    @Test
+    public void slowViewerSkipsToFullState() throws Exception {
+        Socket socket = new Socket();
+        socket.setReceiveBufferSize(1024);
+        socket.setSoTimeout(TIMEOUT_MILLIS);
+        socket.connect(new InetSocketAddress("127.0.0.1", mServer.getLocalPort()), TIMEOUT_MILLIS);
+        try {
+            OutputStream out = socket.getOutputStream();
+            out.write("GET /events HTTP/1.1\r\n\r\n".getBytes("ISO-8859-1"));
+            out.flush();
+
+            // Once the headers are here, the viewer is streaming.  Nothing has been published
+            // yet, so it hasn't been sent a "state" event.
+            InputStream in = socket.getInputStream();
+            String headers = readUntil(in, "\r\n\r\n");
+            assertTrue(headers, headers.startsWith("HTTP/1.1 200 OK"));
+
+            // Without reading, publish far more than the socket buffers and the backlog limit
+            // can hold.  Every name is different, so every delta carries one.
+            SpeechFormat sf      = SnapshotDeltaEncoderTest.makeSpeechFormat();
+            String       padding = makePadding(NAME_LENGTH);
+            for (int i = 0; i < SNAPSHOTS; i++) {
+                mDispatcher.publish(SnapshotDeltaEncoderTest.makeSnapshot(0, i + padding, sf, i),
+                        TimerEventDispatcher.EVENT_TICK);
+                Thread.sleep(1); // so that the events aren't all conflated into a few
+            }
+            mDispatcher.publish(SnapshotDeltaEncoderTest.makeSnapshot(1, LAST_NAME, sf, 0),
+                    TimerEventDispatcher.EVENT_SPEECH_CHANGE);
+
+            // The backlog must have been replaced by the full state, so the viewer missed some.
+            String stream = readUntil(in, LAST_NAME);
+            assertTrue("No state event was sent", stream.indexOf("event: state\n") >= 0);
+            assertTrue("Got " + stream.length() + " characters",
+                    stream.length() < SNAPSHOTS * NAME_LENGTH);
+        } finally {
+            socket.close();
+        }
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    private static String makePadding(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            builder.append('x');
+        return builder.toString();
+    }
+
+    /**
+     * Reads from a stream until some text has been read.
+     * @return everything read, up to and including that text
+     */
+    private static String readUntil(InputStream in, String text) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        while (true) {
+            int read = in.read(buffer);
+            if (read < 0) fail("Stream ended before '" + text + "'");
+            bytes.write(buffer, 0, read);
+            String received = bytes.toString("UTF-8");
+            int index = received.indexOf(text);
+            if (index >= 0) return received.substring(0, index + text.length());
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link BellSegment}, and for how {@link SpeechFormat} merges the segments it shares
+ * with other speech formats.  However the bells are split between segments, a speech format
+ * must behave as if they were all in one sorted list.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class SpeechFormatTest {
+
+    private static final int NUMBER_OF_TRIALS = 300;
+
+    @Test
+    public void segmentIsSortedAndSearchable() {
+        TreeMap<Long, BellInfo> bells = new TreeMap<Long, BellInfo>();
+        long[] times = {240, 60, 300, 0};
+        for (int i = 0; i < times.length; i++)
+            bells.put(times[i], new BellInfo(times[i], 1));
+        BellSegment segment = new BellSegment(bells);
+
+        assertEquals(4, segment.size());
+        assertEquals(0, segment.getBellTime(0));
+        assertEquals(300, segment.getBellTime(3));
+        assertEquals(300, segment.getLastBellTime());
+        assertEquals(60, segment.getBellAtTime(60).getBellTime());
+        assertNull(segment.getBellAtTime(61));
+        assertEquals(1, segment.indexOfFirstBellFromTime(60));
+        assertEquals(2, segment.indexOfFirstBellFromTime(61));
+        assertEquals(4, segment.indexOfFirstBellFromTime(301));
+    }
+
+    @Test
+    public void emptySegmentHasNoLastBell() {
+        BellSegment segment = new BellSegment(new TreeMap<Long, BellInfo>());
+        assertEquals(0, segment.size());
+        assertEquals(-1, segment.getLastBellTime());
+        assertEquals(0, segment.indexOfFirstBellFromTime(0));
+    }
+
+    @Test
+    public void segmentsAreMergedInTimeOrder() {
+        Random random = new Random(33);
+
+        for (int trial = 0; trial < NUMBER_OF_TRIALS; trial++) {
+            long speechLength = 60 + random.nextInt(600);
+            ArrayList<BellInfo> bells = makeBells(random, speechLength);
+
+            // The same bells, split at random between up to four segments...
+            int numberOfSegments = 1 + random.nextInt(4);
+            ArrayList<TreeMap<Long, BellInfo>> parts = new ArrayList<TreeMap<Long, BellInfo>>();
+            for (int i = 0; i < numberOfSegments; i++)
+                parts.add(new TreeMap<Long, BellInfo>());
+            for (int i = 0; i < bells.size(); i++)
+                parts.get(random.nextInt(numberOfSegments)).put(bells.get(i).getBellTime(), bells.get(i));
+
+            SpeechFormat sf = new SpeechFormat(speechLength);
+            sf.setFirstPeriodInfo(new PeriodInfo("First", 0x11));
+            for (int i = 0; i < numberOfSegments; i++)
+                sf.addBellSegment(new BellSegment(parts.get(i)));
+
+            // ...must give the same answers as the simple model, at every time in the speech.
+            for (long time = 0; time <= speechLength + 1; time++) {
+                String message = "Trial " + trial + ", time " + time;
+                BellInfo expectedNext = firstBellFromTime(bells, time);
+                BellInfo actualNext   = sf.getFirstBellFromTime(time);
+                if (expectedNext == null)
+                    assertNull(message, actualNext);
+                else
+                    assertEquals(message, expectedNext.getBellTime(), actualNext.getBellTime());
+
+                BellInfo expectedAt = firstBellFromTime(bells, time);
+                if (expectedAt == null || expectedAt.getBellTime() != time)
+                    assertNull(message, sf.getBellAtTime(time));
+                else
+                    assertEquals(message, time, sf.getBellAtTime(time).getBellTime());
+
+                assertEquals(message, periodInfoForTime(bells, sf.getFirstPeriodInfo(), time),
+                        sf.getPeriodInfoForTime(time));
+            }
+        }
+    }
+
+    @Test
+    public void sharedSegmentIsNotCopied() {
+        TreeMap<Long, BellInfo> bells = new TreeMap<Long, BellInfo>();
+        bells.put(30L, new BellInfo(30, 1));
+        BellSegment shared = new BellSegment(bells);
+
+        SpeechFormat first  = new SpeechFormat(60);
+        SpeechFormat second = new SpeechFormat(90);
+        first.addBellSegment(shared);
+        second.addBellSegment(shared);
+
+        assertSame(first.getBellAtTime(30), second.getBellAtTime(30));
+        assertSame(shared.get(0), first.getFirstBellFromTime(0));
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * @return bells at distinct random times up to the speech length, in random order, some
+     * with periods
+     */
+    private static ArrayList<BellInfo> makeBells(Random random, long speechLength) {
+        ArrayList<Long> times = new ArrayList<Long>();
+        for (long time = 0; time <= speechLength; time++)
+            times.add(time);
+        Collections.shuffle(times, random);
+
+        int numberOfBells = random.nextInt(12);
+        ArrayList<BellInfo> bells = new ArrayList<BellInfo>();
+        for (int i = 0; i < numberOfBells; i++) {
+            BellInfo bi = new BellInfo(times.get(i), 1 + random.nextInt(3));
+            if (random.nextBoolean()) {
+                String description = random.nextBoolean() ? "Period " + i : null;
+                Integer color      = random.nextBoolean() ? Integer.valueOf(i) : null;
+                bi.setNextPeriodInfo(new PeriodInfo(description, color));
+            }
+            bells.add(bi);
+        }
+        return bells;
+    }
+
+    /**
+     * The model: the earliest bell at or after the time, found by looking at every bell.
+     */
+    private static BellInfo firstBellFromTime(ArrayList<BellInfo> bells, long time) {
+        BellInfo result = null;
+        for (int i = 0; i < bells.size(); i++) {
+            BellInfo bi = bells.get(i);
+            if (bi.getBellTime() >= time && (result == null || bi.getBellTime() < result.getBellTime()))
+                result = bi;
+        }
+        return result;
+    }
+
+    /**
+     * The model: the first period, updated by each bell up to the time, in time order.  A bell
+     * at zero only adds to the first period.
+     */
+    private static PeriodInfo periodInfoForTime(ArrayList<BellInfo> bells, PeriodInfo first,
+            long time) {
+        ArrayList<BellInfo> sorted = new ArrayList<BellInfo>(bells);
+        Collections.sort(sorted, new Comparator<BellInfo>() {
+            @Override
+            public int compare(BellInfo lhs, BellInfo rhs) {
+                return Long.valueOf(lhs.getBellTime()).compareTo(rhs.getBellTime());
+            }
+        });
+
+        PeriodInfo result = new PeriodInfo();
+        result.update(first);
+        for (int i = 0; i < sorted.size(); i++) {
+            BellInfo bi = sorted.get(i);
+            if (bi.getBellTime() > time) break;
+            if (bi.getBellTime() > 0)
+                result.update(bi.getNextPeriodInfo());
+            else
+                result.addInfo(bi.getNextPeriodInfo());
+        }
+        return result;
+    }
+
+}
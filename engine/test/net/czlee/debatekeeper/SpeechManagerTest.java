@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link SpeechManager}.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class SpeechManagerTest {
+
+    //******************************************************************************************
+    // Tests
+    //******************************************************************************************
+
+    @Test
+    public void nextOvertimeBellIsStrictlyAfterCurrentTime() {
+        SpeechManager sm = new SpeechManager(null);
+        SpeechFormat  sf = new SpeechFormat(60);
+        sm.setOvertimeBells(30, 20);
+
+        assertEquals(90, nextOvertimeBellAt(sm, sf, 0));
+        assertEquals(90, nextOvertimeBellAt(sm, sf, 89));
+        assertEquals(110, nextOvertimeBellAt(sm, sf, 90));
+        assertEquals(130, nextOvertimeBellAt(sm, sf, 110));
+        assertEquals(130, nextOvertimeBellAt(sm, sf, 111));
+
+        sm.setOvertimeBells(30, 0);
+        assertEquals(90, nextOvertimeBellAt(sm, sf, 89));
+        assertEquals(SpeechManager.NO_OVERTIME_BELL, nextOvertimeBellAt(sm, sf, 90));
+    }
+
+    @Test
+    public void speechFormatScheduleReplacesPreferences() {
+        List<OvertimeSchedule.Stage> stages = new ArrayList<OvertimeSchedule.Stage>();
+        stages.add(new OvertimeSchedule.Stage(10, 0, OvertimeSchedule.UNLIMITED,
+                new BellSoundInfo(BellSoundInfo.DEFAULT_SOUND, 1)));
+        SpeechFormat sf = new SpeechFormat(60);
+        sf.setOvertimeSchedule(new OvertimeSchedule(stages));
+        SpeechManager sm = new SpeechManager(null);
+
+        assertEquals(70, nextOvertimeBellAt(sm, sf, 60));
+        assertEquals(SpeechManager.NO_OVERTIME_BELL, nextOvertimeBellAt(sm, sf, 70));
+        sm.loadSpeech(sf, 70);
+        assertNull(sm.getNextBellTime());
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    private static long nextOvertimeBellAt(SpeechManager sm, SpeechFormat sf, long time) {
+        sm.loadSpeech(sf, time);
+        return sm.getNextOvertimeBellTime();
+    }
+
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper.server;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import net.czlee.debatekeeper.BellInfo;
+import net.czlee.debatekeeper.BellSegment;
+import net.czlee.debatekeeper.BellSoundInfo;
+import net.czlee.debatekeeper.ClockSyncFollower;
+import net.czlee.debatekeeper.ClockSyncMaster;
+import net.czlee.debatekeeper.DebateEventLoop;
+import net.czlee.debatekeeper.DebateFormat;
+import net.czlee.debatekeeper.DebateFormat.NoSuchFormatException;
+import net.czlee.debatekeeper.DebateManager;
+import net.czlee.debatekeeper.PeriodInfo;
+import net.czlee.debatekeeper.SpeechFormat;
+import net.czlee.debatekeeper.TimerAlerts;
+import net.czlee.debatekeeper.TimerClock;
+import net.czlee.debatekeeper.TimerEventDispatcher;
+
+/**
+ * ClockSyncHarness checks LAN clock synchronisation over loopback, with a simulated network.
+ *
+ * A {@link ClockSyncMaster} and a {@link ClockSyncFollower} run in this process, each with a
+ * debate.  The master's clock is given a large offset and a skew, as another device's would have.
+ * Every packet between them goes through a relay that holds it back by a fixed latency plus a
+ * random jitter, and drops some.  Since both devices are in this process, the follower's real
+ * error can be measured, which is checked against the error bound it gives.  The master's debate
+ * is started, stopped part-way through a second and started again, and the times at which each
+ * device rings its bells are compared.
+ *
+ * It exits with status 1 if the devices' bells don't match, if any bell is more than 10 ms apart,
+ * or if the follower's error is outside its bound more than 1% of the time.
+ *
+ * Usage: <code>ClockSyncHarness [seconds] [latency ms] [jitter ms] [loss fraction]</code>
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class ClockSyncHarness {
+
+    private static final long   MASTER_OFFSET       = 3712345678901L; // about an hour, in ns
+    private static final double MASTER_SKEW         = 80e-6;          // 80 ppm fast
+    private static final long   BELL_INTERVAL       = 2;              // seconds
+    private static final long   MAX_BELL_DIFFERENCE = 10000000L;      // 10 ms
+    private static final long   SAMPLE_INTERVAL     = 20;             // milliseconds
+
+    private final InetAddress LOOPBACK;
+
+    private final int    mSeconds;
+    private final long   mLatencyNanos;
+    private final long   mJitterNanos;
+    private final double mLossFraction;
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    /**
+     * Another device's clock: offset from this one, and running at a slightly different rate.
+     */
+    private static class SkewedClock implements TimerClock {
+
+        private final long   mOrigin = System.nanoTime();
+        private final long   mOffset;
+        private final double mSkew;
+
+        public SkewedClock(long offset, double skew) {
+            mOffset = offset;
+            mSkew   = skew;
+        }
+
+        @Override
+        public long nanoTime() {
+            long elapsed = System.nanoTime() - mOrigin;
+            return mOffset + elapsed + (long) (elapsed * mSkew);
+        }
+    }
+
+    /**
+     * Notes the real time ({@link System#nanoTime()}) of every bell.
+     */
+    private static class RecordingAlerts implements TimerAlerts {
+
+        private final List<Long> mBellTimes = Collections.synchronizedList(new ArrayList<Long>());
+
+        @Override
+        public void makeActive(PeriodInfo pi) {}
+
+        @Override
+        public void makeInactive() {}
+
+        @Override
+        public void triggerAlert(BellInfo bi, PeriodInfo pi) {
+            mBellTimes.add(System.nanoTime());
+        }
+
+        @Override
+        public void playBell(BellSoundInfo bsi) {
+            mBellTimes.add(System.nanoTime());
+        }
+
+        @Override
+        public void wakeUpScreenForPause() {}
+
+        public List<Long> getBellTimes() {
+            return mBellTimes;
+        }
+    }
+
+    /**
+     * Stands between the follower and the master, passing packets on after a delay, or not at
+     * all.  Packets from the master go to whoever last sent one to the relay.
+     */
+    private class Relay implements Runnable {
+
+        private final DatagramSocket           mSocket;
+        private final SocketAddress            mMasterAddress;
+        private final ScheduledExecutorService mScheduler = Executors.newSingleThreadScheduledExecutor();
+        private final Random                   mRandom    = new Random(2012);
+        private volatile SocketAddress         mFollowerAddress = null;
+
+        public Relay(SocketAddress masterAddress) throws IOException {
+            mSocket        = new DatagramSocket(0, LOOPBACK);
+            mMasterAddress = masterAddress;
+        }
+
+        public SocketAddress getAddress() {
+            return mSocket.getLocalSocketAddress();
+        }
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[1024];
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            while (!mSocket.isClosed()) {
+                try {
+                    packet.setLength(buffer.length);
+                    mSocket.receive(packet);
+                } catch (IOException e) {
+                    break;
+                }
+
+                SocketAddress destination;
+                if (packet.getSocketAddress().equals(mMasterAddress)) {
+                    destination = mFollowerAddress;
+                } else {
+                    mFollowerAddress = packet.getSocketAddress();
+                    destination = mMasterAddress;
+                }
+                if (destination == null || mRandom.nextDouble() < mLossFraction) continue;
+
+                final DatagramPacket forward = new DatagramPacket(
+                        Arrays.copyOf(buffer, packet.getLength()), packet.getLength(), destination);
+                long delay = mLatencyNanos + (long) (mRandom.nextDouble() * mJitterNanos);
+                mScheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            mSocket.send(forward);
+                        } catch (IOException e) {
+                            // Closed, or as good as lost
+                        }
+                    }
+                }, delay, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        public void close() {
+            mSocket.close();
+            mScheduler.shutdownNow();
+        }
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    public ClockSyncHarness(int seconds, double latencyMillis, double jitterMillis, double lossFraction)
+            throws IOException {
+        super();
+        LOOPBACK      = InetAddress.getByName("127.0.0.1");
+        mSeconds      = seconds;
+        mLatencyNanos = (long) (latencyMillis * 1e6);
+        mJitterNanos  = (long) (jitterMillis * 1e6);
+        mLossFraction = lossFraction;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int    seconds = (args.length > 0) ? Integer.parseInt(args[0]) : 20;
+        double latency = (args.length > 1) ? Double.parseDouble(args[1]) : 5;
+        double jitter  = (args.length > 2) ? Double.parseDouble(args[2]) : 10;
+        double loss    = (args.length > 3) ? Double.parseDouble(args[3]) : 0.05;
+
+        boolean passed = new ClockSyncHarness(seconds, latency, jitter, loss).run();
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Runs the test and prints the results.
+     * @return <code>true</code> if it passed
+     */
+    public boolean run() throws IOException, InterruptedException {
+        DebateFormat df = makeFormat(mSeconds + 10);
+
+        // The master
+        SkewedClock          masterClock      = new SkewedClock(MASTER_OFFSET, MASTER_SKEW);
+        RecordingAlerts      masterAlerts     = new RecordingAlerts();
+        DebateEventLoop      masterLoop       = new DebateEventLoop(masterClock);
+        DebateManager        masterDebate     = new DebateManager(df, masterAlerts, masterLoop);
+        TimerEventDispatcher masterDispatcher = new TimerEventDispatcher();
+        ClockSyncMaster      master           = new ClockSyncMaster(
+                new DatagramSocket(0, LOOPBACK), masterClock);
+        masterDebate.setEventDispatcher(masterDispatcher);
+        masterDispatcher.addListener(master, Executors.newSingleThreadExecutor());
+        master.setDebateManager(masterDebate);
+        master.start();
+
+        // The network
+        Relay relay = new Relay(new InetSocketAddress(LOOPBACK,
+                master.getLocalPort()));
+        Thread relayThread = new Thread(relay, "Relay");
+        relayThread.setDaemon(true);
+        relayThread.start();
+
+        // The follower, whose debate can only be made once it has the master's time
+        ClockSyncFollower follower = new ClockSyncFollower(
+                new DatagramSocket(0, LOOPBACK), relay.getAddress(),
+                TimerClock.SYSTEM);
+        follower.start();
+        if (!follower.awaitSynchronisation(10000)) {
+            System.out.println("The follower didn't synchronise");
+            return false;
+        }
+        RecordingAlerts followerAlerts = new RecordingAlerts();
+        DebateEventLoop followerLoop   = new DebateEventLoop(follower);
+        DebateManager   followerDebate = new DebateManager(df, followerAlerts, followerLoop);
+        follower.setDebateManager(followerDebate);
+
+        System.out.println(String.format("Running for %d seconds, latency %.1f ms, jitter %.1f ms, loss %.0f%%",
+                mSeconds, mLatencyNanos / 1e6, mJitterNanos / 1e6, mLossFraction * 100));
+
+        // Start the master's debate, and part-way through, stop it part-way through a second.
+        long[] errors     = new long[mSeconds * 1000 / (int) SAMPLE_INTERVAL];
+        int    outOfBound = 0;
+        long   stopAt     = errors.length / 2;
+        long   restartAt  = stopAt + 1300 / SAMPLE_INTERVAL;
+        masterDebate.startTimer();
+        for (int i = 0; i < errors.length; i++) {
+            Thread.sleep(SAMPLE_INTERVAL);
+            if (i == stopAt) masterDebate.stopTimer();
+            if (i == restartAt) masterDebate.startTimer();
+
+            long bound = follower.getErrorBound();
+            errors[i] = Math.abs(follower.nanoTime() - masterClock.nanoTime());
+            if (errors[i] > bound) outOfBound++;
+        }
+        masterDebate.stopTimer();
+        Thread.sleep(500);
+
+        long   bound = follower.getErrorBound();
+        double skew  = follower.getSkewPpm();
+        long   delay = follower.getRoundTripDelay();
+        follower.stop();
+        master.stop();
+        relay.close();
+        masterDebate.release();
+        followerDebate.release();
+        masterLoop.quit();
+        followerLoop.quit();
+
+        // Compare the bells
+        List<Long> masterBells   = masterAlerts.getBellTimes();
+        List<Long> followerBells = followerAlerts.getBellTimes();
+        long maxBellDifference = 0;
+        int  bells = Math.min(masterBells.size(), followerBells.size());
+        for (int i = 0; i < bells; i++)
+            maxBellDifference = Math.max(maxBellDifference,
+                    Math.abs(masterBells.get(i) - followerBells.get(i)));
+
+        Arrays.sort(errors);
+        System.out.println(String.format("Skew:                 %.1f ppm (actual %.1f ppm)", skew, MASTER_SKEW * 1e6));
+        System.out.println(String.format("Shortest round trip:  %.2f ms", delay / 1e6));
+        System.out.println(String.format("Error p50:            %.3f ms", errors[errors.length / 2] / 1e6));
+        System.out.println(String.format("Error p99:            %.3f ms", errors[errors.length * 99 / 100] / 1e6));
+        System.out.println(String.format("Error max:            %.3f ms", errors[errors.length - 1] / 1e6));
+        System.out.println(String.format("Error bound (last):   %.3f ms", bound / 1e6));
+        System.out.println(String.format("Outside error bound:  %d of %d samples", outOfBound, errors.length));
+        System.out.println(String.format("Bells:                master %d, follower %d", masterBells.size(), followerBells.size()));
+        System.out.println(String.format("Bells furthest apart: %.3f ms", maxBellDifference / 1e6));
+
+        boolean passed = masterBells.size() > 0
+                && masterBells.size() == followerBells.size()
+                && maxBellDifference <= MAX_BELL_DIFFERENCE
+                && outOfBound <= errors.length / 100;
+        System.out.println(passed ? "PASSED" : "FAILED");
+        return passed;
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * @return a format with one speech, with a bell every <code>BELL_INTERVAL</code> seconds
+     */
+    private static DebateFormat makeFormat(long length) {
+        TreeMap<Long, BellInfo> bells = new TreeMap<Long, BellInfo>();
+        for (long time = BELL_INTERVAL; time <= length; time += BELL_INTERVAL)
+            bells.put(time, new BellInfo(time, 1));
+
+        SpeechFormat sf = new SpeechFormat(length);
+        sf.addBellSegment(new BellSegment(bells));
+
+        DebateFormat df = new DebateFormat();
+        df.setName("clock-sync-test");
+        df.addSpeechFormat("speech", sf);
+        try {
+            df.addSpeech("Speech", "speech");
+        } catch (NoSuchFormatException e) {
+            throw new IllegalStateException(e);
+        }
+        return df;
+    }
+
+}
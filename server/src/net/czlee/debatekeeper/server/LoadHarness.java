@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.czlee.debatekeeper.BellInfo;
+import net.czlee.debatekeeper.BellSegment;
+import net.czlee.debatekeeper.DebateFormat;
+import net.czlee.debatekeeper.DebateFormat.NoSuchFormatException;
+import net.czlee.debatekeeper.SpeechFormat;
+
+/**
+ * LoadHarness runs a {@link TournamentServer} on localhost with many rooms, and measures how
+ * late bells reach clients.
+ *
+ * It creates the rooms, follows each one with its own event stream, starts them all, and then
+ * waits.  The rooms use a format with a bell every second, so every tick is a bell.  For each bell,
+ * the lateness is the time the "bell" event arrived, less the time the start command was sent
+ * plus the bell time.  This includes the time the start command took to get to the room, so it
+ * errs on the side of lateness.  It exits with status 1 if the 99th percentile is over 10 ms.
+ *
+ * Usage: <code>LoadHarness [rooms] [seconds] [event loops]</code>
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class LoadHarness {
+
+    private static final String FORMAT_NAME = "load-test";
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long NANOS_PER_BUCKET = 100000L;  // 0.1 ms
+    private static final int  NUMBER_OF_BUCKETS = 10000;   // up to 1 s
+    private static final long TARGET_P99_NANOS = 10000000L; // 10 ms
+
+    private final int                mNumberOfRooms;
+    private final int                mSeconds;
+    private final TournamentServer   mServer;
+    private final String             mBaseUrl;
+    private final CountDownLatch     mConnected;
+    private final AtomicIntegerArray mHistogram  = new AtomicIntegerArray(NUMBER_OF_BUCKETS + 1);
+    private final AtomicLong         mBellCount  = new AtomicLong(0);
+    private final AtomicLong         mMaxLateness = new AtomicLong(0);
+    private volatile boolean         mFinished   = false;
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    /**
+     * Follows one room's event stream.
+     */
+    private class StreamReader implements Runnable {
+
+        private final int     mRoomId;
+        private volatile long mStartTime = 0;
+
+        public StreamReader(int roomId) {
+            mRoomId = roomId;
+        }
+
+        @Override
+        public void run() {
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(
+                        mBaseUrl + "/rooms/" + mRoomId + "/events").openConnection();
+                BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        connection.getInputStream(), "UTF-8"));
+                String event = null;
+                String line;
+                while (!mFinished && (line = reader.readLine()) != null) {
+                    if (line.startsWith("event: ")) {
+                        event = line.substring(7);
+                    } else if (line.startsWith("data: ")) {
+                        long received = System.nanoTime();
+                        if (event.equals("state"))
+                            mConnected.countDown();
+                        else if (event.equals("bell"))
+                            recordBell(line, received);
+                    }
+                }
+                reader.close();
+            } catch (IOException e) {
+                if (!mFinished)
+                    System.err.println("Room " + mRoomId + ": " + e);
+            }
+        }
+
+        private void recordBell(String line, long received) {
+            long startTime = mStartTime;
+            int  timeIndex = line.indexOf("\"t\":");
+            if (startTime == 0 || timeIndex < 0) return;
+
+            int end = timeIndex + 4;
+            while (end < line.length() && Character.isDigit(line.charAt(end)))
+                end++;
+            long bellTime = Long.parseLong(line.substring(timeIndex + 4, end));
+
+            long lateness = received - (startTime + bellTime * NANOS_PER_SECOND);
+            int  bucket   = (int) Math.min(Math.max(lateness, 0) / NANOS_PER_BUCKET, NUMBER_OF_BUCKETS);
+            mHistogram.incrementAndGet(bucket);
+            mBellCount.incrementAndGet();
+
+            long max;
+            do {
+                max = mMaxLateness.get();
+            } while (lateness > max && !mMaxLateness.compareAndSet(max, lateness));
+        }
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    public LoadHarness(int numberOfRooms, int seconds, int numberOfLoops) throws IOException {
+        super();
+        mNumberOfRooms = numberOfRooms;
+        mSeconds       = seconds;
+        mConnected     = new CountDownLatch(numberOfRooms);
+        mServer        = new TournamentServer(new InetSocketAddress("127.0.0.1", 0), numberOfLoops);
+        mServer.addFormat(FORMAT_NAME, makeFormat(seconds + 10));
+        mServer.start();
+        mBaseUrl       = "http://127.0.0.1:" + mServer.getPort();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int numberOfRooms = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        int seconds       = (args.length > 1) ? Integer.parseInt(args[1]) : 30;
+        int numberOfLoops = (args.length > 2) ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+
+        LoadHarness harness = new LoadHarness(numberOfRooms, seconds, numberOfLoops);
+        boolean passed = harness.run();
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Runs the test and prints the results.
+     * @return <code>true</code> if the 99th percentile lateness was within the target
+     */
+    public boolean run() throws IOException, InterruptedException {
+        StreamReader[] readers = new StreamReader[mNumberOfRooms];
+
+        System.out.println(String.format("Creating %d rooms...", mNumberOfRooms));
+        for (int i = 0; i < mNumberOfRooms; i++) {
+            int roomId = Integer.parseInt(request("POST", "/rooms?format=" + FORMAT_NAME).trim());
+            readers[i] = new StreamReader(roomId);
+            Thread thread = new Thread(readers[i], "StreamReader-" + roomId);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        if (!mConnected.await(60, TimeUnit.SECONDS)) {
+            System.out.println("Not all streams connected");
+            return false;
+        }
+
+        System.out.println(String.format("Starting them and waiting %d seconds...", mSeconds));
+        long started = System.nanoTime();
+        for (int i = 0; i < mNumberOfRooms; i++) {
+            readers[i].mStartTime = System.nanoTime();
+            request("POST", "/rooms/" + readers[i].mRoomId + "/start");
+        }
+        long startDuration = System.nanoTime() - started;
+
+        Thread.sleep(mSeconds * 1000L);
+        mFinished = true;
+        mServer.stop();
+
+        long bells    = mBellCount.get();
+        long p50      = getPercentile(0.50);
+        long p99      = getPercentile(0.99);
+        long p999     = getPercentile(0.999);
+        long expected = (long) mNumberOfRooms * mSeconds;
+
+        System.out.println(String.format("Rooms:             %d", mNumberOfRooms));
+        System.out.println(String.format("Starting all took: %.1f ms", startDuration / 1e6));
+        System.out.println(String.format("Bells received:    %d (about %d expected)", bells, expected));
+        System.out.println(String.format("Lateness p50:      %.1f ms", p50 / 1e6));
+        System.out.println(String.format("Lateness p99:      %.1f ms", p99 / 1e6));
+        System.out.println(String.format("Lateness p99.9:    %.1f ms", p999 / 1e6));
+        System.out.println(String.format("Lateness max:      %.1f ms", mMaxLateness.get() / 1e6));
+
+        boolean passed = bells > 0 && p99 <= TARGET_P99_NANOS;
+        System.out.println(passed ? "PASSED" : "FAILED");
+        return passed;
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * @return a format with one speech, with a bell every second
+     */
+    private static DebateFormat makeFormat(long length) {
+        TreeMap<Long, BellInfo> bells = new TreeMap<Long, BellInfo>();
+        for (long time = 1; time <= length; time++)
+            bells.put(time, new BellInfo(time, 1));
+
+        SpeechFormat sf = new SpeechFormat(length);
+        sf.addBellSegment(new BellSegment(bells));
+
+        DebateFormat df = new DebateFormat();
+        df.setName(FORMAT_NAME);
+        df.addSpeechFormat("speech", sf);
+        try {
+            df.addSpeech("Speech", "speech");
+        } catch (NoSuchFormatException e) {
+            throw new IllegalStateException(e);
+        }
+        return df;
+    }
+
+    /**
+     * @return the upper bound of the histogram bucket containing the given fraction of bells
+     */
+    private long getPercentile(double fraction) {
+        long total = mBellCount.get();
+        if (total == 0) return 0;
+        long threshold = (long) Math.ceil(total * fraction);
+        long count = 0;
+        for (int i = 0; i <= NUMBER_OF_BUCKETS; i++) {
+            count += mHistogram.get(i);
+            if (count >= threshold)
+                return (i + 1) * NANOS_PER_BUCKET;
+        }
+        return mMaxLateness.get();
+    }
+
+    private String request(String method, String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(mBaseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        InputStream in = connection.getInputStream();
+        StringBuilder body = new StringBuilder();
+        byte[] buffer = new byte[256];
+        int read;
+        while ((read = in.read(buffer)) >= 0)
+            body.append(new String(buffer, 0, read, "UTF-8"));
+        in.close();
+        return body.toString();
+    }
+
+}
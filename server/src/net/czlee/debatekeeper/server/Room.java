@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper.server;
+
+import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+import net.czlee.debatekeeper.BellInfo;
+import net.czlee.debatekeeper.BellSoundInfo;
+import net.czlee.debatekeeper.DebateEventLoop;
+import net.czlee.debatekeeper.DebateFormat;
+import net.czlee.debatekeeper.DebateManager;
+import net.czlee.debatekeeper.PeriodInfo;
+import net.czlee.debatekeeper.TimerAlerts;
+import net.czlee.debatekeeper.TimerEventDispatcher;
+
+/**
+ * Room is one debate being timed by the {@link TournamentServer}.
+ *
+ * It is just a {@link DebateManager}, exactly as the app uses it, on one of the server's
+ * {@link DebateEventLoop}s, together with a {@link TimerEventDispatcher} that pushes its state to
+ * the room's {@link RoomStream}s.  Bells aren't rung on the server; the clients ring them when
+ * they're told about them.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class Room {
+
+    private static final TimerAlerts SILENT_ALERTS = new SilentAlerts();
+
+    private final int                  mId;
+    private final String               mFormatName;
+    private final DebateManager        mDebateManager;
+    private final TimerEventDispatcher mDispatcher = new TimerEventDispatcher();
+    private final Executor             mStreamExecutor;
+    private final CopyOnWriteArrayList<RoomStream> mStreams = new CopyOnWriteArrayList<RoomStream>();
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    private static class SilentAlerts implements TimerAlerts {
+
+        @Override
+        public void makeActive(PeriodInfo pi) {}
+
+        @Override
+        public void makeInactive() {}
+
+        @Override
+        public void triggerAlert(BellInfo bi, PeriodInfo pi) {}
+
+        @Override
+        public void playBell(BellSoundInfo bsi) {}
+
+        @Override
+        public void wakeUpScreenForPause() {}
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Constructor.
+     * @param id the room number
+     * @param formatName the name under which the debate format is known to the server
+     * @param df the {@link DebateFormat}
+     * @param loop the {@link DebateEventLoop} on which to time this room
+     * @param streamExecutor the {@link Executor} on which to write to this room's streams
+     */
+    public Room(int id, String formatName, DebateFormat df, DebateEventLoop loop,
+            Executor streamExecutor) {
+        super();
+        mId             = id;
+        mFormatName     = formatName;
+        mStreamExecutor = streamExecutor;
+        mDebateManager  = new DebateManager(df, SILENT_ALERTS, loop);
+        mDebateManager.setEventDispatcher(mDispatcher);
+    }
+
+    public int getId() {
+        return mId;
+    }
+
+    public String getFormatName() {
+        return mFormatName;
+    }
+
+    public DebateManager getDebateManager() {
+        return mDebateManager;
+    }
+
+    /**
+     * Runs a command on this room's timer.  Commands are queued on the room's loop, so this never
+     * waits for the timer.
+     * @param command one of "start", "stop", "reset", "next" and "previous"
+     * @return <code>true</code> if the command was recognised, <code>false</code> otherwise
+     */
+    public boolean runCommand(String command) {
+        if (command.equals("start"))
+            mDebateManager.startTimer();
+        else if (command.equals("stop"))
+            mDebateManager.stopTimer();
+        else if (command.equals("reset"))
+            mDebateManager.resetSpeaker();
+        else if (command.equals("next"))
+            mDebateManager.goToNextSpeaker();
+        else if (command.equals("previous"))
+            mDebateManager.goToPreviousSpeaker();
+        else
+            return false;
+        return true;
+    }
+
+    /**
+     * Starts pushing this room's state to a stream.
+     * @param stream the {@link RoomStream}
+     */
+    public void addStream(RoomStream stream) {
+        mStreams.add(stream);
+        mDispatcher.addListener(stream, mStreamExecutor);
+    }
+
+    /**
+     * Stops pushing this room's state to a stream.
+     * @param stream the {@link RoomStream}
+     */
+    public void removeStream(RoomStream stream) {
+        mDispatcher.removeListener(stream);
+        mStreams.remove(stream);
+    }
+
+    /**
+     * Stops timing this room and closes its streams.  It must not be used afterwards.
+     */
+    public void release() {
+        mDebateManager.release();
+        // Closing a stream removes it from mStreams, so work from a copy.
+        ArrayList<RoomStream> streams = new ArrayList<RoomStream>(mStreams);
+        for (int i = 0; i < streams.size(); i++)
+            streams.get(i).close();
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import net.czlee.debatekeeper.SnapshotDeltaEncoder;
+import net.czlee.debatekeeper.TimerEventDispatcher;
+import net.czlee.debatekeeper.TimerSnapshot;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * RoomStream pushes a {@link Room}'s state to one client, as a stream of server-sent events.
+ *
+ * The first event is a "state" event with everything in it.  After that, each event has only what
+ * has changed (see {@link SnapshotDeltaEncoder}), and is a "bell" event if a bell rang since the
+ * last one, or a "delta" event otherwise.  Events are conflated by the room's
+ * {@link TimerEventDispatcher}, so a slow client misses ticks rather than holding up the room.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class RoomStream implements TimerEventDispatcher.TimerListener {
+
+    private static final byte[] EVENT_STATE = "event: state\ndata: ".getBytes();
+    private static final byte[] EVENT_DELTA = "event: delta\ndata: ".getBytes();
+    private static final byte[] EVENT_BELL  = "event: bell\ndata: ".getBytes();
+    private static final byte[] EVENT_END   = "\n\n".getBytes();
+
+    private final Room                 mRoom;
+    private final HttpExchange         mExchange;
+    private final OutputStream         mOutputStream;
+    private final SnapshotDeltaEncoder mEncoder = new SnapshotDeltaEncoder();
+    private       boolean              mClosed  = false;
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Starts a stream.  The response headers must already have been sent.
+     * @param room the {@link Room} to stream
+     * @param exchange the {@link HttpExchange} to stream it to
+     * @throws IOException if the first event couldn't be sent
+     */
+    public RoomStream(Room room, HttpExchange exchange) throws IOException {
+        super();
+        mRoom         = room;
+        mExchange     = exchange;
+        mOutputStream = exchange.getResponseBody();
+
+        // Subscribe first, so that no change is missed, but send the state as it is now before
+        // any events get through.
+        synchronized (this) {
+            room.addStream(this);
+            TimerSnapshot snapshot = room.getDebateManager().getSnapshot();
+            try {
+                write(EVENT_STATE, mEncoder.encode(snapshot));
+            } catch (IOException e) {
+                room.removeStream(this);
+                throw e;
+            } finally {
+                snapshot.release();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onTimerEvent(int events, TimerSnapshot snapshot) {
+        if (mClosed || snapshot == null) return;
+        String data = mEncoder.encode(snapshot);
+        if (data == null) return;
+        try {
+            write(((events & TimerEventDispatcher.EVENT_BELL) != 0) ? EVENT_BELL : EVENT_DELTA, data);
+        } catch (IOException e) {
+            // The client has gone away.
+            close();
+        }
+    }
+
+    /**
+     * Stops the stream and closes the connection.
+     */
+    public synchronized void close() {
+        if (mClosed) return;
+        mClosed = true;
+        mRoom.removeStream(this);
+        mExchange.close();
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    private void write(byte[] event, String data) throws IOException {
+        mOutputStream.write(event);
+        mOutputStream.write(data.getBytes("UTF-8"));
+        mOutputStream.write(EVENT_END);
+        mOutputStream.flush();
+    }
+
+}
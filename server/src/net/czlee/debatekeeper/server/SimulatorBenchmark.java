@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper.server;
+
+import java.util.List;
+import java.util.TreeMap;
+
+import net.czlee.debatekeeper.BellInfo;
+import net.czlee.debatekeeper.BellSegment;
+import net.czlee.debatekeeper.DebateFormat;
+import net.czlee.debatekeeper.DebateFormat.NoSuchFormatException;
+import net.czlee.debatekeeper.DebateSimulator;
+import net.czlee.debatekeeper.DebateSimulator.TimelineEvent;
+import net.czlee.debatekeeper.PeriodInfo;
+import net.czlee.debatekeeper.SpeechFormat;
+
+/**
+ * SimulatorBenchmark measures how fast the timing engine runs debates in virtual time, using a
+ * {@link DebateSimulator}.
+ *
+ * It runs a made-up debate of eight seven-minute speeches and two reply speeches, with warning
+ * bells, period changes, a bell that pauses the timer and overtime bells, over and over for a
+ * given time.  It reports how many simulated debate-hours it ran per second, and how many times
+ * faster than real time that is.  Every run must give the same timeline as the first, or it exits
+ * with status 1.
+ *
+ * Usage: <code>SimulatorBenchmark [seconds]</code>
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class SimulatorBenchmark {
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long WARM_UP_NANOS    = 2 * NANOS_PER_SECOND;
+    private static final long SECONDS_PER_HOUR = 3600;
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    public static void main(String[] args) throws Exception {
+        int seconds = (args.length > 0) ? Integer.parseInt(args[0]) : 10;
+
+        DebateFormat df = makeFormat();
+        List<TimelineEvent> expected = new DebateSimulator(df).run();
+        System.out.println(String.format("Each debate has %d events; warming up...",
+                expected.size()));
+
+        run(df, expected, WARM_UP_NANOS);
+        DebateSimulator simulator = run(df, expected, seconds * NANOS_PER_SECOND);
+        if (simulator == null) {
+            System.out.println("FAILED: a run gave a different timeline");
+            System.exit(1);
+        }
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * Runs the debate over and over for a given time, and prints the results.
+     * @return the simulator, or <code>null</code> if any run gave a different timeline from
+     * <code>expected</code>
+     */
+    private static DebateSimulator run(DebateFormat df, List<TimelineEvent> expected,
+            long durationNanos) {
+        DebateSimulator simulator = new DebateSimulator(df);
+        int  numberOfDebates = 0;
+        long startTime       = System.nanoTime();
+        long elapsedNanos;
+
+        do {
+            List<TimelineEvent> timeline = simulator.run();
+            if (!isSameTimeline(expected, timeline)) return null;
+            numberOfDebates++;
+            elapsedNanos = System.nanoTime() - startTime;
+        } while (elapsedNanos < durationNanos);
+
+        double elapsedSeconds = (double) elapsedNanos / NANOS_PER_SECOND;
+        double speedUp        = simulator.getSimulatedSeconds() / elapsedSeconds;
+        System.out.println(String.format(
+                "%d debates in %.1f s: %.1f debate-hours/s, %.0f times real time, %.1f us/debate",
+                numberOfDebates, elapsedSeconds, speedUp / SECONDS_PER_HOUR, speedUp,
+                elapsedNanos / 1e3 / numberOfDebates));
+        return simulator;
+    }
+
+    private static boolean isSameTimeline(List<TimelineEvent> a, List<TimelineEvent> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            TimelineEvent ea = a.get(i);
+            TimelineEvent eb = b.get(i);
+            if (ea.getType() != eb.getType() || ea.getSpeechIndex() != eb.getSpeechIndex()
+                    || ea.getTime() != eb.getTime())
+                return false;
+        }
+        return true;
+    }
+
+    private static DebateFormat makeFormat() {
+        DebateFormat df = new DebateFormat();
+        df.setName("simulator-benchmark");
+        df.addSpeechFormat("substantive", makeSpeechFormat(420, false));
+        df.addSpeechFormat("reply", makeSpeechFormat(240, true));
+        try {
+            for (int i = 1; i <= 8; i++)
+                df.addSpeech("Speaker " + i, "substantive");
+            df.addSpeech("Reply 1", "reply");
+            df.addSpeech("Reply 2", "reply");
+        } catch (NoSuchFormatException e) {
+            throw new IllegalStateException(e);
+        }
+        return df;
+    }
+
+    /**
+     * Makes a speech with points of information allowed from one minute until one minute before
+     * the end, and a bell at the end.
+     * @param length the length of the speech, in seconds
+     * @param pauseAtEnd whether the bell at the end pauses the timer
+     */
+    private static SpeechFormat makeSpeechFormat(long length, boolean pauseAtEnd) {
+        TreeMap<Long, BellInfo> bells = new TreeMap<Long, BellInfo>();
+
+        BellInfo open = new BellInfo(60, 1);
+        open.setNextPeriodInfo(new PeriodInfo("Points of information allowed", 0x7f003300));
+        bells.put(open.getBellTime(), open);
+
+        BellInfo close = new BellInfo(length - 60, 1);
+        close.setNextPeriodInfo(new PeriodInfo("Warning bell rung", 0x7f333300));
+        bells.put(close.getBellTime(), close);
+
+        BellInfo end = new BellInfo(length, 2);
+        end.setNextPeriodInfo(new PeriodInfo("Overtime", 0x7f330000));
+        end.setPauseOnBell(pauseAtEnd);
+        bells.put(end.getBellTime(), end);
+
+        SpeechFormat sf = new SpeechFormat(length);
+        sf.setFirstPeriodInfo(new PeriodInfo("Points of information not allowed", null));
+        sf.addBellSegment(new BellSegment(bells));
+        return sf;
+    }
+
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.TreeMap;
+
+import net.czlee.debatekeeper.BellInfo;
+import net.czlee.debatekeeper.BellSegment;
+import net.czlee.debatekeeper.BellSoundInfo;
+import net.czlee.debatekeeper.DebateEventLoop;
+import net.czlee.debatekeeper.DebateFormat;
+import net.czlee.debatekeeper.DebateFormat.NoSuchFormatException;
+import net.czlee.debatekeeper.DebateManager;
+import net.czlee.debatekeeper.PeriodInfo;
+import net.czlee.debatekeeper.SpectatorServer;
+import net.czlee.debatekeeper.SpeechFormat;
+import net.czlee.debatekeeper.TimerAlerts;
+import net.czlee.debatekeeper.TimerEventDispatcher;
+
+/**
+ * SpectatorLoadHarness checks that a {@link SpectatorServer} can hold many viewers at once.
+ *
+ * It runs a debate with a spectator server on localhost, connects the viewers, starts the debate
+ * and reads every viewer's event stream for a while, all on this thread with non-blocking
+ * sockets.  For every tick, the lateness is the time the event arrived less the time the timer
+ * was started plus the tick's time.  Every viewer must see every second, in order, after its
+ * first "state" event; a gap would mean a delta was lost.
+ *
+ * It exits with status 1 if any viewer didn't connect, missed a second, or if the 99th percentile
+ * lateness is over 50 ms.
+ *
+ * Usage: <code>SpectatorLoadHarness [viewers] [seconds]</code>
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class SpectatorLoadHarness {
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long TARGET_P99_NANOS = 50000000L; // 50 ms
+    private static final long BELL_INTERVAL    = 5;         // seconds
+
+    private final int mNumberOfViewers;
+    private final int mSeconds;
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    private static class SilentAlerts implements TimerAlerts {
+
+        @Override
+        public void makeActive(PeriodInfo pi) {}
+
+        @Override
+        public void makeInactive() {}
+
+        @Override
+        public void triggerAlert(BellInfo bi, PeriodInfo pi) {}
+
+        @Override
+        public void playBell(BellSoundInfo bsi) {}
+
+        @Override
+        public void wakeUpScreenForPause() {}
+    }
+
+    /**
+     * One viewer's connection, and what it has seen.
+     */
+    private static class Viewer {
+
+        public final SocketChannel channel;
+        public final StringBuilder received = new StringBuilder();
+        public boolean             hasState = false;
+        public long                lastTime = -1;
+        public int                 ticks    = 0;
+        public int                 bells    = 0;
+        public int                 gaps     = 0;
+
+        public Viewer(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    public SpectatorLoadHarness(int numberOfViewers, int seconds) {
+        super();
+        mNumberOfViewers = numberOfViewers;
+        mSeconds         = seconds;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int numberOfViewers = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+        int seconds         = (args.length > 1) ? Integer.parseInt(args[1]) : 15;
+
+        boolean passed = new SpectatorLoadHarness(numberOfViewers, seconds).run();
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Runs the test and prints the results.
+     * @return <code>true</code> if it passed
+     */
+    public boolean run() throws IOException, InterruptedException {
+        DebateEventLoop      loop       = new DebateEventLoop();
+        DebateManager        dm         = new DebateManager(makeFormat(mSeconds + 10), new SilentAlerts(), loop);
+        TimerEventDispatcher dispatcher = new TimerEventDispatcher();
+        SpectatorServer      server     = new SpectatorServer(new InetSocketAddress("127.0.0.1", 0));
+        dm.setEventDispatcher(dispatcher);
+        server.start();
+        if (!server.awaitListening(5000)) {
+            System.out.println("The server didn't start");
+            return false;
+        }
+        server.attach(dispatcher);
+
+        // Connect the viewers
+        System.out.println(String.format("Connecting %d viewers...", mNumberOfViewers));
+        Selector   selector = Selector.open();
+        Viewer[]   viewers  = new Viewer[mNumberOfViewers];
+        ByteBuffer request  = ByteBuffer.wrap("GET /events HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes("ISO-8859-1"));
+        for (int i = 0; i < mNumberOfViewers; i++) {
+            SocketChannel channel = SocketChannel.open(
+                    new InetSocketAddress("127.0.0.1", server.getLocalPort()));
+            request.rewind();
+            while (request.hasRemaining())
+                channel.write(request);
+            channel.configureBlocking(false);
+            viewers[i] = new Viewer(channel);
+            channel.register(selector, SelectionKey.OP_READ, viewers[i]);
+        }
+
+        // Wait for everyone's "state" event, then start the timer
+        ByteBuffer buffer        = ByteBuffer.allocate(65536);
+        long[]     lateness      = new long[mNumberOfViewers * (mSeconds + 2)];
+        int[]      latenessCount = new int[1];
+        long       deadline      = System.nanoTime() + 10 * NANOS_PER_SECOND;
+        while (countWithState(viewers) < mNumberOfViewers && System.nanoTime() < deadline)
+            readAll(selector, buffer, 0, lateness, latenessCount);
+        int connected = countWithState(viewers);
+        System.out.println(String.format("%d viewers have the state; starting the timer for %d seconds",
+                connected, mSeconds));
+
+        long startTime = System.nanoTime();
+        dm.startTimer();
+        long endTime = startTime + mSeconds * NANOS_PER_SECOND + NANOS_PER_SECOND / 2;
+        while (System.nanoTime() < endTime)
+            readAll(selector, buffer, startTime, lateness, latenessCount);
+
+        dm.stopTimer();
+        server.stop();
+        dm.release();
+        loop.quit();
+        for (int i = 0; i < mNumberOfViewers; i++)
+            viewers[i].channel.close();
+        selector.close();
+
+        // Results
+        int totalTicks = 0, totalBells = 0, totalGaps = 0, minTicks = Integer.MAX_VALUE;
+        for (int i = 0; i < mNumberOfViewers; i++) {
+            totalTicks += viewers[i].ticks;
+            totalBells += viewers[i].bells;
+            totalGaps  += viewers[i].gaps;
+            minTicks    = Math.min(minTicks, viewers[i].ticks);
+        }
+        long[] sorted = Arrays.copyOf(lateness, latenessCount[0]);
+        Arrays.sort(sorted);
+        long p50 = (sorted.length > 0) ? sorted[sorted.length / 2] : 0;
+        long p99 = (sorted.length > 0) ? sorted[sorted.length * 99 / 100] : 0;
+        long max = (sorted.length > 0) ? sorted[sorted.length - 1] : 0;
+
+        System.out.println(String.format("Viewers connected: %d of %d", connected, mNumberOfViewers));
+        System.out.println(String.format("Ticks received:    %d (fewest for one viewer %d, expected %d)",
+                totalTicks, minTicks, mSeconds));
+        System.out.println(String.format("Bell events:       %d", totalBells));
+        System.out.println(String.format("Missed seconds:    %d", totalGaps));
+        System.out.println(String.format("Lateness p50:      %.1f ms", p50 / 1e6));
+        System.out.println(String.format("Lateness p99:      %.1f ms", p99 / 1e6));
+        System.out.println(String.format("Lateness max:      %.1f ms", max / 1e6));
+
+        boolean passed = connected == mNumberOfViewers && totalGaps == 0 && minTicks >= mSeconds
+                && p99 <= TARGET_P99_NANOS;
+        System.out.println(passed ? "PASSED" : "FAILED");
+        return passed;
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    private static int countWithState(Viewer[] viewers) {
+        int count = 0;
+        for (int i = 0; i < viewers.length; i++)
+            if (viewers[i].hasState) count++;
+        return count;
+    }
+
+    /**
+     * Reads whatever has arrived for any viewer, waiting up to 100 ms for something to.
+     */
+    private static void readAll(Selector selector, ByteBuffer buffer, long startTime,
+            long[] lateness, int[] latenessCount) throws IOException {
+        selector.select(100);
+        long received = System.nanoTime();
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Viewer viewer = (Viewer) key.attachment();
+            buffer.clear();
+            int read = viewer.channel.read(buffer);
+            if (read < 0) {
+                key.cancel();
+                continue;
+            }
+            viewer.received.append(new String(buffer.array(), 0, read, "UTF-8"));
+            handleEvents(viewer, received, startTime, lateness, latenessCount);
+        }
+    }
+
+    /**
+     * Takes the complete events out of what a viewer has received so far.
+     */
+    private static void handleEvents(Viewer viewer, long received, long startTime,
+            long[] lateness, int[] latenessCount) {
+        int end;
+        while ((end = viewer.received.indexOf("\n\n")) >= 0) {
+            String event = viewer.received.substring(0, end);
+            viewer.received.delete(0, end + 2);
+
+            int typeIndex = event.indexOf("event: ");
+            int dataIndex = event.indexOf("data: ");
+            if (typeIndex < 0 || dataIndex < 0) continue; // the HTTP headers
+            String type = event.substring(typeIndex + 7, event.indexOf('\n', typeIndex));
+            String data = event.substring(dataIndex + 6);
+
+            if (type.equals("state")) {
+                viewer.hasState = true;
+                viewer.lastTime = getTime(data);
+                continue;
+            }
+            if (!viewer.hasState) {
+                viewer.gaps++;
+                continue;
+            }
+            if (type.equals("bell")) viewer.bells++;
+
+            long time = getTime(data);
+            if (time < 0) continue;
+            if (time != viewer.lastTime + 1) viewer.gaps++;
+            viewer.lastTime = time;
+            viewer.ticks++;
+            if (startTime != 0 && latenessCount[0] < lateness.length)
+                lateness[latenessCount[0]++] = Math.max(0, received - (startTime + time * NANOS_PER_SECOND));
+        }
+    }
+
+    /**
+     * @return the "t" field of an event, or -1 if it doesn't have one
+     */
+    private static long getTime(String data) {
+        int index = data.indexOf("\"t\":");
+        if (index < 0) return -1;
+        int end = index + 4;
+        while (end < data.length() && Character.isDigit(data.charAt(end)))
+            end++;
+        return Long.parseLong(data.substring(index + 4, end));
+    }
+
+    /**
+     * @return a format with one speech, with a bell every <code>BELL_INTERVAL</code> seconds
+     */
+    private static DebateFormat makeFormat(long length) {
+        TreeMap<Long, BellInfo> bells = new TreeMap<Long, BellInfo>();
+        for (long time = BELL_INTERVAL; time <= length; time += BELL_INTERVAL)
+            bells.put(time, new BellInfo(time, 1));
+
+        SpeechFormat sf = new SpeechFormat(length);
+        sf.addBellSegment(new BellSegment(bells));
+
+        DebateFormat df = new DebateFormat();
+        df.setName("spectator-test");
+        df.addSpeechFormat("speech", sf);
+        try {
+            df.addSpeech("Speech", "speech");
+        } catch (NoSuchFormatException e) {
+            throw new IllegalStateException(e);
+        }
+        return df;
+    }
+
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper.server;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.czlee.debatekeeper.CompiledDebateFormat;
+import net.czlee.debatekeeper.DebateEventLoop;
+import net.czlee.debatekeeper.DebateFormat;
+import net.czlee.debatekeeper.SnapshotDeltaEncoder;
+import net.czlee.debatekeeper.TimerSnapshot;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * TournamentServer times many debates at once, for online tournaments, using the same engine as
+ * the app.  Clients control rooms and follow them over HTTP:
+ *
+ * <ul><li><code>GET /formats</code>: the names of the debate formats, one per line</li>
+ * <li><code>POST /rooms?format=NAME</code>: creates a room, and returns its number</li>
+ * <li><code>GET /rooms/N</code>: the state of room N, as a JSON object (see
+ * {@link SnapshotDeltaEncoder})</li>
+ * <li><code>POST /rooms/N/COMMAND</code>: runs a command (start, stop, reset, next or previous)</li>
+ * <li><code>DELETE /rooms/N</code>: closes room N</li>
+ * <li><code>GET /rooms/N/events</code>: follows room N as a stream of server-sent events (see
+ * {@link RoomStream})</li>
+ * </ul>
+ *
+ * Rooms are spread across a few {@link DebateEventLoop}s, one per processor by default.  Each
+ * loop keeps its rooms' deadlines in a timing wheel, so a loop serves thousands of rooms without
+ * scanning them.  HTTP threads never wait for a room: commands are queued on the room's loop.
+ *
+ * Formats are read in compiled form (see {@link CompiledDebateFormat}), as written to
+ * assets/compiled by the app's build.
+ *
+ * Usage: <code>TournamentServer &lt;port&gt; &lt;compiled formats dir&gt; [event loops]</code>
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class TournamentServer {
+
+    private static final String COMPILED_FILE_EXTENSION = ".bin";
+    private static final String NODELAY_PROPERTY        = "sun.net.httpserver.nodelay";
+
+    private final HttpServer                             mHttpServer;
+    private final DebateEventLoop[]                      mEventLoops;
+    private final ExecutorService                        mHttpExecutor;
+    private final ExecutorService                        mStreamExecutor;
+    private final ConcurrentHashMap<String, DebateFormat> mFormats    = new ConcurrentHashMap<String, DebateFormat>();
+    private final ConcurrentHashMap<Integer, Room>       mRooms      = new ConcurrentHashMap<Integer, Room>();
+    private final AtomicInteger                          mNextRoomId = new AtomicInteger(1);
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    private class FormatsHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                respond(exchange, 405, "Method not allowed\n");
+                return;
+            }
+            ArrayList<String> names = new ArrayList<String>(mFormats.keySet());
+            Collections.sort(names);
+            StringBuilder body = new StringBuilder();
+            for (int i = 0; i < names.size(); i++)
+                body.append(names.get(i)).append('\n');
+            respond(exchange, 200, body.toString());
+        }
+    }
+
+    private class RoomsHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            drain(exchange.getRequestBody());
+            String   method   = exchange.getRequestMethod();
+            String[] segments = exchange.getRequestURI().getPath().split("/");
+
+            // segments[0] is empty, and segments[1] is "rooms"
+            if (segments.length == 2) {
+                if (method.equals("POST"))
+                    createRoom(exchange);
+                else
+                    respond(exchange, 405, "Method not allowed\n");
+                return;
+            }
+
+            Room room = getRoom(segments[2]);
+            if (room == null) {
+                respond(exchange, 404, "No such room\n");
+                return;
+            }
+
+            if (segments.length == 3) {
+                if (method.equals("GET")) {
+                    exchange.getResponseHeaders().set("Content-Type", "application/json");
+                    TimerSnapshot snapshot = room.getDebateManager().getSnapshot();
+                    String        state    = new SnapshotDeltaEncoder().encode(snapshot);
+                    snapshot.release();
+                    respond(exchange, 200, state + "\n");
+                } else if (method.equals("DELETE")) {
+                    mRooms.remove(room.getId());
+                    room.release();
+                    respond(exchange, 200, "Closed\n");
+                } else {
+                    respond(exchange, 405, "Method not allowed\n");
+                }
+
+            } else if (segments.length == 4 && segments[3].equals("events") && method.equals("GET")) {
+                exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+                exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+                exchange.sendResponseHeaders(200, 0);
+                try {
+                    new RoomStream(room, exchange);
+                } catch (IOException e) {
+                    exchange.close();
+                }
+                // The exchange stays open; the stream closes it when the client goes away.
+
+            } else if (segments.length == 4 && method.equals("POST")) {
+                if (room.runCommand(segments[3]))
+                    respond(exchange, 200, "OK\n");
+                else
+                    respond(exchange, 404, "No such command\n");
+
+            } else {
+                respond(exchange, 404, "Not found\n");
+            }
+        }
+
+        private void createRoom(HttpExchange exchange) throws IOException {
+            String formatName = getQueryParameter(exchange.getRequestURI().getRawQuery(), "format");
+            if (formatName == null) {
+                respond(exchange, 400, "No format given\n");
+                return;
+            }
+            Room room = TournamentServer.this.createRoom(formatName);
+            if (room == null) {
+                respond(exchange, 404, "No such format\n");
+                return;
+            }
+            respond(exchange, 201, room.getId() + "\n");
+        }
+    }
+
+    /**
+     * Makes daemon threads with a given name, so that the server's threads are easy to find.
+     */
+    private static class NamedThreadFactory implements ThreadFactory {
+
+        private final String        mName;
+        private final AtomicInteger mCount = new AtomicInteger(0);
+
+        public NamedThreadFactory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, mName + "-" + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Constructor.  The server doesn't accept connections until <code>start()</code> is called.
+     * @param address the address to listen on; use port 0 for any free port
+     * @param numberOfLoops the number of {@link DebateEventLoop}s to spread the rooms across
+     * @throws IOException if the server couldn't listen on the address
+     */
+    public TournamentServer(InetSocketAddress address, int numberOfLoops) throws IOException {
+        super();
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        mEventLoops = new DebateEventLoop[numberOfLoops];
+        for (int i = 0; i < numberOfLoops; i++)
+            mEventLoops[i] = new DebateEventLoop();
+
+        mHttpExecutor   = Executors.newFixedThreadPool(Math.max(4, processors * 2),
+                new NamedThreadFactory("ServerHttp"));
+        mStreamExecutor = Executors.newFixedThreadPool(Math.max(4, processors * 2),
+                new NamedThreadFactory("ServerStream"));
+
+        // Commands are small requests that want quick answers, so don't let Nagle's algorithm hold
+        // back the end of each response.  The JDK's server only reads this when it starts up.
+        if (System.getProperty(NODELAY_PROPERTY) == null)
+            System.setProperty(NODELAY_PROPERTY, "true");
+
+        mHttpServer = HttpServer.create(address, 1024);
+        mHttpServer.setExecutor(mHttpExecutor);
+        mHttpServer.createContext("/formats", new FormatsHandler());
+        mHttpServer.createContext("/rooms", new RoomsHandler());
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: TournamentServer <port> <compiled formats dir> [event loops]");
+            System.exit(2);
+        }
+
+        int port          = Integer.parseInt(args[0]);
+        int numberOfLoops = (args.length > 2) ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+
+        TournamentServer server = new TournamentServer(new InetSocketAddress(port), numberOfLoops);
+        int numberOfFormats = server.loadFormats(new File(args[1]));
+        server.start();
+        System.out.println(String.format("Serving %d formats on port %d with %d event loops",
+                numberOfFormats, server.getPort(), numberOfLoops));
+    }
+
+    /**
+     * Makes a debate format available to new rooms.
+     * @param name the name by which clients ask for it
+     * @param df the {@link DebateFormat}
+     */
+    public void addFormat(String name, DebateFormat df) {
+        mFormats.put(name, df);
+    }
+
+    /**
+     * Reads all the compiled debate formats in a directory.  Each is known by the name of the XML
+     * file it was compiled from.  Files that can't be read are skipped.
+     * @param directory the directory
+     * @return the number of formats read
+     */
+    public int loadFormats(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) return 0;
+
+        int count = 0;
+        for (int i = 0; i < files.length; i++) {
+            String filename = files[i].getName();
+            if (!filename.endsWith(COMPILED_FILE_EXTENSION)) continue;
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(files[i])));
+                try {
+                    addFormat(filename.substring(0, filename.length() - COMPILED_FILE_EXTENSION.length()),
+                            CompiledDebateFormat.read(in));
+                    count++;
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                System.err.println("Couldn't read " + files[i] + ": " + e.getMessage());
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Creates a room.
+     * @param formatName the name of a format added with <code>addFormat()</code>
+     * @return the new {@link Room}, or <code>null</code> if there is no such format
+     */
+    public Room createRoom(String formatName) {
+        DebateFormat df = mFormats.get(formatName);
+        if (df == null) return null;
+        int id = mNextRoomId.getAndIncrement();
+        Room room = new Room(id, formatName, df, mEventLoops[id % mEventLoops.length], mStreamExecutor);
+        mRooms.put(id, room);
+        return room;
+    }
+
+    /**
+     * Starts accepting connections.
+     */
+    public void start() {
+        mHttpServer.start();
+    }
+
+    /**
+     * Stops the server and all its rooms.
+     */
+    public void stop() {
+        mHttpServer.stop(0);
+        ArrayList<Room> rooms = new ArrayList<Room>(mRooms.values());
+        for (int i = 0; i < rooms.size(); i++)
+            rooms.get(i).release();
+        mRooms.clear();
+        for (int i = 0; i < mEventLoops.length; i++)
+            mEventLoops[i].quit();
+        mHttpExecutor.shutdownNow();
+        mStreamExecutor.shutdownNow();
+    }
+
+    /**
+     * @return the port the server is listening on
+     */
+    public int getPort() {
+        return mHttpServer.getAddress().getPort();
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    private Room getRoom(String idString) {
+        try {
+            return mRooms.get(Integer.parseInt(idString));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String getQueryParameter(String query, String name) {
+        if (query == null) return null;
+        String[] parameters = query.split("&");
+        for (int i = 0; i < parameters.length; i++) {
+            int equals = parameters[i].indexOf('=');
+            if (equals < 0) continue;
+            if (!parameters[i].substring(0, equals).equals(name)) continue;
+            try {
+                return URLDecoder.decode(parameters[i].substring(equals + 1), "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        if (!exchange.getResponseHeaders().containsKey("Content-Type"))
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[256];
+        while (in.read(buffer) >= 0)
+            ;
+        in.close();
+    }
+
+}
@@ -17,8 +17,7 @@
 
 package net.czlee.debatekeeper;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.HashMap;
 
 import android.app.Notification;
 import android.app.NotificationManager;
@@ -27,7 +26,10 @@ import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
 import android.content.res.Resources;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.os.Vibrator;
 
 /**
@@ -36,24 +38,37 @@ import android.os.Vibrator;
  * Only a single instance of AlertManager should exist at any given time.  It receives requests from
  * other parts of the application.
  *
+ * Each {@link BellSoundInfo} is compiled once into an {@link AlertTimeline}, which puts the sound,
+ * vibration and screen flash on the same time base.  Bells are then played back by a single
+ * scheduler on the main thread, so the three stay together, and no threads are created and
+ * nothing is allocated to play a bell.
+ *
+ * It is the {@link TimerAlerts} through which the debate timing engine rings bells on Android.
+ * The engine's sound IDs are turned into raw resources here.
+ *
  * @author Phillip Cao
  * @author Chuan-Zheng Lee
  * @since  2012-03-30
  */
-public class AlertManager
+public class AlertManager implements TimerAlerts
 {
     public  static final int NOTIFICATION_ID = 1;
-    private static final long MAX_BELL_SCREEN_FLASH_TIME = 500;
-    private static final int STROBE_PERIOD = 100;
 
     private final Service               mService;
     private final NotificationManager   mNotificationManager;
     private final PendingIntent         mIntentStartingHostActivity;
     private final PowerManager          mPowerManager;
     private final Vibrator              mVibrator;
+    private final Handler               mHandler;
+    private final BellRepeater          mBellRepeater;
+    private final AlertPlayer           mAlertPlayer         = new AlertPlayer();
+    private final HashMap<BellSoundInfo, AlertTimeline> mAlertTimelines = new HashMap<BellSoundInfo, AlertTimeline>();
+
+    // This is kept, rather than created each time, so that its timeline is only compiled once.
+    private final BellSoundInfo         mSingleBellSoundInfo = new BellSoundInfo(BellSoundInfo.DEFAULT_SOUND, 1);
+
     private       PowerManager.WakeLock mWakeLock;
     private       Notification          mNotification;
-    private       BellRepeater          mBellRepeater        = null;
     private       FlashScreenListener   mFlashScreenListener = null;
     private       boolean               mShowingNotification = false;
     private       boolean               mActivityActive      = false;
@@ -80,6 +95,8 @@ public class AlertManager
                 0, new Intent(debatingTimerService, DebatingActivity.class), 0);
         mVibrator = (Vibrator) debatingTimerService.getSystemService(Context.VIBRATOR_SERVICE);
         mPowerManager = (PowerManager) mService.getSystemService(Context.POWER_SERVICE);
+        mHandler = new Handler(Looper.getMainLooper());
+        mBellRepeater = new BellRepeater(mService.getApplicationContext());
 
         // Set up defaults
         Resources res = mService.getResources();
@@ -121,6 +138,129 @@ public class AlertManager
         }
     }
 
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    /**
+     * Plays back an {@link AlertTimeline} on the main thread.  Each time it runs, it handles all
+     * the events that are due, and then schedules itself for the next one.  If the main thread
+     * falls behind, events that have already passed are combined: the bell is rung once, and the
+     * flash is left in whatever state it should be in now.
+     *
+     * Apart from <code>play()</code> and <code>stopSound()</code>, everything in here must be
+     * called on the main thread.
+     */
+    private class AlertPlayer implements Runnable {
+
+        private volatile AlertTimeline mPendingTimeline = null;
+        private AlertTimeline          mTimeline        = null;
+        private long                   mStartTime;
+        private int                    mIndex;
+        private boolean                mFlashOn         = false;
+
+        private final Runnable mStartRunnable = new Runnable() {
+            @Override
+            public void run() {
+                start();
+            }
+        };
+
+        private final Runnable mStopSoundRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mBellRepeater.stop();
+            }
+        };
+
+        /**
+         * Starts playing a timeline, stopping any that is already playing.  Can be called from any
+         * thread.
+         * @param timeline the {@link AlertTimeline} to play
+         */
+        public void play(AlertTimeline timeline) {
+            mPendingTimeline = timeline;
+            mHandler.post(mStartRunnable);
+        }
+
+        /**
+         * Stops the bell sound.  Can be called from any thread.
+         */
+        public void stopSound() {
+            mHandler.post(mStopSoundRunnable);
+        }
+
+        /**
+         * Stops playing altogether, and turns the flash off.
+         */
+        public void stop() {
+            mHandler.removeCallbacks(this);
+            mHandler.removeCallbacks(mStartRunnable);
+            mTimeline = null;
+            mBellRepeater.stop();
+            setFlash(false);
+        }
+
+        @Override
+        public void run() {
+            if (mTimeline == null) return;
+
+            long    elapsed        = SystemClock.uptimeMillis() - mStartTime;
+            int     numberOfEvents = mTimeline.getNumberOfEvents();
+            boolean ring           = false;
+            boolean flashOn        = mFlashOn;
+
+            while (mIndex < numberOfEvents && mTimeline.getEventTime(mIndex) <= elapsed) {
+                switch (mTimeline.getEventType(mIndex)) {
+                case AlertTimeline.EVENT_SOUND:
+                    ring = true;
+                    break;
+                case AlertTimeline.EVENT_FLASH_ON:
+                    flashOn = true;
+                    break;
+                case AlertTimeline.EVENT_FLASH_OFF:
+                    flashOn = false;
+                    break;
+                }
+                mIndex++;
+            }
+
+            if (ring && !mSilentMode)
+                mBellRepeater.ring(getSoundResource(mTimeline.getSoundResid()));
+            setFlash(flashOn);
+
+            if (mIndex < numberOfEvents)
+                mHandler.postAtTime(this, mStartTime + mTimeline.getEventTime(mIndex));
+            else
+                mTimeline = null;
+        }
+
+        private void start() {
+            AlertTimeline timeline = mPendingTimeline;
+            if (timeline == null) return;
+            mHandler.removeCallbacks(this);
+            mBellRepeater.stop();
+
+            mTimeline  = timeline;
+            mStartTime = SystemClock.uptimeMillis();
+            mIndex     = 0;
+
+            // The vibrator runs to its own pattern, but starts at the same time as everything else.
+            long[] vibratePattern = timeline.getVibratePattern();
+            if (mVibrateMode && vibratePattern != null)
+                mVibrator.vibrate(vibratePattern, -1);
+
+            run();
+        }
+
+        private void setFlash(boolean on) {
+            if (on == mFlashOn) return;
+            mFlashOn = on;
+            FlashScreenListener listener = mFlashScreenListener;
+            if (listener != null) listener.flashScreen(on);
+        }
+    }
+
     //******************************************************************************************
     // Public methods
     //******************************************************************************************
@@ -151,6 +291,7 @@ public class AlertManager
      * Shows the notification.  Call this when the timer is started.
      * @param pi the {@link PeriodInfo} to use in the notification
      */
+    @Override
     public void makeActive(PeriodInfo pi) {
 
         if(!mShowingNotification) {
@@ -170,11 +311,12 @@ public class AlertManager
     /**
      * Hides the notification.  Call this when the timer is stopped.
      */
+    @Override
     public void makeInactive() {
         if(mShowingNotification) {
             mWakeLock.release();
             mService.stopForeground(true);
-            if (mBellRepeater != null) mBellRepeater.stop();
+            mAlertPlayer.stopSound();
             mVibrator.cancel();
             mShowingNotification = false;
         }
@@ -185,9 +327,7 @@ public class AlertManager
      * Intended for use directly with a user button.
      */
     public void playSingleBell() {
-        // TODO un-hardcode this R.raw.desk_bell
-        BellSoundInfo bellInfo = new BellSoundInfo(R.raw.desk_bell, 1);
-        playBell(bellInfo);
+        playBell(mSingleBellSoundInfo);
     }
 
     /**
@@ -195,24 +335,23 @@ public class AlertManager
      * Does not play if in silent mode.
      * @param bsi the <code>BellSoundInfo</code> to play
      */
+    @Override
     public void playBell(BellSoundInfo bsi) {
-        if (mBellRepeater != null) {
-            mBellRepeater.stop();
-        }
+        AlertTimeline timeline = getAlertTimeline(bsi);
 
-        if (!mSilentMode) {
-            mBellRepeater = new BellRepeater(mService.getApplicationContext(), bsi);
-            mBellRepeater.play();
-        }
-        if (mVibrateMode) {
-            final long[] vibratePattern = getVibratePattern(bsi);
-            if (vibratePattern != null)
-                mVibrator.vibrate(vibratePattern, -1);
-        }
+        // Wake up the screen for the flash
+        if (mFlashScreenListener != null && bsi.getTimesToPlay() != 0)
+            wakeUpScreenForBell(bsi.getRepeatPeriod() * bsi.getTimesToPlay());
 
-        if (mFlashScreenListener != null) {
-            flashScreen(bsi);
-        }
+        mAlertPlayer.play(timeline);
+    }
+
+    /**
+     * Cleans up, should be called (on the main thread) before deleting.
+     */
+    public void release() {
+        mAlertPlayer.stop();
+        mBellRepeater.release();
     }
 
     /**
@@ -223,7 +362,11 @@ public class AlertManager
     }
 
     public void setFlashScreenMode(FlashScreenMode flashScreenMode) {
-        this.mFlashScreenMode = flashScreenMode;
+        synchronized (mAlertTimelines) {
+            if (flashScreenMode != mFlashScreenMode)
+                mAlertTimelines.clear();
+            this.mFlashScreenMode = flashScreenMode;
+        }
     }
 
     public void setSilentMode(boolean silentMode) {
@@ -235,6 +378,7 @@ public class AlertManager
     }
 
     public void setKeepScreenOn(boolean keepScreenOn) {
+        if (keepScreenOn == mKeepScreenOn) return; // don't re-create the wake lock for nothing
         this.mKeepScreenOn = keepScreenOn;
 
         // Also, re-create the wake lock and re-acquire if appropriate
@@ -248,6 +392,7 @@ public class AlertManager
      * @param bi the {@link BellInfo} to use to play the bell
      * @param pi the {@link PeriodInfo} to use in the notification
      */
+    @Override
     public void triggerAlert(BellInfo bi, PeriodInfo pi) {
         updateNotification(pi.getDescription());
         if(mShowingNotification) {
@@ -262,6 +407,7 @@ public class AlertManager
     /**
      * Wakes up the screen to attract user attention
      */
+    @Override
     public void wakeUpScreenForPause() {
         int flags = PowerManager.ACQUIRE_CAUSES_WAKEUP | PowerManager.FULL_WAKE_LOCK | PowerManager.ON_AFTER_RELEASE;
         PowerManager.WakeLock temporaryWakeLock = mPowerManager.newWakeLock(flags, "Debatekeeper-pause");
@@ -306,101 +452,34 @@ public class AlertManager
 
 
     /**
-     * Flashes the screen according to the specifications of a bell.
+     * Returns the {@link AlertTimeline} for a bell, compiling it only if we haven't already
+     * done so for this <code>BellSoundInfo</code> and the current flash screen mode.
      * @param bsi the {@link BellSoundInfo} for this bell
+     * @return the <code>AlertTimeline</code>
      */
-    private void flashScreen(BellSoundInfo bsi) {
-        Timer       repeatTimer  = new Timer();
-        final long  repeatPeriod = bsi.getRepeatPeriod();
-        final int   timesToPlay  = bsi.getTimesToPlay();
-        if (timesToPlay == 0) return; // Do nothing if the number of bells is zero
-
-        wakeUpScreenForBell(repeatPeriod * timesToPlay);
-
-        /* Note: To avoid race conditions, we do NOT have a single TimerTask to toggle the
-         * screen flash at a fixed rate.  We have one timer to govern turning the screen on
-         * at a fixed repeat period.  Each time the screen starts a flash, a *separate* timer
-         * is started to turn the screen off.  This guarantees (hopefully) that the last timer
-         * task that affects the screen is always one that turns it off.
-         */
-
-        repeatTimer.scheduleAtFixedRate(new TimerTask() {
-            int timesSoFar = 0;
-            @Override
-            public void run() {
-                long flashTime = repeatPeriod / 2;
-
-                // If half the repeat period is more than the maximum flash time, or if this is
-                // the last repetition, make the flash time equal to the maximum
-                if (flashTime > MAX_BELL_SCREEN_FLASH_TIME)
-                    flashTime = MAX_BELL_SCREEN_FLASH_TIME;
-
-                if (++timesSoFar >= timesToPlay) {
-                    flashTime = MAX_BELL_SCREEN_FLASH_TIME;
-                    this.cancel();
-                }
-
-                switch (mFlashScreenMode) {
-                case SOLID_FLASH:
-                    startSingleFlashScreen(flashTime);
-                    break;
-                case STROBE_FLASH:
-                    int numStrobes = (int) (flashTime / STROBE_PERIOD);
-                    if (flashTime % STROBE_PERIOD > STROBE_PERIOD / 2) numStrobes++;
-                    startSingleStrobeFlashScreen(numStrobes);
-                    break;
-                case OFF:
-                    // Do nothing
-                    break;
-                }
-
+    private AlertTimeline getAlertTimeline(BellSoundInfo bsi) {
+        synchronized (mAlertTimelines) {
+            AlertTimeline timeline = mAlertTimelines.get(bsi);
+            if (timeline == null) {
+                timeline = new AlertTimeline(bsi, mFlashScreenMode);
+                mAlertTimelines.put(bsi, timeline);
             }
-        }, 0, repeatPeriod);
-    }
-
-    /**
-     * Flashes the screen once.
-     * @param flashTime how long in milliseconds to flash the screen for
-     */
-    private void startSingleFlashScreen(long flashTime) {
-        // Flash the screen white and set a timer to turn it back normal after half a second
-        mFlashScreenListener.flashScreen(true);
-        Timer offTimer = new Timer();
-        offTimer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                mFlashScreenListener.flashScreen(false);
-            }
-        }, flashTime);
+            return timeline;
+        }
     }
 
     /**
-     * Runs a strobe flash
-     * @param numberOfStrobes The number of strobes to do.
+     * Turns a sound ID from the engine (see {@link BellSoundInfo}) into a raw resource.
+     * @param soundId the sound ID
+     * @return the resource ID, or 0 if there is no such sound
      */
-    private void startSingleStrobeFlashScreen(int numberOfStrobes) {
-        Timer     strobeTimer = new Timer();
-        final int numStrobes  = numberOfStrobes;
-
-        if (numStrobes == 0) return; // Do nothing if the number of bells is zero
-
-        /* Note: To avoid race conditions, we do NOT have a single TimerTask to toggle the
-         * screen flash at a fixed rate.  We have one timer to govern turning the screen on
-         * at a fixed repeat period.  Each time the screen starts a flash, a *separate* timer
-         * is started to turn the screen off.  This guarantees (hopefully) that the last timer
-         * task that affects the screen is always one that turns it off.
-         */
-
-        strobeTimer.scheduleAtFixedRate(new TimerTask() {
-            int timesSoFar = 0;
-            @Override
-            public void run() {
-                startSingleFlashScreen(STROBE_PERIOD * 2 / 3);
-                if (++timesSoFar >= numStrobes) {
-                    this.cancel();
-                }
-            }
-        }, 0, STROBE_PERIOD);
+    private static int getSoundResource(int soundId) {
+        switch (soundId) {
+        case BellSoundInfo.DEFAULT_SOUND:
+            return R.raw.desk_bell;
+        default:
+            return 0;
+        }
     }
 
     /**
@@ -413,37 +492,4 @@ public class AlertManager
             temporaryWakeLock.acquire(wakeTime);
         }
     }
-
-    /**
-     * @param bsi the {@link BellSoundInfo} for this bell
-     * @return a long array that can be passed to Vibrator.vibrate(), or <code>null</code> if it
-     * should not vibrate.
-     */
-    private long[] getVibratePattern(BellSoundInfo bsi) {
-        long repeatPeriod = bsi.getRepeatPeriod();
-        int  timesToPlay  = bsi.getTimesToPlay();
-
-        // Don't vibrate on a bell that is rung zero times
-        if (timesToPlay == 0) return null;
-
-        // Generally, we want the total period to be the same as the bell sound period,
-        // and we want the gap between vibrations to be 100ms.  But if that would cause
-        // the vibration on time to be less than 80% of the total time, then reduce the
-        // gap so that it is equal to 20%.  The threshold here is 100 * 5 = 500 ms.
-        long vibrateOffTime = (repeatPeriod < 500) ? repeatPeriod / 5 : 100;
-        long vibrateOnTime = repeatPeriod - vibrateOffTime;
-
-        // We guaranteed that timesToPlay is not zero at the beginning of this method.
-        long[] pattern = new long[timesToPlay * 2];
-
-        // The pattern is {0, ON, OFF, ON, OFF, ..., OFF, ON}
-        pattern[0] = 0;
-        for (int i = 1; i < pattern.length-1; i = i + 2) {
-            pattern[i]   = vibrateOnTime;
-            pattern[i+1] = vibrateOffTime;
-        }
-        pattern[pattern.length - 1] = vibrateOnTime;
-
-        return pattern;
-    }
 }
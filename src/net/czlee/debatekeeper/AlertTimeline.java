@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import net.czlee.debatekeeper.AlertManager.FlashScreenMode;
+
+/**
+ * AlertTimeline is everything that happens when a bell rings, compiled into a single timeline.
+ *
+ * A bell has up to three parts: the sound, the vibration and the screen flash.  AlertTimeline
+ * works all three out once from a {@link BellSoundInfo}, and puts them on the same time base
+ * (milliseconds from the start of the bell), so that a single scheduler can play all three
+ * together and they can't drift apart.  Once compiled, it can be played any number of times
+ * without any further calculation or allocation.
+ *
+ * The sound onsets and flash transitions are merged into one list of events, in time order.  The
+ * vibration is given as a pattern for {@link android.os.Vibrator#vibrate(long[], int)}, which
+ * should be started at time zero.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class AlertTimeline {
+
+    public static final int EVENT_SOUND     = 0;
+    public static final int EVENT_FLASH_ON  = 1;
+    public static final int EVENT_FLASH_OFF = 2;
+
+    private final int    mSoundResid;
+    private final long[] mEventTimes;
+    private final int[]  mEventTypes;
+    private final long[] mVibratePattern;
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Constructor.  Compiles the timeline.
+     * @param bsi the {@link BellSoundInfo} for the bell
+     * @param flashScreenMode the {@link FlashScreenMode} to use for the flash
+     */
+    public AlertTimeline(BellSoundInfo bsi, FlashScreenMode flashScreenMode) {
+        super();
+
+        long repeatPeriod = bsi.getRepeatPeriod();
+        int  timesToPlay  = bsi.getTimesToPlay();
+
+        mSoundResid     = bsi.getSoundResid();
+        mVibratePattern = compileVibratePattern(repeatPeriod, timesToPlay);
+
+        FlashSchedule flashSchedule  = new FlashSchedule(bsi, flashScreenMode);
+        int           numSounds      = (bsi.isPlayable()) ? timesToPlay : 0;
+        int           numTransitions = flashSchedule.getNumberOfTransitions();
+
+        mEventTimes = new long[numSounds + numTransitions];
+        mEventTypes = new int[numSounds + numTransitions];
+
+        // Merge the sound onsets (at multiples of the repeat period) with the flash transitions.
+        // Both are already in time order.  Where they coincide, the sound goes first.
+        int soundIndex = 0, flashIndex = 0, index = 0;
+        while (soundIndex < numSounds || flashIndex < numTransitions) {
+            long soundTime = soundIndex * repeatPeriod;
+            if (flashIndex >= numTransitions ||
+                    (soundIndex < numSounds && soundTime <= flashSchedule.getTransitionTime(flashIndex))) {
+                mEventTimes[index] = soundTime;
+                mEventTypes[index] = EVENT_SOUND;
+                soundIndex++;
+            } else {
+                mEventTimes[index] = flashSchedule.getTransitionTime(flashIndex);
+                mEventTypes[index] = (flashIndex % 2 == 0) ? EVENT_FLASH_ON : EVENT_FLASH_OFF;
+                flashIndex++;
+            }
+            index++;
+        }
+    }
+
+    /**
+     * @return the sound resource to play at each sound event
+     */
+    public int getSoundResid() {
+        return mSoundResid;
+    }
+
+    /**
+     * @return the number of events in this timeline
+     */
+    public int getNumberOfEvents() {
+        return mEventTimes.length;
+    }
+
+    /**
+     * @param index the index of the event
+     * @return the time of the event, in milliseconds from the start of the bell
+     */
+    public long getEventTime(int index) {
+        return mEventTimes[index];
+    }
+
+    /**
+     * @param index the index of the event
+     * @return the type of the event, one of <code>EVENT_SOUND</code>,
+     * <code>EVENT_FLASH_ON</code> and <code>EVENT_FLASH_OFF</code>
+     */
+    public int getEventType(int index) {
+        return mEventTypes[index];
+    }
+
+    /**
+     * @return a long array that can be passed to Vibrator.vibrate(), or <code>null</code> if it
+     * should not vibrate.  The caller must not change this array.
+     */
+    public long[] getVibratePattern() {
+        return mVibratePattern;
+    }
+
+    /**
+     * @return how long the whole timeline takes, in milliseconds
+     */
+    public long getDuration() {
+        long duration = (mEventTimes.length > 0) ? mEventTimes[mEventTimes.length - 1] : 0;
+        if (mVibratePattern != null) {
+            long vibrateDuration = 0;
+            for (int i = 0; i < mVibratePattern.length; i++)
+                vibrateDuration += mVibratePattern[i];
+            duration = Math.max(duration, vibrateDuration);
+        }
+        return duration;
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * @return a long array that can be passed to Vibrator.vibrate(), or <code>null</code> if it
+     * should not vibrate.
+     */
+    private static long[] compileVibratePattern(long repeatPeriod, int timesToPlay) {
+
+        // Don't vibrate on a bell that is rung zero times
+        if (timesToPlay == 0) return null;
+
+        // Generally, we want the total period to be the same as the bell sound period,
+        // and we want the gap between vibrations to be 100ms.  But if that would cause
+        // the vibration on time to be less than 80% of the total time, then reduce the
+        // gap so that it is equal to 20%.  The threshold here is 100 * 5 = 500 ms.
+        long vibrateOffTime = (repeatPeriod < 500) ? repeatPeriod / 5 : 100;
+        long vibrateOnTime = repeatPeriod - vibrateOffTime;
+
+        // We guaranteed that timesToPlay is not zero at the beginning of this method.
+        long[] pattern = new long[timesToPlay * 2];
+
+        // The pattern is {0, ON, OFF, ON, OFF, ..., OFF, ON}
+        pattern[0] = 0;
+        for (int i = 1; i < pattern.length-1; i = i + 2) {
+            pattern[i]   = vibrateOnTime;
+            pattern[i+1] = vibrateOffTime;
+        }
+        pattern[pattern.length - 1] = vibrateOnTime;
+
+        return pattern;
+    }
+
+}
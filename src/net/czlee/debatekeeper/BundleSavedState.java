@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import android.os.Bundle;
+
+/**
+ * BundleSavedState lets the debate timing engine save its state to a {@link Bundle}.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class BundleSavedState implements SavedState {
+
+    private final Bundle mBundle;
+
+    /**
+     * Constructor.
+     * @param bundle the {@link Bundle} to save to and restore from
+     */
+    public BundleSavedState(Bundle bundle) {
+        super();
+        mBundle = bundle;
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    @Override
+    public void putInt(String key, int value) {
+        mBundle.putInt(key, value);
+    }
+
+    @Override
+    public void putLong(String key, long value) {
+        mBundle.putLong(key, value);
+    }
+
+    @Override
+    public void putString(String key, String value) {
+        mBundle.putString(key, value);
+    }
+
+    @Override
+    public void putLongArray(String key, long[] value) {
+        mBundle.putLongArray(key, value);
+    }
+
+    @Override
+    public int getInt(String key, int defaultValue) {
+        return mBundle.getInt(key, defaultValue);
+    }
+
+    @Override
+    public long getLong(String key, long defaultValue) {
+        return mBundle.getLong(key, defaultValue);
+    }
+
+    @Override
+    public String getString(String key) {
+        return mBundle.getString(key);
+    }
+
+    @Override
+    public long[] getLongArray(String key) {
+        return mBundle.getLongArray(key);
+    }
+
+    @Override
+    public SavedState copy() {
+        return new BundleSavedState(new Bundle(mBundle));
+    }
+
+}
@@ -0,0 +1,422 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * ClockView displays the current time of a speech, in the form <code>mm:ss</code>.
+ *
+ * A <code>TextView</code> would build a new <code>String</code>, re-measure it and possibly request
+ * a layout pass every time the time changes.  ClockView instead renders all the characters it will
+ * ever need into a glyph atlas once, then draws the time by copying glyphs out of the atlas.  All
+ * digits are given the same width, so the width of the view never depends on the time shown; in
+ * particular, the overtime "+" has a cell reserved for it whether or not it is shown.  Changing the
+ * time invalidates only this view's own content, and never requests a layout.
+ *
+ * Optionally, ClockView can also show tenths of a second (<code>mm:ss.t</code>).  While the timer
+ * is running, it counts the tenths itself between updates, from an anchor time in the
+ * {@link System#nanoTime()} time base: each frame works out the tenth from the anchor, and schedules
+ * the next frame for when the next tenth is due.  Nothing is scheduled unless tenths are shown and
+ * the clock is counting, and frames stop by themselves when the view isn't visible, since a view
+ * that isn't visible doesn't get drawn.
+ *
+ * The glyph atlas is an alpha-only bitmap, so the text colour can be changed without re-rendering
+ * it.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class ClockView extends View {
+
+    // The characters in the atlas, in order.  Digits must come first.
+    private static final String GLYPHS            = "0123456789:+.";
+    private static final int    GLYPH_COLON       = 10;
+    private static final int    GLYPH_PLUS        = 11;
+    private static final int    GLYPH_POINT       = 12;
+    private static final int    MAX_CELLS         = 16;
+    private static final int    MIN_MINUTE_DIGITS = 2;
+
+    private static final float DEFAULT_TEXT_SIZE_DIP = 72;
+    private static final long  NANOS_PER_TENTH       = 100000000L;
+    private static final long  NANOS_PER_MILLI       = 1000000L;
+
+    private final Paint mAtlasPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mGlyphPaint = new Paint();
+    private final Rect  mSrcRect    = new Rect();
+    private final Rect  mDstRect    = new Rect();
+
+    private Bitmap      mAtlas;
+    private final int[] mGlyphLeft  = new int[GLYPHS.length()];
+    private final int[] mGlyphWidth = new int[GLYPHS.length()];
+    private int         mGlyphHeight;
+
+    // What is currently shown, as indices into GLYPHS
+    private final int[] mCells                = new int[MAX_CELLS];
+    private int         mCellCount            = 0;
+    private long        mTimeInTenths         = 0;
+    private boolean     mBlank                = true;
+    private boolean     mShowTenths           = false;
+    private int         mTextColor            = Color.WHITE;
+    private int         mMeasuredMinuteDigits = MIN_MINUTE_DIGITS;
+
+    // For counting tenths between updates
+    private boolean        mCounting         = false;
+    private long           mCountAnchorTime  = 0;
+    private int            mCountDirection   = 1;
+    private final Runnable mFrameRunnable    = new FrameRunnable();
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    private class FrameRunnable implements Runnable {
+        @Override
+        public void run() {
+            invalidate();
+        }
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    public ClockView(Context context) {
+        super(context);
+        init();
+    }
+
+    public ClockView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    public ClockView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        init();
+    }
+
+    /**
+     * Sets the time to display.  Negative times are displayed with a "+" in front, for overtime
+     * when counting down.  Has no effect if this time is already displayed.
+     * @param seconds the time in seconds
+     */
+    public void setTime(long seconds) {
+        setTimeInTenths(seconds * 10);
+    }
+
+    /**
+     * Sets the time to display, in tenths of a second.  If tenths aren't being shown, the time is
+     * displayed in whole seconds, rounded towards zero.  Has no effect if this time is already
+     * displayed.
+     * @param tenths the time in tenths of a second
+     */
+    public void setTimeInTenths(long tenths) {
+        if (!mBlank && tenths == mTimeInTenths) return;
+        mTimeInTenths = tenths;
+        mBlank        = false;
+        buildCells(tenths);
+        invalidate();
+    }
+
+    /**
+     * Clears the display.
+     */
+    public void clear() {
+        if (mBlank) return;
+        mBlank     = true;
+        mCellCount = 0;
+        stopCounting();
+        invalidate();
+    }
+
+    /**
+     * @return the time currently set in seconds, rounded towards zero
+     */
+    public long getTime() {
+        return mTimeInTenths / 10;
+    }
+
+    /**
+     * @return the time currently set in tenths of a second
+     */
+    public long getTimeInTenths() {
+        return mTimeInTenths;
+    }
+
+    /**
+     * @return <code>true</code> if nothing is displayed
+     */
+    public boolean isBlank() {
+        return mBlank;
+    }
+
+    /**
+     * Starts counting tenths of a second from the time last set.  This only has any effect if
+     * tenths are being shown.  The clock will count for up to one second, by which time it should
+     * have been given a new time.
+     * @param anchorTime the time, in the {@link System#nanoTime()} time base, at which the time
+     * last set was exact
+     * @param countingDown <code>true</code> if the displayed time should count down
+     */
+    public void startCounting(long anchorTime, boolean countingDown) {
+        int direction = (countingDown) ? -1 : 1;
+        if (mCounting && anchorTime == mCountAnchorTime && direction == mCountDirection) return;
+        mCounting        = true;
+        mCountAnchorTime = anchorTime;
+        mCountDirection  = direction;
+        if (mShowTenths) invalidate();
+    }
+
+    /**
+     * Stops counting tenths of a second.
+     */
+    public void stopCounting() {
+        if (!mCounting) return;
+        mCounting = false;
+        removeCallbacks(mFrameRunnable);
+        if (mShowTenths && !mBlank) {
+            buildCells(mTimeInTenths);
+            invalidate();
+        }
+    }
+
+    public int getTextColor() {
+        return mTextColor;
+    }
+
+    /**
+     * Sets the text colour.  This doesn't re-render the glyph atlas.
+     * @param color the new colour
+     */
+    public void setTextColor(int color) {
+        if (color == mTextColor) return;
+        mTextColor = color;
+        mGlyphPaint.setColor(color);
+        invalidate();
+    }
+
+    public boolean isShowingTenths() {
+        return mShowTenths;
+    }
+
+    /**
+     * Sets whether to show tenths of a second.  This changes the width of the view, so it does
+     * request a layout; it shouldn't be called often.
+     * @param showTenths <code>true</code> to show tenths of a second
+     */
+    public void setShowTenths(boolean showTenths) {
+        if (showTenths == mShowTenths) return;
+        mShowTenths = showTenths;
+        if (!showTenths) removeCallbacks(mFrameRunnable);
+        if (!mBlank) buildCells(mTimeInTenths);
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Sets the text size, and re-renders the glyph atlas.  This requests a layout, so it shouldn't
+     * be called often.
+     * @param size the new text size in pixels
+     */
+    public void setTextSize(float size) {
+        mAtlasPaint.setTextSize(size);
+        buildAtlas();
+        requestLayout();
+        invalidate();
+    }
+
+    //******************************************************************************************
+    // Protected methods
+    //******************************************************************************************
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        mMeasuredMinuteDigits = Math.max(MIN_MINUTE_DIGITS, countMinuteDigits(mTimeInTenths / 10));
+        int width  = getMaximumContentWidth() + getPaddingLeft() + getPaddingRight();
+        int height = mGlyphHeight + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(resolveSize(width, widthMeasureSpec),
+                resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        removeCallbacks(mFrameRunnable);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mBlank) return;
+
+        if (mCounting && mShowTenths)
+            countTenths();
+
+        // Centre what's actually shown within the view
+        int contentWidth = 0;
+        for (int i = 0; i < mCellCount; i++)
+            contentWidth += mGlyphWidth[mCells[i]];
+
+        int innerWidth  = getWidth() - getPaddingLeft() - getPaddingRight();
+        int innerHeight = getHeight() - getPaddingTop() - getPaddingBottom();
+        int x = getPaddingLeft() + (innerWidth - contentWidth) / 2;
+        int y = getPaddingTop() + (innerHeight - mGlyphHeight) / 2;
+
+        for (int i = 0; i < mCellCount; i++) {
+            int glyph = mCells[i];
+            int width = mGlyphWidth[glyph];
+            mSrcRect.set(mGlyphLeft[glyph], 0, mGlyphLeft[glyph] + width, mGlyphHeight);
+            mDstRect.set(x, y, x + width, y + mGlyphHeight);
+            canvas.drawBitmap(mAtlas, mSrcRect, mDstRect, mGlyphPaint);
+            x += width;
+        }
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    private void init() {
+        float density = getResources().getDisplayMetrics().density;
+        mAtlasPaint.setTextSize(DEFAULT_TEXT_SIZE_DIP * density);
+        mAtlasPaint.setColor(Color.WHITE);
+        mGlyphPaint.setColor(mTextColor);
+        buildAtlas();
+    }
+
+    /**
+     * Renders every glyph into a single alpha-only bitmap.  Digits all get the width of the
+     * widest digit, so that the clock doesn't change width as the digits change.
+     */
+    private void buildAtlas() {
+        Paint.FontMetrics fm = mAtlasPaint.getFontMetrics();
+        mGlyphHeight = (int) Math.ceil(fm.descent - fm.ascent);
+
+        char[] glyphs = GLYPHS.toCharArray();
+
+        int digitWidth = 0;
+        for (int i = 0; i < 10; i++)
+            digitWidth = Math.max(digitWidth, (int) Math.ceil(mAtlasPaint.measureText(glyphs, i, 1)));
+
+        int left = 0;
+        for (int i = 0; i < glyphs.length; i++) {
+            mGlyphLeft[i]  = left;
+            mGlyphWidth[i] = (i < 10) ? digitWidth : (int) Math.ceil(mAtlasPaint.measureText(glyphs, i, 1));
+            left += mGlyphWidth[i];
+        }
+
+        if (mAtlas != null) mAtlas.recycle();
+        mAtlas = Bitmap.createBitmap(Math.max(left, 1), Math.max(mGlyphHeight, 1), Bitmap.Config.ALPHA_8);
+
+        Canvas canvas = new Canvas(mAtlas);
+        for (int i = 0; i < glyphs.length; i++) {
+            // Centre each glyph in its cell
+            float glyphWidth = mAtlasPaint.measureText(glyphs, i, 1);
+            float x = mGlyphLeft[i] + (mGlyphWidth[i] - glyphWidth) / 2;
+            canvas.drawText(glyphs, i, 1, x, -fm.ascent, mAtlasPaint);
+        }
+    }
+
+    /**
+     * Works out the current tenth of a second from the anchor time, shows it, and schedules the
+     * next frame for when the next tenth is due.
+     */
+    private void countTenths() {
+        long elapsed = System.nanoTime() - mCountAnchorTime;
+        if (elapsed < 0) elapsed = 0;
+
+        long elapsedTenths = elapsed / NANOS_PER_TENTH;
+        if (elapsedTenths > 9) {
+            // The next time should be arriving any moment now, don't go past it.
+            buildCells(mTimeInTenths + mCountDirection * 9);
+            return;
+        }
+
+        buildCells(mTimeInTenths + mCountDirection * elapsedTenths);
+
+        long delay = (NANOS_PER_TENTH - elapsed % NANOS_PER_TENTH) / NANOS_PER_MILLI + 1;
+        removeCallbacks(mFrameRunnable);
+        postDelayed(mFrameRunnable, delay);
+    }
+
+    /**
+     * Converts a time into glyph indices in <code>mCells</code>.
+     * @param timeInTenths the time to show, in tenths of a second
+     */
+    private void buildCells(long timeInTenths) {
+        long time    = Math.abs(timeInTenths);
+        long tenths  = time % 10;
+        long minutes = time / 600;
+        long seconds = (time / 10) % 60;
+        int  count   = 0;
+
+        // Without tenths, show a "+" only once there's a whole second to show.
+        boolean negative = (mShowTenths) ? timeInTenths < 0 : timeInTenths <= -10;
+        if (negative) mCells[count++] = GLYPH_PLUS;
+
+        int minuteDigits = Math.max(MIN_MINUTE_DIGITS, countMinuteDigits(time / 10));
+        for (int i = minuteDigits - 1; i >= 0; i--) {
+            mCells[count + i] = (int) (minutes % 10);
+            minutes /= 10;
+        }
+        count += minuteDigits;
+
+        mCells[count++] = GLYPH_COLON;
+        mCells[count++] = (int) (seconds / 10);
+        mCells[count++] = (int) (seconds % 10);
+
+        if (mShowTenths) {
+            mCells[count++] = GLYPH_POINT;
+            mCells[count++] = (int) tenths;
+        }
+
+        mCellCount = count;
+
+        // Only a debate of 100 minutes or more can outgrow the measured width.
+        if (minuteDigits > mMeasuredMinuteDigits) requestLayout();
+    }
+
+    /**
+     * @return the width of the widest thing that can be displayed with the current settings
+     */
+    private int getMaximumContentWidth() {
+        int width = mGlyphWidth[GLYPH_PLUS] + mMeasuredMinuteDigits * mGlyphWidth[0]
+                + mGlyphWidth[GLYPH_COLON] + 2 * mGlyphWidth[0];
+        if (mShowTenths)
+            width += mGlyphWidth[GLYPH_POINT] + mGlyphWidth[0];
+        return width;
+    }
+
+    private static int countMinuteDigits(long seconds) {
+        long minutes = Math.abs(seconds) / 60;
+        int digits = 1;
+        while (minutes >= 10) {
+            minutes /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import android.content.Context;
+
+/**
+ * ContextStringResources gets string resources from an Android {@link Context}, by resource ID
+ * for the app, or by resource name for the engine's debate format parser (see
+ * {@link FormatStrings}).
+ *
+ * Looking up a resource by name is slow, and the parser looks up the same few names for every
+ * element, so the resource IDs are found once and kept.  They don't change while the app is
+ * running, so they are shared by all instances.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class ContextStringResources implements StringResources, FormatStrings {
+
+    private static final ConcurrentHashMap<String, Integer> sResourceIds =
+            new ConcurrentHashMap<String, Integer>();
+
+    private final Context mContext;
+
+    public ContextStringResources(Context context) {
+        super();
+        mContext = context;
+    }
+
+    @Override
+    public String getString(int resId) {
+        return mContext.getString(resId);
+    }
+
+    @Override
+    public String getString(int resId, Object... formatArgs) {
+        return mContext.getString(resId, formatArgs);
+    }
+
+    @Override
+    public String getString(String name) {
+        return mContext.getString(getResourceId(name));
+    }
+
+    @Override
+    public String getString(String name, Object... formatArgs) {
+        return mContext.getString(getResourceId(name), formatArgs);
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * @param name the name of a string resource
+     * @return the resource ID
+     * @throws IllegalArgumentException if there is no string resource with that name
+     */
+    private int getResourceId(String name) {
+        Integer resId = sResourceIds.get(name);
+        if (resId == null) {
+            resId = mContext.getResources().getIdentifier(name, "string", mContext.getPackageName());
+            if (resId == 0)
+                throw new IllegalArgumentException("No string resource called " + name);
+            sResourceIds.put(name, resId);
+        }
+        return resId;
+    }
+
+}
@@ -23,7 +23,7 @@ import java.util.List;
 import net.czlee.debatekeeper.FormatChooserActivity.DebateFormatListEntry;
 import net.czlee.debatekeeper.FormatChooserActivity.FormatChooserActivityBinder;
 
-import org.xml.sax.SAXException;
+import org.xmlpull.v1.XmlPullParserException;
 
 import android.content.Context;
 import android.view.View;
@@ -96,7 +96,7 @@ public class DebateFormatEntryArrayAdapter extends
                 // i.e. the fields will just have a hyphen ("-") in them.  This is fine.  When
                 // the user tries to do something else with the file, it will show the real
                 // error message.
-            } catch (SAXException e) {
+            } catch (XmlPullParserException e) {
                 // Do nothing.
                 // This basically just means the view won't be populated with information,
                 // i.e. the fields will just have a hyphen ("-") in them.  This is fine.  When
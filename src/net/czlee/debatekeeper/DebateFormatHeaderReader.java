@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import android.content.Context;
+
+/**
+ * DebateFormatHeaderReader reads only the start of a debate format XML file: the name in the
+ * root element, and the &lt;info&gt; element.
+ *
+ * It uses a pull parser, so it stops reading as soon as it has what was asked for.  In the usual
+ * layout, where &lt;info&gt; is the first thing in the root element, this is within the first few
+ * hundred bytes of the file.  The stream is read in small pieces so that the parser doesn't read
+ * ahead much further than that, and it is closed as soon as reading stops.
+ *
+ * For the speech formats and speeches as well, use {@link DebateFormatInfoExtractor}, which reads
+ * the whole file.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class DebateFormatHeaderReader {
+
+    /**
+     * The most that is read from the stream at a time.
+     */
+    private static final int READ_SIZE = 256;
+
+    private final StringResources mStrings;
+    private final String          DEBATING_TIMER_URI;
+
+    public DebateFormatHeaderReader(Context context) {
+        this(new ContextStringResources(context));
+    }
+
+    public DebateFormatHeaderReader(StringResources strings) {
+        mStrings           = strings;
+        DEBATING_TIMER_URI = strings.getString(R.string.XmlUri);
+    }
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    /**
+     * Limits each read to <code>READ_SIZE</code> bytes, and says that nothing is available
+     * without blocking, so that readers on top of it don't read ahead to fill their buffers.
+     */
+    private static class ShortReadInputStream extends FilterInputStream {
+
+        public ShortReadInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return 0;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            return super.read(buffer, offset, Math.min(count, READ_SIZE));
+        }
+
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Reads the name of a debate format, stopping at the root element.  The stream is closed
+     * before this returns.
+     * @param is an <code>InputStream</code> for an XML file
+     * @return the name, or <code>null</code> if the root element isn't a debate format or doesn't
+     * have a name
+     * @throws IOException if thrown by the attempt to use the <code>InputStream</code>
+     * @throws XmlPullParserException if the start of the file isn't valid XML
+     */
+    public String readName(InputStream is) throws IOException, XmlPullParserException {
+        try {
+            XmlPullParser parser = newParser(is);
+            if (!moveToRoot(parser)) return null;
+            return getValue(parser, R.string.XmlAttrNameRootName);
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Reads the name of a debate format and the contents of its first &lt;info&gt; element,
+     * stopping at the end of that element.  The stream is closed before this returns.
+     * @param is an <code>InputStream</code> for an XML file
+     * @return a {@link DebateFormatInfo} with the name, regions, levels, "used at" and description
+     * filled in, as far as they were found.  It has no speech formats or speeches.
+     * @throws IOException if thrown by the attempt to use the <code>InputStream</code>
+     * @throws XmlPullParserException if the file isn't valid XML, up to where reading stopped
+     */
+    public DebateFormatInfo readHeader(InputStream is) throws IOException, XmlPullParserException {
+        DebateFormatInfo dfi = new DebateFormatInfo(mStrings);
+
+        try {
+            XmlPullParser parser = newParser(is);
+            if (!moveToRoot(parser)) return dfi;
+
+            String name = getValue(parser, R.string.XmlAttrNameRootName);
+            if (name != null)
+                dfi.setName(name);
+
+            // Look for <info> among the root element's children.  It is normally the first, so
+            // normally we don't skip anything.
+            int rootDepth = parser.getDepth();
+            while (moveToChild(parser, rootDepth)) {
+                if (isElement(parser, R.string.XmlElemNameInfo)) {
+                    readInfo(parser, dfi);
+                    break;
+                }
+                skipElement(parser);
+            }
+        } finally {
+            is.close();
+        }
+
+        return dfi;
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    private XmlPullParser newParser(InputStream is) throws XmlPullParserException {
+        XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        XmlPullParser parser = factory.newPullParser();
+        // No encoding is given, so the parser takes it from the XML declaration or byte order
+        // mark, as the SAX parser does.
+        parser.setInput(new ShortReadInputStream(is), null);
+        return parser;
+    }
+
+    /**
+     * Moves to the start of the root element.
+     * @return <code>true</code> if the root element is a debate format, <code>false</code>
+     * otherwise
+     */
+    private boolean moveToRoot(XmlPullParser parser) throws IOException, XmlPullParserException {
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.START_TAG) {
+            if (eventType == XmlPullParser.END_DOCUMENT) return false;
+            eventType = parser.next();
+        }
+        return isElement(parser, R.string.XmlElemNameRoot);
+    }
+
+    /**
+     * Moves to the start of the next child of the current element.
+     * @param parentDepth the depth of the current element
+     * @return <code>true</code> if there is such a child, <code>false</code> if the end of the
+     * current element was reached first
+     */
+    private boolean moveToChild(XmlPullParser parser, int parentDepth)
+            throws IOException, XmlPullParserException {
+        while (true) {
+            int eventType = parser.next();
+            if (eventType == XmlPullParser.START_TAG) return true;
+            if (eventType == XmlPullParser.END_DOCUMENT) return false;
+            if (eventType == XmlPullParser.END_TAG && parser.getDepth() <= parentDepth) return false;
+        }
+    }
+
+    /**
+     * Skips to the end of the current element, including everything inside it.
+     */
+    private void skipElement(XmlPullParser parser) throws IOException, XmlPullParserException {
+        int depth = parser.getDepth();
+        int eventType;
+        do {
+            eventType = parser.next();
+        } while (eventType != XmlPullParser.END_DOCUMENT
+                && !(eventType == XmlPullParser.END_TAG && parser.getDepth() == depth));
+    }
+
+    /**
+     * Reads the contents of an &lt;info&gt; element, leaving the parser at its end.  Only the first
+     * &lt;desc&gt; is used, as in {@link DebateFormatInfoExtractor}.
+     */
+    private void readInfo(XmlPullParser parser, DebateFormatInfo dfi)
+            throws IOException, XmlPullParserException {
+        boolean descriptionFound = false;
+        int infoDepth = parser.getDepth();
+
+        while (moveToChild(parser, infoDepth)) {
+            boolean isRegion = isElement(parser, R.string.XmlElemNameInfoRegion);
+            boolean isLevel  = isElement(parser, R.string.XmlElemNameInfoLevel);
+            boolean isUsedAt = isElement(parser, R.string.XmlElemNameInfoUsedAt);
+            boolean isDesc   = isElement(parser, R.string.XmlElemNameInfoDesc);
+            String  text     = readText(parser);
+
+            if (isRegion)
+                dfi.addRegion(text);
+            else if (isLevel)
+                dfi.addLevel(text);
+            else if (isUsedAt)
+                dfi.addUsedAt(text);
+            else if (isDesc && !descriptionFound) {
+                descriptionFound = true;
+                dfi.setDescription(text);
+            }
+        }
+    }
+
+    /**
+     * Reads the text in the current element, leaving the parser at its end.  Text inside any
+     * child elements is included.
+     */
+    private String readText(XmlPullParser parser) throws IOException, XmlPullParserException {
+        StringBuilder text = new StringBuilder();
+        int depth = parser.getDepth();
+        while (true) {
+            int eventType = parser.next();
+            if (eventType == XmlPullParser.TEXT)
+                text.append(parser.getText());
+            else if (eventType == XmlPullParser.END_DOCUMENT)
+                break;
+            else if (eventType == XmlPullParser.END_TAG && parser.getDepth() == depth)
+                break;
+        }
+        return text.toString();
+    }
+
+    private boolean isElement(XmlPullParser parser, int localNameResid) {
+        return DEBATING_TIMER_URI.equals(parser.getNamespace())
+                && mStrings.getString(localNameResid).equals(parser.getName());
+    }
+
+    private String getValue(XmlPullParser parser, int localNameResid) {
+        return parser.getAttributeValue(DEBATING_TIMER_URI, mStrings.getString(localNameResid));
+    }
+
+}
@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.TreeSet;
 
 import android.content.Context;
 
@@ -47,7 +48,7 @@ import android.content.Context;
  */
 public class DebateFormatInfo {
 
-    private final Context mContext;
+    private final StringResources mStrings;
 
     private       String                            name          = new String();
     private final ArrayList<String>                 regions       = new ArrayList<String>();
@@ -59,8 +60,12 @@ public class DebateFormatInfo {
     private       String                            description   = new String("-");
 
     public DebateFormatInfo(Context context) {
+        this(new ContextStringResources(context));
+    }
+
+    public DebateFormatInfo(StringResources strings) {
         super();
-        this.mContext = context;
+        this.mStrings = strings;
     }
 
     // ******************************************************************************************
@@ -163,15 +168,15 @@ public class DebateFormatInfo {
     }
 
     public void addRegion(String region) {
-        regions.add(region);
+        regions.add(InternPool.STRINGS.intern(region));
     }
 
     public void addLevel(String level) {
-        levels.add(level);
+        levels.add(InternPool.STRINGS.intern(level));
     }
 
     public void addUsedAt(String usedAt) {
-        usedAts.add(usedAt);
+        usedAts.add(InternPool.STRINGS.intern(usedAt));
     }
 
     public void addResource(String ref) {
@@ -214,6 +219,42 @@ public class DebateFormatInfo {
         return speechFormats.containsKey(ref);
     }
 
+    /**
+     * @param ref the reference of a speech format
+     * @return the length of that speech format in seconds, or -1 if there is no such speech format
+     */
+    public long getSpeechFormatLength(String ref) {
+        SpeechFormatInfo sfi = speechFormats.get(ref);
+        return (sfi != null) ? sfi.getLength() : -1;
+    }
+
+    /**
+     * @return the number of speeches in the debate
+     */
+    public int getNumberOfSpeeches() {
+        return speeches.size();
+    }
+
+    /**
+     * @return the distinct lengths, in seconds, of the speeches in the debate, in ascending order.
+     * Speeches whose speech format doesn't exist are left out.
+     */
+    public long[] getSpeechLengths() {
+        TreeSet<Long> lengths = new TreeSet<Long>();
+        Iterator<SpeechInfo> iterator = speeches.iterator();
+        while (iterator.hasNext()) {
+            SpeechFormatInfo sfi = speechFormats.get(iterator.next().getFormat());
+            if (sfi != null)
+                lengths.add(sfi.getLength());
+        }
+
+        long[] result = new long[lengths.size()];
+        Iterator<Long> lengthIterator = lengths.iterator();
+        for (int i = 0; lengthIterator.hasNext(); i++)
+            result[i] = lengthIterator.next();
+        return result;
+    }
+
     /**
      * @return An <code>ArrayList</code> of <code>String</code> arrays. Each
      *         <code>String</code> array has two elements. The first element is
@@ -234,7 +275,7 @@ public class DebateFormatInfo {
                 seenFormatRefs.add(formatRef);
                 SpeechFormatInfo sti = speechFormats.get(formatRef);
                 String bellsList = concatenate(sti.getBells());
-                String typeDesc = mContext.getString(R.string.SpeechTypeDescription,
+                String typeDesc = mStrings.getString(R.string.SpeechTypeDescription,
                         secsToText(sti.getLength()), bellsList);
                 String[] pair = {formatRef, typeDesc};
                 result.add(pair);
@@ -276,7 +317,7 @@ public class DebateFormatInfo {
             bi = iterator.next();
             str = secsToText(bi.getTime());
             if (bi.isPause())
-                str = str.concat(mContext.getString(R.string.SpeechTypePauseIndicator));
+                str = str.concat(mStrings.getString(R.string.SpeechTypePauseIndicator));
         }
 
         // Add the second and further items, putting a line break in between.
@@ -285,7 +326,7 @@ public class DebateFormatInfo {
             bi = iterator.next();
             str = str.concat(secsToText(bi.getTime()));
             if (bi.isPause())
-                str = str.concat(mContext.getString(R.string.SpeechTypePauseIndicator));
+                str = str.concat(mStrings.getString(R.string.SpeechTypePauseIndicator));
         }
         return str;
     }
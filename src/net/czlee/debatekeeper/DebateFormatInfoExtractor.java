@@ -20,15 +20,18 @@ package net.czlee.debatekeeper;
 import java.io.IOException;
 import java.io.InputStream;
 
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 import android.content.Context;
-import android.util.Log;
-import android.util.Xml;
-import android.util.Xml.Encoding;
 
 /**
  * TODO Comment this class, before it's too late!
@@ -39,19 +42,38 @@ import android.util.Xml.Encoding;
  */
 public class DebateFormatInfoExtractor {
 
-    private final Context          mContext;
+    private final StringResources  mStrings;
     private final String           DEBATING_TIMER_URI;
     private DebateFormatInfo mDfi;
 
+    private static final String FEATURE_DISALLOW_DOCTYPE_DECL       = "http://apache.org/xml/features/disallow-doctype-decl";
+    private static final String FEATURE_EXTERNAL_GENERAL_ENTITIES   = "http://xml.org/sax/features/external-general-entities";
+    private static final String FEATURE_EXTERNAL_PARAMETER_ENTITIES = "http://xml.org/sax/features/external-parameter-entities";
+
     public DebateFormatInfoExtractor(Context context) {
-        mContext           = context;
-        DEBATING_TIMER_URI = context.getString(R.string.XmlUri);
+        this(new ContextStringResources(context));
+    }
+
+    public DebateFormatInfoExtractor(StringResources strings) {
+        mStrings           = strings;
+        DEBATING_TIMER_URI = strings.getString(R.string.XmlUri);
     }
 
     // ******************************************************************************************
     // Private classes
     // ******************************************************************************************
 
+    /**
+     * Refuses to resolve any external entity, so that a debate format file can't make the
+     * parser read other files or fetch anything from the network.
+     */
+    private static class RefusingEntityResolver implements EntityResolver {
+        @Override
+        public InputSource resolveEntity(String publicId, String systemId) throws SAXException {
+            throw new SAXException("External entities are not allowed: " + systemId);
+        }
+    }
+
     private class DebateFormatInfoContentHandler implements ContentHandler {
 
         private boolean mIsInRootContext        = false;
@@ -108,7 +130,7 @@ public class DebateFormatInfoExtractor {
             if (getCurrentSecondLevelContext() == DebateFormatXmlSecondLevelContext.INFO) {
                 if (localName.equals(mThirdLevelInfoContext)) {
                     if (mCharactersBuffer == null) {
-                        Log.e(this.getClass().getSimpleName(), "In a third level context but mCharactersBuffer is empty");
+                        // In a third level context but mCharactersBuffer is empty
                         return;
                     }
                     // <region>
@@ -336,7 +358,7 @@ public class DebateFormatInfoExtractor {
         }
 
         private String getString(int resid) {
-            return mContext.getString(resid);
+            return mStrings.getString(resid);
         }
 
         private String getValue(Attributes atts, int localNameResid) {
@@ -362,8 +384,8 @@ public class DebateFormatInfoExtractor {
      */
     public DebateFormatInfo getDebateFormatInfo(InputStream is) throws IOException, SAXException {
 
-        mDfi = new DebateFormatInfo(mContext);
-        Xml.parse(is, Encoding.UTF_8, new DebateFormatInfoContentHandler());
+        mDfi = new DebateFormatInfo(mStrings);
+        parseXml(is, new DebateFormatInfoContentHandler());
         return mDfi;
     }
 
@@ -395,4 +417,54 @@ public class DebateFormatInfoExtractor {
         return seconds;
     }
 
+    /**
+     * Parses an XML file with a namespace-aware SAX parser.  This is equivalent to
+     * <code>android.util.Xml.parse()</code>, but doesn't need Android.  The file can't use a
+     * document type declaration or external entities; see <code>disallowExternalEntities()</code>.
+     * @param is an <code>InputStream</code> for an XML file to parse
+     * @param handler the <code>ContentHandler</code> to receive the SAX events
+     * @throws IOException if thrown by the attempt to use the <code>InputStream</code>
+     * @throws SAXException if thrown by the XML parser (SAX)
+     */
+    private static void parseXml(InputStream is, ContentHandler handler)
+            throws IOException, SAXException {
+        XMLReader reader;
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            disallowExternalEntities(factory);
+            reader = factory.newSAXParser().getXMLReader();
+        } catch (ParserConfigurationException e) {
+            throw new SAXException(e);
+        }
+        InputSource source = new InputSource(is);
+        source.setEncoding("UTF-8");
+        reader.setEntityResolver(new RefusingEntityResolver());
+        reader.setContentHandler(handler);
+        reader.parse(source);
+    }
+
+    /**
+     * Stops a SAX parser from reading anything but the file it is given.  Document type
+     * declarations are refused outright, which rules out all entities.  Not every parser
+     * supports that (nor the features that turn off external entities), so external entities
+     * are also refused when they are resolved.
+     * @param factory the <code>SAXParserFactory</code> to set up, before the parser is made
+     */
+    private static void disallowExternalEntities(SAXParserFactory factory) {
+        trySetFeature(factory, FEATURE_DISALLOW_DOCTYPE_DECL, true);
+        trySetFeature(factory, FEATURE_EXTERNAL_GENERAL_ENTITIES, false);
+        trySetFeature(factory, FEATURE_EXTERNAL_PARAMETER_ENTITIES, false);
+    }
+
+    private static void trySetFeature(SAXParserFactory factory, String name, boolean value) {
+        try {
+            factory.setFeature(name, value);
+        } catch (ParserConfigurationException e) {
+            // Not supported by this parser; the entity resolver still refuses external entities.
+        } catch (SAXException e) {
+            // Likewise
+        }
+    }
+
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import org.xml.sax.SAXException;
+
+import android.content.Context;
+import android.util.Log;
+
+/**
+ * DebateLoader builds a {@link DebateFormat} from a debate format file, using the compiled form
+ * if there is one (see {@link CompiledDebateFormat}), and parsing the XML file otherwise.
+ *
+ * It doesn't touch the GUI, so it can be used from any thread.  {@link DebatingTimerService}
+ * uses it on a background thread, so that loading a debate never holds up the GUI.  Each
+ * <code>DebateLoader</code> should only be used to load one file.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class DebateLoader {
+
+    private final Context               mContext;
+    private final FormatXmlFilesManager mFilesManager;
+    private       ArrayList<String>     mErrorLog = new ArrayList<String>();
+
+    //******************************************************************************************
+    // Public classes
+    //******************************************************************************************
+
+    /**
+     * Thrown if a debate format couldn't be loaded at all.  The message is human-readable and can
+     * be displayed in a dialogue box.
+     */
+    public static class FatalXmlError extends Exception {
+
+        private static final long serialVersionUID = -1774973645180296278L;
+
+        public FatalXmlError(String detailMessage, Throwable throwable) {
+            super(detailMessage, throwable);
+        }
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    public DebateLoader(Context context) {
+        super();
+        mContext      = context;
+        mFilesManager = new FormatXmlFilesManager(context);
+    }
+
+    /**
+     * Builds a <code>DebateFormat</code> from a specified file.  If the XML file was parsed and
+     * the debate format builder logged non-fatal errors, they are available from
+     * <code>getErrorLog()</code> afterwards.
+     * @param filename the file name of the XML file
+     * @return the built <code>DebateFormat</code>
+     * @throws FatalXmlError if there was any problem, which could include:
+     * <ul><li>A problem opening or reading the file</li>
+     * <li>A problem parsing the XML file</li>
+     * <li>That there were no speeches in this debate format</li>
+     * </ul>
+     */
+    public DebateFormat load(String filename) throws FatalXmlError {
+        DebateFormatBuilderFromXml dfbfx = new DebateFormatBuilderFromXml(new ContextStringResources(mContext));
+        InputStream is = null;
+        DebateFormat df;
+
+        // Bundled formats are compiled at build time, so use the compiled form if there is one
+        df = loadCompiled(filename);
+        if (df != null) return df;
+
+        try {
+            is = mFilesManager.open(filename);
+        } catch (IOException e) {
+            throw new FatalXmlError(mContext.getString(R.string.FatalProblemWithXmlFileMessage_CannotFind, filename), e);
+        }
+
+        try {
+            df = dfbfx.buildDebateFromXml(is);
+        } catch (IOException e) {
+            throw new FatalXmlError(mContext.getString(R.string.FatalProblemWithXmlFileMessage_CannotRead, filename), e);
+        } catch (SAXException e) {
+            throw new FatalXmlError(mContext.getString(
+                    R.string.FatalProblemWithXmlFileMessage_BadXml, filename, e.getMessage()), e);
+        } catch (IllegalStateException e) {
+            throw new FatalXmlError(mContext.getString(
+                    R.string.FatalProblemWithXmlFileMessage_NoSpeeches, filename), e);
+        }
+
+        if (dfbfx.hasErrors())
+            mErrorLog = dfbfx.getErrorLog();
+
+        return df;
+    }
+
+    /**
+     * @return <code>true</code> if the last file loaded had non-fatal errors
+     */
+    public boolean hasErrors() {
+        return mErrorLog.size() > 0;
+    }
+
+    /**
+     * @return the non-fatal errors in the last file loaded, empty if there were none
+     */
+    public ArrayList<String> getErrorLog() {
+        return mErrorLog;
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * Loads the compiled form of a bundled debate format, if there is one.  The compiled form was
+     * checked when it was built, so there are never any errors to show.
+     * @param filename the file name of the XML file
+     * @return the <code>DebateFormat</code>, or <code>null</code> if there is no usable compiled
+     * form, in which case the XML file should be parsed instead
+     */
+    private DebateFormat loadCompiled(String filename) {
+        InputStream is = mFilesManager.openCompiled(filename);
+        if (is == null) return null;
+
+        try {
+            return CompiledDebateFormat.read(new DataInputStream(new BufferedInputStream(is)));
+        } catch (IOException e) {
+            Log.w(this.getClass().getSimpleName(), "Couldn't read compiled form of " + filename, e);
+            return null;
+        } finally {
+            try {
+                is.close();
+            } catch (IOException e) {
+                // Ignore, we've already got what we needed.
+            }
+        }
+    }
+
+}
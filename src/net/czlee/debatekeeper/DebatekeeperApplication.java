@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import android.app.Application;
+import android.util.Log;
+
+/**
+ * DebatekeeperApplication sets up the debate timing engine for Android, before any activity or
+ * service starts.  At the moment, this just means sending the engine's log messages to
+ * {@link Log}.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class DebatekeeperApplication extends Application {
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    private static class AndroidLogBackend implements EngineLog.Backend {
+
+        @Override
+        public void log(int priority, String tag, String msg, Throwable tr) {
+            // EngineLog's priorities are the same as Log's.
+            if (tr != null)
+                msg = msg + '\n' + Log.getStackTraceString(tr);
+            Log.println(priority, tag, msg);
+        }
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        EngineLog.setBackend(new AndroidLogBackend());
+    }
+
+}
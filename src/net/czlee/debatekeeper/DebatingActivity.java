@@ -17,25 +17,20 @@
 
 package net.czlee.debatekeeper;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
 
 import net.czlee.debatekeeper.AlertManager.FlashScreenMode;
 import net.czlee.debatekeeper.SpeechFormat.CountDirection;
-
-import org.xml.sax.SAXException;
+import net.czlee.debatekeeper.SpeechManager.DebatingTimerState;
 
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.Dialog;
-import android.content.BroadcastReceiver;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.ServiceConnection;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
@@ -43,8 +38,7 @@ import android.content.res.Resources;
 import android.media.AudioManager;
 import android.os.Bundle;
 import android.os.IBinder;
-import android.preference.PreferenceManager;
-import android.support.v4.content.LocalBroadcastManager;
+import android.text.TextUtils;
 import android.util.Log;
 import android.view.GestureDetector;
 import android.view.GestureDetector.SimpleOnGestureListener;
@@ -57,7 +51,6 @@ import android.view.animation.AnimationUtils;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.Button;
 import android.widget.LinearLayout;
-import android.widget.RelativeLayout;
 import android.widget.TextView;
 import android.widget.TimePicker;
 import android.widget.Toast;
@@ -76,24 +69,44 @@ import android.widget.ViewFlipper;
 public class DebatingActivity extends Activity {
 
     private ViewFlipper mDebateTimerViewFlipper;
-    private RelativeLayout[] mDebateTimerDisplays;
+    private DebateTimerDisplayBinding[] mDebateTimerDisplayBindings;
     private int mCurrentDebateTimerDisplayIndex = 0;
+    private TimerSnapshot mOffScreenSnapshot = null;  // the prepared snapshot on the other display
+    private int mPendingSpeechIndex = -1;             // the speech being moved to, if any
+    private long mAwaitedMoveNumber = 0;              // the move being waited for, if any
+    private boolean mShowingLastKnownDisplay = false;  // see restoreLastKnownDisplay()
     private boolean mIsEditingTime = false;
+    private boolean mShowTenths = false;
 
     private Button mLeftControlButton;
     private Button mCentreControlButton;
     private Button mRightControlButton;
     private Button mPlayBellButton;
+    private float  mLeftControlButtonWeight = 0;
+
+    private final ViewUpdater mViewUpdater = new ViewUpdater();
 
     private DebateManager mDebateManager;
     private Bundle mLastStateBundle;
-    private FormatXmlFilesManager mFilesManager;
+
+    // The title only depends on the debate, so it's only worked out when the debate changes.
+    private DebateManager mTitleDebateManager = null;  // the debate the title was set for
+    private boolean       mTitleIsSet         = false;
 
     private String mFormatXmlFileName = null;
     private UserPreferenceCountDirection mUserCountDirection = UserPreferenceCountDirection.GENERALLY_UP;
 
     private static final String BUNDLE_SUFFIX_DEBATE_MANAGER           = "dm";
     private static final String PREFERENCE_XML_FILE_NAME               = "xmlfn";
+    private static final String PREFERENCE_LAST_KNOWN_XML_FILE_NAME    = "lkxmlfn";
+    private static final String PREFERENCE_LAST_KNOWN_TITLE            = "lkt";
+    private static final String PREFERENCE_LAST_KNOWN_SPEECH_NAME      = "lksn";
+    private static final String PREFERENCE_LAST_KNOWN_PERIOD           = "lkp";
+    private static final String PREFERENCE_LAST_KNOWN_PERIOD_COLOUR    = "lkpc";
+    private static final String PREFERENCE_LAST_KNOWN_TIME_TENTHS      = "lktt";
+    private static final String PREFERENCE_LAST_KNOWN_TIME_COLOUR      = "lktc";
+    private static final String PREFERENCE_LAST_KNOWN_NEXT_BELL        = "lknb";
+    private static final String PREFERENCE_LAST_KNOWN_SPEECH_LENGTH    = "lksl";
     private static final String DIALOG_BUNDLE_FATAL_MESSAGE            = "fm";
     private static final String DIALOG_BUNDLE_XML_ERROR_LOG            = "xel";
 
@@ -101,9 +114,14 @@ public class DebatingActivity extends Activity {
     private static final int    DIALOG_XML_FILE_FATAL         = 0;
     private static final int    DIALOG_XML_FILE_ERRORS        = 1;
 
+    private static final long   NANOS_PER_TENTH               = 100000000L;
+
     private DebatingTimerService.DebatingTimerServiceBinder mBinder;
-    private final BroadcastReceiver mGuiUpdateBroadcastReceiver = new GuiUpdateBroadcastReceiver();
+    private final TimerEventDispatcher.TimerListener mTimerListener = new GuiTimerListener();
     private final ServiceConnection mConnection = new DebatingTimerServiceConnection();
+    private final DebatingTimerService.DebateLoadListener mDebateLoadListener = new DebateLoadListener();
+    private final DebatingTimerPreferences.OnChangeListener mPreferencesListener = new PreferencesChangeListener();
+    private final FlashScreenListener mFlashScreenListener = new DebatingTimerFlashScreenListener();
 
     //******************************************************************************************
     // Private classes
@@ -113,7 +131,7 @@ public class DebatingActivity extends Activity {
         @Override
         public void onClick(View pV) {
             if (mDebateManager == null) return;
-            switch (mDebateManager.getStatus()) {
+            switch (getTimerStatus()) {
             case STOPPED_BY_USER:
                 mDebateManager.resetSpeaker();
                 break;
@@ -141,13 +159,236 @@ public class DebatingActivity extends Activity {
     private class DebatingTimerFlashScreenListener implements FlashScreenListener {
         @Override
         public void flashScreen(boolean invert) {
-            final int colour = (invert) ? 0xffffffff : 0x00000000;
-            runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    findViewById(R.id.debateActivityRootView).setBackgroundColor(colour);
+            // AlertManager calls this on the UI thread, so we can change the view directly.
+            int colour = (invert) ? 0xffffffff : 0x00000000;
+            findViewById(R.id.debateActivityRootView).setBackgroundColor(colour);
+        }
+    }
+
+    /**
+     * Holds everything needed to draw one debate timer display, so that drawing it doesn't look
+     * anything up.  The views, colours and format strings are found once, when it is created.
+     * Strings that only change when the speech changes are worked out once per speech, and the
+     * next bell line is only formatted again when the next bell changes.  So on most ticks, only
+     * the current time changes.
+     */
+    private class DebateTimerDisplayBinding {
+
+        private final TextView   mPeriodDescriptionText;
+        private final TextView   mSpeechNameText;
+        private final ClockView  mCurrentTimeText;
+        private final TextView   mNextTimeText;
+        private final TextView   mFinalTimeText;
+        private final TimePicker mCurrentTimePicker;
+
+        private final int    mNormalTimeColour;
+        private final int    mOvertimeColour;
+        private final String mNextBellFormat;
+        private final String mNextBellWithPauseFormat;
+        private final String mNoMoreBellsText;
+        private final String mSpeechLengthFormat;
+
+        // Worked out once per speech
+        private SpeechFormat mSpeechFormat = null;
+        private boolean      mCountingDown;
+
+        // The period background colour last shown
+        private int mPeriodBackgroundColour = 0;
+
+        // The next bell that the next bell line was last formatted for
+        private boolean mHasNextBell;
+        private long    mNextBellTime;
+        private boolean mNextBellPause;
+        private String  mNextTimeString = null;
+
+        public DebateTimerDisplayBinding(View v) {
+            mPeriodDescriptionText = (TextView)   v.findViewById(R.id.periodDescriptionText);
+            mSpeechNameText        = (TextView)   v.findViewById(R.id.speechNameText);
+            mCurrentTimeText       = (ClockView)  v.findViewById(R.id.currentTime);
+            mNextTimeText          = (TextView)   v.findViewById(R.id.nextTime);
+            mFinalTimeText         = (TextView)   v.findViewById(R.id.finalTime);
+            mCurrentTimePicker     = (TimePicker) v.findViewById(R.id.currentTimePicker);
+
+            Resources resources = getResources();
+            mNormalTimeColour        = resources.getColor(android.R.color.primary_text_dark);
+            mOvertimeColour          = resources.getColor(R.color.overtime);
+            mNextBellFormat          = resources.getString(R.string.NextBellText);
+            mNextBellWithPauseFormat = resources.getString(R.string.NextBellWithPauseText);
+            mNoMoreBellsText         = resources.getString(R.string.NoMoreBellsText);
+            mSpeechLengthFormat      = resources.getString(R.string.SpeechLengthText);
+        }
+
+        /**
+         * Forgets everything worked out for the current speech, e.g. because the count direction
+         * preference has changed.  The next <code>update()</code> works it all out again.
+         */
+        public void invalidate() {
+            mSpeechFormat   = null;
+            mNextTimeString = null;
+        }
+
+        /**
+         * Draws a snapshot on this display.
+         * @param snapshot the {@link TimerSnapshot} to render, or <code>null</code> if there is no
+         * debate loaded
+         */
+        public void update(TimerSnapshot snapshot) {
+
+            if (snapshot == null) {
+                // Blank out all the fields
+                invalidate();
+                mPeriodBackgroundColour = 0;
+                mViewUpdater.setText(mPeriodDescriptionText, getString(R.string.NoDebateLoadedText));
+                mViewUpdater.setText(mSpeechNameText, "");
+                mViewUpdater.setBackgroundColor(mPeriodDescriptionText, 0);
+                mViewUpdater.setBackgroundColor(mSpeechNameText, 0);
+                mViewUpdater.clear(mCurrentTimeText);
+                mViewUpdater.setText(mNextTimeText, "");
+                mViewUpdater.setText(mFinalTimeText, "");
+                return;
+            }
+
+            SpeechFormat sf = snapshot.getSpeechFormat();
+
+            // Things that only change when the speech changes
+            if (sf != mSpeechFormat) {
+                mSpeechFormat   = sf;
+                mCountingDown   = getCountDirection(sf) == OverallCountDirection.COUNT_DOWN;
+                mNextTimeString = null;
+                mViewUpdater.setText(mFinalTimeText, String.format(mSpeechLengthFormat,
+                        secsToText(sf.getSpeechLength())));
+            }
+
+            // The speech name can change without the speech format changing, if two speeches in
+            // a row have the same format.
+            mPeriodBackgroundColour = snapshot.getPeriodBackgroundColor();
+            mViewUpdater.setText(mSpeechNameText, snapshot.getSpeechName());
+            mViewUpdater.setBackgroundColor(mSpeechNameText, mPeriodBackgroundColour);
+            mViewUpdater.setText(mPeriodDescriptionText, snapshot.getPeriodDescription());
+            mViewUpdater.setBackgroundColor(mPeriodDescriptionText, mPeriodBackgroundColour);
+
+            drawTime(snapshot);
+        }
+
+        /**
+         * Draws only the current time and the next bell from a snapshot, for when nothing but the
+         * time has changed since the last <code>update()</code>.  If the snapshot is for another
+         * speech, this draws everything, as <code>update()</code> does.
+         * @param snapshot the {@link TimerSnapshot} to render, or <code>null</code> if there is no
+         * debate loaded
+         */
+        public void updateTime(TimerSnapshot snapshot) {
+            if (snapshot == null || snapshot.getSpeechFormat() != mSpeechFormat) {
+                update(snapshot);
+                return;
+            }
+            drawTime(snapshot);
+        }
+
+        private void drawTime(TimerSnapshot snapshot) {
+
+            // The current time
+            long speechLength = mSpeechFormat.getSpeechLength();
+            if (mShowTenths) {
+                // While the timer is running, the clock counts the tenths by itself.
+                long elapsedTenths = snapshot.getCurrentTime() * 10;
+                if (!snapshot.isRunning())
+                    elapsedTenths += snapshot.getSubSecondNanos() / NANOS_PER_TENTH;
+                long displayTenths = (mCountingDown) ? speechLength * 10 - elapsedTenths : elapsedTenths;
+                mViewUpdater.setTimeInTenths(mCurrentTimeText, displayTenths);
+                if (snapshot.isRunning())
+                    mCurrentTimeText.startCounting(snapshot.getSecondStartTime(), mCountingDown);
+                else
+                    mCurrentTimeText.stopCounting();
+            } else {
+                long currentTime = snapshot.getCurrentTime();
+                mViewUpdater.setTime(mCurrentTimeText, (mCountingDown) ? speechLength - currentTime : currentTime);
+            }
+            mViewUpdater.setTextColor(mCurrentTimeText, (snapshot.isOvertime()) ? mOvertimeColour : mNormalTimeColour);
+
+            // The next bell line, only formatted again if the next bell has changed
+            boolean hasNextBell   = snapshot.hasNextBell();
+            long    nextBellTime  = snapshot.getNextBellTime();
+            boolean nextBellPause = snapshot.isNextBellPause();
+            if (mNextTimeString == null || hasNextBell != mHasNextBell
+                    || nextBellTime != mNextBellTime || nextBellPause != mNextBellPause) {
+                mHasNextBell   = hasNextBell;
+                mNextBellTime  = nextBellTime;
+                mNextBellPause = nextBellPause;
+                if (hasNextBell) {
+                    long displayTime = (mCountingDown) ? speechLength - nextBellTime : nextBellTime;
+                    mNextTimeString = String.format((nextBellPause) ? mNextBellWithPauseFormat : mNextBellFormat,
+                            secsToText(displayTime));
+                } else {
+                    mNextTimeString = mNoMoreBellsText;
                 }
-            });
+                mViewUpdater.setText(mNextTimeText, mNextTimeString);
+            }
+
+        }
+
+        /**
+         * Saves what this display is showing, so that <code>restoreLastKnown()</code> can show it
+         * again.
+         * @param editor the editor to save it to
+         */
+        public void saveLastKnown(Editor editor) {
+            editor.putString(PREFERENCE_LAST_KNOWN_SPEECH_NAME, mSpeechNameText.getText().toString());
+            editor.putString(PREFERENCE_LAST_KNOWN_PERIOD, mPeriodDescriptionText.getText().toString());
+            editor.putInt(PREFERENCE_LAST_KNOWN_PERIOD_COLOUR, mPeriodBackgroundColour);
+            editor.putLong(PREFERENCE_LAST_KNOWN_TIME_TENTHS, mCurrentTimeText.getTimeInTenths());
+            editor.putInt(PREFERENCE_LAST_KNOWN_TIME_COLOUR, mCurrentTimeText.getTextColor());
+            editor.putString(PREFERENCE_LAST_KNOWN_NEXT_BELL, mNextTimeText.getText().toString());
+            editor.putString(PREFERENCE_LAST_KNOWN_SPEECH_LENGTH, mFinalTimeText.getText().toString());
+        }
+
+        /**
+         * Shows what was saved by <code>saveLastKnown()</code>.
+         * @param sp the preferences it was saved to
+         * @return <code>true</code> if there was something saved, <code>false</code> otherwise
+         */
+        public boolean restoreLastKnown(SharedPreferences sp) {
+            if (!sp.contains(PREFERENCE_LAST_KNOWN_TIME_TENTHS)) return false;
+
+            invalidate();
+            mPeriodBackgroundColour = sp.getInt(PREFERENCE_LAST_KNOWN_PERIOD_COLOUR, 0);
+            mViewUpdater.setText(mSpeechNameText, sp.getString(PREFERENCE_LAST_KNOWN_SPEECH_NAME, ""));
+            mViewUpdater.setBackgroundColor(mSpeechNameText, mPeriodBackgroundColour);
+            mViewUpdater.setText(mPeriodDescriptionText, sp.getString(PREFERENCE_LAST_KNOWN_PERIOD, ""));
+            mViewUpdater.setBackgroundColor(mPeriodDescriptionText, mPeriodBackgroundColour);
+            mViewUpdater.setTimeInTenths(mCurrentTimeText, sp.getLong(PREFERENCE_LAST_KNOWN_TIME_TENTHS, 0));
+            mViewUpdater.setTextColor(mCurrentTimeText, sp.getInt(PREFERENCE_LAST_KNOWN_TIME_COLOUR, mNormalTimeColour));
+            mViewUpdater.setText(mNextTimeText, sp.getString(PREFERENCE_LAST_KNOWN_NEXT_BELL, ""));
+            mViewUpdater.setText(mFinalTimeText, sp.getString(PREFERENCE_LAST_KNOWN_SPEECH_LENGTH, ""));
+            return true;
+        }
+    }
+
+    /**
+     * Told by the service when the debate it was loading for us has been loaded.
+     */
+    private class DebateLoadListener implements DebatingTimerService.DebateLoadListener {
+
+        @Override
+        public void onDebateLoaded(DebateManager dm, ArrayList<String> errorLog) {
+            mDebateManager = dm;
+            if (errorLog.size() > 0) {
+                Bundle bundle = new Bundle();
+                bundle.putStringArrayList(DIALOG_BUNDLE_XML_ERROR_LOG, errorLog);
+                removeDialog(DIALOG_XML_FILE_ERRORS);
+                showDialog(DIALOG_XML_FILE_ERRORS, bundle);
+            }
+            showLiveDebate();
+        }
+
+        @Override
+        public void onDebateLoadFailed(String message) {
+            mShowingLastKnownDisplay = false;
+            removeDialog(DIALOG_XML_FILE_FATAL);
+            Bundle bundle = new Bundle();
+            bundle.putString(DIALOG_BUNDLE_FATAL_MESSAGE, message);
+            showDialog(DIALOG_XML_FILE_FATAL, bundle);
+            updateGui();
         }
     }
 
@@ -204,6 +445,10 @@ public class DebatingActivity extends Activity {
         @Override
         public void onServiceConnected(ComponentName className, IBinder service) {
             mBinder = (DebatingTimerService.DebatingTimerServiceBinder) service;
+            mBinder.setDebateLoadListener(mDebateLoadListener);
+            mBinder.getPreferences().addOnChangeListener(mPreferencesListener);
+            mBinder.addTimerListener(mTimerListener);
+            applyPreferences(mBinder.getPreferences(), DebatingTimerPreferences.ALL);
             initialiseDebate();
             restoreBinder();
         }
@@ -214,15 +459,6 @@ public class DebatingActivity extends Activity {
         }
     };
 
-    private class FatalXmlError extends Exception {
-
-        private static final long serialVersionUID = -1774973645180296278L;
-
-        public FatalXmlError(String detailMessage, Throwable throwable) {
-            super(detailMessage, throwable);
-        }
-    }
-
     private class GestureOnTouchListener implements View.OnTouchListener {
 
         GestureDetector gd;
@@ -241,10 +477,19 @@ public class DebatingActivity extends Activity {
 
     }
 
-    private final class GuiUpdateBroadcastReceiver extends BroadcastReceiver {
+    private final class GuiTimerListener implements TimerEventDispatcher.TimerListener {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            updateGui();
+        public void onTimerEvent(int events, TimerSnapshot snapshot) {
+            mViewUpdater.startTick();
+
+            // The dispatcher holds the snapshot until this returns, so it's drawn as it is.  Most
+            // events are just ticks, and only the time can change on a tick.
+            if (events == TimerEventDispatcher.EVENT_TICK) {
+                updateTime(snapshot);
+            } else {
+                updateGui(snapshot);
+                updateTitle();
+            }
         }
     }
 
@@ -256,7 +501,7 @@ public class DebatingActivity extends Activity {
                 startActivityForResult(intent, CHOOSE_STYLE_REQUEST);
                 return;
             }
-            switch (mDebateManager.getStatus()) {
+            switch (getTimerStatus()) {
             case RUNNING:
                 mDebateManager.stopTimer();
                 break;
@@ -279,11 +524,19 @@ public class DebatingActivity extends Activity {
         }
     }
 
+    private class PreferencesChangeListener implements DebatingTimerPreferences.OnChangeListener {
+        @Override
+        public void onPreferencesChanged(DebatingTimerPreferences prefs, int changed) {
+            applyPreferences(prefs, changed);
+            updateGui();
+        }
+    }
+
     private class RightControlButtonOnClickListener implements View.OnClickListener {
         @Override
         public void onClick(View pV) {
             if (mDebateManager == null) return;
-            switch (mDebateManager.getStatus()) {
+            switch (getTimerStatus()) {
             case NOT_STARTED:
             case STOPPED_BY_USER:
                 goToNextSpeech();
@@ -299,7 +552,7 @@ public class DebatingActivity extends Activity {
         COUNT_UP, COUNT_DOWN
     }
 
-    private enum UserPreferenceCountDirection {
+    private enum UserPreferenceCountDirection {
 
         // These must match the values string array in the preference.xml file.
         // (We can pull strings from the resource automatically,
@@ -322,7 +575,7 @@ public class DebatingActivity extends Activity {
                     return values[i];
             throw new IllegalArgumentException(String.format("There is no enumerated constant '%s'", key));
         }
-
+
     }
 
     //******************************************************************************************
@@ -347,7 +600,7 @@ public class DebatingActivity extends Activity {
         // If the timer is stopped AND it's not the first speaker, go back one speaker.
         // Note: We do not just leave this check to goToPreviousSpeaker(), because we want to do
         // other things if it's not in a state in which it could go to the previous speaker.
-        if (!mDebateManager.isFirstSpeech() && !mDebateManager.isRunning()) {
+        if (canGoToPreviousSpeech()) {
             goToPreviousSpeech();
             return;
 
@@ -399,7 +652,7 @@ public class DebatingActivity extends Activity {
         MenuItem resetDebateItem = menu.findItem(R.id.resetDebate);
 
         if (mDebateManager != null) {
-            prevSpeakerItem.setEnabled(!mDebateManager.isFirstSpeech() && !mDebateManager.isRunning() && !mIsEditingTime);
+            prevSpeakerItem.setEnabled(canGoToPreviousSpeech() && !mIsEditingTime);
             resetDebateItem.setEnabled(true);
         } else {
             prevSpeakerItem.setEnabled(false);
@@ -430,17 +683,13 @@ public class DebatingActivity extends Activity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.debate_activity);
 
-        mFilesManager = new FormatXmlFilesManager(this);
-
         mDebateTimerViewFlipper    = (ViewFlipper)    findViewById(R.id.debateTimerDisplayFlipper);
-        mDebateTimerDisplays       = new RelativeLayout[2];
-        mDebateTimerDisplays[0]    = (RelativeLayout) findViewById(R.id.debateTimerDisplay0);
-        mDebateTimerDisplays[1]    = (RelativeLayout) findViewById(R.id.debateTimerDisplay1);
+        mDebateTimerDisplayBindings    = new DebateTimerDisplayBinding[2];
+        mDebateTimerDisplayBindings[0] = new DebateTimerDisplayBinding(findViewById(R.id.debateTimerDisplay0));
+        mDebateTimerDisplayBindings[1] = new DebateTimerDisplayBinding(findViewById(R.id.debateTimerDisplay1));
 
-        for (int i = 0; i < mDebateTimerDisplays.length; i++) {
-            TimePicker currentTimePicker = (TimePicker) mDebateTimerDisplays[i].findViewById(R.id.currentTimePicker);
-            currentTimePicker.setIs24HourView(true);
-        }
+        for (int i = 0; i < mDebateTimerDisplayBindings.length; i++)
+            mDebateTimerDisplayBindings[i].mCurrentTimePicker.setIs24HourView(true);
 
         mDebateTimerViewFlipper.setDisplayedChild(mCurrentDebateTimerDisplayIndex);
 
@@ -465,15 +714,17 @@ public class DebatingActivity extends Activity {
         displayFlipper.setOnTouchListener(new GestureOnTouchListener(gd1));
 
         GestureDetector gd2 = new GestureDetector(new CurrentTimeOnGestureListener());
-        for (int i = 0; i < mDebateTimerDisplays.length; i++) {
-            View currentTimeText = mDebateTimerDisplays[i].findViewById(R.id.currentTime);
-            currentTimeText.setOnTouchListener(new GestureOnTouchListener(gd2));
-        }
+        for (int i = 0; i < mDebateTimerDisplayBindings.length; i++)
+            mDebateTimerDisplayBindings[i].mCurrentTimeText.setOnTouchListener(new GestureOnTouchListener(gd2));
 
         //
         // Find the style file name
         String filename = loadXmlFileName();
 
+        // Show what was on the screen last time straight away.  The debate itself is loaded in
+        // the background once the service is connected.
+        mShowingLastKnownDisplay = restoreLastKnownDisplay();
+
         // If there doesn't appear to be an existing style selected, then start
         // the Activity to select the style immediately, and don't bother with the
         // rest.
@@ -504,11 +755,16 @@ public class DebatingActivity extends Activity {
     protected void onDestroy() {
         super.onDestroy();
 
+        if (mBinder != null) {
+            mBinder.setDebateLoadListener(null);
+            mBinder.getPreferences().removeOnChangeListener(mPreferencesListener);
+            mBinder.removeTimerListener(mTimerListener);
+        }
         unbindService(mConnection);
 
         boolean keepRunning = false;
         if (mDebateManager != null) {
-            if (mDebateManager.isRunning()) {
+            if (getTimerStatus() == DebatingTimerState.RUNNING) {
                 keepRunning = true;
             }
         }
@@ -525,29 +781,34 @@ public class DebatingActivity extends Activity {
     protected void onStart() {
         super.onStart();
         restoreBinder();
-        LocalBroadcastManager.getInstance(this).registerReceiver(mGuiUpdateBroadcastReceiver,
-                new IntentFilter(DebatingTimerService.UPDATE_GUI_BROADCAST_ACTION));
+        if (mBinder != null)
+            mBinder.addTimerListener(mTimerListener);
 
-        applyPreferences();
         updateGui();
     }
 
     @Override
     protected void onStop() {
         super.onStop();
+        Log.v(this.getClass().getSimpleName(), String.format(
+                "onStop: %d views changed in %d GUI updates (%d in the last one)",
+                mViewUpdater.getTotalInvalidationCount(), mViewUpdater.getTickCount(),
+                mViewUpdater.getLastTickInvalidationCount()));
+        if (mDebateManager != null)
+            saveLastKnownDisplay();
         if (mBinder != null) {
             AlertManager am = mBinder.getAlertManager();
             if (am != null) {
                 am.activityStop();
             }
+            mBinder.removeTimerListener(mTimerListener);
         }
-        LocalBroadcastManager.getInstance(this).unregisterReceiver(mGuiUpdateBroadcastReceiver);
     }
 
     @Override
     protected void onSaveInstanceState(Bundle bundle) {
         if (mDebateManager != null)
-            mDebateManager.saveState(BUNDLE_SUFFIX_DEBATE_MANAGER, bundle);
+            mDebateManager.saveState(BUNDLE_SUFFIX_DEBATE_MANAGER, new BundleSavedState(bundle));
     }
 
 
@@ -556,152 +817,47 @@ public class DebatingActivity extends Activity {
     //******************************************************************************************
 
     /**
-     * Gets the preferences from the shared preferences file and applies them.
+     * Applies the preferences that affect this activity.  The service applies the rest.
+     * @param prefs the {@link DebatingTimerPreferences} to take the values from
+     * @param changed which preferences to apply, as a combination of
+     * <code>DebatingTimerPreferences.SILENT_MODE</code>, etc.
      */
-    private void applyPreferences() {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
-        boolean silentMode, vibrateMode, overtimeBellsEnabled, keepScreenOn;
-        int firstOvertimeBell, overtimeBellPeriod;
-        String userCountDirectionValue;
-        FlashScreenMode flashScreenMode;
-
-        Resources res = getResources();
+    private void applyPreferences(DebatingTimerPreferences prefs, int changed) {
 
-        try {
-
-            // The boolean preferences
-            silentMode = prefs.getBoolean(res.getString(R.string.PrefSilentModeKey),
-                    res.getBoolean(R.bool.DefaultPrefSilentMode));
-            vibrateMode = prefs.getBoolean(res.getString(R.string.PrefVibrateModeKey),
-                    res.getBoolean(R.bool.DefaultPrefVibrateMode));
-            overtimeBellsEnabled = prefs.getBoolean(res.getString(R.string.PrefOvertimeBellsEnableKey),
-                    res.getBoolean(R.bool.DefaultPrefOvertimeBellsEnable));
-            keepScreenOn = prefs.getBoolean(res.getString(R.string.PrefKeepScreenOnKey),
-                    res.getBoolean(R.bool.DefaultPrefKeepScreenOn));
-
-            // Overtime bell integers
-            if (overtimeBellsEnabled) {
-                firstOvertimeBell  = prefs.getInt(res.getString(R.string.PrefFirstOvertimeBellKey),
-                        res.getInteger(R.integer.DefaultPrefFirstOvertimeBell));
-                overtimeBellPeriod = prefs.getInt(res.getString(R.string.PrefOvertimeBellPeriodKey),
-                        res.getInteger(R.integer.DefaultPrefOvertimeBellPeriod));
-            } else {
-                firstOvertimeBell = 0;
-                overtimeBellPeriod = 0;
-            }
-
-            // List preference: Count direction
-            userCountDirectionValue = prefs.getString(res.getString(R.string.PrefCountDirectionKey),
-                    res.getString(R.string.DefaultPrefCountDirection));
-            mUserCountDirection = UserPreferenceCountDirection.toEnum(userCountDirectionValue);
-
-            // List preference: Flash screen mode
-            // This changed from a boolean to a list preference in version 0.6, so there is
-            // backwards compatibility to take care of.  Backwards compatibility applies if
-            // (a) the list preference is NOT present AND (b) the boolean preference IS present.
-            // In this case, retrieve the boolean preference, delete it and write the corresponding
-            // list preference.  In all other cases, just take the list preference (using the
-            // normal default mechanism if it isn't present, i.e. neither are present).
-
-            if (!prefs.contains(res.getString(R.string.PrefFlashScreenModeKey)) &&
-                    prefs.contains(res.getString(R.string.PrefFlashScreenBoolKey))) {
-                // Boolean preference.
-                // First, get the string and convert it to an enum.
-                boolean flashScreenModeBool = prefs.getBoolean(
-                        res.getString(R.string.PrefFlashScreenBoolKey), false);
-                flashScreenMode = (flashScreenModeBool) ? FlashScreenMode.SOLID_FLASH : FlashScreenMode.OFF;
-
-                // Then, convert that enum to the list preference value (a string) and write that
-                // back to the preferences.  Also, remove the old boolean preference.
-                String flashStringModePrefValue = flashScreenMode.toPrefValue();
-                SharedPreferences.Editor editor = prefs.edit();
-                editor.putString(res.getString(R.string.PrefFlashScreenModeKey), flashStringModePrefValue);
-                editor.remove(res.getString(R.string.PrefFlashScreenBoolKey));
-                editor.commit();
-                Log.w(this.getClass().getSimpleName(),
-                        String.format("flashScreenMode: replaced boolean preference with list preference: %s", flashStringModePrefValue));
-
-            } else {
-                // List preference.
-                // Get the string and convert it to an enum.
-                String flashScreenModeValue;
-                flashScreenModeValue = prefs.getString(res.getString(R.string.PrefFlashScreenModeKey),
-                        res.getString(R.string.DefaultPrefFlashScreenMode));
-                flashScreenMode = FlashScreenMode.toEnum(flashScreenModeValue);
-            }
-
-
-        } catch (ClassCastException e) {
-            Log.e(this.getClass().getSimpleName(), "applyPreferences: caught ClassCastException!");
-            return;
+        if ((changed & DebatingTimerPreferences.SHOW_TENTHS) != 0) {
+            mShowTenths = prefs.isShowTenths();
+            for (int i = 0; i < mDebateTimerDisplayBindings.length; i++)
+                mDebateTimerDisplayBindings[i].mCurrentTimeText.setShowTenths(mShowTenths);
         }
 
-        if (mDebateManager != null) {
-            mDebateManager.setOvertimeBells(firstOvertimeBell, overtimeBellPeriod);
-        } else {
-            Log.w(this.getClass().getSimpleName(), "applyPreferences: Couldn't restore overtime bells, mDebateManager doesn't yet exist");
+        if ((changed & DebatingTimerPreferences.COUNT_DIRECTION) != 0) {
+            mUserCountDirection = UserPreferenceCountDirection.toEnum(prefs.getCountDirectionValue());
+            for (int i = 0; i < mDebateTimerDisplayBindings.length; i++)
+                mDebateTimerDisplayBindings[i].invalidate();
         }
 
-        if (mBinder != null) {
-            AlertManager am = mBinder.getAlertManager();
-
-            // Volume control stream is linked to silent mode
-            am.setSilentMode(silentMode);
-            setVolumeControlStream((silentMode) ? AudioManager.STREAM_RING : AudioManager.STREAM_MUSIC);
+        // Volume control stream is linked to silent mode
+        if ((changed & DebatingTimerPreferences.SILENT_MODE) != 0)
+            setVolumeControlStream((prefs.isSilentMode()) ? AudioManager.STREAM_RING : AudioManager.STREAM_MUSIC);
 
-            am.setVibrateMode(vibrateMode);
-            am.setKeepScreenOn(keepScreenOn);
-            am.setFlashScreenListener((flashScreenMode != FlashScreenMode.OFF) ? new DebatingTimerFlashScreenListener() : null);
-            am.setFlashScreenMode(flashScreenMode);
-            Log.v(this.getClass().getSimpleName(), "applyPreferences: successfully applied");
-        } else {
-            Log.w(this.getClass().getSimpleName(), "applyPreferences: Couldn't restore AlertManager preferences; mBinder doesn't yet exist");
+        if ((changed & DebatingTimerPreferences.FLASH_SCREEN_MODE) != 0 && mBinder != null) {
+            boolean flashScreen = prefs.getFlashScreenMode() != FlashScreenMode.OFF;
+            mBinder.getAlertManager().setFlashScreenListener((flashScreen) ? mFlashScreenListener : null);
         }
+
+        Log.v(this.getClass().getSimpleName(), String.format("applyPreferences: applied 0x%02x", changed));
     }
 
     /**
-     * Builds a <code>DebateFormat</code> from a specified XML file. Shows a <code>Dialog</code> if
-     * the debate format builder logged non-fatal errors.
-     * @param filename the file name of the XML file
-     * @return the built <code>DebateFormat</code>
-     * @throws FatalXmlError if there was any problem, which could include:
-     * <ul><li>A problem opening or reading the file</li>
-     * <li>A problem parsing the XML file</li>
-     * <li>That there were no speeches in this debate format</li>
-     * </ul>
-     * The message of the exception will be human-readable and can be displayed in a dialogue box.
+     * @return <code>true</code> if there is a debate, the timer is stopped and it isn't the first
+     * speech, all as of the latest snapshot
      */
-    private DebateFormat buildDebateFromXml(String filename) throws FatalXmlError {
-        DebateFormatBuilderFromXml dfbfx = new DebateFormatBuilderFromXml(this);
-        InputStream is = null;
-        DebateFormat df;
-
-        try {
-            is = mFilesManager.open(filename);
-        } catch (IOException e) {
-            throw new FatalXmlError(getString(R.string.FatalProblemWithXmlFileMessage_CannotFind, filename), e);
-        }
-
-        try {
-            df = dfbfx.buildDebateFromXml(is);
-        } catch (IOException e) {
-            throw new FatalXmlError(getString(R.string.FatalProblemWithXmlFileMessage_CannotRead, filename), e);
-        } catch (SAXException e) {
-            throw new FatalXmlError(getString(
-                    R.string.FatalProblemWithXmlFileMessage_BadXml, filename, e.getMessage()), e);
-        } catch (IllegalStateException e) {
-            throw new FatalXmlError(getString(
-                    R.string.FatalProblemWithXmlFileMessage_NoSpeeches, filename), e);
-        }
-
-        if (dfbfx.hasErrors()) {
-            Bundle bundle = new Bundle();
-            bundle.putStringArrayList(DIALOG_BUNDLE_XML_ERROR_LOG, dfbfx.getErrorLog());
-            removeDialog(DIALOG_XML_FILE_ERRORS);
-            showDialog(DIALOG_XML_FILE_ERRORS, bundle);
-        }
-
-        return df;
+    private boolean canGoToPreviousSpeech() {
+        if (mDebateManager == null) return false;
+        TimerSnapshot snapshot = mDebateManager.getSnapshot();
+        boolean result = !snapshot.isFirstSpeech() && !snapshot.isRunning();
+        snapshot.release();
+        return result;
     }
 
     /**
@@ -713,16 +869,20 @@ public class DebatingActivity extends Activity {
         // Check that things are in a valid state to enter edit time mode
         // If they aren't, return straight away
         if (mDebateManager == null) return;
-        if (mDebateManager.isRunning()) return;
+        TimerSnapshot snapshot = mDebateManager.getSnapshot();
+        boolean      running     = snapshot.isRunning();
+        long         currentTime = snapshot.getCurrentTime();
+        SpeechFormat sf          = snapshot.getSpeechFormat();
+        snapshot.release();
+        if (running) return;
 
         // Only if things were in a valid state do we enter edit time mode
         mIsEditingTime = true;
 
-        TimePicker currentTimePicker = (TimePicker) getCurrentDebateTimerDisplay().findViewById(R.id.currentTimePicker);
-        long currentTime = mDebateManager.getCurrentSpeechTime();
+        TimePicker currentTimePicker = getCurrentDebateTimerDisplayBinding().mCurrentTimePicker;
 
         // Invert the time if in count-down mode
-        currentTime = subtractFromSpeechLengthIfCountingDown(currentTime);
+        currentTime = subtractFromSpeechLengthIfCountingDown(currentTime, sf);
 
         // Limit to the allowable time range
         if (currentTime < 0) currentTime = 0;
@@ -742,7 +902,7 @@ public class DebatingActivity extends Activity {
      */
     private void editCurrentTimeFinish(boolean save) {
 
-        TimePicker currentTimePicker = (TimePicker) getCurrentDebateTimerDisplay().findViewById(R.id.currentTimePicker);
+        TimePicker currentTimePicker = getCurrentDebateTimerDisplayBinding().mCurrentTimePicker;
 
         currentTimePicker.clearFocus();
 
@@ -772,6 +932,17 @@ public class DebatingActivity extends Activity {
      * @return OverallCountDirection.UP or OverallCountDirection.DOWN
      */
     private OverallCountDirection getCountDirection() {
+        return getCountDirection(getCurrentSpeechFormat());
+    }
+
+    /**
+     * Assembles the given speech format and user count directions to find the count direction
+     * to use.
+     * @param currentSpeechFormat the {@link SpeechFormat} to use, or <code>null</code> if there
+     * is none
+     * @return OverallCountDirection.UP or OverallCountDirection.DOWN
+     */
+    private OverallCountDirection getCountDirection(SpeechFormat currentSpeechFormat) {
 
         // If the user has specified always up or always down, that takes priority.
         if (mUserCountDirection == UserPreferenceCountDirection.ALWAYS_DOWN)
@@ -781,8 +952,7 @@ public class DebatingActivity extends Activity {
 
         // If the user hasn't specified, and the speech format has specified a count direction,
         // use the speech format suggestion.
-        if (mDebateManager != null) {
-            SpeechFormat currentSpeechFormat = mDebateManager.getCurrentSpeechFormat();
+        if (currentSpeechFormat != null) {
             CountDirection sfCountDirection = currentSpeechFormat.getCountDirection();
             if (sfCountDirection == CountDirection.COUNT_DOWN)
                 return OverallCountDirection.COUNT_DOWN;
@@ -802,10 +972,32 @@ public class DebatingActivity extends Activity {
     }
 
     /**
-     * @return the current RelativeLayout for the debate timer display
+     * @return the {@link DebateTimerDisplayBinding} for the current debate timer display
+     */
+    private DebateTimerDisplayBinding getCurrentDebateTimerDisplayBinding() {
+        return mDebateTimerDisplayBindings[mCurrentDebateTimerDisplayIndex];
+    }
+
+    /**
+     * @return the {@link SpeechFormat} of the current speech, or <code>null</code> if there is no
+     * debate
+     */
+    private SpeechFormat getCurrentSpeechFormat() {
+        if (mDebateManager == null) return null;
+        TimerSnapshot snapshot = mDebateManager.getSnapshot();
+        SpeechFormat sf = snapshot.getSpeechFormat();
+        snapshot.release();
+        return sf;
+    }
+
+    /**
+     * @return the state of the timer as of the latest snapshot.  There must be a debate.
      */
-    private RelativeLayout getCurrentDebateTimerDisplay() {
-        return mDebateTimerDisplays[mCurrentDebateTimerDisplayIndex];
+    private DebatingTimerState getTimerStatus() {
+        TimerSnapshot snapshot = mDebateManager.getSnapshot();
+        DebatingTimerState status = snapshot.getStatus();
+        snapshot.release();
+        return status;
     }
 
     private Dialog getErrorsWithXmlFileDialog(Bundle bundle) {
@@ -868,15 +1060,15 @@ public class DebatingActivity extends Activity {
     private void goToNextSpeech() {
 
         if (mDebateManager == null) return;
-        if (mDebateManager.isRunning()) return;
-        if (mDebateManager.isLastSpeech()) return;
+        TimerSnapshot snapshot = mDebateManager.getSnapshot();
+        int     speechIndex = getSpeechIndexAfterPendingMove(snapshot);
+        boolean canMove     = !snapshot.isRunning() && speechIndex < snapshot.getNumberOfSpeeches() - 1;
+        snapshot.release();
+        if (!canMove) return;
         if (mIsEditingTime) return;
 
-        // Swap the current display index
-        mCurrentDebateTimerDisplayIndex = (mCurrentDebateTimerDisplayIndex == 1) ? 0 : 1;
-
-        mDebateManager.goToNextSpeaker();
-        updateDebateTimerDisplay(mCurrentDebateTimerDisplayIndex);
+        long moveNumber = mDebateManager.goToNextSpeaker();
+        showSpeechOnOtherDisplay(speechIndex + 1, moveNumber);
         mDebateTimerViewFlipper.setInAnimation(AnimationUtils.loadAnimation(
                 DebatingActivity.this, R.anim.slide_from_right));
         mDebateTimerViewFlipper.setOutAnimation(AnimationUtils.loadAnimation(
@@ -895,15 +1087,15 @@ public class DebatingActivity extends Activity {
     private void goToPreviousSpeech() {
 
         if (mDebateManager == null) return;
-        if (mDebateManager.isRunning()) return;
-        if (mDebateManager.isFirstSpeech()) return;
+        TimerSnapshot snapshot = mDebateManager.getSnapshot();
+        int     speechIndex = getSpeechIndexAfterPendingMove(snapshot);
+        boolean canMove     = !snapshot.isRunning() && speechIndex > 0;
+        snapshot.release();
+        if (!canMove) return;
         if (mIsEditingTime) return;
 
-        // Swap the current display index
-        mCurrentDebateTimerDisplayIndex = (mCurrentDebateTimerDisplayIndex == 1) ? 0 : 1;
-
-        mDebateManager.goToPreviousSpeaker();
-        updateDebateTimerDisplay(mCurrentDebateTimerDisplayIndex);
+        long moveNumber = mDebateManager.goToPreviousSpeaker();
+        showSpeechOnOtherDisplay(speechIndex - 1, moveNumber);
         mDebateTimerViewFlipper.setInAnimation(AnimationUtils.loadAnimation(
                 DebatingActivity.this, R.anim.slide_from_left));
         mDebateTimerViewFlipper.setOutAnimation(AnimationUtils.loadAnimation(
@@ -914,6 +1106,44 @@ public class DebatingActivity extends Activity {
 
     }
 
+    /**
+     * Returns the index of the speech that will be current once the move being waited for, if
+     * any, has been done.  Snapshots can be skipped, so the latest one might not reflect a move
+     * that has already been asked for, and moving again must start from where that move went.
+     * @param snapshot the latest {@link TimerSnapshot}
+     * @return the index of the speech being moved to, or the current speech if there's no move
+     */
+    private int getSpeechIndexAfterPendingMove(TimerSnapshot snapshot) {
+        return (mPendingSpeechIndex >= 0) ? mPendingSpeechIndex : snapshot.getSpeechIndex();
+    }
+
+    /**
+     * Swaps to the other debate timer display, showing the speech that is being moved to on it.
+     * The speech will normally have been prepared, and drawn on the other display already, in
+     * which case this doesn't need to draw anything.
+     * @param speechIndex the index of the speech being moved to
+     * @param moveNumber the number of the move, as returned by the {@link DebateManager}
+     */
+    private void showSpeechOnOtherDisplay(int speechIndex, long moveNumber) {
+
+        // Swap the current display index
+        mCurrentDebateTimerDisplayIndex = (mCurrentDebateTimerDisplayIndex == 1) ? 0 : 1;
+
+        TimerSnapshot prepared = mDebateManager.getPreparedSnapshot(speechIndex);
+        if (prepared == null) {
+            TimerSnapshot snapshot = mDebateManager.getSnapshot();
+            updateDebateTimerDisplay(mCurrentDebateTimerDisplayIndex, snapshot);
+            snapshot.release();
+        } else if (prepared != mOffScreenSnapshot)
+            updateDebateTimerDisplay(mCurrentDebateTimerDisplayIndex, prepared);
+
+        // The latest snapshot might be from before the move, so don't draw snapshots on this
+        // display until one from after the move arrives.
+        mPendingSpeechIndex = speechIndex;
+        mAwaitedMoveNumber  = moveNumber;
+        mOffScreenSnapshot  = null;
+    }
+
     private void initialiseDebate() {
         if (mFormatXmlFileName == null) {
             Log.w(this.getClass().getSimpleName(), "Tried to initialise debate with null file");
@@ -923,29 +1153,61 @@ public class DebatingActivity extends Activity {
         mDebateManager = mBinder.getDebateManager();
         if (mDebateManager == null) {
 
-            DebateFormat df;
-            try {
-                df = buildDebateFromXml(mFormatXmlFileName);
-            } catch (FatalXmlError e) {
-                removeDialog(DIALOG_XML_FILE_FATAL);
-                Bundle bundle = new Bundle();
-                bundle.putString(DIALOG_BUNDLE_FATAL_MESSAGE, e.getMessage());
-                showDialog(DIALOG_XML_FILE_FATAL, bundle);
-                return;
-            }
-
-            mDebateManager = mBinder.createDebateManager(df);
-
+            // Load the debate in the background; mDebateLoadListener is told when it's done.
             // We only restore the state if there wasn't an existing debate, i.e.
             // if the service wasn't already running.  Also, only do this once (so set it
             // to null once restored).
-            if (mLastStateBundle != null) {
-                mDebateManager.restoreState(BUNDLE_SUFFIX_DEBATE_MANAGER, mLastStateBundle);
+            if (!mBinder.isLoadingDebate()) {
+                mBinder.loadDebate(mFormatXmlFileName, mLastStateBundle, BUNDLE_SUFFIX_DEBATE_MANAGER);
                 mLastStateBundle = null;
             }
+            updateGui();
+            return;
         }
 
-        applyPreferences();
+        showLiveDebate();
+    }
+
+    /**
+     * Shows the display that was saved by <code>saveLastKnownDisplay()</code>, if it was for the
+     * current debate format file.  This is shown until the debate is loaded, so that there is
+     * something useful on the screen straight away.
+     * @return <code>true</code> if there was a display to show, <code>false</code> otherwise
+     */
+    private boolean restoreLastKnownDisplay() {
+        SharedPreferences sp = getPreferences(MODE_PRIVATE);
+        String filename = sp.getString(PREFERENCE_LAST_KNOWN_XML_FILE_NAME, null);
+        if (filename == null || !filename.equals(mFormatXmlFileName)) return false;
+
+        if (!getCurrentDebateTimerDisplayBinding().restoreLastKnown(sp)) return false;
+        setTitle(sp.getString(PREFERENCE_LAST_KNOWN_TITLE, getString(R.string.DebatingActivityTitleBarWithoutFormatName)));
+
+        // Keep this title until the debate is loaded
+        mTitleDebateManager = null;
+        mTitleIsSet         = true;
+        return true;
+    }
+
+    /**
+     * Saves what the current display is showing, so that it can be shown again straight away
+     * the next time this activity is created.
+     */
+    private void saveLastKnownDisplay() {
+        Editor editor = getPreferences(MODE_PRIVATE).edit();
+        editor.putString(PREFERENCE_LAST_KNOWN_XML_FILE_NAME, mFormatXmlFileName);
+        editor.putString(PREFERENCE_LAST_KNOWN_TITLE, getTitle().toString());
+        getCurrentDebateTimerDisplayBinding().saveLastKnown(editor);
+        editor.commit();
+    }
+
+    /**
+     * Shows the debate in <code>mDebateManager</code>, which has just been loaded or found.
+     */
+    private void showLiveDebate() {
+        mShowingLastKnownDisplay = false;
+        mPendingSpeechIndex      = -1;
+        mAwaitedMoveNumber       = 0;
+        mOffScreenSnapshot       = null;
         updateGui();
     }
 
@@ -964,6 +1226,7 @@ public class DebatingActivity extends Activity {
     private void resetDebateWithoutToast() {
         if (mBinder == null) return;
         mBinder.releaseDebateManager();
+        mShowingLastKnownDisplay = false;
         initialiseDebate();
     }
 
@@ -978,9 +1241,9 @@ public class DebatingActivity extends Activity {
 
     // Sets the text and visibility of a single button
     private void setButton(Button button, int resid) {
-        button.setText(resid);
+        mViewUpdater.setText(button, getString(resid));
         int visibility = (resid == R.string.NullButtonText) ? View.GONE : View.VISIBLE;
-        button.setVisibility(visibility);
+        mViewUpdater.setVisibility(button, visibility);
     }
 
     // Sets the text, visibility and "weight" of all buttons
@@ -991,12 +1254,17 @@ public class DebatingActivity extends Activity {
 
         // If there are exactly two buttons, make the weight of the left button double,
         // so that it fills two-thirds of the width of the screen.
+        // Changing the layout parameters forces a layout pass, so only do it if the weight changed.
         float leftControlButtonWeight = (float) ((centreResid == R.string.NullButtonText && rightResid != R.string.NullButtonText) ? 2.0 : 1.0);
-        mLeftControlButton.setLayoutParams(new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.MATCH_PARENT, leftControlButtonWeight));
+        if (leftControlButtonWeight != mLeftControlButtonWeight) {
+            mLeftControlButton.setLayoutParams(new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.MATCH_PARENT, leftControlButtonWeight));
+            mLeftControlButtonWeight = leftControlButtonWeight;
+        }
     }
 
     private void setXmlFileName(String filename) {
         mFormatXmlFileName = filename;
+        mShowingLastKnownDisplay = false;
         SharedPreferences sp = getPreferences(MODE_PRIVATE);
         Editor editor = sp.edit();
         editor.putString(PREFERENCE_XML_FILE_NAME, filename);
@@ -1011,16 +1279,18 @@ public class DebatingActivity extends Activity {
      *  When stopped by user:   [Resume] [Restart] [Next Speaker]
      *  When stopped by alarm:  [Resume]
      *  The [Bell] button always is on the right of any of the above three buttons.
+     *  @param snapshot the {@link TimerSnapshot} to render, or <code>null</code> if there is no
+     *  debate loaded
      */
-    private void updateControls() {
-        View currentTimeText   = getCurrentDebateTimerDisplay().findViewById(R.id.currentTime);
-        View currentTimePicker = getCurrentDebateTimerDisplay().findViewById(R.id.currentTimePicker);
+    private void updateControls(TimerSnapshot snapshot) {
+        View currentTimeText   = getCurrentDebateTimerDisplayBinding().mCurrentTimeText;
+        View currentTimePicker = getCurrentDebateTimerDisplayBinding().mCurrentTimePicker;
 
-        if (mDebateManager != null) {
+        if (snapshot != null) {
 
             // If it's the last speaker, don't show a "next speaker" button.
             // Show a "restart debate" button instead.
-            switch (mDebateManager.getStatus()) {
+            switch (snapshot.getStatus()) {
             case NOT_STARTED:
                 setButtons(R.string.StartTimerButtonText, R.string.NullButtonText, R.string.NextSpeakerButtonText);
                 break;
@@ -1039,22 +1309,22 @@ public class DebatingActivity extends Activity {
 
             if (mIsEditingTime) {
                 // Show the time picker, not the text
-                currentTimeText.setVisibility(View.GONE);
-                currentTimePicker.setVisibility(View.VISIBLE);
+                mViewUpdater.setVisibility(currentTimeText, View.GONE);
+                mViewUpdater.setVisibility(currentTimePicker, View.VISIBLE);
 
                 // Disable all control buttons
-                mLeftControlButton.setEnabled(false);
-                mCentreControlButton.setEnabled(false);
-                mRightControlButton.setEnabled(false);
+                mViewUpdater.setEnabled(mLeftControlButton, false);
+                mViewUpdater.setEnabled(mCentreControlButton, false);
+                mViewUpdater.setEnabled(mRightControlButton, false);
             } else {
                 // Show the time as text, not the picker
-                currentTimeText.setVisibility(View.VISIBLE);
-                currentTimePicker.setVisibility(View.GONE);
+                mViewUpdater.setVisibility(currentTimeText, View.VISIBLE);
+                mViewUpdater.setVisibility(currentTimePicker, View.GONE);
 
                 // Disable the [Next Speaker] button if there are no more speakers
-                mLeftControlButton.setEnabled(true);
-                mCentreControlButton.setEnabled(true);
-                mRightControlButton.setEnabled(!mDebateManager.isLastSpeech());
+                mViewUpdater.setEnabled(mLeftControlButton, true);
+                mViewUpdater.setEnabled(mCentreControlButton, true);
+                mViewUpdater.setEnabled(mRightControlButton, !snapshot.isLastSpeech());
             }
 
         } else {
@@ -1062,9 +1332,9 @@ public class DebatingActivity extends Activity {
             // choose a style.
             // (Keep the play bell button enabled.)
             setButtons(R.string.NoDebateLoadedButtonText, R.string.NullButtonText, R.string.NullButtonText);
-            mLeftControlButton.setEnabled(true);
-            mCentreControlButton.setEnabled(false);
-            mRightControlButton.setEnabled(false);
+            mViewUpdater.setEnabled(mLeftControlButton, true);
+            mViewUpdater.setEnabled(mCentreControlButton, false);
+            mViewUpdater.setEnabled(mRightControlButton, false);
         }
 
         // Show or hide the [Bell] button
@@ -1073,95 +1343,107 @@ public class DebatingActivity extends Activity {
 
     /**
      * Updates the debate timer display (including speech name, period name, etc.) in a given view.
-     * The view should be the <code>RelativeLayout</code> in debate_timer_display.xml.
+     * Only what has changed since that display was last updated is worked out again; see
+     * {@link DebateTimerDisplayBinding}.
      * @param debateTimerDisplayIndex The index of the debate timer display that will be updated.
+     * @param snapshot the {@link TimerSnapshot} to render, or <code>null</code> if there is no
+     * debate loaded
      */
-    private void updateDebateTimerDisplay(int debateTimerDisplayIndex) {
+    private void updateDebateTimerDisplay(int debateTimerDisplayIndex, TimerSnapshot snapshot) {
+        mDebateTimerDisplayBindings[debateTimerDisplayIndex].update(snapshot);
+    }
 
-        View v = mDebateTimerDisplays[debateTimerDisplayIndex];
+    /**
+     * Updates the GUI (in the general case).
+     * Only views whose content has changed are touched; see {@link ViewUpdater}.
+     */
+    private void updateGui() {
+        mViewUpdater.startTick();
 
-        TextView periodDescriptionText = (TextView) v.findViewById(R.id.periodDescriptionText);
-        TextView speechNameText        = (TextView) v.findViewById(R.id.speechNameText);
-        TextView currentTimeText       = (TextView) v.findViewById(R.id.currentTime);
-        TextView nextTimeText          = (TextView) v.findViewById(R.id.nextTime);
-        TextView finalTimeText         = (TextView) v.findViewById(R.id.finalTime);
+        // Render everything from the same snapshot, so that it's all consistent
+        TimerSnapshot snapshot = (mDebateManager != null) ? mDebateManager.getSnapshot() : null;
+        try {
+            updateGui(snapshot);
+        } finally {
+            if (snapshot != null) snapshot.release();
+        }
 
-        if (mDebateManager != null) {
+        updateTitle();
 
-            SpeechFormat currentSpeechFormat = mDebateManager.getCurrentSpeechFormat();
-            PeriodInfo   currentPeriodInfo   = mDebateManager.getCurrentPeriodInfo();
+    }
 
-            speechNameText.setText(mDebateManager.getCurrentSpeechName());
-            speechNameText.setBackgroundColor(currentPeriodInfo.getBackgroundColor());
-            periodDescriptionText.setText(currentPeriodInfo.getDescription());
-            periodDescriptionText.setBackgroundColor(currentPeriodInfo.getBackgroundColor());
+    /**
+     * Sets the title for the current debate, unless it has already been set for it.
+     */
+    private void updateTitle() {
+        if (mTitleIsSet && mTitleDebateManager == mDebateManager) return;
 
-            long currentSpeechTime = mDebateManager.getCurrentSpeechTime();
-            Long nextBellTime = mDebateManager.getNextBellTime();
-            boolean nextBellIsPause = mDebateManager.isNextBellPause();
+        String title;
+        if (mDebateManager != null) {
+            title = getString(R.string.DebatingActivityTitleBarWithFormatName, mDebateManager.getDebateFormatName());
+        } else {
+            title = getString(R.string.DebatingActivityTitleBarWithoutFormatName);
+        }
+        if (!TextUtils.equals(getTitle(), title))
+            setTitle(title);
 
-            // Take count direction into account for display
-            currentSpeechTime = subtractFromSpeechLengthIfCountingDown(currentSpeechTime);
-            if (nextBellTime != null)
-                nextBellTime = subtractFromSpeechLengthIfCountingDown(nextBellTime);
+        mTitleDebateManager = mDebateManager;
+        mTitleIsSet         = true;
+    }
 
-            Resources resources = getResources();
-            int currentTimeTextColor;
-            if (mDebateManager.isOvertime())
-                currentTimeTextColor = resources.getColor(R.color.overtime);
-            else
-                currentTimeTextColor = resources.getColor(android.R.color.primary_text_dark);
-            currentTimeText.setText(secsToText(currentSpeechTime));
-            currentTimeText.setTextColor(currentTimeTextColor);
-
-            if (nextBellTime != null) {
-                if (nextBellIsPause) {
-                    nextTimeText.setText(String.format(
-                            this.getString(R.string.NextBellWithPauseText),
-                            secsToText(nextBellTime)));
-                } else {
-                    nextTimeText.setText(String.format(this.getString(R.string.NextBellText),
-                            secsToText(nextBellTime)));
-                }
-            } else {
-                nextTimeText.setText(this.getString(R.string.NoMoreBellsText));
-            }
-            finalTimeText.setText(String.format(
-                this.getString(R.string.SpeechLengthText),
-                secsToText(currentSpeechFormat.getSpeechLength())
-            ));
+    /**
+     * Updates the displays and controls from a snapshot.
+     * @param snapshot the latest {@link TimerSnapshot}, or <code>null</code> if there is no debate
+     */
+    private void updateGui(TimerSnapshot snapshot) {
 
-        } else {
-            // Blank out all the fields
-            periodDescriptionText.setText(R.string.NoDebateLoadedText);
-            speechNameText.setText("");
-            periodDescriptionText.setBackgroundColor(0);
-            speechNameText.setBackgroundColor(0);
-            currentTimeText.setText("");
-            nextTimeText.setText("");
-            finalTimeText.setText("");
+        // While the debate is being loaded, keep showing the last known display.
+        if (mShowingLastKnownDisplay) {
+            updateControls(snapshot);
+            return;
         }
 
+        // While moving to another speech, keep showing its prepared snapshot until a snapshot from
+        // after the move arrives.  Snapshots can be skipped, so this goes by the move number, not
+        // the speech index: any snapshot from after the move will do.
+        if (snapshot == null || snapshot.getMoveNumber() >= mAwaitedMoveNumber) {
+            mPendingSpeechIndex = -1;
+            updateDebateTimerDisplay(mCurrentDebateTimerDisplayIndex, snapshot);
+        }
+        updateControls(snapshot);
+
+        // Draw the next speech on the other display, so that moving to it needn't draw anything.
+        // This is only done when the prepared snapshot changes, i.e. not every tick.
+        if (snapshot != null && mPendingSpeechIndex < 0) {
+            TimerSnapshot nextSnapshot = mDebateManager.getPreparedSnapshot(snapshot.getSpeechIndex() + 1);
+            if (nextSnapshot != null && nextSnapshot != mOffScreenSnapshot) {
+                updateDebateTimerDisplay(1 - mCurrentDebateTimerDisplayIndex, nextSnapshot);
+                mOffScreenSnapshot = nextSnapshot;
+            }
+        }
     }
 
     /**
-     * Updates the GUI (in the general case).
+     * Updates only the time on the current display from a snapshot, for when the timer has just
+     * ticked.  Anything else, e.g. a move that hasn't been drawn yet, needs {@link #updateGui(TimerSnapshot)}.
+     * @param snapshot the latest {@link TimerSnapshot}, or <code>null</code> if there is no debate
      */
-    private void updateGui() {
-        updateDebateTimerDisplay(mCurrentDebateTimerDisplayIndex);
-        updateControls();
+    private void updateTime(TimerSnapshot snapshot) {
 
-        if (mDebateManager != null) {
-            this.setTitle(getString(R.string.DebatingActivityTitleBarWithFormatName, mDebateManager.getDebateFormatName()));
-        } else {
-            setTitle(R.string.DebatingActivityTitleBarWithoutFormatName);
+        // While the debate is being loaded, keep showing the last known display.
+        if (mShowingLastKnownDisplay) return;
+
+        if (mPendingSpeechIndex >= 0 || snapshot == null) {
+            updateGui(snapshot);
+            return;
         }
 
+        mDebateTimerDisplayBindings[mCurrentDebateTimerDisplayIndex].updateTime(snapshot);
     }
 
     private void updatePlayBellButton() {
         if (mBinder != null)
-            mPlayBellButton.setVisibility((mBinder.getAlertManager().isSilentMode()) ? View.GONE : View.VISIBLE);
+            mViewUpdater.setVisibility(mPlayBellButton, (mBinder.getAlertManager().isSilentMode()) ? View.GONE : View.VISIBLE);
     }
 
     private static String secsToText(long time) {
@@ -1180,9 +1462,21 @@ public class DebatingActivity extends Activity {
      * @return the time that would be displayed (as an integer, number of seconds)
      */
     private long subtractFromSpeechLengthIfCountingDown(long time) {
-        if (mDebateManager != null)
-            if (getCountDirection() == OverallCountDirection.COUNT_DOWN)
-                return mDebateManager.getCurrentSpeechFormat().getSpeechLength() - time;
+        SpeechFormat sf = getCurrentSpeechFormat();
+        if (sf != null)
+            return subtractFromSpeechLengthIfCountingDown(time, sf);
+        return time;
+    }
+
+    /**
+     * As <code>subtractFromSpeechLengthIfCountingDown(long)</code>, but for a given speech format.
+     * @param time the time that is wished to be formatted (in seconds)
+     * @param sf the {@link SpeechFormat} whose length to use
+     * @return the time that would be displayed (as an integer, number of seconds)
+     */
+    private long subtractFromSpeechLengthIfCountingDown(long time, SpeechFormat sf) {
+        if (getCountDirection(sf) == OverallCountDirection.COUNT_DOWN)
+            return sf.getSpeechLength() - time;
         return time;
     }
 
@@ -0,0 +1,385 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.util.ArrayList;
+
+import net.czlee.debatekeeper.AlertManager.FlashScreenMode;
+import net.czlee.debatekeeper.DebatingTimerService.PeerMode;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
+import android.content.res.Resources;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+/**
+ * DebatingTimerPreferences keeps the user's preferences, already converted to the types they're
+ * used in, so that nothing needs to read the shared preferences to use them.
+ *
+ * The preferences are all read once, when this is created.  After that, only the preference that
+ * changed is read again, when the shared preferences say that it has changed.  If its value really
+ * is different, the {@link OnChangeListener}s are told which preferences changed, so that they
+ * only need to update what depends on those.
+ *
+ * This must only be used on the main thread, which is where the shared preferences call their
+ * listeners.  {@link DebatingTimerService} owns the instance used by the app.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class DebatingTimerPreferences implements OnSharedPreferenceChangeListener {
+
+    // Bits in the mask given to OnChangeListener.onPreferencesChanged()
+    public static final int SILENT_MODE       = 0x01;
+    public static final int VIBRATE_MODE      = 0x02;
+    public static final int OVERTIME_BELLS    = 0x04;
+    public static final int KEEP_SCREEN_ON    = 0x08;
+    public static final int SHOW_TENTHS       = 0x10;
+    public static final int COUNT_DIRECTION   = 0x20;
+    public static final int FLASH_SCREEN_MODE = 0x40;
+    public static final int SPECTATOR_STREAM  = 0x80;
+    public static final int PEER_MODE         = 0x100;
+    public static final int ALL               = 0x1ff;
+
+    private final SharedPreferences           mPrefs;
+    private final Resources                   mResources;
+    private final ArrayList<OnChangeListener> mListeners = new ArrayList<OnChangeListener>();
+
+    private boolean         mSilentMode;
+    private boolean         mVibrateMode;
+    private long            mFirstOvertimeBell;
+    private long            mOvertimeBellPeriod;
+    private boolean         mKeepScreenOn;
+    private boolean         mShowTenths;
+    private String          mCountDirectionValue;
+    private FlashScreenMode mFlashScreenMode;
+    private boolean         mSpectatorStream;
+    private PeerMode        mPeerMode;
+    private String          mPeerMasterAddress;
+
+    //******************************************************************************************
+    // Public classes
+    //******************************************************************************************
+
+    /**
+     * Told when preferences change.  Called on the main thread.
+     */
+    public interface OnChangeListener {
+
+        /**
+         * @param prefs the {@link DebatingTimerPreferences} with the new values
+         * @param changed which preferences changed, as a combination of <code>SILENT_MODE</code>,
+         * <code>VIBRATE_MODE</code>, etc.
+         */
+        public void onPreferencesChanged(DebatingTimerPreferences prefs, int changed);
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Constructor.  Reads all the preferences, and starts listening for changes to them.
+     * @param context the context whose default shared preferences to use
+     */
+    public DebatingTimerPreferences(Context context) {
+        super();
+        mPrefs     = PreferenceManager.getDefaultSharedPreferences(context);
+        mResources = context.getResources();
+
+        migrateFlashScreenMode();
+        readAll();
+
+        // The shared preferences only keep a weak reference to this, so whoever owns this must
+        // keep it.
+        mPrefs.registerOnSharedPreferenceChangeListener(this);
+    }
+
+    /**
+     * Stops listening for changes.  Should be called before deleting.
+     */
+    public void release() {
+        mPrefs.unregisterOnSharedPreferenceChangeListener(this);
+        mListeners.clear();
+    }
+
+    /**
+     * Adds a listener.
+     * @param listener the {@link OnChangeListener} to add
+     */
+    public void addOnChangeListener(OnChangeListener listener) {
+        if (!mListeners.contains(listener))
+            mListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.  Does nothing if it wasn't added.
+     * @param listener the {@link OnChangeListener} to remove
+     */
+    public void removeOnChangeListener(OnChangeListener listener) {
+        mListeners.remove(listener);
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
+        int changed;
+        try {
+            changed = read(key);
+        } catch (ClassCastException e) {
+            Log.e(this.getClass().getSimpleName(), "onSharedPreferenceChanged: caught ClassCastException for " + key);
+            return;
+        }
+        if (changed == 0) return;
+
+        Log.v(this.getClass().getSimpleName(), String.format("Preferences changed: 0x%02x", changed));
+        for (int i = 0; i < mListeners.size(); i++)
+            mListeners.get(i).onPreferencesChanged(this, changed);
+    }
+
+    public boolean isSilentMode() {
+        return mSilentMode;
+    }
+
+    public boolean isVibrateMode() {
+        return mVibrateMode;
+    }
+
+    /**
+     * @return the number of seconds after the finish time to ring the first overtime bell, or 0
+     * if overtime bells are disabled
+     */
+    public long getFirstOvertimeBell() {
+        return mFirstOvertimeBell;
+    }
+
+    /**
+     * @return the time in between subsequent overtime bells, or 0 if overtime bells are disabled
+     */
+    public long getOvertimeBellPeriod() {
+        return mOvertimeBellPeriod;
+    }
+
+    public boolean isKeepScreenOn() {
+        return mKeepScreenOn;
+    }
+
+    public boolean isShowTenths() {
+        return mShowTenths;
+    }
+
+    /**
+     * @return the value of the count direction list preference
+     */
+    public String getCountDirectionValue() {
+        return mCountDirectionValue;
+    }
+
+    public FlashScreenMode getFlashScreenMode() {
+        return mFlashScreenMode;
+    }
+
+    /**
+     * @return <code>true</code> if the timer should be streamed to other screens (see
+     * {@link SpectatorServer})
+     */
+    public boolean isSpectatorStream() {
+        return mSpectatorStream;
+    }
+
+    /**
+     * @return whether this device rings its bells with other devices' (see
+     * {@link DebatingTimerService.PeerMode})
+     */
+    public PeerMode getPeerMode() {
+        return mPeerMode;
+    }
+
+    /**
+     * @return the address of the device to follow in follower mode, as typed by the user, which
+     * might not be a valid address
+     */
+    public String getPeerMasterAddress() {
+        return mPeerMasterAddress;
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * Flash screen mode changed from a boolean to a list preference in version 0.6, so there is
+     * backwards compatibility to take care of.  Backwards compatibility applies if (a) the list
+     * preference is NOT present AND (b) the boolean preference IS present.  In this case, retrieve
+     * the boolean preference, delete it and write the corresponding list preference.  In all
+     * other cases, there is nothing to do.
+     */
+    private void migrateFlashScreenMode() {
+        String listKey = mResources.getString(R.string.PrefFlashScreenModeKey);
+        String boolKey = mResources.getString(R.string.PrefFlashScreenBoolKey);
+        if (mPrefs.contains(listKey) || !mPrefs.contains(boolKey)) return;
+
+        boolean flashScreenModeBool;
+        try {
+            flashScreenModeBool = mPrefs.getBoolean(boolKey, false);
+        } catch (ClassCastException e) {
+            flashScreenModeBool = false;
+        }
+        FlashScreenMode flashScreenMode = (flashScreenModeBool) ? FlashScreenMode.SOLID_FLASH : FlashScreenMode.OFF;
+
+        // Convert that enum to the list preference value (a string) and write that back to the
+        // preferences.  Also, remove the old boolean preference.
+        String flashStringModePrefValue = flashScreenMode.toPrefValue();
+        SharedPreferences.Editor editor = mPrefs.edit();
+        editor.putString(listKey, flashStringModePrefValue);
+        editor.remove(boolKey);
+        editor.commit();
+        Log.w(this.getClass().getSimpleName(),
+                String.format("flashScreenMode: replaced boolean preference with list preference: %s", flashStringModePrefValue));
+    }
+
+    /**
+     * Reads all the preferences.  If any of them is of the wrong type, its default is used.
+     */
+    private void readAll() {
+        mSilentMode          = mResources.getBoolean(R.bool.DefaultPrefSilentMode);
+        mVibrateMode         = mResources.getBoolean(R.bool.DefaultPrefVibrateMode);
+        mKeepScreenOn        = mResources.getBoolean(R.bool.DefaultPrefKeepScreenOn);
+        mShowTenths          = mResources.getBoolean(R.bool.DefaultPrefShowTenths);
+        mCountDirectionValue = mResources.getString(R.string.DefaultPrefCountDirection);
+        mFlashScreenMode     = FlashScreenMode.toEnum(mResources.getString(R.string.DefaultPrefFlashScreenMode));
+        mSpectatorStream     = mResources.getBoolean(R.bool.DefaultPrefSpectatorStream);
+        mPeerMode            = PeerMode.toEnum(mResources.getString(R.string.DefaultPrefPeerMode));
+        mPeerMasterAddress   = mResources.getString(R.string.DefaultPrefPeerMasterAddress);
+        if (mResources.getBoolean(R.bool.DefaultPrefOvertimeBellsEnable)) {
+            mFirstOvertimeBell  = mResources.getInteger(R.integer.DefaultPrefFirstOvertimeBell);
+            mOvertimeBellPeriod = mResources.getInteger(R.integer.DefaultPrefOvertimeBellPeriod);
+        }
+
+        try {
+            read(null);
+        } catch (ClassCastException e) {
+            Log.e(this.getClass().getSimpleName(), "readAll: caught ClassCastException!");
+        }
+    }
+
+    /**
+     * Reads the preferences that depend on a given key.
+     * @param key the key of the preference that changed, or <code>null</code> to read all of them
+     * @return which preferences changed value, as a combination of <code>SILENT_MODE</code>,
+     * <code>VIBRATE_MODE</code>, etc.
+     * @throws ClassCastException if a preference is of the wrong type
+     */
+    private int read(String key) {
+        Resources res = mResources;
+        int changed = 0;
+
+        if (isKey(key, R.string.PrefSilentModeKey)) {
+            boolean silentMode = mPrefs.getBoolean(res.getString(R.string.PrefSilentModeKey),
+                    res.getBoolean(R.bool.DefaultPrefSilentMode));
+            if (silentMode != mSilentMode) changed |= SILENT_MODE;
+            mSilentMode = silentMode;
+        }
+
+        if (isKey(key, R.string.PrefVibrateModeKey)) {
+            boolean vibrateMode = mPrefs.getBoolean(res.getString(R.string.PrefVibrateModeKey),
+                    res.getBoolean(R.bool.DefaultPrefVibrateMode));
+            if (vibrateMode != mVibrateMode) changed |= VIBRATE_MODE;
+            mVibrateMode = vibrateMode;
+        }
+
+        if (isKey(key, R.string.PrefOvertimeBellsEnableKey) || isKey(key, R.string.PrefFirstOvertimeBellKey)
+                || isKey(key, R.string.PrefOvertimeBellPeriodKey)) {
+            long firstOvertimeBell, overtimeBellPeriod;
+            boolean overtimeBellsEnabled = mPrefs.getBoolean(res.getString(R.string.PrefOvertimeBellsEnableKey),
+                    res.getBoolean(R.bool.DefaultPrefOvertimeBellsEnable));
+            if (overtimeBellsEnabled) {
+                firstOvertimeBell  = mPrefs.getInt(res.getString(R.string.PrefFirstOvertimeBellKey),
+                        res.getInteger(R.integer.DefaultPrefFirstOvertimeBell));
+                overtimeBellPeriod = mPrefs.getInt(res.getString(R.string.PrefOvertimeBellPeriodKey),
+                        res.getInteger(R.integer.DefaultPrefOvertimeBellPeriod));
+            } else {
+                firstOvertimeBell  = 0;
+                overtimeBellPeriod = 0;
+            }
+            if (firstOvertimeBell != mFirstOvertimeBell || overtimeBellPeriod != mOvertimeBellPeriod)
+                changed |= OVERTIME_BELLS;
+            mFirstOvertimeBell  = firstOvertimeBell;
+            mOvertimeBellPeriod = overtimeBellPeriod;
+        }
+
+        if (isKey(key, R.string.PrefKeepScreenOnKey)) {
+            boolean keepScreenOn = mPrefs.getBoolean(res.getString(R.string.PrefKeepScreenOnKey),
+                    res.getBoolean(R.bool.DefaultPrefKeepScreenOn));
+            if (keepScreenOn != mKeepScreenOn) changed |= KEEP_SCREEN_ON;
+            mKeepScreenOn = keepScreenOn;
+        }
+
+        if (isKey(key, R.string.PrefShowTenthsKey)) {
+            boolean showTenths = mPrefs.getBoolean(res.getString(R.string.PrefShowTenthsKey),
+                    res.getBoolean(R.bool.DefaultPrefShowTenths));
+            if (showTenths != mShowTenths) changed |= SHOW_TENTHS;
+            mShowTenths = showTenths;
+        }
+
+        if (isKey(key, R.string.PrefCountDirectionKey)) {
+            String countDirectionValue = mPrefs.getString(res.getString(R.string.PrefCountDirectionKey),
+                    res.getString(R.string.DefaultPrefCountDirection));
+            if (!countDirectionValue.equals(mCountDirectionValue)) changed |= COUNT_DIRECTION;
+            mCountDirectionValue = countDirectionValue;
+        }
+
+        if (isKey(key, R.string.PrefFlashScreenModeKey)) {
+            FlashScreenMode flashScreenMode = FlashScreenMode.toEnum(mPrefs.getString(
+                    res.getString(R.string.PrefFlashScreenModeKey),
+                    res.getString(R.string.DefaultPrefFlashScreenMode)));
+            if (flashScreenMode != mFlashScreenMode) changed |= FLASH_SCREEN_MODE;
+            mFlashScreenMode = flashScreenMode;
+        }
+
+        if (isKey(key, R.string.PrefSpectatorStreamKey)) {
+            boolean spectatorStream = mPrefs.getBoolean(res.getString(R.string.PrefSpectatorStreamKey),
+                    res.getBoolean(R.bool.DefaultPrefSpectatorStream));
+            if (spectatorStream != mSpectatorStream) changed |= SPECTATOR_STREAM;
+            mSpectatorStream = spectatorStream;
+        }
+
+        // The address only matters in follower mode, but changing it means following a new master
+        if (isKey(key, R.string.PrefPeerModeKey) || isKey(key, R.string.PrefPeerMasterAddressKey)) {
+            PeerMode peerMode = PeerMode.toEnum(mPrefs.getString(res.getString(R.string.PrefPeerModeKey),
+                    res.getString(R.string.DefaultPrefPeerMode)));
+            String peerMasterAddress = mPrefs.getString(res.getString(R.string.PrefPeerMasterAddressKey),
+                    res.getString(R.string.DefaultPrefPeerMasterAddress)).trim();
+            if (peerMode != mPeerMode || !peerMasterAddress.equals(mPeerMasterAddress))
+                changed |= PEER_MODE;
+            mPeerMode          = peerMode;
+            mPeerMasterAddress = peerMasterAddress;
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return <code>true</code> if <code>key</code> is <code>null</code> or the key with the
+     * given resource ID
+     */
+    private boolean isKey(String key, int keyResid) {
+        return key == null || key.equals(mResources.getString(keyResid));
+    }
+
+}
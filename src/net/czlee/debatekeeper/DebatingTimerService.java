@@ -17,18 +17,29 @@
 
 package net.czlee.debatekeeper;
 
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import android.app.Service;
 import android.content.Intent;
 import android.os.Binder;
+import android.os.Bundle;
+import android.os.Handler;
 import android.os.IBinder;
-import android.support.v4.content.LocalBroadcastManager;
+import android.os.Looper;
 import android.util.Log;
+import android.widget.Toast;
 
 /**
  * DebatingTimerService class
  * The background service for the application
  * Keeps the debate/timers ticking in the background
- * Uses a broadcast (though not the best way IMO) to update the main UI
+ * Tells the main UI about timer changes through a {@link TimerEventDispatcher}
  *
  * NOTE NOTE NOTE NOTE NOTE NOTE NOTE
  * We are NOT using a separate thread for this class.  This means that the Service runs
@@ -36,21 +47,104 @@ import android.util.Log;
  * haven't specified otherwise.  This means that this service must NOT do intensive work,
  * because if it does, IT WILL BLOCK THE USER INTERFACE!
  *
+ * The timers themselves run on a single {@link DebateEventLoop} thread owned by this service.
+ * Debates are loaded (see {@link DebateLoader}) on a background thread, also owned by this
+ * service, and the {@link DebateManager} is created back on the main thread once that's done.
+ * If the spectator stream preference is on, the timer is also streamed to other screens by a
+ * {@link SpectatorServer}.
+ *
+ * Depending on the peer mode preference, this device can also ring its bells with other devices'.
+ * As a master, a {@link ClockSyncMaster} shares the time and the debate with followers.  As a
+ * follower, a {@link ClockSyncFollower} keeps time with the master, and once it has caught up,
+ * the debate is moved to an event loop that keeps time by it.
+ *
  * @author Phillip Cao
  * @author Chuan-Zheng Lee
  * @since  2012-03-30
  */
 public class DebatingTimerService extends Service
 {
-    public static final String UPDATE_GUI_BROADCAST_ACTION = "net.czlee.debatekeeper.update";
-    private final IBinder mBinder = new DebatingTimerServiceBinder();
+    private final DebatingTimerServiceBinder mBinder = new DebatingTimerServiceBinder();
+    private final TimerEventDispatcher mEventDispatcher = new TimerEventDispatcher();
     private DebateManager mDebateManager;
     private AlertManager mAlertManager;
+    private DebateEventLoop mEventLoop;
+    private DebatingTimerPreferences mPreferences;
+    private SpectatorServer mSpectatorServer = null;
+    private DebateFormat mDebateFormat = null;  // the format of mDebateManager
+
+    private ClockSyncMaster   mClockSyncMaster   = null;
+    private ClockSyncFollower mClockSyncFollower = null;
+    private ExecutorService   mPeerExecutor;         // opens sockets and sends anchors
+    private int               mPeerGeneration = 0;   // main thread only
+
+    private ExecutorService    mLoadExecutor;
+    private Handler            mMainHandler;
+    private Executor           mMainExecutor;
+    private int                mLoadGeneration = 0;  // main thread only
+    private boolean            mLoading        = false;
+    private DebateLoadListener mLoadListener   = null;
+
+    private static final String BUNDLE_KEY_MOVED_DEBATE = "movedDebate";
+
+    /**
+     * How long a follower waits to hear from its master before giving up.
+     */
+    private static final long FOLLOWER_SYNC_TIMEOUT = 10000; // milliseconds
 
     //******************************************************************************************
     // Public classes
     //******************************************************************************************
 
+    /**
+     * Whether this device rings its bells with other devices', and if so, which side it's on.
+     */
+    public enum PeerMode {
+
+        // These must match the values string array in the preferences.xml file.
+        OFF ("off"),
+        MASTER ("master"),
+        FOLLOWER ("follower");
+
+        private final String prefValue;
+
+        private PeerMode(String prefValue) {
+            this.prefValue = prefValue;
+        }
+
+        public String toPrefValue() {
+            return this.prefValue;
+        }
+
+        public static PeerMode toEnum(String key) {
+            PeerMode[] values = PeerMode.values();
+            for (int i = 0; i < values.length; i++)
+                if (key.equals(values[i].prefValue))
+                    return values[i];
+            throw new IllegalArgumentException(String.format("There is no enumerated constant '%s'", key));
+        }
+    }
+
+    /**
+     * Told about the result of <code>loadDebate()</code>.  Both methods are called on the main
+     * thread.
+     */
+    public interface DebateLoadListener {
+
+        /**
+         * Called when a debate has been loaded.
+         * @param dm the new {@link DebateManager}, which the binder will also return from now on
+         * @param errorLog the non-fatal errors in the debate format file, empty if there were none
+         */
+        public void onDebateLoaded(DebateManager dm, ArrayList<String> errorLog);
+
+        /**
+         * Called when a debate couldn't be loaded at all.
+         * @param message a human-readable message saying why
+         */
+        public void onDebateLoadFailed(String message);
+    }
+
     /**
      * This class is the binder between this service and the DebatingActivity.
      */
@@ -63,29 +157,311 @@ public class DebatingTimerService extends Service
             return mAlertManager;
         }
 
+        /**
+         * @return the {@link DebatingTimerPreferences}, which are always up to date
+         */
+        public DebatingTimerPreferences getPreferences() {
+            return mPreferences;
+        }
+
         public DebateManager createDebateManager(DebateFormat df) {
             releaseDebateManager();
-            mDebateManager = new DebateManager(df, mAlertManager);
-            mDebateManager.setBroadcastSender(new GuiUpdateBroadcastSender());
-            return mDebateManager;
+            return newDebateManager(df);
+        }
+
+        /**
+         * Loads a debate in the background, and creates a {@link DebateManager} for it once it's
+         * loaded.  Any existing debate is released straight away.  The listener set by
+         * <code>setDebateLoadListener()</code>, if any, is told when it's done.
+         * @param filename the file name of the debate format
+         * @param savedState a {@link Bundle} from which to restore the state of the new
+         * <code>DebateManager</code>, or <code>null</code> if there is none
+         * @param key the key under which the state was saved in <code>savedState</code>
+         */
+        public void loadDebate(final String filename, final Bundle savedState, final String key) {
+            releaseDebateManager();
+
+            final int generation = mLoadGeneration;
+            mLoading = true;
+
+            mLoadExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    DebateLoader loader = new DebateLoader(DebatingTimerService.this);
+                    DebateFormat df = null;
+                    String failureMessage = null;
+                    try {
+                        df = loader.load(filename);
+                    } catch (DebateLoader.FatalXmlError e) {
+                        failureMessage = e.getMessage();
+                    }
+                    mMainHandler.post(new LoadFinishedRunnable(generation, df, loader.getErrorLog(),
+                            failureMessage, savedState, key));
+                }
+            });
+        }
+
+        /**
+         * @return <code>true</code> if a debate is being loaded
+         */
+        public boolean isLoadingDebate() {
+            return mLoading;
+        }
+
+        /**
+         * Adds a listener for timer events, to be called on the main thread.  Listeners are
+         * kept across debates, so this only needs to be done once.
+         * @param listener the {@link TimerEventDispatcher.TimerListener} to add
+         */
+        public void addTimerListener(TimerEventDispatcher.TimerListener listener) {
+            mEventDispatcher.addListener(listener, mMainExecutor);
+        }
+
+        /**
+         * Removes a listener added by <code>addTimerListener()</code>.
+         * @param listener the {@link TimerEventDispatcher.TimerListener} to remove
+         */
+        public void removeTimerListener(TimerEventDispatcher.TimerListener listener) {
+            mEventDispatcher.removeListener(listener);
         }
 
+        /**
+         * Sets the listener to be told when a debate has been loaded.
+         * @param listener the listener, or <code>null</code> to stop listening
+         */
+        public void setDebateLoadListener(DebateLoadListener listener) {
+            mLoadListener = listener;
+        }
+
+        /**
+         * Releases the current debate, and abandons any debate being loaded.
+         */
         public void releaseDebateManager() {
             if(mDebateManager != null)
                 mDebateManager.release();
             mDebateManager = null;
+            mDebateFormat  = null;
+            setPeerDebateManager(null);
+            mLoadGeneration++;
+            mLoading = false;
+        }
+    }
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    /**
+     * Runs tasks on a {@link Handler}'s thread, so that {@link TimerEventDispatcher} can call
+     * listeners on the main thread.
+     */
+    private static class HandlerExecutor implements Executor {
+
+        private final Handler mHandler;
+
+        public HandlerExecutor(Handler handler) {
+            mHandler = handler;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            mHandler.post(command);
+        }
+    }
+
+    /**
+     * Passes preferences on to the {@link AlertManager} and {@link DebateManager}, but only the
+     * ones that have changed.
+     */
+    private class PreferencesChangeListener implements DebatingTimerPreferences.OnChangeListener {
+
+        @Override
+        public void onPreferencesChanged(DebatingTimerPreferences prefs, int changed) {
+            if ((changed & DebatingTimerPreferences.SILENT_MODE) != 0)
+                mAlertManager.setSilentMode(prefs.isSilentMode());
+            if ((changed & DebatingTimerPreferences.VIBRATE_MODE) != 0)
+                mAlertManager.setVibrateMode(prefs.isVibrateMode());
+            if ((changed & DebatingTimerPreferences.KEEP_SCREEN_ON) != 0)
+                mAlertManager.setKeepScreenOn(prefs.isKeepScreenOn());
+            if ((changed & DebatingTimerPreferences.FLASH_SCREEN_MODE) != 0)
+                mAlertManager.setFlashScreenMode(prefs.getFlashScreenMode());
+            if ((changed & DebatingTimerPreferences.OVERTIME_BELLS) != 0 && mDebateManager != null)
+                mDebateManager.setOvertimeBells(prefs.getFirstOvertimeBell(), prefs.getOvertimeBellPeriod());
+            if ((changed & DebatingTimerPreferences.SPECTATOR_STREAM) != 0)
+                setSpectatorStream(prefs.isSpectatorStream());
+            if ((changed & DebatingTimerPreferences.PEER_MODE) != 0)
+                setPeerMode(prefs.getPeerMode(), prefs.getPeerMasterAddress());
+        }
+    }
+
+    /**
+     * Run on the peer thread to open a {@link ClockSyncMaster}'s socket.  The master is then
+     * started on the main thread, unless the peer mode has changed since.
+     */
+    private class StartMasterRunnable implements Runnable {
+
+        private final int        mGeneration;
+        private final TimerClock mClock;
+
+        public StartMasterRunnable(int generation, TimerClock clock) {
+            mGeneration = generation;
+            mClock      = clock;
+        }
+
+        @Override
+        public void run() {
+            final ClockSyncMaster master;
+            try {
+                master = new ClockSyncMaster(new DatagramSocket(ClockSyncMaster.DEFAULT_PORT), mClock);
+            } catch (SocketException e) {
+                Log.e(DebatingTimerService.class.getSimpleName(), "Couldn't open the master's socket", e);
+                mMainHandler.post(new PeerModeFailedRunnable(mGeneration,
+                        getString(R.string.PeerModeFailedToastText, e.getMessage())));
+                return;
+            }
+
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mGeneration != mPeerGeneration) {
+                        master.stop();
+                        return;
+                    }
+                    mClockSyncMaster = master;
+                    master.setDebateManager(mDebateManager);
+                    master.start();
+                    mEventDispatcher.addListener(master, mPeerExecutor);
+                }
+            });
+        }
+    }
+
+    /**
+     * Run on the peer thread to look up the master and wait for a {@link ClockSyncFollower} to
+     * catch up with it.  The debate is then moved to the follower's clock on the main thread,
+     * unless the peer mode has changed since.
+     */
+    private class StartFollowerRunnable implements Runnable {
+
+        private final int    mGeneration;
+        private final String mMasterAddress;
+
+        public StartFollowerRunnable(int generation, String masterAddress) {
+            mGeneration    = generation;
+            mMasterAddress = masterAddress;
+        }
+
+        @Override
+        public void run() {
+            final ClockSyncFollower follower;
+            try {
+                InetSocketAddress address = parseMasterAddress(mMasterAddress);
+                if (address.isUnresolved()) {
+                    mMainHandler.post(new PeerModeFailedRunnable(mGeneration,
+                            getString(R.string.PeerModeNoMasterToastText, mMasterAddress)));
+                    return;
+                }
+                follower = new ClockSyncFollower(new DatagramSocket(), address, TimerClock.SYSTEM);
+            } catch (IllegalArgumentException e) {
+                mMainHandler.post(new PeerModeFailedRunnable(mGeneration,
+                        getString(R.string.PeerModeNoMasterToastText, mMasterAddress)));
+                return;
+            } catch (SocketException e) {
+                Log.e(DebatingTimerService.class.getSimpleName(), "Couldn't open the follower's socket", e);
+                mMainHandler.post(new PeerModeFailedRunnable(mGeneration,
+                        getString(R.string.PeerModeFailedToastText, e.getMessage())));
+                return;
+            }
+
+            follower.start();
+            boolean synchronised;
+            try {
+                synchronised = follower.awaitSynchronisation(FOLLOWER_SYNC_TIMEOUT);
+            } catch (InterruptedException e) {
+                synchronised = false;
+            }
+            if (!synchronised) {
+                follower.stop();
+                mMainHandler.post(new PeerModeFailedRunnable(mGeneration,
+                        getString(R.string.PeerModeNoMasterToastText, mMasterAddress)));
+                return;
+            }
+
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mGeneration != mPeerGeneration) {
+                        follower.stop();
+                        return;
+                    }
+                    mClockSyncFollower = follower;
+                    setEventLoopClock(follower);
+                }
+            });
+        }
+    }
+
+    /**
+     * Run on the main thread to tell the user that peer mode couldn't be started, unless the peer
+     * mode has changed since.
+     */
+    private class PeerModeFailedRunnable implements Runnable {
+
+        private final int    mGeneration;
+        private final String mMessage;
+
+        public PeerModeFailedRunnable(int generation, String message) {
+            mGeneration = generation;
+            mMessage    = message;
+        }
+
+        @Override
+        public void run() {
+            if (mGeneration != mPeerGeneration) return;
+            Toast.makeText(DebatingTimerService.this, mMessage, Toast.LENGTH_LONG).show();
         }
     }
 
     /**
-     * This class is passed to the <code>SpeechManager</code> (indirectly) as a means to trigger a
-     * GUI update in the <code>DebatingActivity</code>.
+     * Run on the main thread when a debate has finished loading.  Does nothing if the load has
+     * since been abandoned.
      */
-    public class GuiUpdateBroadcastSender {
-        public void sendBroadcast() {
-            Intent broadcastIntent = new Intent(UPDATE_GUI_BROADCAST_ACTION);
-            LocalBroadcastManager.getInstance(DebatingTimerService.this)
-                    .sendBroadcast(broadcastIntent);
+    private class LoadFinishedRunnable implements Runnable {
+
+        private final int               mGeneration;
+        private final DebateFormat      mDebateFormat;
+        private final ArrayList<String> mErrorLog;
+        private final String            mFailureMessage;
+        private final Bundle            mSavedState;
+        private final String            mKey;
+
+        public LoadFinishedRunnable(int generation, DebateFormat df, ArrayList<String> errorLog,
+                String failureMessage, Bundle savedState, String key) {
+            mGeneration     = generation;
+            mDebateFormat   = df;
+            mErrorLog       = errorLog;
+            mFailureMessage = failureMessage;
+            mSavedState     = savedState;
+            mKey            = key;
+        }
+
+        @Override
+        public void run() {
+            if (mGeneration != mLoadGeneration) return;
+            mLoading = false;
+
+            if (mDebateFormat == null) {
+                if (mLoadListener != null)
+                    mLoadListener.onDebateLoadFailed(mFailureMessage);
+                return;
+            }
+
+            DebateManager dm = mBinder.createDebateManager(mDebateFormat);
+            if (mSavedState != null)
+                dm.restoreState(mKey, new BundleSavedState(mSavedState));
+
+            if (mLoadListener != null)
+                mLoadListener.onDebateLoaded(dm, mErrorLog);
         }
     }
 
@@ -96,6 +472,17 @@ public class DebatingTimerService extends Service
     public void onCreate() {
         super.onCreate();
         mAlertManager = new AlertManager(this);
+        mEventLoop = new DebateEventLoop();
+        mLoadExecutor = Executors.newSingleThreadExecutor();
+        mPeerExecutor = Executors.newSingleThreadExecutor();
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mMainExecutor = new HandlerExecutor(mMainHandler);
+
+        // Read the preferences once, and from then on only when they change
+        mPreferences = new DebatingTimerPreferences(this);
+        PreferencesChangeListener listener = new PreferencesChangeListener();
+        listener.onPreferencesChanged(mPreferences, DebatingTimerPreferences.ALL);
+        mPreferences.addOnChangeListener(listener);
     }
 
     @Override
@@ -122,6 +509,15 @@ public class DebatingTimerService extends Service
             mDebateManager = null;
         }
 
+        mPreferences.release();
+        setSpectatorStream(false);
+        stopPeerMode(false);
+        mPeerExecutor.shutdownNow();
+        mLoadGeneration++;
+        mLoadExecutor.shutdownNow();
+        mEventLoop.quit();
+        mAlertManager.release();
+
         Log.v(this.getClass().getSimpleName(), "The service is shutting down now!");
     }
 
@@ -130,4 +526,150 @@ public class DebatingTimerService extends Service
         return mBinder;
     }
 
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * Creates a {@link DebateManager} on the current event loop, and tells everything that follows
+     * the debate about it.  Any existing debate must already have been released.
+     * @param df the {@link DebateFormat} for the debate
+     * @return the new <code>DebateManager</code>
+     */
+    private DebateManager newDebateManager(DebateFormat df) {
+        mDebateFormat  = df;
+        mDebateManager = new DebateManager(df, mAlertManager, mEventLoop);
+        mDebateManager.setEventDispatcher(mEventDispatcher);
+        mDebateManager.setOvertimeBells(mPreferences.getFirstOvertimeBell(),
+                mPreferences.getOvertimeBellPeriod());
+        setPeerDebateManager(mDebateManager);
+        return mDebateManager;
+    }
+
+    /**
+     * Tells the clock sync master or follower, if there is one, which debate to share or follow.
+     * @param dm the {@link DebateManager}, or <code>null</code> if there is no debate
+     */
+    private void setPeerDebateManager(DebateManager dm) {
+        if (mClockSyncMaster != null)
+            mClockSyncMaster.setDebateManager(dm);
+        if (mClockSyncFollower != null)
+            mClockSyncFollower.setDebateManager(dm);
+    }
+
+    /**
+     * Replaces the event loop with one that keeps time by another clock.  A debate can't change
+     * loops, so the current debate, if there is one, is saved and restored on a new
+     * {@link DebateManager}, and the load listener is told about it as if it had just been loaded.
+     * A debate still being loaded is created on the new loop anyway.
+     * @param clock the {@link TimerClock} for the new loop
+     */
+    private void setEventLoopClock(TimerClock clock) {
+        DebateEventLoop oldLoop = mEventLoop;
+        mEventLoop = new DebateEventLoop(clock);
+
+        if (mDebateManager != null) {
+            MapSavedState state = new MapSavedState();
+            TimerSnapshot snapshot = mDebateManager.getSnapshot();
+            boolean running = snapshot.isRunning();
+            snapshot.release();
+            mDebateManager.saveState(BUNDLE_KEY_MOVED_DEBATE, state);
+            mDebateManager.release();
+
+            DebateManager dm = newDebateManager(mDebateFormat);
+            dm.restoreState(BUNDLE_KEY_MOVED_DEBATE, state);
+
+            // A running timer was timed by the old clock, so stop it and start it again on the new
+            // one.
+            dm.stopTimer();
+            if (running) dm.startTimer();
+
+            if (mLoadListener != null)
+                mLoadListener.onDebateLoaded(dm, new ArrayList<String>());
+        }
+
+        oldLoop.quit();
+    }
+
+    /**
+     * Starts or stops ringing bells with other devices.  Whatever was running before is stopped
+     * first.  Sockets are opened, and the master is looked up, on the peer thread, so this doesn't
+     * touch the network on the main thread.
+     * @param mode the {@link PeerMode}
+     * @param masterAddress the address of the master, as typed by the user, for follower mode
+     */
+    private void setPeerMode(PeerMode mode, String masterAddress) {
+        stopPeerMode(true);
+        switch (mode) {
+        case MASTER:
+            mPeerExecutor.execute(new StartMasterRunnable(mPeerGeneration, mEventLoop.getClock()));
+            break;
+        case FOLLOWER:
+            mPeerExecutor.execute(new StartFollowerRunnable(mPeerGeneration, masterAddress));
+            break;
+        case OFF:
+            break;
+        }
+    }
+
+    /**
+     * Stops the clock sync master or follower, if there is one, and abandons any being started.
+     * @param restoreClock whether to move the debate back to this device's clock if it was
+     * following another device, which isn't needed when the service is shutting down
+     */
+    private void stopPeerMode(boolean restoreClock) {
+        mPeerGeneration++;
+        if (mClockSyncMaster != null) {
+            mEventDispatcher.removeListener(mClockSyncMaster);
+            mClockSyncMaster.stop();
+            mClockSyncMaster = null;
+        }
+        if (mClockSyncFollower != null) {
+            mClockSyncFollower.stop();
+            mClockSyncFollower = null;
+            if (restoreClock)
+                setEventLoopClock(TimerClock.SYSTEM);
+        }
+    }
+
+    /**
+     * Parses an address typed by the user, either "host" or "host:port", and looks up the host.
+     * Must not be called on the main thread.
+     * @param address the address
+     * @return the address, which is unresolved if the host couldn't be found
+     * @throws IllegalArgumentException if there's no host, or the port isn't valid
+     */
+    private static InetSocketAddress parseMasterAddress(String address) {
+        String host = address;
+        int    port = ClockSyncMaster.DEFAULT_PORT;
+
+        // Only take a port if there's exactly one colon, since IPv6 addresses have several
+        int colon = address.indexOf(':');
+        if (colon >= 0 && colon == address.lastIndexOf(':')) {
+            host = address.substring(0, colon);
+            port = Integer.parseInt(address.substring(colon + 1));
+        }
+        if (host.length() == 0)
+            throw new IllegalArgumentException("No host in the master's address");
+        return new InetSocketAddress(host, port);
+    }
+
+    /**
+     * Starts or stops streaming the timer to other screens.  The stream follows the service's
+     * event dispatcher, so it carries on across debates.  The server listens on its own thread,
+     * so this doesn't touch the network on the main thread.
+     * @param enabled whether the stream should be on
+     */
+    private void setSpectatorStream(boolean enabled) {
+        if (enabled && mSpectatorServer == null) {
+            mSpectatorServer = new SpectatorServer(new InetSocketAddress(SpectatorServer.DEFAULT_PORT));
+            mSpectatorServer.start();
+            mSpectatorServer.attach(mEventDispatcher);
+        } else if (!enabled && mSpectatorServer != null) {
+            mSpectatorServer.detach(mEventDispatcher);
+            mSpectatorServer.stop();
+            mSpectatorServer = null;
+        }
+    }
+
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import net.czlee.debatekeeper.AlertManager.FlashScreenMode;
+
+/**
+ * FlashSchedule is the precomputed on/off schedule for flashing the screen for one bell.
+ *
+ * It is worked out once from a {@link BellSoundInfo} and a {@link FlashScreenMode}, and can then be
+ * played back any number of times without any further calculation or allocation.  The schedule is
+ * a list of times (in milliseconds from the start of the bell) at which the screen turns on and
+ * off.  Times at even indices turn the flash on, and times at odd indices turn it off, so the
+ * flash is on whenever an odd number of times have passed.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class FlashSchedule {
+
+    private static final long MAX_BELL_SCREEN_FLASH_TIME = 500;
+    private static final long STROBE_PERIOD              = 100;
+    private static final long STROBE_ON_TIME             = STROBE_PERIOD * 2 / 3;
+
+    private final long[] mTransitionTimes;
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Constructor.  Works out the schedule.
+     * @param bsi the {@link BellSoundInfo} for the bell
+     * @param mode the {@link FlashScreenMode} to use
+     */
+    public FlashSchedule(BellSoundInfo bsi, FlashScreenMode mode) {
+        super();
+
+        long repeatPeriod = bsi.getRepeatPeriod();
+        int  timesToPlay  = bsi.getTimesToPlay();
+
+        if (mode == FlashScreenMode.OFF || timesToPlay <= 0) {
+            mTransitionTimes = new long[0];
+            return;
+        }
+
+        // First work out how many flashes there will be, so that we only allocate once
+        int numFlashes = 0;
+        for (int i = 0; i < timesToPlay; i++)
+            numFlashes += getFlashesInRepetition(mode, getFlashTime(repeatPeriod, i, timesToPlay));
+
+        mTransitionTimes = new long[numFlashes * 2];
+
+        int index = 0;
+        for (int i = 0; i < timesToPlay; i++) {
+            long startTime = i * repeatPeriod;
+            long flashTime = getFlashTime(repeatPeriod, i, timesToPlay);
+
+            switch (mode) {
+            case SOLID_FLASH:
+                mTransitionTimes[index++] = startTime;
+                mTransitionTimes[index++] = startTime + flashTime;
+                break;
+            case STROBE_FLASH:
+                int numStrobes = getFlashesInRepetition(mode, flashTime);
+                for (int j = 0; j < numStrobes; j++) {
+                    mTransitionTimes[index++] = startTime + j * STROBE_PERIOD;
+                    mTransitionTimes[index++] = startTime + j * STROBE_PERIOD + STROBE_ON_TIME;
+                }
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return the number of on/off transitions in this schedule
+     */
+    public int getNumberOfTransitions() {
+        return mTransitionTimes.length;
+    }
+
+    /**
+     * @param index the index of the transition
+     * @return the time of the transition, in milliseconds from the start of the bell
+     */
+    public long getTransitionTime(int index) {
+        return mTransitionTimes[index];
+    }
+
+    /**
+     * @return how long the whole schedule takes, in milliseconds
+     */
+    public long getDuration() {
+        if (mTransitionTimes.length == 0) return 0;
+        return mTransitionTimes[mTransitionTimes.length - 1];
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * @return how long the flash should be on for in a given repetition of the bell
+     */
+    private static long getFlashTime(long repeatPeriod, int repetition, int timesToPlay) {
+
+        // If this is the last repetition, make the flash time equal to the maximum
+        if (repetition == timesToPlay - 1)
+            return MAX_BELL_SCREEN_FLASH_TIME;
+
+        // If half the repeat period is more than the maximum flash time, make the flash time
+        // equal to the maximum
+        long flashTime = repeatPeriod / 2;
+        if (flashTime > MAX_BELL_SCREEN_FLASH_TIME)
+            flashTime = MAX_BELL_SCREEN_FLASH_TIME;
+        return flashTime;
+    }
+
+    /**
+     * @return the number of separate flashes in one repetition of the bell
+     */
+    private static int getFlashesInRepetition(FlashScreenMode mode, long flashTime) {
+        switch (mode) {
+        case SOLID_FLASH:
+            return 1;
+        case STROBE_FLASH:
+            int numStrobes = (int) (flashTime / STROBE_PERIOD);
+            if (flashTime % STROBE_PERIOD > STROBE_PERIOD / 2) numStrobes++;
+            return numStrobes;
+        default:
+            return 0;
+        }
+    }
+
+}
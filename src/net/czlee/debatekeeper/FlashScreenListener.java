@@ -20,6 +20,8 @@ package net.czlee.debatekeeper;
 /**
  * This interface is passed to {@link AlertManager} via its <b>setScreenColourInverter()</b> method.
  * <code>AlertManager</code> uses it to flash the screen rapidly at bell times.
+ * <code>flashScreen()</code> is always called on the main (UI) thread, and only when the state
+ * actually changes.
  * @author Chuan-Zheng Lee
  * @since  2012-06-27
  */
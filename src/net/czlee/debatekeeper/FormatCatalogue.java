@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * FormatCatalogue is an index of the basic information about a set of debate format files.
+ *
+ * For each file, it holds the information needed to list and search for the format in the format
+ * chooser: the name, regions, levels, "used at", description, and the speeches with the lengths of
+ * their speech formats.  A catalogue of the bundled formats is made at build time, so that the
+ * format chooser doesn't need to parse each bundled XML file to list it.
+ *
+ * The {@link DebateFormatInfo}s in a catalogue only contain this information; in particular, they
+ * have no bells.  For everything, parse the file using {@link DebateFormatInfoExtractor}.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class FormatCatalogue {
+
+    /**
+     * The file name of the catalogue of the bundled formats, within
+     * <code>CompiledDebateFormat.COMPILED_DIRECTORY_NAME</code> in the assets.
+     */
+    public static final String CATALOGUE_FILE_NAME = "catalogue.bin";
+
+    private static final int MAGIC   = 0x44424b43; // "DBKC"
+    private static final int VERSION = 2;
+
+    private final TreeMap<String, DebateFormatInfo> mEntries = new TreeMap<String, DebateFormatInfo>();
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Adds a file to this catalogue.
+     * @param filename the file name of the debate format file
+     * @param dfi the {@link DebateFormatInfo} for that file
+     */
+    public void put(String filename, DebateFormatInfo dfi) {
+        mEntries.put(filename, dfi);
+    }
+
+    /**
+     * @param filename the file name of a debate format file
+     * @return the {@link DebateFormatInfo} for that file, or <code>null</code> if it isn't in this
+     * catalogue
+     */
+    public DebateFormatInfo get(String filename) {
+        return mEntries.get(filename);
+    }
+
+    /**
+     * @return the file names in this catalogue, in alphabetical order
+     */
+    public Set<String> getFilenames() {
+        return mEntries.keySet();
+    }
+
+    /**
+     * Writes this catalogue in binary form.
+     * @param out the <code>DataOutputStream</code> to write to
+     * @throws IOException if thrown by <code>out</code>
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(mEntries.size());
+
+        Iterator<Entry<String, DebateFormatInfo>> entryIterator = mEntries.entrySet().iterator();
+        while (entryIterator.hasNext()) {
+            Entry<String, DebateFormatInfo> entry = entryIterator.next();
+            DebateFormatInfo dfi = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeUTF(dfi.getName());
+            writeStringList(out, dfi.getRegions());
+            writeStringList(out, dfi.getLevels());
+            writeStringList(out, dfi.getUsedAts());
+            out.writeUTF(dfi.getDescription());
+
+            ArrayList<String[]> speeches = dfi.getSpeeches();
+            out.writeInt(speeches.size());
+            for (int i = 0; i < speeches.size(); i++) {
+                String[] speech = speeches.get(i);
+                out.writeUTF(speech[0]);
+                out.writeUTF(speech[1]);
+                out.writeLong(dfi.getSpeechFormatLength(speech[1]));
+            }
+        }
+    }
+
+    /**
+     * Reads a catalogue in binary form.
+     * @param in the <code>DataInputStream</code> to read from
+     * @param strings the {@link StringResources} to give to the <code>DebateFormatInfo</code>s
+     * @return the <code>FormatCatalogue</code>
+     * @throws IOException if thrown by <code>in</code>, or if the data isn't a valid catalogue
+     */
+    public static FormatCatalogue read(DataInputStream in, StringResources strings) throws IOException {
+        if (in.readInt() != MAGIC)
+            throw new IOException("Not a debate format catalogue");
+        int version = in.readInt();
+        if (version != VERSION)
+            throw new IOException(String.format("Unsupported catalogue version %d", version));
+
+        FormatCatalogue catalogue = new FormatCatalogue();
+        int numberOfEntries = in.readInt();
+
+        for (int i = 0; i < numberOfEntries; i++) {
+            String filename = in.readUTF();
+            DebateFormatInfo dfi = new DebateFormatInfo(strings);
+            dfi.setName(in.readUTF());
+            int numberOfRegions = in.readInt();
+            for (int j = 0; j < numberOfRegions; j++)
+                dfi.addRegion(in.readUTF());
+            int numberOfLevels = in.readInt();
+            for (int j = 0; j < numberOfLevels; j++)
+                dfi.addLevel(in.readUTF());
+            int numberOfUsedAts = in.readInt();
+            for (int j = 0; j < numberOfUsedAts; j++)
+                dfi.addUsedAt(in.readUTF());
+            dfi.setDescription(in.readUTF());
+            int numberOfSpeeches = in.readInt();
+            for (int j = 0; j < numberOfSpeeches; j++) {
+                String name      = in.readUTF();
+                String formatRef = in.readUTF();
+                long   length    = in.readLong();
+                if (length >= 0 && !dfi.hasSpeechFormat(formatRef))
+                    dfi.addSpeechFormat(formatRef, length);
+                dfi.addSpeech(name, formatRef);
+            }
+            catalogue.put(filename, dfi);
+        }
+
+        return catalogue;
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    private static void writeStringList(DataOutputStream out, ArrayList<String> list) throws IOException {
+        out.writeInt(list.size());
+        for (int i = 0; i < list.size(); i++)
+            out.writeUTF(list.get(i));
+    }
+
+}
@@ -17,16 +17,17 @@
 
 package net.czlee.debatekeeper;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 
-import org.xml.sax.Attributes;
-import org.xml.sax.ContentHandler;
-import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
+import org.xmlpull.v1.XmlPullParserException;
 
 import android.app.Activity;
 import android.app.AlertDialog;
@@ -34,14 +35,15 @@ import android.app.Dialog;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
-import android.util.Xml;
-import android.util.Xml.Encoding;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.widget.AdapterView;
 import android.widget.AdapterView.OnItemClickListener;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.ListView;
 import android.widget.TableLayout;
 import android.widget.TableRow;
@@ -59,16 +61,17 @@ import android.widget.Toast;
 public class FormatChooserActivity extends Activity {
 
     private FormatXmlFilesManager mFilesManager;
+    private FormatCatalogue       mBundledCatalogue = null;
+    private final FormatSearchIndex mSearchIndex = new FormatSearchIndex();
 
     private ListView mStylesListView;
+    private EditText mSearchEditText;
     private Button   mOKButton;
     private Button   mCancelButton;
-    private String   mCurrentStyleName = null;
 
     private DebateFormatEntryArrayAdapter mStylesArrayAdapter;
-    private final ArrayList<DebateFormatListEntry> mStylesList = new ArrayList<DebateFormatListEntry>();
-
-    private String DEBATING_TIMER_URI;
+    private final ArrayList<DebateFormatListEntry> mStylesList    = new ArrayList<DebateFormatListEntry>();
+    private final ArrayList<DebateFormatListEntry> mAllStylesList = new ArrayList<DebateFormatListEntry>();
 
     private static final int DIALOG_IO_ERROR = 0;
     private static final int DIALOG_MORE_DETAILS = 1;
@@ -125,7 +128,8 @@ public class FormatChooserActivity extends Activity {
             return mStylesListView.getCheckedItemPosition();
         }
 
-        public void populateBasicInfo(View view, String filename) throws IOException, SAXException {
+        public void populateBasicInfo(View view, String filename)
+                throws IOException, XmlPullParserException {
             FormatChooserActivity.this.populateBasicInfo(view, filename);
         }
 
@@ -140,10 +144,6 @@ public class FormatChooserActivity extends Activity {
     // Private classes
     // ******************************************************************************************
 
-    private class AllInformationFoundException extends SAXException {
-        private static final long serialVersionUID = 3195935815375118010L;
-    }
-
     private class DetailsButtonOnClickListener implements OnClickListener {
 
         private final Bundle bundleForDialog;
@@ -161,45 +161,6 @@ public class FormatChooserActivity extends Activity {
 
     }
 
-    /**
-     * This class just looks for the string inside &lt;debateformat name="...">
-     * and saves it to <code>mCurrentStyleName</code>.
-     */
-    private class GetDebateFormatNameXmlContentHandler implements ContentHandler {
-
-        @Override public void characters(char[] arg0, int arg1, int arg2) throws SAXException {}
-        @Override public void endDocument() throws SAXException {}
-        @Override public void endElement(String arg0, String arg1, String arg2) throws SAXException {}
-        @Override public void endPrefixMapping(String prefix) throws SAXException {}
-        @Override public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {}
-        @Override public void processingInstruction(String target, String data) throws SAXException {}
-        @Override public void setDocumentLocator(Locator locator) {}
-        @Override public void skippedEntity(String name) throws SAXException {}
-        @Override public void startPrefixMapping(String prefix, String uri) throws SAXException {}
-
-        @Override
-        public void startDocument() throws SAXException {
-            // initialise
-            mCurrentStyleName = null;
-        }
-
-        @Override
-        public void startElement(String uri, String localName, String qName,
-                Attributes atts) throws SAXException {
-
-            if (!uri.equals(DEBATING_TIMER_URI))
-                return;
-
-            if (localName.equals(getString(R.string.XmlElemNameRoot))) {
-                mCurrentStyleName = atts.getValue(DEBATING_TIMER_URI,
-                        getString(R.string.XmlAttrNameRootName));
-                throw new AllInformationFoundException();
-                // We don't need to parse any more once we find the style name
-            }
-        }
-
-    }
-
     private class OKButtonOnClickListener implements OnClickListener {
         @Override
         public void onClick(View v) {
@@ -239,6 +200,16 @@ public class FormatChooserActivity extends Activity {
 
     }
 
+    private class SearchTextWatcher implements TextWatcher {
+        @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+        @Override public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            filterStylesList(s.toString());
+        }
+    }
+
     private class StylesListViewOnItemClickListener implements OnItemClickListener {
         @Override
         public void onItemClick(AdapterView<?> parent, View view, int position,
@@ -255,11 +226,11 @@ public class FormatChooserActivity extends Activity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.format_chooser);
-        DEBATING_TIMER_URI = getString(R.string.XmlUri);
 
         mFilesManager = new FormatXmlFilesManager(this);
 
         mStylesListView = (ListView) findViewById(R.id.StylesListView);
+        mSearchEditText = (EditText) findViewById(R.id.FormatChooserSearchText);
         mOKButton       = (Button)   findViewById(R.id.FormatChooserOKButton);
         mCancelButton   = (Button)   findViewById(R.id.FormatChooserCancelButton);
 
@@ -278,10 +249,12 @@ public class FormatChooserActivity extends Activity {
 
         // Sort alphabetically by style name
         mStylesArrayAdapter.sort(new StyleEntryComparatorByStyleName());
+        mAllStylesList.addAll(mStylesList);
 
         mStylesListView.setAdapter(mStylesArrayAdapter);
 
         mStylesListView.setOnItemClickListener(new StylesListViewOnItemClickListener());
+        mSearchEditText.addTextChangedListener(new SearchTextWatcher());
 
         // Select and scroll to the incoming selection (if existent)
         int incomingSelection = getIncomingSelection();
@@ -309,6 +282,9 @@ public class FormatChooserActivity extends Activity {
     //******************************************************************************************
     private void populateStylesLists() throws IOException {
         String[] fileList = mFilesManager.list();
+        DebateFormatHeaderReader dfhr = new DebateFormatHeaderReader(this);
+
+        mBundledCatalogue = loadBundledCatalogue();
 
         for (int i = 0; i < fileList.length; i++) {
             String filename = fileList[i];
@@ -317,6 +293,14 @@ public class FormatChooserActivity extends Activity {
             if (!filename.endsWith(".xml"))
                 continue;
 
+            // Bundled files are in the catalogue, so we don't need to parse them
+            DebateFormatInfo bundledDfi = getBundledDebateFormatInfo(filename);
+            if (bundledDfi != null) {
+                addStyleToList(filename, bundledDfi.getName());
+                mSearchIndex.put(filename, bundledDfi);
+                continue;
+            }
+
             try {
                 is = mFilesManager.open(filename);
             } catch (IOException e) {
@@ -325,21 +309,20 @@ public class FormatChooserActivity extends Activity {
                 continue;
             }
 
+            // This only reads as far as the <info> element, then closes the file.  So user files
+            // are searchable by their name and information, but not by their speeches.
+            DebateFormatInfo header;
             try {
-                Xml.parse(is, Encoding.UTF_8,
-                        new GetDebateFormatNameXmlContentHandler());
-
-            } catch (AllInformationFoundException e) {
-                // This exception means the XML parsing was successful - we just
-                // use it to stop the parser.
-                if (mCurrentStyleName != null)
-                    addStyleToList(filename, mCurrentStyleName);
-
-            } catch (SAXException e) {
-                mCurrentStyleName = null;
+                header = dfhr.readHeader(is);
+            } catch (XmlPullParserException e) {
                 continue;
             }
 
+            if (header.getName().length() > 0) {
+                addStyleToList(filename, header.getName());
+                mSearchIndex.put(filename, header);
+            }
+
         }
 
     }
@@ -348,6 +331,73 @@ public class FormatChooserActivity extends Activity {
         mStylesList.add(new DebateFormatListEntry(filename, styleName));
     }
 
+    /**
+     * Shows only the styles that match the search text, keeping the checked style checked if
+     * it's still shown.
+     * @param text the search text; if it's blank, all styles are shown
+     */
+    private void filterStylesList(String text) {
+        String checkedFilename = null;
+        int checkedPosition = mStylesListView.getCheckedItemPosition();
+        if (checkedPosition != ListView.INVALID_POSITION && checkedPosition < mStylesList.size())
+            checkedFilename = mStylesList.get(checkedPosition).getFilename();
+
+        mStylesList.clear();
+        if (text.trim().length() == 0) {
+            mStylesList.addAll(mAllStylesList);
+        } else {
+            HashSet<String> matches = new HashSet<String>(mSearchIndex.search(text));
+            for (int i = 0; i < mAllStylesList.size(); i++) {
+                DebateFormatListEntry entry = mAllStylesList.get(i);
+                if (matches.contains(entry.getFilename()))
+                    mStylesList.add(entry);
+            }
+        }
+
+        mStylesListView.clearChoices();
+        for (int i = 0; i < mStylesList.size(); i++) {
+            if (mStylesList.get(i).getFilename().equals(checkedFilename)) {
+                mStylesListView.setItemChecked(i, true);
+                break;
+            }
+        }
+        mStylesArrayAdapter.notifyDataSetChanged();
+    }
+
+    /**
+     * Loads the catalogue of bundled formats, which is made at build time.
+     * @return the {@link FormatCatalogue}, or <code>null</code> if there isn't one
+     */
+    private FormatCatalogue loadBundledCatalogue() {
+        InputStream is = mFilesManager.openCatalogue();
+        if (is == null) return null;
+
+        try {
+            return FormatCatalogue.read(new DataInputStream(new BufferedInputStream(is)),
+                    new ContextStringResources(this));
+        } catch (IOException e) {
+            Log.w(this.getClass().getSimpleName(), "Couldn't read the bundled format catalogue", e);
+            return null;
+        } finally {
+            try {
+                is.close();
+            } catch (IOException e) {
+                // Ignore, we've already got what we needed.
+            }
+        }
+    }
+
+    /**
+     * @param filename the file name of a debate format XML file
+     * @return the basic {@link DebateFormatInfo} for that file from the catalogue of bundled
+     * formats, or <code>null</code> if it isn't a bundled file or has been overridden by a user file
+     */
+    private DebateFormatInfo getBundledDebateFormatInfo(String filename) {
+        if (mBundledCatalogue == null) return null;
+        if (mFilesManager.getLocation(filename) != FormatXmlFilesManager.LOCATION_ASSETS) return null;
+        return mBundledCatalogue.get(filename);
+    }
+
     private int getIncomingSelection() {
         Intent data = getIntent();
         String incomingFilename = data.getStringExtra(EXTRA_XML_FILE_NAME);
@@ -460,14 +510,32 @@ public class FormatChooserActivity extends Activity {
         return dfie.getDebateFormatInfo(is);
     }
 
+    /**
+     * Reads only the name and &lt;info&gt; element of an XML file, to get the basic information
+     * about it.
+     * @param filename the filename for the debate format XML file
+     * @return a <code>DebateFormatInfo</code> object with only the basic information in it
+     * @throws IOException if there was an IO problem with the XML file
+     * @throws XmlPullParserException if thrown by the XML parser
+     */
+    private DebateFormatInfo getDebateFormatHeader(String filename)
+            throws IOException, XmlPullParserException {
+        InputStream is = mFilesManager.open(filename);
+        DebateFormatHeaderReader dfhr = new DebateFormatHeaderReader(this);
+        return dfhr.readHeader(is);
+    }
+
     /**
      * @param view the <code>View</code> to be populated
      * @param filename the filename of the XML file from which data is to be taken
      * @throws IOException if there was an IO problem with the XML file
-     * @throws SAXException if thrown by the XML parser
+     * @throws XmlPullParserException if thrown by the XML parser
      */
-    private void populateBasicInfo(View view, String filename) throws IOException, SAXException {
-        DebateFormatInfo dfi = getDebateFormatInfo(filename);
+    private void populateBasicInfo(View view, String filename)
+            throws IOException, XmlPullParserException {
+        DebateFormatInfo dfi = getBundledDebateFormatInfo(filename);
+        if (dfi == null)
+            dfi = getDebateFormatHeader(filename);
         if (dfi != null)
             populateBasicInfo(view, dfi);
     }
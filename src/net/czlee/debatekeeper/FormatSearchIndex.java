@@ -0,0 +1,422 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * FormatSearchIndex is an in-memory index of debate format files, for searching by text and
+ * filtering by facets.
+ *
+ * Each file is given a small integer ID, and every term and facet value maps to a
+ * <code>BitSet</code> of the IDs of the files that have it.  A search is then a few unions (for
+ * prefixes) and intersections (for everything else) of bit sets, without looking at the files
+ * themselves.
+ *
+ * The text is the name, regions, levels, "used at" and description, split into words.  Each
+ * word in a search is a prefix, so that results can be updated as the user types.  The facets
+ * are regions, levels and "used at" (each matched exactly, ignoring case), the lengths of the
+ * speeches, and the number of speeches.
+ *
+ * Files can be added, replaced and removed at any time.  This class isn't thread-safe.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class FormatSearchIndex {
+
+    public static final int FACET_REGION  = 0;
+    public static final int FACET_LEVEL   = 1;
+    public static final int FACET_USED_AT = 2;
+    private static final int NUMBER_OF_STRING_FACETS = 3;
+
+    private final ArrayList<String>                  mFilenames         = new ArrayList<String>();
+    private final HashMap<String, Integer>           mIds               = new HashMap<String, Integer>();
+    private final ArrayList<Entry>                   mEntries           = new ArrayList<Entry>();
+    private final BitSet                             mAllIds            = new BitSet();
+    private final ArrayList<Integer>                 mFreeIds           = new ArrayList<Integer>();
+
+    private final TreeMap<String, BitSet>            mTerms             = new TreeMap<String, BitSet>();
+    private final ArrayList<TreeMap<String, BitSet>> mStringFacets      = new ArrayList<TreeMap<String, BitSet>>();
+    private final TreeMap<Long, BitSet>              mSpeechLengths     = new TreeMap<Long, BitSet>();
+    private final TreeMap<Integer, BitSet>           mNumbersOfSpeeches = new TreeMap<Integer, BitSet>();
+
+    //******************************************************************************************
+    // Public classes
+    //******************************************************************************************
+
+    /**
+     * A search.  Everything that is set must match; anything not set matches any file.
+     */
+    public static class Query {
+
+        private       String              mText             = null;
+        private final ArrayList<String>[] mFacetValues;
+        private       long                mMinSpeechLength  = -1;
+        private       long                mMaxSpeechLength  = -1;
+        private       int                 mNumberOfSpeeches = -1;
+
+        @SuppressWarnings("unchecked")
+        public Query() {
+            mFacetValues = new ArrayList[NUMBER_OF_STRING_FACETS];
+            for (int i = 0; i < NUMBER_OF_STRING_FACETS; i++)
+                mFacetValues[i] = new ArrayList<String>();
+        }
+
+        /**
+         * @param text the text to search for.  Each word matches any word that starts with it.
+         */
+        public void setText(String text) {
+            mText = text;
+        }
+
+        /**
+         * Requires a value of a facet.  If several values of one facet are required, a file
+         * matches if it has any of them.
+         * @param facet one of <code>FACET_REGION</code>, <code>FACET_LEVEL</code> and
+         * <code>FACET_USED_AT</code>
+         * @param value the value, ignoring case
+         */
+        public void addFacetValue(int facet, String value) {
+            mFacetValues[facet].add(value);
+        }
+
+        /**
+         * Requires at least one speech with a length in the given range.
+         * @param minLength the shortest length in seconds, inclusive
+         * @param maxLength the longest length in seconds, inclusive
+         */
+        public void setSpeechLengthRange(long minLength, long maxLength) {
+            mMinSpeechLength = minLength;
+            mMaxSpeechLength = maxLength;
+        }
+
+        /**
+         * @param numberOfSpeeches the number of speeches required
+         */
+        public void setNumberOfSpeeches(int numberOfSpeeches) {
+            mNumberOfSpeeches = numberOfSpeeches;
+        }
+
+    }
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    /**
+     * What was indexed for a file, so that it can be removed again.
+     */
+    private static class Entry {
+        private final ArrayList<String>[] mFacetKeys;
+        private final ArrayList<String>   mTerms;
+        private final long[]              mSpeechLengths;
+        private final int                 mNumberOfSpeeches;
+
+        public Entry(ArrayList<String>[] facetKeys, ArrayList<String> terms, long[] speechLengths,
+                int numberOfSpeeches) {
+            mFacetKeys        = facetKeys;
+            mTerms            = terms;
+            mSpeechLengths    = speechLengths;
+            mNumberOfSpeeches = numberOfSpeeches;
+        }
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    public FormatSearchIndex() {
+        super();
+        for (int i = 0; i < NUMBER_OF_STRING_FACETS; i++)
+            mStringFacets.add(new TreeMap<String, BitSet>());
+    }
+
+    /**
+     * Adds all the files in a catalogue.
+     * @param catalogue the {@link FormatCatalogue}
+     */
+    public void putAll(FormatCatalogue catalogue) {
+        Iterator<String> filenameIterator = catalogue.getFilenames().iterator();
+        while (filenameIterator.hasNext()) {
+            String filename = filenameIterator.next();
+            put(filename, catalogue.get(filename));
+        }
+    }
+
+    /**
+     * Adds a file to the index, replacing it if it's already there.
+     * @param filename the file name
+     * @param dfi the {@link DebateFormatInfo} for that file.  If it has no speeches, the file
+     * won't match any search on speech lengths or the number of speeches.
+     */
+    @SuppressWarnings("unchecked")
+    public void put(String filename, DebateFormatInfo dfi) {
+        remove(filename);
+
+        int id = newId(filename);
+
+        ArrayList<String>[] facetKeys = new ArrayList[NUMBER_OF_STRING_FACETS];
+        facetKeys[FACET_REGION]  = normalise(dfi.getRegions());
+        facetKeys[FACET_LEVEL]   = normalise(dfi.getLevels());
+        facetKeys[FACET_USED_AT] = normalise(dfi.getUsedAts());
+        for (int i = 0; i < NUMBER_OF_STRING_FACETS; i++)
+            for (int j = 0; j < facetKeys[i].size(); j++)
+                getOrCreate(mStringFacets.get(i), facetKeys[i].get(j)).set(id);
+
+        ArrayList<String> terms = new ArrayList<String>();
+        addWords(terms, dfi.getName());
+        addWords(terms, dfi.getRegions());
+        addWords(terms, dfi.getLevels());
+        addWords(terms, dfi.getUsedAts());
+        addWords(terms, dfi.getDescription());
+        for (int i = 0; i < terms.size(); i++)
+            getOrCreate(mTerms, terms.get(i)).set(id);
+
+        long[] speechLengths = dfi.getSpeechLengths();
+        for (int i = 0; i < speechLengths.length; i++)
+            getOrCreate(mSpeechLengths, speechLengths[i]).set(id);
+
+        int numberOfSpeeches = dfi.getNumberOfSpeeches();
+        if (numberOfSpeeches > 0)
+            getOrCreate(mNumbersOfSpeeches, numberOfSpeeches).set(id);
+
+        mEntries.set(id, new Entry(facetKeys, terms, speechLengths, numberOfSpeeches));
+    }
+
+    /**
+     * Removes a file from the index, if it's there.
+     * @param filename the file name
+     */
+    public void remove(String filename) {
+        Integer boxedId = mIds.remove(filename);
+        if (boxedId == null) return;
+        int   id    = boxedId;
+        Entry entry = mEntries.get(id);
+
+        for (int i = 0; i < NUMBER_OF_STRING_FACETS; i++)
+            for (int j = 0; j < entry.mFacetKeys[i].size(); j++)
+                clear(mStringFacets.get(i), entry.mFacetKeys[i].get(j), id);
+        for (int i = 0; i < entry.mTerms.size(); i++)
+            clear(mTerms, entry.mTerms.get(i), id);
+        for (int i = 0; i < entry.mSpeechLengths.length; i++)
+            clear(mSpeechLengths, entry.mSpeechLengths[i], id);
+        if (entry.mNumberOfSpeeches > 0)
+            clear(mNumbersOfSpeeches, entry.mNumberOfSpeeches, id);
+
+        mEntries.set(id, null);
+        mFilenames.set(id, null);
+        mAllIds.clear(id);
+        mFreeIds.add(id);
+    }
+
+    /**
+     * @param filename a file name
+     * @return <code>true</code> if the file is in the index
+     */
+    public boolean contains(String filename) {
+        return mIds.containsKey(filename);
+    }
+
+    /**
+     * @return the number of files in the index
+     */
+    public int size() {
+        return mIds.size();
+    }
+
+    /**
+     * @param facet one of <code>FACET_REGION</code>, <code>FACET_LEVEL</code> and
+     * <code>FACET_USED_AT</code>
+     * @return the values of that facet among the files in the index, in lower case and in
+     * alphabetical order
+     */
+    public Set<String> getFacetValues(int facet) {
+        return mStringFacets.get(facet).keySet();
+    }
+
+    /**
+     * @return the distinct speech lengths among the files in the index, in ascending order
+     */
+    public Set<Long> getSpeechLengths() {
+        return mSpeechLengths.keySet();
+    }
+
+    /**
+     * @return the distinct numbers of speeches among the files in the index, in ascending order
+     */
+    public Set<Integer> getNumbersOfSpeeches() {
+        return mNumbersOfSpeeches.keySet();
+    }
+
+    /**
+     * Searches for files that match all of the given text.
+     * @param text the text to search for; see {@link Query#setText(String)}
+     * @return the file names of the files that match, in no particular order
+     */
+    public ArrayList<String> search(String text) {
+        Query query = new Query();
+        query.setText(text);
+        return search(query);
+    }
+
+    /**
+     * Searches for files that match a query.
+     * @param query the {@link Query}
+     * @return the file names of the files that match, in no particular order
+     */
+    public ArrayList<String> search(Query query) {
+        BitSet result = (BitSet) mAllIds.clone();
+
+        // Text: every word must be a prefix of some term
+        if (query.mText != null) {
+            ArrayList<String> words = new ArrayList<String>();
+            addWords(words, query.mText);
+            for (int i = 0; i < words.size() && !result.isEmpty(); i++)
+                result.and(unionOf(prefixRange(mTerms, words.get(i))));
+        }
+
+        // String facets: any of the given values of each facet
+        for (int i = 0; i < NUMBER_OF_STRING_FACETS && !result.isEmpty(); i++) {
+            ArrayList<String> values = query.mFacetValues[i];
+            if (values.size() == 0) continue;
+            BitSet matches = new BitSet();
+            for (int j = 0; j < values.size(); j++) {
+                BitSet ids = mStringFacets.get(i).get(normalise(values.get(j)));
+                if (ids != null) matches.or(ids);
+            }
+            result.and(matches);
+        }
+
+        // Speech lengths
+        if (query.mMinSpeechLength >= 0 && query.mMaxSpeechLength >= query.mMinSpeechLength)
+            result.and(unionOf(mSpeechLengths.subMap(query.mMinSpeechLength,
+                    query.mMaxSpeechLength + 1)));
+
+        // Number of speeches
+        if (query.mNumberOfSpeeches >= 0) {
+            BitSet ids = mNumbersOfSpeeches.get(query.mNumberOfSpeeches);
+            if (ids != null) result.and(ids);
+            else result.clear();
+        }
+
+        ArrayList<String> filenames = new ArrayList<String>(result.cardinality());
+        for (int id = result.nextSetBit(0); id >= 0; id = result.nextSetBit(id + 1))
+            filenames.add(mFilenames.get(id));
+        return filenames;
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    private int newId(String filename) {
+        int id;
+        if (mFreeIds.size() > 0) {
+            id = mFreeIds.remove(mFreeIds.size() - 1);
+            mFilenames.set(id, filename);
+        } else {
+            id = mFilenames.size();
+            mFilenames.add(filename);
+            mEntries.add(null);
+        }
+        mIds.put(filename, id);
+        mAllIds.set(id);
+        return id;
+    }
+
+    private static <K> BitSet getOrCreate(TreeMap<K, BitSet> map, K key) {
+        BitSet ids = map.get(key);
+        if (ids == null) {
+            ids = new BitSet();
+            map.put(key, ids);
+        }
+        return ids;
+    }
+
+    /**
+     * Clears an ID from the bit set for a key, removing the key if no IDs are left.
+     */
+    private static <K> void clear(TreeMap<K, BitSet> map, K key, int id) {
+        BitSet ids = map.get(key);
+        if (ids == null) return;
+        ids.clear(id);
+        if (ids.isEmpty()) map.remove(key);
+    }
+
+    private static <K> BitSet unionOf(SortedMap<K, BitSet> map) {
+        BitSet union = new BitSet();
+        Iterator<BitSet> idsIterator = map.values().iterator();
+        while (idsIterator.hasNext())
+            union.or(idsIterator.next());
+        return union;
+    }
+
+    /**
+     * @return the part of the map whose keys start with the prefix
+     */
+    private static SortedMap<String, BitSet> prefixRange(TreeMap<String, BitSet> map, String prefix) {
+        return map.subMap(prefix, prefix + Character.MAX_VALUE);
+    }
+
+    private static String normalise(String str) {
+        return str.trim().toLowerCase(Locale.ENGLISH);
+    }
+
+    private static ArrayList<String> normalise(ArrayList<String> list) {
+        ArrayList<String> result = new ArrayList<String>(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            String key = normalise(list.get(i));
+            if (!result.contains(key)) result.add(key);
+        }
+        return result;
+    }
+
+    private static void addWords(ArrayList<String> words, ArrayList<String> list) {
+        for (int i = 0; i < list.size(); i++)
+            addWords(words, list.get(i));
+    }
+
+    /**
+     * Adds the distinct words in a string, in lower case, to a list.  Words are runs of letters
+     * and digits.
+     */
+    private static void addWords(ArrayList<String> words, String str) {
+        if (str == null) return;
+        String lower = str.toLowerCase(Locale.ENGLISH);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean isWordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (isWordChar && start < 0) {
+                start = i;
+            } else if (!isWordChar && start >= 0) {
+                String word = lower.substring(start, i);
+                if (!words.contains(word)) words.add(word);
+                start = -1;
+            }
+        }
+    }
+
+}
@@ -46,6 +46,10 @@ import android.os.Environment;
  * backwards compatibility and (b) more importantly, so that uninstalling the app doesn't delete
  * those user files that the user himself put there!
  *
+ * The bundled formats in the assets are also compiled at build time (see
+ * {@link CompiledDebateFormat} and {@link FormatCatalogue}).  The compiled forms are only used for
+ * files that haven't been overridden by a user file of the same name.
+ *
  * @author Chuan-Zheng Lee
  *
  */
@@ -107,6 +111,8 @@ public class FormatXmlFilesManager {
         String[] assetList = mAssets.list("");
         if (assetList != null) {
             for (int i = 0; i < assetList.length; i++) {
+                if (assetList[i].equals(CompiledDebateFormat.COMPILED_DIRECTORY_NAME))
+                    continue;
                 compiledSet.add(assetList[i]);
             }
         }
@@ -116,6 +122,30 @@ public class FormatXmlFilesManager {
         return compiledList;
     }
 
+    /**
+     * Opens the compiled form of the file given by 'filename', if it is a bundled file that hasn't
+     * been overridden by a user file, and the compiled form exists.
+     * @param filename the name of the (XML) file
+     * @return an <code>InputStream</code> for the compiled form, or <code>null</code> if there
+     * isn't one
+     */
+    public InputStream openCompiled(String filename) {
+        if (getUserFilesDirectory() != null && new File(getUserFilesDirectory(), filename).isFile())
+            return null;
+        return openAssetOrNull(CompiledDebateFormat.COMPILED_DIRECTORY_NAME + "/"
+                + CompiledDebateFormat.getCompiledFileName(filename));
+    }
+
+    /**
+     * Opens the catalogue of the bundled files.
+     * @return an <code>InputStream</code> for the catalogue, or <code>null</code> if there isn't
+     * one
+     */
+    public InputStream openCatalogue() {
+        return openAssetOrNull(CompiledDebateFormat.COMPILED_DIRECTORY_NAME + "/"
+                + FormatCatalogue.CATALOGUE_FILE_NAME);
+    }
+
     /**
      * Finds out in which location this file is.
      * @param filename the name of the file
@@ -140,9 +170,21 @@ public class FormatXmlFilesManager {
     }
 
     //******************************************************************************************
-    // Public methods
+    // Private methods
     //******************************************************************************************
 
+    /**
+     * @param path the path of the asset to open
+     * @return an <code>InputStream</code> for the asset, or <code>null</code> if it doesn't exist
+     */
+    private InputStream openAssetOrNull(String path) {
+        try {
+            return mAssets.open(path);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
     private boolean isExternalStorageReadable() {
         String state = Environment.getExternalStorageState();
         if (Environment.MEDIA_MOUNTED.equals(state))
@@ -46,6 +46,7 @@ public class GlobalSettingsActivity extends PreferenceActivity {
     private static String KEY_OVERTIME_BELL_PERIOD;
     private static String KEY_COUNT_DIRECTION;
     private static String KEY_FLASH_SCREEN_MODE;
+    private static String KEY_PEER_MODE;
 
     //******************************************************************************************
     // Private classes
@@ -76,26 +77,31 @@ public class GlobalSettingsActivity extends PreferenceActivity {
         KEY_OVERTIME_BELL_PERIOD = getString(R.string.PrefOvertimeBellPeriodKey);
         KEY_COUNT_DIRECTION      = getString(R.string.PrefCountDirectionKey);
         KEY_FLASH_SCREEN_MODE    = getString(R.string.PrefFlashScreenModeKey);
+        KEY_PEER_MODE            = getString(R.string.PrefPeerModeKey);
 
         mIntegerPreferenceKeys.add(KEY_FIRST_OVERTIME_BELL);
         mIntegerPreferenceKeys.add(KEY_OVERTIME_BELL_PERIOD);
         mListPreferenceKeys.add(KEY_COUNT_DIRECTION);
         mListPreferenceKeys.add(KEY_FLASH_SCREEN_MODE);
+        mListPreferenceKeys.add(KEY_PEER_MODE);
 
         mPreferenceToSummaryResidMap.put(KEY_FIRST_OVERTIME_BELL,  R.string.PrefFirstOvertimeBellSummary);
         mPreferenceToSummaryResidMap.put(KEY_OVERTIME_BELL_PERIOD, R.string.PrefOvertimeBellPeriodSummary);
         mPreferenceToSummaryResidMap.put(KEY_COUNT_DIRECTION,      R.array.PrefCountDirectionSummaries);
         mPreferenceToSummaryResidMap.put(KEY_FLASH_SCREEN_MODE,    R.array.PrefFlashScreenModeSummaries);
+        mPreferenceToSummaryResidMap.put(KEY_PEER_MODE,            R.array.PrefPeerModeSummaries);
 
         mPreferenceToDefaultResidMap.put(KEY_FIRST_OVERTIME_BELL,  R.integer.DefaultPrefFirstOvertimeBell);
         mPreferenceToDefaultResidMap.put(KEY_OVERTIME_BELL_PERIOD, R.integer.DefaultPrefOvertimeBellPeriod);
         mPreferenceToDefaultResidMap.put(KEY_COUNT_DIRECTION,      R.string.DefaultPrefCountDirection);
         mPreferenceToDefaultResidMap.put(KEY_FLASH_SCREEN_MODE,    R.string.DefaultPrefFlashScreenMode);
+        mPreferenceToDefaultResidMap.put(KEY_PEER_MODE,            R.string.DefaultPrefPeerMode);
 
         updateIntegerPreferenceSummary(KEY_FIRST_OVERTIME_BELL);
         updateIntegerPreferenceSummary(KEY_OVERTIME_BELL_PERIOD);
         updateListPreferenceSummary(KEY_COUNT_DIRECTION);
         updateListPreferenceSummary(KEY_FLASH_SCREEN_MODE);
+        updateListPreferenceSummary(KEY_PEER_MODE);
 
     }
 
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+/**
+ * This interface looks up string resources by their resource ID, in the same way as
+ * <code>Context.getString()</code>.
+ *
+ * On Android, this is just a wrapper around a {@link android.content.Context} (see
+ * {@link ContextStringResources}).  It is used by the app's debate format readers (e.g.
+ * {@link DebateFormatInfoExtractor}) so that they can also run off Android, which is how the
+ * format catalogue is made at build time.  The engine's parser uses {@link FormatStrings}
+ * instead, since it can't see the app's resource IDs.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public interface StringResources {
+    public String getString(int resId);
+    public String getString(int resId, Object... formatArgs);
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper;
+
+import java.util.HashMap;
+
+import android.text.TextUtils;
+import android.view.View;
+import android.widget.TextView;
+
+/**
+ * ViewUpdater changes views only when their content actually changes.
+ *
+ * Every call to <code>setText()</code>, <code>setBackgroundColor()</code> etc. on a view
+ * invalidates it (and, for text, often requests a layout pass), even if the new value is the same
+ * as the old one.  The GUI is updated every second, but usually only the clock digits change, so
+ * the setters in this class compare against what was last rendered and skip the call if nothing
+ * changed.
+ *
+ * It also counts how many views it actually changed, per tick and in total, so that this can be
+ * checked.  {@link DebatingActivity} logs the counts when it stops.  All methods must be called on
+ * the UI thread.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class ViewUpdater {
+
+    // Views don't expose their background colour on all API levels, so we remember it ourselves.
+    private final HashMap<View, Integer> mBackgroundColors = new HashMap<View, Integer>();
+
+    private long mTickCount                 = 0;
+    private int  mTickInvalidationCount     = 0;
+    private int  mLastTickInvalidationCount = 0;
+    private long mTotalInvalidationCount    = 0;
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Starts a new tick.  Call this once at the start of each GUI update.
+     */
+    public void startTick() {
+        mLastTickInvalidationCount = mTickInvalidationCount;
+        mTickInvalidationCount     = 0;
+        mTickCount++;
+    }
+
+    /**
+     * @return the number of ticks started since this <code>ViewUpdater</code> was created
+     */
+    public long getTickCount() {
+        return mTickCount;
+    }
+
+    /**
+     * @return the number of views changed in the previous tick
+     */
+    public int getLastTickInvalidationCount() {
+        return mLastTickInvalidationCount;
+    }
+
+    /**
+     * @return the number of views changed since this <code>ViewUpdater</code> was created
+     */
+    public long getTotalInvalidationCount() {
+        return mTotalInvalidationCount;
+    }
+
+    /**
+     * Sets the text of a {@link TextView}, if it is different from what is already there.
+     * @param view the view to update
+     * @param text the new text
+     */
+    public void setText(TextView view, CharSequence text) {
+        if (TextUtils.equals(view.getText(), text)) return;
+        view.setText(text);
+        countInvalidation();
+    }
+
+    /**
+     * Sets the text colour of a {@link TextView}, if it is different from what is already there.
+     * @param view the view to update
+     * @param color the new colour
+     */
+    public void setTextColor(TextView view, int color) {
+        if (view.getCurrentTextColor() == color) return;
+        view.setTextColor(color);
+        countInvalidation();
+    }
+
+    /**
+     * Sets the text colour of a {@link ClockView}, if it is different from what is already there.
+     * @param view the view to update
+     * @param color the new colour
+     */
+    public void setTextColor(ClockView view, int color) {
+        if (view.getTextColor() == color) return;
+        view.setTextColor(color);
+        countInvalidation();
+    }
+
+    /**
+     * Sets the time shown on a {@link ClockView}, if it is different from what is already there.
+     * @param view the view to update
+     * @param seconds the new time in seconds
+     */
+    public void setTime(ClockView view, long seconds) {
+        if (!view.isBlank() && view.getTimeInTenths() == seconds * 10) return;
+        view.setTime(seconds);
+        countInvalidation();
+    }
+
+    /**
+     * Sets the time shown on a {@link ClockView} in tenths of a second, if it is different from
+     * what is already there.
+     * @param view the view to update
+     * @param tenths the new time in tenths of a second
+     */
+    public void setTimeInTenths(ClockView view, long tenths) {
+        if (!view.isBlank() && view.getTimeInTenths() == tenths) return;
+        view.setTimeInTenths(tenths);
+        countInvalidation();
+    }
+
+    /**
+     * Clears a {@link ClockView}, if it isn't already blank.
+     * @param view the view to clear
+     */
+    public void clear(ClockView view) {
+        if (view.isBlank()) return;
+        view.clear();
+        countInvalidation();
+    }
+
+    /**
+     * Sets the background colour of a {@link View}, if it is different from what this
+     * <code>ViewUpdater</code> last set it to.
+     * @param view the view to update
+     * @param color the new colour
+     */
+    public void setBackgroundColor(View view, int color) {
+        Integer lastColor = mBackgroundColors.get(view);
+        if (lastColor != null && lastColor == color) return;
+        view.setBackgroundColor(color);
+        mBackgroundColors.put(view, color);
+        countInvalidation();
+    }
+
+    /**
+     * Sets the visibility of a {@link View}, if it is different from what it already is.
+     * @param view the view to update
+     * @param visibility the new visibility, <i>e.g.</i> <code>View.GONE</code>
+     */
+    public void setVisibility(View view, int visibility) {
+        if (view.getVisibility() == visibility) return;
+        view.setVisibility(visibility);
+        countInvalidation();
+    }
+
+    /**
+     * Enables or disables a {@link View}, if it is not already in that state.
+     * @param view the view to update
+     * @param enabled <code>true</code> to enable, <code>false</code> to disable
+     */
+    public void setEnabled(View view, boolean enabled) {
+        if (view.isEnabled() == enabled) return;
+        view.setEnabled(enabled);
+        countInvalidation();
+    }
+
+    /**
+     * Forgets everything remembered about views, so that the next update sets them all.  Call
+     * this if views are changed other than through this <code>ViewUpdater</code>.
+     */
+    public void forget() {
+        mBackgroundColors.clear();
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    private void countInvalidation() {
+        mTickInvalidationCount++;
+        mTotalInvalidationCount++;
+    }
+
+}
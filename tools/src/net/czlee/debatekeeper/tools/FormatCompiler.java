@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import net.czlee.debatekeeper.CompiledDebateFormat;
+import net.czlee.debatekeeper.DebateFormat;
+import net.czlee.debatekeeper.DebateFormatBuilderFromXml;
+import net.czlee.debatekeeper.DebateFormatBuilderFromXml.ErrorLogEntry;
+import net.czlee.debatekeeper.DebateFormatInfo;
+import net.czlee.debatekeeper.DebateFormatInfoExtractor;
+import net.czlee.debatekeeper.FormatCatalogue;
+
+import org.xml.sax.SAXException;
+
+/**
+ * FormatCompiler checks and compiles the bundled debate formats at build time.
+ *
+ * It runs on the build machine's JVM, using the app's own {@link DebateFormatBuilderFromXml}, so
+ * the bundled formats are checked in exactly the same way as the app would check them.  Any error
+ * that the builder logs fails the build.  For each format, it writes the compiled form (see
+ * {@link CompiledDebateFormat}), and it also writes a {@link FormatCatalogue} of all of them.
+ *
+ * Usage: <code>FormatCompiler &lt;assets dir&gt; &lt;res/values dir&gt; &lt;output dir&gt;</code>
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class FormatCompiler {
+
+    private final HostStringResources mStrings;
+    private final FormatCatalogue     mCatalogue = new FormatCatalogue();
+    private final ArrayList<String>   mErrors    = new ArrayList<String>();
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    public FormatCompiler(HostStringResources strings) {
+        super();
+        mStrings = strings;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3) {
+            System.err.println("Usage: FormatCompiler <assets dir> <res/values dir> <output dir>");
+            System.exit(2);
+        }
+
+        File assetsDirectory = new File(args[0]);
+        File valuesDirectory = new File(args[1]);
+        File outputDirectory = new File(args[2]);
+
+        HostStringResources strings = new HostStringResources(valuesDirectory,
+                Class.forName("net.czlee.debatekeeper.R$string"));
+        FormatCompiler compiler = new FormatCompiler(strings);
+
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs())
+            throw new IOException("Couldn't create " + outputDirectory);
+
+        String[] filenames = assetsDirectory.list();
+        if (filenames == null)
+            throw new IOException("Not a directory: " + assetsDirectory);
+        Arrays.sort(filenames);
+
+        int numberCompiled = 0;
+        for (int i = 0; i < filenames.length; i++) {
+            if (!filenames[i].endsWith(".xml")) continue;
+            if (compiler.compile(new File(assetsDirectory, filenames[i]), outputDirectory))
+                numberCompiled++;
+        }
+
+        compiler.writeCatalogue(new File(outputDirectory, FormatCatalogue.CATALOGUE_FILE_NAME));
+
+        if (compiler.hasErrors()) {
+            ArrayList<String> errors = compiler.getErrors();
+            for (int i = 0; i < errors.size(); i++)
+                System.err.println(errors.get(i));
+            System.err.println(String.format("%d error(s) in the bundled debate formats",
+                    compiler.getErrors().size()));
+            System.exit(1);
+        }
+
+        System.out.println(String.format("Compiled %d debate formats into %s", numberCompiled,
+                outputDirectory));
+    }
+
+    /**
+     * Checks and compiles one debate format file.  Errors are recorded, not thrown.
+     * @param xmlFile the debate format XML file
+     * @param outputDirectory the directory in which to write the compiled form
+     * @return <code>true</code> if the file was compiled with no errors, <code>false</code>
+     * otherwise
+     * @throws IOException if there was a problem writing the compiled form
+     */
+    public boolean compile(File xmlFile, File outputDirectory) throws IOException {
+        String filename = xmlFile.getName();
+
+        // 1. Build the debate format, exactly as the app does
+        DebateFormatBuilderFromXml dfbfx = new DebateFormatBuilderFromXml(mStrings);
+        DebateFormat df;
+        InputStream is = new FileInputStream(xmlFile);
+        try {
+            df = dfbfx.buildDebateFromXml(is);
+        } catch (SAXException e) {
+            addError(filename, "not valid XML: " + e.getMessage());
+            return false;
+        } catch (IllegalStateException e) {
+            // This is usually because no speech could be added, and the error log says why.
+            if (!dfbfx.hasErrors())
+                addError(filename, "there are no speeches in this format");
+            addErrorLog(filename, dfbfx);
+            return false;
+        } finally {
+            is.close();
+        }
+
+        if (dfbfx.hasErrors()) {
+            addErrorLog(filename, dfbfx);
+            return false;
+        }
+
+        if (!dfbfx.isSchemaSupported()) {
+            addError(filename, "schema version " + dfbfx.getSchemaVersion() + " is not supported");
+            return false;
+        }
+
+        // 2. Get the information for the catalogue
+        DebateFormatInfo dfi;
+        is = new FileInputStream(xmlFile);
+        try {
+            dfi = new DebateFormatInfoExtractor(mStrings).getDebateFormatInfo(is);
+        } catch (SAXException e) {
+            addError(filename, "not valid XML: " + e.getMessage());
+            return false;
+        } finally {
+            is.close();
+        }
+
+        if (dfi.getName().length() == 0) {
+            addError(filename, "the format has no name");
+            return false;
+        }
+
+        // 3. Write the compiled form
+        File compiledFile = new File(outputDirectory, CompiledDebateFormat.getCompiledFileName(filename));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(compiledFile)));
+        try {
+            CompiledDebateFormat.write(df, out);
+        } finally {
+            out.close();
+        }
+
+        mCatalogue.put(filename, dfi);
+        return true;
+    }
+
+    /**
+     * Writes the catalogue of all the formats compiled successfully so far.
+     * @param catalogueFile the file to write
+     * @throws IOException if there was a problem writing the file
+     */
+    public void writeCatalogue(File catalogueFile) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(catalogueFile)));
+        try {
+            mCatalogue.write(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return <code>true</code> if any errors have been found
+     */
+    public boolean hasErrors() {
+        return mErrors.size() > 0;
+    }
+
+    /**
+     * @return the errors found so far, each prefixed with its file name
+     */
+    public ArrayList<String> getErrors() {
+        return mErrors;
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    private void addError(String filename, String message) {
+        mErrors.add(filename + ": " + message);
+    }
+
+    /**
+     * Records every error in a builder's error log, with its line number if it's known.
+     */
+    private void addErrorLog(String filename, DebateFormatBuilderFromXml dfbfx) {
+        ArrayList<ErrorLogEntry> entries = dfbfx.getErrorLogEntries();
+        for (int i = 0; i < entries.size(); i++) {
+            ErrorLogEntry entry = entries.get(i);
+            if (entry.getLineNumber() >= 0)
+                addError(filename, "line " + entry.getLineNumber() + ": " + entry.getMessage());
+            else
+                addError(filename, entry.getMessage());
+        }
+    }
+
+}
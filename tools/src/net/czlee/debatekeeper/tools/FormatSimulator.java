@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.List;
+
+import net.czlee.debatekeeper.DebateFormat;
+import net.czlee.debatekeeper.DebateFormatBuilderFromXml;
+import net.czlee.debatekeeper.DebateSimulator;
+import net.czlee.debatekeeper.DebateSimulator.TimelineEvent;
+import net.czlee.debatekeeper.FormatStrings;
+import net.czlee.debatekeeper.ResourceFileStrings;
+
+/**
+ * FormatSimulator runs a debate format file through a whole debate in virtual time, and writes
+ * the bells, pauses and period changes in each speech.  It is for checking that a new format
+ * does what its author meant, without having to sit through the debate.
+ *
+ * The file is loaded with the engine's {@link DebateFormatBuilderFromXml}, as
+ * {@link FormatValidator} does, and run by a {@link DebateSimulator}.  Each line of the timeline
+ * has tab-separated fields:
+ * <pre>
+ *   speech index    speech name    time    event    [period description    [colour]]
+ * </pre>
+ * Any errors in the file are written to standard error first, and the timeline shows what the
+ * app would do in spite of them.
+ *
+ * Usage: <code>FormatSimulator &lt;res/values dir&gt; &lt;file&gt; [&lt;first overtime bell&gt;
+ * &lt;overtime bell period&gt; [&lt;run-out time&gt;]]</code>, all times in seconds.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class FormatSimulator {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2 && args.length != 4 && args.length != 5) {
+            System.err.println("Usage: FormatSimulator <res/values dir> <file> "
+                    + "[<first overtime bell> <overtime bell period> [<run-out time>]]");
+            System.exit(2);
+        }
+
+        FormatStrings strings = new ResourceFileStrings(new File(args[0]));
+        DebateFormatBuilderFromXml dfbfx = new DebateFormatBuilderFromXml(strings);
+
+        DebateFormat df;
+        InputStream is = new FileInputStream(args[1]);
+        try {
+            df = dfbfx.buildDebateFromXml(is);
+        } finally {
+            is.close();
+        }
+
+        if (dfbfx.hasErrors()) {
+            List<String> errors = dfbfx.getErrorLog();
+            for (int i = 0; i < errors.size(); i++)
+                System.err.println(args[1] + ": " + errors.get(i));
+        }
+
+        DebateSimulator simulator = new DebateSimulator(df);
+        if (args.length >= 4)
+            simulator.setOvertimeBells(Long.parseLong(args[2]), Long.parseLong(args[3]));
+        if (args.length >= 5)
+            simulator.setRunOutTime(Long.parseLong(args[4]));
+
+        long startTime = System.nanoTime();
+        List<TimelineEvent> timeline = simulator.run();
+        long elapsedNanos = System.nanoTime() - startTime;
+
+        System.out.println("# " + df.getName());
+        for (int i = 0; i < timeline.size(); i++)
+            System.out.println(timeline.get(i));
+
+        System.err.println(String.format("Simulated %.0f s in %.1f ms",
+                simulator.getSimulatedSeconds(), elapsedNanos / 1e6));
+    }
+
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.czlee.debatekeeper.DebateFormatBuilderFromXml;
+import net.czlee.debatekeeper.DebateFormatBuilderFromXml.ErrorLogEntry;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * FormatValidator checks any number of debate format files, on all available cores, and writes a
+ * machine-readable report of the problems it finds.
+ *
+ * Each file is checked with the app's own {@link DebateFormatBuilderFromXml}, as
+ * {@link FormatCompiler} does, but nothing is written apart from the report.  Directories given
+ * on the command line are searched recursively for <code>.xml</code> files.
+ *
+ * The report has one line per problem, with tab-separated fields:
+ * <pre>
+ *   file    severity    line    element    message
+ * </pre>
+ * where severity is <code>fatal</code> if the file couldn't be loaded at all, or
+ * <code>error</code> for an error that the app would show when the file is loaded.  The line is
+ * -1 and the element is empty if they aren't known.  Each file's problems are written together
+ * as soon as that file has been checked, so files don't appear in any particular order.  A summary
+ * is written to standard error at the end.
+ *
+ * Usage: <code>FormatValidator &lt;res/values dir&gt; &lt;file or dir&gt;...</code>
+ *
+ * The exit status is 0 if no problems were found, and 1 otherwise.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class FormatValidator {
+
+    public static final String SEVERITY_FATAL = "fatal";
+    public static final String SEVERITY_ERROR = "error";
+
+    /**
+     * The largest number of files that a task will check itself, rather than splitting them.
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 8;
+
+    private final HostStringResources mStrings;
+    private final PrintStream         mReport;
+    private       int                 mNumberOfFiles    = 0;
+    private       int                 mNumberOfBadFiles = 0;
+    private       int                 mNumberOfProblems = 0;
+
+    //******************************************************************************************
+    // Private classes
+    //******************************************************************************************
+
+    /**
+     * A problem found in a file, as it is written in the report.
+     */
+    private static class Problem {
+        private final String mSeverity;
+        private final int    mLineNumber;
+        private final String mElementName;
+        private final String mMessage;
+
+        public Problem(String severity, int lineNumber, String elementName, String message) {
+            mSeverity    = severity;
+            mLineNumber  = lineNumber;
+            mElementName = elementName;
+            mMessage     = message;
+        }
+    }
+
+    /**
+     * Checks a range of a list of files, splitting the range in half until it is small enough
+     * to check sequentially.
+     */
+    private class ValidateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 2954406313836958141L;
+
+        private final List<File> mFiles;
+        private final int        mStart;
+        private final int        mEnd;
+
+        public ValidateTask(List<File> files, int start, int end) {
+            mFiles = files;
+            mStart = start;
+            mEnd   = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (mEnd - mStart <= SEQUENTIAL_THRESHOLD) {
+                for (int i = mStart; i < mEnd; i++) {
+                    File file = mFiles.get(i);
+                    report(file, validate(file));
+                }
+            } else {
+                int middle = (mStart + mEnd) >>> 1;
+                invokeAll(new ValidateTask(mFiles, mStart, middle),
+                        new ValidateTask(mFiles, middle, mEnd));
+            }
+        }
+
+    }
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Constructor.
+     * @param strings the {@link HostStringResources} to give to the builders.  This must be safe to
+     * use from several threads at once.
+     * @param report the <code>PrintStream</code> to write the report to
+     */
+    public FormatValidator(HostStringResources strings, PrintStream report) {
+        super();
+        mStrings = strings;
+        mReport  = report;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: FormatValidator <res/values dir> <file or dir>...");
+            System.exit(2);
+        }
+
+        HostStringResources strings = new HostStringResources(new File(args[0]),
+                Class.forName("net.czlee.debatekeeper.R$string"));
+        FormatValidator validator = new FormatValidator(strings, System.out);
+
+        ArrayList<File> files = new ArrayList<File>();
+        for (int i = 1; i < args.length; i++)
+            findFormatFiles(new File(args[i]), files);
+
+        long startTime = System.nanoTime();
+        validator.validateAll(files);
+        long elapsedMillis = (System.nanoTime() - startTime) / 1000000;
+
+        System.err.println(String.format("Checked %d files in %d ms: %d problem(s) in %d file(s)",
+                validator.getNumberOfFiles(), elapsedMillis, validator.getNumberOfProblems(),
+                validator.getNumberOfBadFiles()));
+
+        if (validator.getNumberOfProblems() > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Checks all of the given files, using all available cores, and writes the report.  This
+     * returns when all the files have been checked.
+     * @param files the debate format files to check
+     */
+    public void validateAll(List<File> files) {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            pool.invoke(new ValidateTask(files, 0, files.size()));
+        } finally {
+            pool.shutdown();
+        }
+        mReport.flush();
+    }
+
+    /**
+     * @return the number of files checked so far
+     */
+    public synchronized int getNumberOfFiles() {
+        return mNumberOfFiles;
+    }
+
+    /**
+     * @return the number of files checked so far that had at least one problem
+     */
+    public synchronized int getNumberOfBadFiles() {
+        return mNumberOfBadFiles;
+    }
+
+    /**
+     * @return the number of problems found so far
+     */
+    public synchronized int getNumberOfProblems() {
+        return mNumberOfProblems;
+    }
+
+    //******************************************************************************************
+    // Private methods
+    //******************************************************************************************
+
+    /**
+     * Adds all the debate format files in or at a path to a list.
+     * @param path a file or directory
+     * @param files the list to add to
+     */
+    private static void findFormatFiles(File path, ArrayList<File> files) {
+        if (!path.isDirectory()) {
+            files.add(path);
+            return;
+        }
+
+        File[] children = path.listFiles();
+        if (children == null) return;
+        Arrays.sort(children);
+        for (int i = 0; i < children.length; i++) {
+            if (children[i].isDirectory() || children[i].getName().endsWith(".xml"))
+                findFormatFiles(children[i], files);
+        }
+    }
+
+    /**
+     * Checks one file.  This may be called from any thread.
+     * @param file the debate format file
+     * @return the problems found, empty if there were none
+     */
+    private ArrayList<Problem> validate(File file) {
+        ArrayList<Problem> problems = new ArrayList<Problem>();
+        DebateFormatBuilderFromXml dfbfx = new DebateFormatBuilderFromXml(mStrings);
+
+        try {
+            InputStream is = new FileInputStream(file);
+            try {
+                dfbfx.buildDebateFromXml(is);
+            } finally {
+                is.close();
+            }
+        } catch (SAXParseException e) {
+            problems.add(new Problem(SEVERITY_FATAL, e.getLineNumber(), null,
+                    "not valid XML: " + e.getMessage()));
+        } catch (SAXException e) {
+            problems.add(new Problem(SEVERITY_FATAL, -1, null, "not valid XML: " + e.getMessage()));
+        } catch (IOException e) {
+            problems.add(new Problem(SEVERITY_FATAL, -1, null, "couldn't read file: " + e.getMessage()));
+        } catch (IllegalStateException e) {
+            // This is usually because no speech could be added, and the error log says why.
+            if (!dfbfx.hasErrors())
+                problems.add(new Problem(SEVERITY_FATAL, -1, null, "there are no speeches in this format"));
+        }
+
+        // Errors logged before a fatal error are still worth reporting.
+        ArrayList<ErrorLogEntry> entries = dfbfx.getErrorLogEntries();
+        for (int i = 0; i < entries.size(); i++) {
+            ErrorLogEntry entry = entries.get(i);
+            problems.add(new Problem(SEVERITY_ERROR, entry.getLineNumber(), entry.getElementName(),
+                    entry.getMessage()));
+        }
+
+        return problems;
+    }
+
+    /**
+     * Writes the problems found in one file to the report, all together.
+     * @param file the file that was checked
+     * @param problems the problems found in it
+     */
+    private synchronized void report(File file, ArrayList<Problem> problems) {
+        mNumberOfFiles++;
+        if (problems.size() == 0) return;
+        mNumberOfBadFiles++;
+        mNumberOfProblems += problems.size();
+
+        String path = clean(file.getPath());
+        for (int i = 0; i < problems.size(); i++) {
+            Problem problem = problems.get(i);
+            mReport.print(path);
+            mReport.print('\t');
+            mReport.print(problem.mSeverity);
+            mReport.print('\t');
+            mReport.print(problem.mLineNumber);
+            mReport.print('\t');
+            mReport.print((problem.mElementName != null) ? clean(problem.mElementName) : "");
+            mReport.print('\t');
+            mReport.println(clean(problem.mMessage));
+        }
+    }
+
+    /**
+     * @return the string, with tabs and line breaks replaced by spaces so that it fits in one
+     * field of the report
+     */
+    private static String clean(String str) {
+        if (str == null) return "";
+        return str.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2012 Chuan-Zheng Lee
+ *
+ * This file is part of the Debatekeeper app, which is licensed under the
+ * GNU General Public Licence version 3 (GPLv3).  You can redistribute
+ * and/or modify it under the terms of the GPLv3, and you must not use
+ * this file except in compliance with the GPLv3.
+ *
+ * This app is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public Licence for more details.
+ *
+ * You should have received a copy of the GNU General Public Licence
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.czlee.debatekeeper.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+
+import net.czlee.debatekeeper.ResourceFileStrings;
+import net.czlee.debatekeeper.StringResources;
+
+/**
+ * HostStringResources gets string resources straight from the <code>res/values</code> directory,
+ * for when the app's code is run off Android (e.g. at build time).
+ *
+ * Strings are read by {@link ResourceFileStrings}, which is all the engine's parser needs.  This
+ * class also matches them to resource IDs using the generated <code>R.string</code> class, for
+ * the app's classes that look strings up by ID.
+ *
+ * @author agent
+ * @since  2026-10-19
+ */
+public class HostStringResources extends ResourceFileStrings implements StringResources {
+
+    private final HashMap<Integer, String> mStrings = new HashMap<Integer, String>();
+
+    //******************************************************************************************
+    // Public methods
+    //******************************************************************************************
+
+    /**
+     * Constructor.
+     * @param valuesDirectory the <code>res/values</code> directory
+     * @param rStringClass the generated <code>R.string</code> class
+     * @throws IOException if there was a problem reading the resources
+     */
+    public HostStringResources(File valuesDirectory, Class<?> rStringClass) throws IOException {
+        super(valuesDirectory);
+
+        Field[] fields = rStringClass.getFields();
+        for (int i = 0; i < fields.length; i++) {
+            if (!Modifier.isStatic(fields[i].getModifiers()) || fields[i].getType() != int.class)
+                continue;
+            if (!hasString(fields[i].getName()))
+                continue;
+            try {
+                mStrings.put(fields[i].getInt(null), getString(fields[i].getName()));
+            } catch (IllegalAccessException e) {
+                throw new IOException("Couldn't read R.string." + fields[i].getName());
+            }
+        }
+    }
+
+    @Override
+    public String getString(int resId) {
+        String value = mStrings.get(resId);
+        if (value == null)
+            throw new IllegalArgumentException(String.format("No string resource 0x%08x", resId));
+        return value;
+    }
+
+    @Override
+    public String getString(int resId, Object... formatArgs) {
+        return String.format(getString(resId), formatArgs);
+    }
+
+}